@@ -0,0 +1,132 @@
+package com.github.loggly.log4j.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Syslog receiver on the loopback interface, which discards everything it
+ * receives as fast as possible.
+ */
+public abstract class LoopbackSink implements Closeable {
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final int UDP_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Starts a sink for {@code protocol}.
+	 *
+	 * @param protocol either {@code udp} or {@code tcp}
+	 * @return the started sink
+	 * @throws IOException on I/O error
+	 */
+	public static LoopbackSink start(final String protocol) throws IOException {
+		return "tcp".equals(protocol) ? new Tcp() : new Udp();
+	}
+
+	protected LoopbackSink() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the syslog host to send to.
+	 *
+	 * @return the syslog host including the port
+	 */
+	public abstract String getSyslogHost();
+
+	/**
+	 * Starts {@code runnable} in a daemon thread.
+	 *
+	 * @param name     the thread name
+	 * @param runnable the runnable
+	 */
+	protected static void startDaemon(final String name, final Runnable runnable) {
+		final Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * UDP sink
+	 */
+	private static final class Udp extends LoopbackSink {
+		private final DatagramSocket socket;
+
+		Udp() throws IOException {
+			socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			socket.setReceiveBufferSize(UDP_RECEIVE_BUFFER_SIZE);
+			startDaemon("udp-sink", this::receive);
+		}
+
+		@Override
+		public String getSyslogHost() {
+			return "localhost:" + socket.getLocalPort();
+		}
+
+		private void receive() {
+			final DatagramPacket packet = new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+			try {
+				while (!socket.isClosed()) {
+					socket.receive(packet);
+				}
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// closed
+			}
+		}
+
+		@Override
+		public void close() {
+			socket.close();
+		}
+	}
+
+	/**
+	 * TCP sink, draining each accepted connection in its own thread
+	 */
+	private static final class Tcp extends LoopbackSink {
+		private final ServerSocket serverSocket;
+
+		Tcp() throws IOException {
+			serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+			startDaemon("tcp-sink", this::accept);
+		}
+
+		@Override
+		public String getSyslogHost() {
+			return "localhost:" + serverSocket.getLocalPort();
+		}
+
+		private void accept() {
+			try {
+				while (!serverSocket.isClosed()) {
+					final Socket socket = serverSocket.accept();
+					startDaemon("tcp-sink-connection", () -> drain(socket));
+				}
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// closed
+			}
+		}
+
+		private static void drain(final Socket socket) {
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			try (InputStream inputStream = socket.getInputStream()) {
+				while (inputStream.read(buffer) >= 0) {
+					// discard
+				}
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// closed
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.github.loggly.log4j.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.EnhancedPatternLayout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.loggly.log4j.PatternBufferLayout;
+import com.github.loggly.log4j.SyslogAppender64k;
+
+/**
+ * Measures the hot path of {@link SyslogAppender64k} from
+ * {@link SyslogAppender64k#doAppend(LoggingEvent)} down to a loopback syslog
+ * receiver.
+ *
+ * <p>
+ * Throughput and latency percentiles are measured by default. Add
+ * {@code -prof gc} (default of the {@code jmh} profile) for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyslogAppender64kBenchmark {
+	private static final Logger LOGGER = Logger.getLogger(SyslogAppender64kBenchmark.class);
+
+	private static final int CONTENDED_THREADS = 4;
+
+	@Param({ "udp", "tcp" })
+	private String protocol;
+
+	@Param
+	private MessageSize messageSize;
+
+	@Param({ "false", "true" })
+	private boolean header;
+
+	@Param({ "false", "true" })
+	private boolean throwable;
+
+	@Param({ "false", "true" })
+	private boolean concurrentLayout;
+
+	/**
+	 * Formats into the reusable message buffer using
+	 * {@link PatternBufferLayout} instead of creating a String per event
+	 */
+	@Param({ "false", "true" })
+	private boolean bufferLayout;
+
+	private LoopbackSink sink;
+
+	private SyslogAppender64k appender;
+
+	private String message;
+
+	private Throwable exception;
+
+	public SyslogAppender64kBenchmark() {
+		// nothing to initialize
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		sink = LoopbackSink.start(protocol);
+
+		appender = new SyslogAppender64k();
+		appender.setLayout(bufferLayout ? new PatternBufferLayout("%m") : new EnhancedPatternLayout("%m"));
+		appender.setConcurrentLayout(concurrentLayout);
+		appender.setFacility("LOCAL0");
+		appender.setHeader(header);
+		appender.setSyslogHost(sink.getSyslogHost());
+		appender.setProtocol(protocol);
+
+		message = messageSize.createMessage();
+		exception = throwable ? new IllegalStateException("benchmark") : null;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		appender.close();
+		sink.close();
+	}
+
+	/**
+	 * Creates a new event per invocation, as log4j caches the rendered message and
+	 * throwable inside of an event.
+	 *
+	 * @return the event to append
+	 */
+	private LoggingEvent createEvent() {
+		return new LoggingEvent(SyslogAppender64kBenchmark.class.getName(), LOGGER, Level.INFO, message, exception);
+	}
+
+	@Benchmark
+	public void append() {
+		appender.doAppend(createEvent());
+	}
+
+	@Benchmark
+	@Threads(CONTENDED_THREADS)
+	public void appendContended() {
+		appender.doAppend(createEvent());
+	}
+
+	/**
+	 * Message sizes to benchmark
+	 */
+	public enum MessageSize {
+		/**
+		 * Typical log message
+		 */
+		SMALL(100),
+
+		/**
+		 * Message filling a single packet of 64k
+		 */
+		MAX(60_000),
+
+		/**
+		 * Message split into multiple packets
+		 */
+		OVERSIZE(200_000);
+
+		private final int length;
+
+		MessageSize(final int length) {
+			this.length = length;
+		}
+
+		/**
+		 * Creates an ASCII message of this size.
+		 *
+		 * @return the message
+		 */
+		public String createMessage() {
+			final StringBuilder builder = new StringBuilder(length);
+			for (int index = 0; index < length; index += 1) {
+				builder.append((char) ('a' + index % 26));
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.github.loggly.log4j;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Layout formatting events into a buffer provided by the caller instead of
+ * creating a String per event. {@link SyslogAppender64k} passes a reusable
+ * buffer per sending thread and encodes its content straight into the packet.
+ *
+ * <p>
+ * Layouts not implementing this interface are formatted using
+ * {@link org.apache.log4j.Layout#format(LoggingEvent)}.
+ */
+@FunctionalInterface
+public interface BufferLayout {
+	/**
+	 * Appends the formatted {@code event} to {@code buffer}.
+	 *
+	 * @param event  the event to format
+	 * @param buffer the buffer to append to
+	 */
+	void format(LoggingEvent event, StringBuffer buffer);
+}
@@ -0,0 +1,48 @@
+package com.github.loggly.log4j;
+
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.helpers.PatternConverter;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * {@link PatternLayout} implementing {@link BufferLayout}. It supports the
+ * conversion patterns of {@link PatternLayout}, as it uses the same converters,
+ * but appends their output to the buffer of the caller instead of a shared
+ * buffer, which is copied into a new String per event.
+ *
+ * <p>
+ * Like {@link PatternLayout}, this layout is not thread-safe, as some
+ * converters, e.g. for dates, keep state.
+ */
+public final class PatternBufferLayout extends PatternLayout implements BufferLayout {
+	/**
+	 * First converter of the current conversion pattern
+	 */
+	private volatile PatternConverter head;
+
+	public PatternBufferLayout() {
+		this(DEFAULT_CONVERSION_PATTERN);
+	}
+
+	public PatternBufferLayout(final String pattern) {
+		super(pattern);
+		head = createPatternParser(pattern == null ? DEFAULT_CONVERSION_PATTERN : pattern).parse();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setConversionPattern(final String conversionPattern) {
+		super.setConversionPattern(conversionPattern);
+		head = createPatternParser(conversionPattern).parse();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void format(final LoggingEvent event, final StringBuffer buffer) {
+		PatternConverter converter = head;
+		while (converter != null) {
+			converter.format(buffer, event);
+			converter = converter.next;
+		}
+	}
+}
@@ -1,32 +1,57 @@
 package com.github.loggly.log4j;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.Writer;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Date;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.management.JMException;
 import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
 import org.apache.log4j.helpers.LogLog;
-import org.apache.log4j.helpers.SyslogQuietWriter;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
-import com.github.loggly.log4j.helpers.SyslogTcpWriter64k;
-import com.github.loggly.log4j.helpers.SyslogUdpWriter64k;
+import com.github.loggly.log4j.helpers.AsyncDispatcher;
+import com.github.loggly.log4j.helpers.AsyncOptions;
+import com.github.loggly.log4j.helpers.DuplicateFilter;
+import com.github.loggly.log4j.helpers.FilterStages;
+import com.github.loggly.log4j.helpers.HeaderOptions;
+import com.github.loggly.log4j.helpers.ReconnectBackoff;
+import com.github.loggly.log4j.helpers.SendResult;
+import com.github.loggly.log4j.helpers.SpillOptions;
+import com.github.loggly.log4j.helpers.SyslogHostStrategy;
+import com.github.loggly.log4j.helpers.SyslogMetrics;
+import com.github.loggly.log4j.helpers.SyslogMetricsJmx;
+import com.github.loggly.log4j.helpers.SyslogMultiWriter64k;
+import com.github.loggly.log4j.helpers.SyslogPacketCompressor;
+import com.github.loggly.log4j.helpers.SyslogPacketEncoder;
+import com.github.loggly.log4j.helpers.SyslogPacketHeader;
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogPriorityWriter;
+import com.github.loggly.log4j.helpers.TcpFraming;
+import com.github.loggly.log4j.helpers.TcpOptions;
+import com.github.loggly.log4j.helpers.ThrowableLines;
+import com.github.loggly.log4j.helpers.ThrowableOptions;
+import com.github.loggly.log4j.helpers.TlsOptions;
 
 import de.larssh.utils.Collectors;
 import de.larssh.utils.Finals;
@@ -118,21 +143,19 @@ public class SyslogAppender64k extends AppenderSkeleton {
 
 	protected static final int UPPER_MAX_MSG_LENGTH = Finals.constant(65507);
 
-	private static final String PROTOCOL_TCP = "tcp";
+	private static final String DEFAULT_PROTOCOL = SyslogUdpTransport.PROTOCOL;
 
-	private static final String PROTOCOL_UDP = "udp";
-
-	private static final String DEFAULT_PROTOCOL = PROTOCOL_UDP;
-
-	private static final String ELLIPSIS = "...";
+	/**
+	 * Separates multiple syslog hosts
+	 */
+	private static final char HOST_SEPARATOR = ',';
 
 	private static final String TAB = "    ";
 
 	/**
-	 * Date format used if header = true.
+	 * Interval of checking for events being sent while closing
 	 */
-	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT
-			= ThreadLocal.withInitial(() -> new SimpleDateFormat("MMM dd HH:mm:ss ", Locale.ENGLISH));
+	private static final long AWAIT_IN_FLIGHT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
 	/**
 	 * Maps integer values to the corresponding syslog facility name.
@@ -200,6 +223,22 @@ public class SyslogAppender64k extends AppenderSkeleton {
 
 	private final Lock lock = new ReentrantLock();
 
+	/**
+	 * Serializes formatting of events unless {@link #concurrentLayout} is set, as
+	 * layouts like {@link org.apache.log4j.PatternLayout} are not thread-safe
+	 */
+	private final Lock layoutLock = new ReentrantLock();
+
+	/**
+	 * Number of events being sent, awaited by {@link #close()}
+	 */
+	private final LongAdder inFlightEvents = new LongAdder();
+
+	/**
+	 * Set by {@link #close()} before awaiting events being sent
+	 */
+	private volatile boolean closing = false;
+
 	private Charset charset = StandardCharsets.UTF_8;
 
 	// Have LOG_USER as default
@@ -209,15 +248,47 @@ public class SyslogAppender64k extends AppenderSkeleton {
 
 	private boolean facilityPrinting = false;
 
-	private Optional<SyslogQuietWriter> syslogQuietWriter = Optional.empty();
+	/**
+	 * Transport including the encoded PRI parts of {@link #syslogFacility}, used to
+	 * write encoded packets
+	 */
+	private volatile Optional<SyslogPriorityWriter> syslogWriter = Optional.empty();
+
+	/**
+	 * Incremented whenever the options of packet encoders change, so that each
+	 * sender recreates its encoder
+	 */
+	private volatile int encodingGeneration = 0;
 
 	private String syslogHost = null;
 
+	private SyslogHostStrategy syslogHostStrategy = SyslogHostStrategy.FAILOVER;
+
 	private String protocol = DEFAULT_PROTOCOL;
 
-	private Optional<SocketFactory> tcpSocketFactory = Optional.empty();
+	private final TcpOptions tcpOptions = new TcpOptions();
+
+	private final SpillOptions spillOptions = new SpillOptions();
+
+	private final TlsOptions tlsOptions = new TlsOptions();
+
+	/**
+	 * Size in bytes of the buffers used to queue UDP datagrams for a sender thread
+	 * or zero to send by the logging thread.
+	 */
+	private int udpBufferSize = 0;
+
+	/**
+	 * Whether TCP packets are compressed, derived from threshold, protocol and
+	 * framing whenever one of them is set
+	 */
+	private volatile boolean tcpCompressing = false;
 
-	private Duration tcpSocketTimeout = Duration.ofMinutes(1);
+	/**
+	 * If true, the writer is flushed after each event. This is false for batching
+	 * writers, which flush on their own.
+	 */
+	private boolean flushingEvents = true;
 
 	/**
 	 * Max length in bytes of a message.
@@ -225,24 +296,48 @@ public class SyslogAppender64k extends AppenderSkeleton {
 	private int maxMessageLength = UPPER_MAX_MSG_LENGTH;
 
 	/**
-	 * If true, the appender will generate the HEADER (timestamp and host name) part
-	 * of the syslog packet.
-	 *
-	 * @since 1.2.15
+	 * If true, messages exceeding {@link #maxMessageLength} are split preferably at
+	 * line breaks.
+	 */
+	private boolean splitAtNewline = false;
+
+	private final ThrowableOptions throwableOptions = new ThrowableOptions();
+
+	private final HeaderOptions headerOptions = new HeaderOptions();
+
+	/**
+	 * Set to true after the header of the layout has been sent or if it has none.
 	 */
-	private boolean header = false;
+	private volatile boolean layoutHeaderChecked = false;
 
 	/**
-	 * Host name used to identify messages from this appender.
-	 *
-	 * @since 1.2.15
+	 * If true, the layout is expected to be thread-safe and events are formatted
+	 * concurrently.
 	 */
-	private String localHostname;
+	private boolean concurrentLayout = false;
 
 	/**
-	 * Set to true after the header of the layout has been sent or if it has none.
+	 * Sampling, rate limiting and duplicate suppression
+	 */
+	private final FilterStages filterStages = new FilterStages();
+
+	/**
+	 * Counters and send latencies of this appender
+	 */
+	private final SyslogMetrics metrics = new SyslogMetrics();
+
+	/**
+	 * MXBean publishing {@link #metrics}, registered if the <b>Jmx</b> option is
+	 * set
+	 */
+	private Optional<SyslogMetricsJmx> metricsJmx = Optional.empty();
+
+	/**
+	 * Idle senders, closed by {@link #close()}
 	 */
-	private boolean layoutHeaderChecked = false;
+	private final SyslogSenderPool senders = new SyslogSenderPool(() -> new SyslogSender(this, metrics));
+
+	private final AsyncOptions asyncOptions = new AsyncOptions();
 
 	public SyslogAppender64k() {
 		this.initSyslogFacilityStr();
@@ -270,24 +365,30 @@ public class SyslogAppender64k extends AppenderSkeleton {
 			justification = "Using ReentrantLock instead of synchronized")
 	public void close() {
 		closed = true;
+		final long deadline = System.nanoTime() + asyncOptions.getShutdownTimeout().toNanos();
+		asyncOptions.close(deadline);
+		awaitInFlightEvents(deadline);
+		metricsJmx.ifPresent(SyslogMetricsJmx::unregister);
 
 		try {
 			lock.lock();
-			syslogQuietWriter.ifPresent(syslogWriter -> {
+			syslogWriter.ifPresent(writer -> {
 				try (@SuppressWarnings("PMD.UnusedLocalVariable")
-				Writer writerToClose = syslogWriter) {
+				Closeable writerToClose = writer) {
+					drainDuplicateFilter();
 					if (layoutHeaderChecked && layout != null && layout.getFooter() != null) {
 						sendLayoutMessage(layout.getFooter());
 					}
 				} catch (@SuppressWarnings("unused") final IOException ignored) {
 					// ignore
 				} finally {
-					syslogQuietWriter = Optional.empty();
+					syslogWriter = Optional.empty();
 				}
 			});
 		} finally {
 			lock.unlock();
 		}
+		senders.close();
 	}
 
 	@SuppressWarnings("PMD.GuardLogStatement")
@@ -304,46 +405,231 @@ public class SyslogAppender64k extends AppenderSkeleton {
 		}
 	}
 
+	/**
+	 * Appends {@code event} like {@link AppenderSkeleton#doAppend(LoggingEvent)},
+	 * but without synchronizing on this appender. Formatting and encoding of
+	 * concurrent events happen in parallel, while writers synchronize the hand-off
+	 * of encoded packets only.
+	 *
+	 * @param event the event to append
+	 */
+	@Override
+	public void doAppend(final LoggingEvent event) {
+		if (closed) {
+			LogLog.error("Attempted to append to closed appender named [" + name + "].");
+			return;
+		}
+		if (isAsSevereAsThreshold(event.getLevel()) && isAccepted(event)) {
+			append(event);
+		}
+	}
+
+	/**
+	 * Applies the filter chain to {@code event}.
+	 *
+	 * @param event the event to filter
+	 * @return {@code true} if {@code event} is not denied by a filter
+	 */
+	private boolean isAccepted(final LoggingEvent event) {
+		Filter filter = getFirstFilter();
+		while (filter != null) {
+			final int decision = filter.decide(event);
+			if (decision == Filter.DENY) {
+				return false;
+			}
+			if (decision == Filter.ACCEPT) {
+				return true;
+			}
+			filter = filter.getNext();
+		}
+		return true;
+	}
+
 	/** {@inheritDoc} */
 	@Override
-	@SuppressWarnings({ "PMD.CloseResource", "PMD.GuardLogStatement" })
-	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
-			justification = "Using ReentrantLock instead of synchronized")
 	public void append(final LoggingEvent event) {
 		if (!isAsSevereAsThreshold(event.getLevel())) {
 			return;
 		}
+		metrics.onEventIn();
+		if (!filterStages.accept(event, metrics)) {
+			return;
+		}
+
+		final Optional<AsyncDispatcher> dispatcher = asyncOptions.getDispatcher("SyslogAppender64k-" + name, this::sendEvent);
+		if (dispatcher.isPresent()) {
+			dispatcher.get().offer(asyncOptions.prepare(event));
+		} else {
+			sendEvent(event);
+		}
+	}
 
+	/**
+	 * Formats and sends {@code event} to the syslog host. This is called by the
+	 * logging thread or by the sender thread in async mode.
+	 *
+	 * <p>
+	 * Concurrent calls format and encode in parallel, each using a sender of its
+	 * own. The packets of each event are handed over to the writer at once, which
+	 * synchronizes writing, so that events stay contiguous on the wire.
+	 *
+	 * <p>
+	 * Failures of writing are counted per event and reported to the error handler
+	 * once per event instead of once per packet.
+	 *
+	 * @param event the event to send
+	 * @return the outcome of sending {@code event}
+	 */
+	@SuppressWarnings({ "PMD.CloseResource", "PMD.GuardLogStatement" })
+	private SendResult sendEvent(final LoggingEvent event) {
+		inFlightEvents.increment();
+		final long start = System.nanoTime();
 		try {
-			lock.lock();
-			if (!syslogQuietWriter.isPresent()) {
+			final Optional<SyslogPriorityWriter> writer = syslogWriter;
+			if (closing) {
+				return SendResult.DROPPED;
+			}
+			if (!writer.isPresent()) {
+				metrics.onDroppedWithoutHost();
 				errorHandler.error("No syslog host is set for SyslogAppender named \"" + this.name + "\".");
-				return;
+				return SendResult.DROPPED;
 			}
-			@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
-			final SyslogQuietWriter syslogWriter = syslogQuietWriter.get();
+			checkLayoutHeader();
+
+			final SyslogSender sender = senders.acquire();
+			try {
+				final SendResult result = sendEvent(event, writer.get(), sender);
+				if (result == SendResult.SENT) {
+					metrics.onEventOut(System.nanoTime() - start);
+				}
+				return result;
+			} finally {
+				senders.release(sender);
+			}
+		} finally {
+			inFlightEvents.decrement();
+		}
+	}
 
+	/**
+	 * Formats and sends {@code event} using {@code sender}. All packets of
+	 * {@code event} are written at once when it is finished.
+	 *
+	 * @param event  the event to send
+	 * @param writer the writer of the syslog host
+	 * @param sender the sender of the current thread
+	 * @return the outcome of sending {@code event}
+	 */
+	private SendResult sendEvent(final LoggingEvent event, final SyslogPriorityWriter writer, final SyslogSender sender) {
+		sender.begin(writer, writer.route(tcpOptions.getRouting().getKey(event)));
+		final SyslogPacketHeader packetHeader = getPacketHeader(event.timeStamp, event.getProperties(), event.getNDC());
+		final CharSequence message = format(event, sender);
+		final int severity = event.getLevel().getSyslogEquivalent();
+
+		final Optional<DuplicateFilter> filter = filterStages.getDuplicateFilter();
+		if (filter.isPresent() && !filter.get()
+				.accept(message, severity, event.timeStamp, repeated -> sendRepeated(sender, repeated))) {
+			metrics.onSuppressedDuplicate();
+			sender.finish("Failed to send summary of repeated messages.");
+			return SendResult.SUPPRESSED;
+		}
+
+		sender.send(severity, packetHeader, getFacilityPrefix(), message, 0);
+
+		if (layout == null || layout.ignoresThrowable()) {
+			sendThrowable(sender, severity, packetHeader, event);
+		}
+
+		if (flushingEvents) {
+			sender.flush();
+		}
+		return sender.finish("Failed to send event.");
+	}
+
+	/**
+	 * Sends the header of the layout before the first event, if not done yet.
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void checkLayoutHeader() {
+		if (layoutHeaderChecked) {
+			return;
+		}
+		try {
+			lock.lock();
 			if (!layoutHeaderChecked) {
 				if (layout != null && layout.getHeader() != null) {
 					sendLayoutMessage(layout.getHeader());
 				}
 				layoutHeaderChecked = true;
 			}
+		} finally {
+			lock.unlock();
+		}
+	}
 
-			final String packetHeader = getPacketHeader(event.timeStamp);
-			final String message = layout == null ? String.valueOf(event.getMessage()) : layout.format(event);
-			final String packet = createPacket(packetHeader, message);
+	/**
+	 * Formats {@code event} using the layout, serialized by {@link #layoutLock}
+	 * unless {@link #concurrentLayout} is set.
+	 *
+	 * @param event  the event to format
+	 * @param sender the sender of the current thread
+	 * @return the formatted message, valid until the next event of this thread
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private CharSequence format(final LoggingEvent event, final SyslogSender sender) {
+		final Layout currentLayout = layout;
+		if (currentLayout == null) {
+			return String.valueOf(event.getMessage());
+		}
+		if (concurrentLayout) {
+			return format(currentLayout, event, sender);
+		}
+		try {
+			layoutLock.lock();
+			return format(currentLayout, event, sender);
+		} finally {
+			layoutLock.unlock();
+		}
+	}
 
-			syslogWriter.setLevel(event.getLevel().getSyslogEquivalent());
-			sendPackets(packetHeader, packet);
+	/**
+	 * Formats {@code event} using {@code layout}. A {@link BufferLayout} formats
+	 * into the reusable message buffer of {@code sender}, other layouts create a
+	 * String.
+	 *
+	 * @param layout the layout
+	 * @param event  the event to format
+	 * @param sender the sender of the current thread
+	 * @return the formatted message, valid until the next event of this thread
+	 */
+	private static CharSequence format(final Layout layout, final LoggingEvent event, final SyslogSender sender) {
+		if (layout instanceof BufferLayout) {
+			final StringBuffer buffer = sender.clearMessageBuffer();
+			((BufferLayout) layout).format(event, buffer);
+			return buffer;
+		}
+		return layout.format(event);
+	}
 
-			if (layout == null || layout.ignoresThrowable()) {
-				sendThrowable(packetHeader, event);
+	/**
+	 * Stops sending new events and waits until events being sent are complete, at
+	 * most until {@code deadline}, so that a writer stuck in I/O does not block
+	 * closing forever.
+	 *
+	 * @param deadline the deadline in terms of {@link System#nanoTime()}, shared
+	 *                 with draining the sender thread
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void awaitInFlightEvents(final long deadline) {
+		closing = true;
+		while (inFlightEvents.sum() > 0) {
+			if (System.nanoTime() - deadline >= 0) {
+				LogLog.warn("Closing SyslogAppender64k named [" + name + "] while events are still being sent.");
+				return;
 			}
-
-			syslogWriter.flush();
-		} finally {
-			lock.unlock();
+			LockSupport.parkNanos(AWAIT_IN_FLIGHT_NANOS);
 		}
 	}
 
@@ -354,9 +640,12 @@ public class SyslogAppender64k extends AppenderSkeleton {
 	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
 			justification = "Using ReentrantLock instead of synchronized")
 	public void activateOptions() {
-		if (header) {
-			// Initialize local host name
-			getLocalHostname();
+		updateTcpCompressing();
+		try {
+			lock.lock();
+			headerOptions.prepare(charset);
+		} finally {
+			lock.unlock();
 		}
 		if (layout != null && layout.getHeader() != null) {
 			try {
@@ -380,45 +669,77 @@ public class SyslogAppender64k extends AppenderSkeleton {
 		return true;
 	}
 
-	private String createPacket(final String packetHeader, final String message) {
-		if (!facilityPrinting && packetHeader.isEmpty()) {
-			return message;
-		}
-
-		final StringBuilder builder = new StringBuilder(packetHeader);
-		if (facilityPrinting) {
-			builder.append(facilityString);
-		}
-		builder.append(message);
-		return builder.toString();
+	/**
+	 * Returns the text printed between header and message.
+	 *
+	 * @return the facility name if facility printing is enabled, else an empty
+	 *         string
+	 */
+	private String getFacilityPrefix() {
+		return facilityPrinting ? facilityString : "";
 	}
 
 	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
 	private void createSyslogWriter() {
-		syslogQuietWriter.ifPresent(syslogWriter -> {
+		syslogWriter.ifPresent(writer -> {
 			try {
-				syslogWriter.close();
+				writer.close();
 			} catch (@SuppressWarnings("unused") final IOException ignored) {
 				// ignore
 			}
 		});
 
-		switch (protocol) {
-		case PROTOCOL_UDP:
-			this.syslogQuietWriter = Optional.of(
-					new SyslogQuietWriter(new SyslogUdpWriter64k(syslogHost, charset), syslogFacility, errorHandler));
-			break;
-		case PROTOCOL_TCP:
-			this.syslogQuietWriter = Optional.of(new SyslogQuietWriter(
-					new SyslogTcpWriter64k(syslogHost, charset, tcpSocketFactory, tcpSocketTimeout),
-					syslogFacility,
-					errorHandler));
-			break;
-		default:
-			throw new IllegalArgumentException(String.format("Unexpected protocol: %s", protocol));
+		final SyslogTransport transport = getTransport();
+		flushingEvents = transport.isFlushingEvents(this);
+
+		if (syslogHost != null && syslogHost.indexOf(HOST_SEPARATOR) >= 0) {
+			final List<SyslogPacketWriter> writers = new ArrayList<>();
+			for (final String host : syslogHost.split(String.valueOf(HOST_SEPARATOR))) {
+				if (!host.trim().isEmpty()) {
+					writers.add(transport.createWriter(this, host.trim(), true));
+				}
+			}
+			setSyslogWriter(new SyslogMultiWriter64k(charset, syslogHostStrategy, getTcpReconnectBackoff(), writers));
+		} else {
+			setSyslogWriter(transport.createWriter(this, syslogHost, false));
+		}
+	}
+
+	/**
+	 * Returns the transport of the <b>Protocol</b> option.
+	 *
+	 * @return the transport
+	 * @throws IllegalArgumentException if no transport supports the protocol
+	 */
+	private SyslogTransport getTransport() {
+		return SyslogTransports.get(protocol)
+				.orElseThrow(() -> new IllegalArgumentException(String.format("Unexpected protocol: %s", protocol)));
+	}
+
+	/**
+	 * Returns the backoff between reconnect attempts of the
+	 * <b>TcpReconnectDelayMillis</b> and <b>TcpReconnectMaxDelayMillis</b> options.
+	 *
+	 * @return the reconnect backoff
+	 */
+	public ReconnectBackoff getTcpReconnectBackoff() {
+		return tcpOptions.getReconnectBackoff();
+	}
+
+	/**
+	 * Recreates the writer to apply changed transport options if a syslog host has
+	 * been set already.
+	 */
+	private void updateSyslogWriter() {
+		if (syslogHost != null) {
+			createSyslogWriter();
 		}
 	}
 
+	private void setSyslogWriter(final SyslogPacketWriter packetWriter) {
+		syslogWriter = Optional.of(new SyslogPriorityWriter(packetWriter, syslogFacility, charset));
+	}
+
 	/**
 	 * Returns the value of the <b>SyslogHost</b> option.
 	 *
@@ -433,31 +754,74 @@ public class SyslogAppender64k extends AppenderSkeleton {
 	 * The <b>SyslogHost</b> option is the name of the the syslog host where log
 	 * output should go. A non-default port can be specified by appending a colon
 	 * and port number to a host name, an IPv4 address or an IPv6 address enclosed
-	 * in square brackets. <b>WARNING</b> If the SyslogHost is not set, then this
-	 * appender will fail.
+	 * in square brackets. Multiple syslog hosts can be separated by commas, e.g.
+	 * {@code primary:514,secondary:514}, see <b>SyslogHostStrategy</b>. Host names
+	 * are resolved again every 30 seconds. <b>WARNING</b> If the SyslogHost is not
+	 * set, then this appender will fail.
 	 *
-	 * @param syslogHost the syslog host, optionally including a port
+	 * @param syslogHost the syslog host, optionally including a port, or multiple
+	 *                   comma-separated syslog hosts
 	 */
 	public final void setSyslogHost(final String syslogHost) {
 		this.syslogHost = syslogHost;
 		createSyslogWriter();
 	}
 
+	/**
+	 * Returns the name of the strategy used for multiple syslog hosts.
+	 *
+	 * @return the strategy name
+	 */
+	public String getSyslogHostStrategy() {
+		return syslogHostStrategy.name();
+	}
+
+	/**
+	 * Sets how packets are spread over multiple comma-separated syslog hosts.
+	 * Supported values are FAILOVER (default), which writes to the first available
+	 * host, ROUND_ROBIN, which writes to the available hosts in turn, and
+	 * BROADCAST, which writes to all available hosts. A host failing to write is
+	 * skipped using the delays of <b>TcpReconnectDelayMillis</b> and
+	 * <b>TcpReconnectMaxDelayMillis</b>. Case is unimportant.
+	 *
+	 * @param syslogHostStrategy the strategy name
+	 */
+	public void setSyslogHostStrategy(final String syslogHostStrategy) {
+		try {
+			this.syslogHostStrategy = syslogHostStrategy == null
+					? SyslogHostStrategy.FAILOVER
+					: SyslogHostStrategy.of(syslogHostStrategy);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid syslog host strategy: %s", syslogHostStrategy),
+					e);
+		}
+		updateSyslogWriter();
+	}
+
 	public String getProtocol() {
 		return protocol;
 	}
 
+	/**
+	 * Sets the transport used to deliver packets. Built-in values are udp
+	 * (default), tcp, tls according to RFC 5425 and unix, which writes to a Unix
+	 * domain stream socket at the path given by <b>SyslogHost</b>. Further
+	 * transports can be registered as {@link SyslogTransport}. Case is
+	 * unimportant.
+	 *
+	 * @param protocol the protocol name
+	 */
 	public void setProtocol(final String protocol) {
-		final String protocolToSet = protocol == null ? DEFAULT_PROTOCOL : Strings.toLowerCaseNeutral(protocol);
-		switch (protocolToSet) {
-		case PROTOCOL_UDP:
-		case PROTOCOL_TCP:
-			this.protocol = protocol;
-			break;
-		default:
-			throw new IllegalArgumentException(String.format("Invalid protocol: %s", protocol));
+		final String protocolToSet = protocol == null ? DEFAULT_PROTOCOL : Strings.toLowerCaseNeutral(protocol.trim());
+		if (!SyslogTransports.get(protocolToSet).isPresent()) {
+			throw new IllegalArgumentException(String.format("Invalid protocol: %s, supported protocols: %s",
+					protocol,
+					String.join(", ", SyslogTransports.getProtocols())));
 		}
+		this.protocol = protocolToSet;
 		createSyslogWriter();
+		updateTcpCompressing();
+		resetEncoding();
 	}
 
 	public Charset getCharset() {
@@ -466,6 +830,8 @@ public class SyslogAppender64k extends AppenderSkeleton {
 
 	public void setCharset(final Charset charset) {
 		this.charset = charset;
+		syslogWriter = syslogWriter.map(writer -> writer.withEncoding(syslogFacility, charset));
+		resetEncoding();
 	}
 
 	/**
@@ -494,8 +860,8 @@ public class SyslogAppender64k extends AppenderSkeleton {
 
 		this.initSyslogFacilityStr();
 
-		// If there is already a syslogQuietWriter, make it use the new facility.
-		syslogQuietWriter.ifPresent(syslogWriter -> syslogWriter.setSyslogFacility(this.syslogFacility));
+		// If there is already a writer, make it use the new facility.
+		syslogWriter = syslogWriter.map(writer -> writer.withEncoding(syslogFacility, charset));
 	}
 
 	/**
@@ -544,7 +910,7 @@ public class SyslogAppender64k extends AppenderSkeleton {
 	 */
 	@SuppressWarnings("PMD.BooleanGetMethodName")
 	public final boolean getHeader() {
-		return header;
+		return headerOptions.isEnabled();
 	}
 
 	/**
@@ -556,7 +922,64 @@ public class SyslogAppender64k extends AppenderSkeleton {
 	 * @since 1.2.15
 	 */
 	public final void setHeader(final boolean header) {
-		this.header = header;
+		headerOptions.setEnabled(header);
+	}
+
+	public String getFormat() {
+		return headerOptions.getFormat().name();
+	}
+
+	/**
+	 * Sets the <b>Format</b> option, see {@link HeaderOptions#setFormat(String)}.
+	 *
+	 * @param format the syslog format name
+	 */
+	public void setFormat(final String format) {
+		headerOptions.setFormat(format);
+		resetEncoding();
+	}
+
+	public String getAppName() {
+		return headerOptions.getAppName();
+	}
+
+	/**
+	 * Sets the <b>AppName</b> option, see {@link HeaderOptions#setAppName(String)}.
+	 *
+	 * @param appName the APP-NAME or {@code null}
+	 */
+	public void setAppName(final String appName) {
+		headerOptions.setAppName(appName);
+		resetEncoding();
+	}
+
+	public String getMsgId() {
+		return headerOptions.getMsgId();
+	}
+
+	/**
+	 * Sets the <b>MsgId</b> option, see {@link HeaderOptions#setMsgId(String)}.
+	 *
+	 * @param msgId the MSGID or {@code null}
+	 */
+	public void setMsgId(final String msgId) {
+		headerOptions.setMsgId(msgId);
+		resetEncoding();
+	}
+
+	public String getStructuredDataId() {
+		return headerOptions.getStructuredDataId();
+	}
+
+	/**
+	 * Sets the <b>StructuredDataId</b> option, see
+	 * {@link HeaderOptions#setStructuredDataId(String)}.
+	 *
+	 * @param structuredDataId the SD-ID
+	 */
+	public void setStructuredDataId(final String structuredDataId) {
+		headerOptions.setStructuredDataId(structuredDataId);
+		resetEncoding();
 	}
 
 	/**
@@ -582,104 +1005,869 @@ public class SyslogAppender64k extends AppenderSkeleton {
 			LogLog.warn(
 					maxMessageLength + " is an invalid message length. Defaulting to " + UPPER_MAX_MSG_LENGTH + ".");
 		}
+		resetEncoding();
 	}
 
-	public Optional<SocketFactory> getTcpSocketFactory() {
-		return tcpSocketFactory;
+	/**
+	 * Discards the packet encoder and the RFC 5424 header, so that they are
+	 * recreated using the current options.
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void resetEncoding() {
+		try {
+			lock.lock();
+			encodingGeneration += 1;
+			headerOptions.reset();
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public void setTcpSocketFactory(final SocketFactory tcpSocketFactory) {
-		this.tcpSocketFactory = Optional.ofNullable(tcpSocketFactory);
+	/**
+	 * Returns a value, which changes whenever the options of packet encoders
+	 * change.
+	 *
+	 * @return the encoding generation
+	 */
+	int getEncodingGeneration() {
+		return encodingGeneration;
 	}
 
-	public Duration getTcpSocketTimeout() {
-		return tcpSocketTimeout;
+	/**
+	 * Creates a packet encoder using the current options.
+	 *
+	 * @return the packet encoder
+	 */
+	SyslogPacketEncoder createPacketEncoder() {
+		return new SyslogPacketEncoder(charset, maxMessageLength, splitAtNewline);
 	}
 
-	public void setTcpSocketTimeout(final Duration tcpSocketTimeout) {
-		this.tcpSocketTimeout = tcpSocketTimeout == null ? Duration.ZERO : tcpSocketTimeout;
+	/**
+	 * Creates a compressor of TCP packets using the current options.
+	 *
+	 * @return the packet compressor or empty if compression is disabled
+	 */
+	Optional<SyslogPacketCompressor> createPacketCompressor() {
+		return tcpCompressing ? Optional.of(tcpOptions.createCompressor()) : Optional.empty();
 	}
 
 	/**
-	 * Get the host name used to identify this appender.
+	 * Returns the value of the <b>SplitAtNewline</b> option.
 	 *
-	 * @return local host name
-	 * @since 1.2.15
+	 * @return {@code true} if messages are split preferably at line breaks, else
+	 *         {@code false}
 	 */
-	@SuppressFBWarnings(value = "MDM_INETADDRESS_GETLOCALHOST",
-			justification = "Calling InetAddress.getLocalHost() by intention.")
-	private String getLocalHostname() {
-		if (localHostname == null) {
-			try {
-				localHostname = InetAddress.getLocalHost().getHostName();
-			} catch (@SuppressWarnings("unused") final UnknownHostException ignore) {
-				localHostname = "UNKNOWN_HOST";
-			}
-		}
-		return localHostname;
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getSplitAtNewline() {
+		return splitAtNewline;
 	}
 
 	/**
-	 * Gets HEADER portion of packet.
+	 * If the <b>SplitAtNewline</b> option is set to true, messages exceeding the
+	 * max message length are split preferably at line breaks, as long as the
+	 * resulting fragment is filled at least by half. The line break at the split
+	 * position is not sent. It is <em>false</em> by default.
 	 *
-	 * @param timeStamp number of milliseconds after the standard base time.
-	 * @return HEADER portion of packet, will be zero-length string if header is
-	 *         false.
-	 * @since 1.2.15
+	 * @param splitAtNewline {@code true} to split messages preferably at line
+	 *                       breaks
 	 */
-	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
-	private String getPacketHeader(final long timeStamp) {
-		if (!header) {
-			return "";
-		}
-
-		final StringBuilder builder = new StringBuilder(DATE_FORMAT.get().format(new Date(timeStamp)));
-		// RFC 3164 says leading space, not leading zero on days 1-9
-		if (builder.charAt(4) == '0') {
-			builder.setCharAt(4, ' ');
-		}
-		builder.append(getLocalHostname());
-		builder.append(' ');
-		return builder.toString();
+	public void setSplitAtNewline(final boolean splitAtNewline) {
+		this.splitAtNewline = splitAtNewline;
+		resetEncoding();
 	}
 
 	/**
-	 * Set header or footer of layout.
+	 * Returns the value of the <b>ConcurrentLayout</b> option.
 	 *
-	 * @param msg message body, may not be null.
+	 * @return {@code true} if events are formatted concurrently
 	 */
-	private void sendLayoutMessage(final String message) {
-		syslogQuietWriter.ifPresent(syslogWriter -> {
-			final String packet = createPacket(getPacketHeader(new Date().getTime()), message);
-			syslogWriter.setLevel(6);
-			syslogWriter.write(packet);
-		});
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getConcurrentLayout() {
+		return concurrentLayout;
 	}
 
-	@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
-	private void sendPackets(final String header, final String packet) {
-		final int byteCount = packet.getBytes(charset).length;
+	/**
+	 * The <b>ConcurrentLayout</b> option formats concurrent events in parallel.
+	 * Enable it only for thread-safe layouts, e.g.
+	 * {@link org.apache.log4j.EnhancedPatternLayout}. By default events are
+	 * formatted one at a time, as {@link org.apache.log4j.PatternLayout} is not
+	 * thread-safe, while encoding and sending still happen in parallel.
+	 *
+	 * @param concurrentLayout {@code true} to format events concurrently
+	 */
+	public void setConcurrentLayout(final boolean concurrentLayout) {
+		this.concurrentLayout = concurrentLayout;
+	}
 
-		// If packet is less than limit, then write it. Else, write in chunks.
-		if (byteCount <= maxMessageLength) {
-			syslogQuietWriter.get().write(packet);
-		} else {
-			final int split = header.length() / 2 + packet.length() / 2;
-			sendPackets(header, packet.substring(0, split) + ELLIPSIS);
-			sendPackets(header, header + ELLIPSIS + packet.substring(split));
+	public int getRateLimit() {
+		return filterStages.getRateLimit();
+	}
+
+	/**
+	 * Sets the <b>RateLimit</b> option, see
+	 * {@link FilterStages#setRateLimit(int)}.
+	 *
+	 * @param rateLimit the number of events per second or zero to disable rate
+	 *                  limiting
+	 */
+	public void setRateLimit(final int rateLimit) {
+		filterStages.setRateLimit(rateLimit);
+	}
+
+	public int getRateLimitBurst() {
+		return filterStages.getRateLimitBurst();
+	}
+
+	/**
+	 * Sets the <b>RateLimitBurst</b> option, see
+	 * {@link FilterStages#setRateLimitBurst(int)}.
+	 *
+	 * @param rateLimitBurst the number of events accepted at once or zero
+	 */
+	public void setRateLimitBurst(final int rateLimitBurst) {
+		filterStages.setRateLimitBurst(rateLimitBurst);
+	}
+
+	public String getRateLimitScope() {
+		return filterStages.getRateLimitScope().name();
+	}
+
+	/**
+	 * Sets the <b>RateLimitScope</b> option, see
+	 * {@link FilterStages#setRateLimitScope(String)}.
+	 *
+	 * @param rateLimitScope the scope name
+	 */
+	public void setRateLimitScope(final String rateLimitScope) {
+		filterStages.setRateLimitScope(rateLimitScope);
+	}
+
+	public long getDuplicateWindowMillis() {
+		return filterStages.getDuplicateWindowMillis();
+	}
+
+	/**
+	 * Sets the <b>DuplicateWindowMillis</b> option, see
+	 * {@link FilterStages#setDuplicateWindowMillis(long)}.
+	 *
+	 * @param duplicateWindowMillis the time window in milliseconds or zero to
+	 *                              disable suppression
+	 */
+	public void setDuplicateWindowMillis(final long duplicateWindowMillis) {
+		filterStages.setDuplicateWindowMillis(duplicateWindowMillis);
+	}
+
+	public int getDuplicateMaxMessages() {
+		return filterStages.getDuplicateMaxMessages();
+	}
+
+	/**
+	 * Sets the <b>DuplicateMaxMessages</b> option, see
+	 * {@link FilterStages#setDuplicateMaxMessages(int)}.
+	 *
+	 * @param duplicateMaxMessages the max number of distinct messages
+	 */
+	public void setDuplicateMaxMessages(final int duplicateMaxMessages) {
+		filterStages.setDuplicateMaxMessages(duplicateMaxMessages);
+	}
+
+	public String getSamplingRatios() {
+		return filterStages.getSamplingRatios();
+	}
+
+	/**
+	 * Sets the <b>SamplingRatios</b> option, see
+	 * {@link FilterStages#setSamplingRatios(String)}.
+	 *
+	 * @param samplingRatios the comma separated sampling ratios per level
+	 */
+	public void setSamplingRatios(final String samplingRatios) {
+		filterStages.setSamplingRatios(samplingRatios);
+	}
+
+	public Level getSamplingKeepLevel() {
+		return filterStages.getSamplingKeepLevel();
+	}
+
+	/**
+	 * Sets the <b>SamplingKeepLevel</b> option, see
+	 * {@link FilterStages#setSamplingKeepLevel(Level)}.
+	 *
+	 * @param samplingKeepLevel the sampling keep level
+	 */
+	public void setSamplingKeepLevel(final Level samplingKeepLevel) {
+		filterStages.setSamplingKeepLevel(samplingKeepLevel);
+	}
+
+	public String getSamplingKey() {
+		return filterStages.getSamplingKey();
+	}
+
+	/**
+	 * Sets the <b>SamplingKey</b> option, see
+	 * {@link FilterStages#setSamplingKey(String)}.
+	 *
+	 * @param samplingKey the MDC key to sample by
+	 */
+	public void setSamplingKey(final String samplingKey) {
+		filterStages.setSamplingKey(samplingKey);
+	}
+	/**
+	 * Returns the value of the <b>Jmx</b> option.
+	 *
+	 * @return {@code true} if metrics are published using JMX
+	 */
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getJmx() {
+		return metricsJmx.isPresent();
+	}
+
+	/**
+	 * The <b>Jmx</b> option publishes the metrics of this appender as MXBean named
+	 * {@code com.github.loggly.log4j:type=SyslogAppender64k,name=<appender name>}.
+	 * The name of the appender needs to be set before. Metrics are available using
+	 * {@link #getMetrics()} independent of this option.
+	 *
+	 * @param jmx {@code true} to publish metrics using JMX
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void setJmx(final boolean jmx) {
+		metricsJmx.ifPresent(SyslogMetricsJmx::unregister);
+		metricsJmx = Optional.empty();
+		if (!jmx) {
+			return;
+		}
+		if (name == null) {
+			LogLog.warn("Cannot publish metrics of an appender without name using JMX.");
+			return;
+		}
+		try {
+			final SyslogMetricsJmx created = new SyslogMetricsJmx(name, this::getMetrics);
+			created.register();
+			metricsJmx = Optional.of(created);
+		} catch (final JMException e) {
+			LogLog.warn("Cannot publish metrics of appender \"" + name + "\" using JMX.", e);
 		}
 	}
 
-	@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
-	private void sendThrowable(final String packetHeader, final LoggingEvent event) {
-		final String[] lines = event.getThrowableStrRep();
-		if (lines != null) {
-			for (final String line : lines) {
-				if (line.startsWith("\t")) {
-					syslogQuietWriter.get().write(packetHeader + TAB + line.substring(1));
-				} else {
-					syslogQuietWriter.get().write(packetHeader + line);
-				}
+	/**
+	 * Returns the current metrics of this appender. Values of the async buffer and
+	 * of the writer start at zero whenever those are recreated, e.g. after changing
+	 * the syslog host or the protocol.
+	 *
+	 * @return the snapshot of all metrics
+	 */
+	public SyslogMetrics.Snapshot getMetrics() {
+		final Optional<AsyncDispatcher> dispatcher = asyncOptions.getCurrentDispatcher();
+		final Optional<SyslogPriorityWriter> writer = syslogWriter;
+		return metrics.snapshot(dispatcher.map(AsyncDispatcher::getSize).orElse(0),
+				dispatcher.map(AsyncDispatcher::getDroppedEvents).orElse(0L),
+				writer.map(SyslogPriorityWriter::getDroppedPackets).orElse(0L),
+				writer.map(SyslogPriorityWriter::getReconnects).orElse(0L));
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getThrowablePacking() {
+		return throwableOptions.isPacking();
+	}
+
+	/**
+	 * Sets the <b>ThrowablePacking</b> option, see
+	 * {@link ThrowableOptions#setPacking(boolean)}.
+	 *
+	 * @param throwablePacking {@code true} to send stack traces as a single message
+	 */
+	public void setThrowablePacking(final boolean throwablePacking) {
+		throwableOptions.setPacking(throwablePacking);
+		checkThrowableLineSeparator();
+	}
+
+	/**
+	 * Returns the value of the <b>ThrowableLineSeparator</b> option, depending on
+	 * the TCP framing if not set.
+	 *
+	 * @return the separator between lines of packed stack traces
+	 */
+	public String getThrowableLineSeparator() {
+		return throwableOptions.getLineSeparator(tcpOptions.getFraming());
+	}
+
+	/**
+	 * Sets the <b>ThrowableLineSeparator</b> option, see
+	 * {@link ThrowableOptions#setLineSeparator(String)}.
+	 *
+	 * @param throwableLineSeparator the separator between lines or {@code null}
+	 *                               for the default
+	 */
+	public void setThrowableLineSeparator(final String throwableLineSeparator) {
+		throwableOptions.setLineSeparator(throwableLineSeparator);
+		checkThrowableLineSeparator();
+	}
+
+	private void checkThrowableLineSeparator() {
+		throwableOptions.checkLineSeparator(tcpOptions.getFraming());
+	}
+
+	public int getThrowableMaxFrames() {
+		return throwableOptions.getMaxFrames();
+	}
+
+	/**
+	 * Sets the <b>ThrowableMaxFrames</b> option, see
+	 * {@link ThrowableOptions#setMaxFrames(int)}.
+	 *
+	 * @param throwableMaxFrames the max number of frames per throwable or zero for
+	 *                           no limit
+	 */
+	public void setThrowableMaxFrames(final int throwableMaxFrames) {
+		throwableOptions.setMaxFrames(throwableMaxFrames);
+	}
+
+	public Optional<SocketFactory> getTcpSocketFactory() {
+		return tcpOptions.getSocketFactory();
+	}
+
+	/**
+	 * Returns the method used to frame messages inside a stream.
+	 *
+	 * @return the framing
+	 */
+	public TcpFraming getTcpFramingMethod() {
+		return tcpOptions.getFraming();
+	}
+
+	/**
+	 * Sets the <b>TcpSocketFactory</b> option, see
+	 * {@link TcpOptions#setSocketFactory(SocketFactory)}.
+	 *
+	 * @param tcpSocketFactory the socket factory or {@code null}
+	 */
+	public void setTcpSocketFactory(final SocketFactory tcpSocketFactory) {
+		tcpOptions.setSocketFactory(tcpSocketFactory);
+	}
+
+	public Duration getTcpSocketTimeout() {
+		return tcpOptions.getSocketTimeout();
+	}
+
+	/**
+	 * Sets the <b>TcpSocketTimeout</b> option, see
+	 * {@link TcpOptions#setSocketTimeout(Duration)}.
+	 *
+	 * @param tcpSocketTimeout the socket timeout
+	 */
+	public void setTcpSocketTimeout(final Duration tcpSocketTimeout) {
+		tcpOptions.setSocketTimeout(tcpSocketTimeout);
+	}
+
+	public String getTcpFraming() {
+		return tcpOptions.getFraming().name();
+	}
+
+	/**
+	 * Sets the <b>TcpFraming</b> option, see
+	 * {@link TcpOptions#setFraming(String)}.
+	 *
+	 * @param tcpFraming the framing name
+	 */
+	public void setTcpFraming(final String tcpFraming) {
+		tcpOptions.setFraming(tcpFraming);
+		checkThrowableLineSeparator();
+		updateSyslogWriter();
+		updateTcpCompressing();
+		resetEncoding();
+	}
+
+	public int getTcpCompressionThreshold() {
+		return tcpOptions.getCompressionThreshold();
+	}
+
+	/**
+	 * Sets the <b>TcpCompressionThreshold</b> option, see
+	 * {@link TcpOptions#setCompressionThreshold(int)}.
+	 *
+	 * @param tcpCompressionThreshold the min packet length in bytes or zero to
+	 *                                disable compression
+	 */
+	public void setTcpCompressionThreshold(final int tcpCompressionThreshold) {
+		tcpOptions.setCompressionThreshold(tcpCompressionThreshold);
+		updateTcpCompressing();
+		resetEncoding();
+	}
+
+	public int getTcpCompressionLevel() {
+		return tcpOptions.getCompressionLevel();
+	}
+
+	/**
+	 * Sets the <b>TcpCompressionLevel</b> option, see
+	 * {@link TcpOptions#setCompressionLevel(int)}.
+	 *
+	 * @param tcpCompressionLevel the zlib compression level
+	 */
+	public void setTcpCompressionLevel(final int tcpCompressionLevel) {
+		tcpOptions.setCompressionLevel(tcpCompressionLevel);
+		resetEncoding();
+	}
+
+	/**
+	 * Determines whether TCP packets are compressed, warning about framings not
+	 * supporting compression. Senders read the result instead of validating the
+	 * options again.
+	 */
+	private void updateTcpCompressing() {
+		tcpCompressing = tcpOptions.isCompressing(SyslogTcpTransport.PROTOCOL.equals(protocol));
+	}
+
+	/**
+	 * Returns the value of the <b>UdpBufferSize</b> option.
+	 *
+	 * @return the size in bytes of the buffers used to queue UDP datagrams or zero
+	 *         if datagrams are sent by the logging thread
+	 */
+	public int getUdpBufferSize() {
+		return udpBufferSize;
+	}
+
+	/**
+	 * The <b>UdpBufferSize</b> option sets the size in bytes of two buffers used to
+	 * queue UDP datagrams. If greater than zero, datagrams are sent by a sender
+	 * thread using a connected datagram channel. Logging threads wait if the buffer
+	 * is full. Packets larger than the buffer are sent by the logging thread
+	 * directly. The default value is zero, which sends datagrams by the logging
+	 * thread.
+	 *
+	 * @param udpBufferSize the buffer size in bytes or zero to disable queueing
+	 */
+	public void setUdpBufferSize(final int udpBufferSize) {
+		this.udpBufferSize = Math.max(0, udpBufferSize);
+		updateSyslogWriter();
+	}
+
+	public long getTcpReconnectDelayMillis() {
+		return tcpOptions.getReconnectDelayMillis();
+	}
+
+	/**
+	 * Sets the <b>TcpReconnectDelayMillis</b> option, see
+	 * {@link TcpOptions#setReconnectDelayMillis(long)}.
+	 *
+	 * @param tcpReconnectDelayMillis the initial reconnect delay in milliseconds
+	 */
+	public void setTcpReconnectDelayMillis(final long tcpReconnectDelayMillis) {
+		tcpOptions.setReconnectDelayMillis(tcpReconnectDelayMillis);
+		updateSyslogWriter();
+	}
+
+	public long getTcpReconnectMaxDelayMillis() {
+		return tcpOptions.getReconnectMaxDelayMillis();
+	}
+
+	/**
+	 * Sets the <b>TcpReconnectMaxDelayMillis</b> option, see
+	 * {@link TcpOptions#setReconnectMaxDelayMillis(long)}.
+	 *
+	 * @param tcpReconnectMaxDelayMillis the max reconnect delay in milliseconds
+	 */
+	public void setTcpReconnectMaxDelayMillis(final long tcpReconnectMaxDelayMillis) {
+		tcpOptions.setReconnectMaxDelayMillis(tcpReconnectMaxDelayMillis);
+		updateSyslogWriter();
+	}
+
+	public String getTcpSpillDirectory() {
+		return spillOptions.getDirectory().map(Path::toString).orElse(null);
+	}
+
+	/**
+	 * Returns the spill directory.
+	 *
+	 * @return the spill directory or empty if spilling is disabled
+	 */
+	public Optional<Path> getTcpSpillPath() {
+		return spillOptions.getDirectory();
+	}
+
+	/**
+	 * Sets the <b>TcpSpillDirectory</b> option, see
+	 * {@link SpillOptions#setDirectory(String)}.
+	 *
+	 * @param tcpSpillDirectory the spill directory or {@code null} to disable spilling
+	 */
+	public void setTcpSpillDirectory(final String tcpSpillDirectory) {
+		spillOptions.setDirectory(tcpSpillDirectory);
+		updateSyslogWriter();
+	}
+
+	public long getTcpSpillMaxSize() {
+		return spillOptions.getMaxSize();
+	}
+
+	/**
+	 * Sets the <b>TcpSpillMaxSize</b> option, see
+	 * {@link SpillOptions#setMaxSize(long)}.
+	 *
+	 * @param tcpSpillMaxSize the max size in bytes
+	 */
+	public void setTcpSpillMaxSize(final long tcpSpillMaxSize) {
+		spillOptions.setMaxSize(tcpSpillMaxSize);
+		updateSyslogWriter();
+	}
+
+	public int getTcpSpillSegmentSize() {
+		return spillOptions.getSegmentSize();
+	}
+
+	/**
+	 * Sets the <b>TcpSpillSegmentSize</b> option, see
+	 * {@link SpillOptions#setSegmentSize(int)}.
+	 *
+	 * @param tcpSpillSegmentSize the size in bytes
+	 */
+	public void setTcpSpillSegmentSize(final int tcpSpillSegmentSize) {
+		spillOptions.setSegmentSize(tcpSpillSegmentSize);
+		updateSyslogWriter();
+	}
+
+	public long getTcpSpillRetentionMillis() {
+		return spillOptions.getRetentionMillis();
+	}
+
+	/**
+	 * Sets the <b>TcpSpillRetentionMillis</b> option, see
+	 * {@link SpillOptions#setRetentionMillis(long)}.
+	 *
+	 * @param tcpSpillRetentionMillis the max age in milliseconds
+	 */
+	public void setTcpSpillRetentionMillis(final long tcpSpillRetentionMillis) {
+		spillOptions.setRetentionMillis(tcpSpillRetentionMillis);
+		updateSyslogWriter();
+	}
+
+	public int getTcpConnections() {
+		return tcpOptions.getConnections();
+	}
+
+	/**
+	 * Sets the <b>TcpConnections</b> option, see
+	 * {@link TcpOptions#setConnections(int)}.
+	 *
+	 * @param tcpConnections the number of connections
+	 */
+	public void setTcpConnections(final int tcpConnections) {
+		tcpOptions.setConnections(tcpConnections);
+		updateSyslogWriter();
+	}
+
+	public String getTcpRouting() {
+		return tcpOptions.getRouting().name();
+	}
+
+	/**
+	 * Sets the <b>TcpRouting</b> option, see
+	 * {@link TcpOptions#setRouting(String)}.
+	 *
+	 * @param tcpRouting the routing name
+	 */
+	public void setTcpRouting(final String tcpRouting) {
+		tcpOptions.setRouting(tcpRouting);
+	}
+
+	public int getTcpBatchSize() {
+		return tcpOptions.getBatchSize();
+	}
+
+	/**
+	 * Sets the <b>TcpBatchSize</b> option, see
+	 * {@link TcpOptions#setBatchSize(int)}.
+	 *
+	 * @param tcpBatchSize the buffer size in bytes or zero to disable batching
+	 */
+	public void setTcpBatchSize(final int tcpBatchSize) {
+		tcpOptions.setBatchSize(tcpBatchSize);
+		updateSyslogWriter();
+	}
+
+	public long getTcpLingerMillis() {
+		return tcpOptions.getLingerMillis();
+	}
+
+	/**
+	 * Sets the <b>TcpLingerMillis</b> option, see
+	 * {@link TcpOptions#setLingerMillis(long)}.
+	 *
+	 * @param tcpLingerMillis the linger time in milliseconds
+	 */
+	public void setTcpLingerMillis(final long tcpLingerMillis) {
+		tcpOptions.setLingerMillis(tcpLingerMillis);
+		updateSyslogWriter();
+	}
+
+	/**
+	 * Returns the context used to create TLS connections.
+	 *
+	 * @return the context or empty if the default context is used
+	 */
+	public Optional<SSLContext> getTlsContext() {
+		return tlsOptions.getContext();
+	}
+
+	/**
+	 * Sets the <b>TlsContext</b> option, see
+	 * {@link TlsOptions#setContext(SSLContext)}.
+	 *
+	 * @param tlsContext the context or {@code null} to use the default context
+	 */
+	public void setTlsContext(final SSLContext tlsContext) {
+		tlsOptions.setContext(tlsContext);
+		updateSyslogWriter();
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getTlsHostnameVerification() {
+		return tlsOptions.isHostnameVerification();
+	}
+
+	/**
+	 * Sets the <b>TlsHostnameVerification</b> option, see
+	 * {@link TlsOptions#setHostnameVerification(boolean)}.
+	 *
+	 * @param tlsHostnameVerification {@code true} to verify the host name
+	 */
+	public void setTlsHostnameVerification(final boolean tlsHostnameVerification) {
+		tlsOptions.setHostnameVerification(tlsHostnameVerification);
+		updateSyslogWriter();
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getAsync() {
+		return asyncOptions.isEnabled();
+	}
+
+	/**
+	 * Sets the <b>Async</b> option, see
+	 * {@link AsyncOptions#setEnabled(boolean)}.
+	 *
+	 * @param async {@code true} to send events by a sender thread
+	 */
+	public void setAsync(final boolean async) {
+		asyncOptions.setEnabled(async);
+	}
+
+	public int getAsyncBufferSize() {
+		return asyncOptions.getBufferSize();
+	}
+
+	/**
+	 * Sets the <b>AsyncBufferSize</b> option, see
+	 * {@link AsyncOptions#setBufferSize(int)}.
+	 *
+	 * @param asyncBufferSize the ring buffer capacity
+	 */
+	public void setAsyncBufferSize(final int asyncBufferSize) {
+		asyncOptions.setBufferSize(asyncBufferSize);
+	}
+
+	public String getAsyncFullPolicy() {
+		return asyncOptions.getFullPolicy().name();
+	}
+
+	/**
+	 * Sets the <b>AsyncFullPolicy</b> option, see
+	 * {@link AsyncOptions#setFullPolicy(String)}.
+	 *
+	 * @param asyncFullPolicy the policy name
+	 */
+	public void setAsyncFullPolicy(final String asyncFullPolicy) {
+		asyncOptions.setFullPolicy(asyncFullPolicy);
+	}
+
+	public Level getAsyncDropThreshold() {
+		return asyncOptions.getDropThreshold();
+	}
+
+	/**
+	 * Sets the <b>AsyncDropThreshold</b> option, see
+	 * {@link AsyncOptions#setDropThreshold(Level)}.
+	 *
+	 * @param asyncDropThreshold the drop threshold
+	 */
+	public void setAsyncDropThreshold(final Level asyncDropThreshold) {
+		asyncOptions.setDropThreshold(asyncDropThreshold);
+	}
+
+	public Duration getAsyncShutdownTimeout() {
+		return asyncOptions.getShutdownTimeout();
+	}
+
+	/**
+	 * Sets the <b>AsyncShutdownTimeout</b> option, see
+	 * {@link AsyncOptions#setShutdownTimeout(Duration)}.
+	 *
+	 * @param asyncShutdownTimeout the shutdown timeout
+	 */
+	public void setAsyncShutdownTimeout(final Duration asyncShutdownTimeout) {
+		asyncOptions.setShutdownTimeout(asyncShutdownTimeout);
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getAsyncLocationInfo() {
+		return asyncOptions.isLocationInfo();
+	}
+
+	/**
+	 * Sets the <b>AsyncLocationInfo</b> option, see
+	 * {@link AsyncOptions#setLocationInfo(boolean)}.
+	 *
+	 * @param asyncLocationInfo {@code true} to capture location information
+	 */
+	public void setAsyncLocationInfo(final boolean asyncLocationInfo) {
+		asyncOptions.setLocationInfo(asyncLocationInfo);
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getAsyncVirtualThread() {
+		return asyncOptions.isVirtualThread();
+	}
+
+	/**
+	 * Sets the <b>AsyncVirtualThread</b> option, see
+	 * {@link AsyncOptions#setVirtualThread(boolean)}.
+	 *
+	 * @param asyncVirtualThread {@code true} to prefer a virtual sender thread
+	 */
+	public void setAsyncVirtualThread(final boolean asyncVirtualThread) {
+		asyncOptions.setVirtualThread(asyncVirtualThread);
+	}
+
+	@SuppressWarnings("PMD.BooleanGetMethodName")
+	public boolean getAsyncPriorityLanes() {
+		return asyncOptions.isPriorityLanes();
+	}
+
+	/**
+	 * Sets the <b>AsyncPriorityLanes</b> option, see
+	 * {@link AsyncOptions#setPriorityLanes(boolean)}.
+	 *
+	 * @param asyncPriorityLanes {@code true} to send more severe events first
+	 */
+	public void setAsyncPriorityLanes(final boolean asyncPriorityLanes) {
+		asyncOptions.setPriorityLanes(asyncPriorityLanes);
+	}
+
+	public String getAsyncPriorityLoggers() {
+		return asyncOptions.getPriorityLoggers();
+	}
+
+	/**
+	 * Sets the <b>AsyncPriorityLoggers</b> option, see
+	 * {@link AsyncOptions#setPriorityLoggers(String)}.
+	 *
+	 * @param asyncPriorityLoggers the comma separated logger names
+	 */
+	public void setAsyncPriorityLoggers(final String asyncPriorityLoggers) {
+		asyncOptions.setPriorityLoggers(asyncPriorityLoggers);
+	}
+
+	/**
+	 * Returns the number of events dropped by the current sender thread because its
+	 * ring buffer was full.
+	 *
+	 * @return the number of dropped events
+	 */
+	public long getAsyncDroppedEvents() {
+		return asyncOptions.getCurrentDispatcher().map(AsyncDispatcher::getDroppedEvents).orElse(0L);
+	}
+
+	/**
+	 * Gets HEADER portion of packet.
+	 *
+	 * @param timeStamp  number of milliseconds after the standard base time.
+	 * @param properties the MDC values, used for RFC 5424 only
+	 * @param ndc        the NDC or {@code null}, used for RFC 5424 only
+	 * @return HEADER portion of packet, will be empty if header is false and the
+	 *         format is RFC 3164.
+	 * @since 1.2.15
+	 */
+	private SyslogPacketHeader getPacketHeader(final long timeStamp, final Map<?, ?> properties, final String ndc) {
+		return headerOptions.get(charset, timeStamp, properties, ndc);
+	}
+
+	/**
+	 * Set header or footer of layout.
+	 *
+	 * @param msg message body, may not be null.
+	 */
+	private void sendLayoutMessage(final String message) {
+		final Optional<SyslogPriorityWriter> writer = syslogWriter;
+		if (writer.isPresent()) {
+			final SyslogSender sender = senders.acquire();
+			try {
+				sender.begin(writer.get(), writer.get().getPacketWriter());
+				sender.send(6,
+						getPacketHeader(System.currentTimeMillis(), Collections.emptyMap(), null),
+						getFacilityPrefix(),
+						message,
+						0);
+				sender.finish("Failed to send layout header or footer.");
+			} finally {
+				senders.release(sender);
+			}
+		}
+	}
+
+	/**
+	 * Sends the summaries of all messages suppressed so far.
+	 */
+	private void drainDuplicateFilter() {
+		final Optional<DuplicateFilter> filter = filterStages.getDuplicateFilter();
+		final Optional<SyslogPriorityWriter> writer = syslogWriter;
+		if (filter.isPresent() && writer.isPresent()) {
+			final SyslogSender sender = senders.acquire();
+			try {
+				sender.begin(writer.get(), writer.get().getPacketWriter());
+				filter.get().drain(repeated -> sendRepeated(sender, repeated));
+				sender.finish("Failed to send summary of repeated messages.");
+			} finally {
+				senders.release(sender);
+			}
+		}
+	}
+
+	/**
+	 * Sends the summary of a suppressed message.
+	 *
+	 * @param sender   the sender of the current thread
+	 * @param repeated the summary
+	 */
+	private void sendRepeated(final SyslogSender sender, final DuplicateFilter.Repeated repeated) {
+		sender.send(repeated.getSeverity(),
+				getPacketHeader(System.currentTimeMillis(), Collections.emptyMap(), null),
+				getFacilityPrefix(),
+				repeated.getText(),
+				0);
+	}
+
+	private void sendThrowable(final SyslogSender sender,
+			final int severity,
+			final SyslogPacketHeader packetHeader,
+			final LoggingEvent event) {
+		final String[] stackTrace = event.getThrowableStrRep();
+		if (stackTrace == null) {
+			return;
+		}
+
+		final String[] lines = ThrowableLines.limitFrames(stackTrace, throwableOptions.getMaxFrames());
+		metrics.onThrowableLines(lines.length);
+		if (throwableOptions.isPacking()) {
+			sender.send(severity, packetHeader, "", ThrowableLines.join(lines, TAB, getThrowableLineSeparator()), 0);
+			return;
+		}
+		for (final String line : lines) {
+			if (line.startsWith("\t")) {
+				sender.send(severity, packetHeader, TAB, line, 1);
+			} else {
+				sender.send(severity, packetHeader, "", line, 0);
 			}
 		}
 	}
@@ -697,16 +1885,36 @@ public class SyslogAppender64k extends AppenderSkeleton {
 				.append(facilityPrinting)
 				.append(", syslogHost=")
 				.append(syslogHost)
+				.append(", syslogHostStrategy=")
+				.append(syslogHostStrategy)
 				.append(", protocol=")
 				.append(protocol)
+				.append(", udpBufferSize=")
+				.append(udpBufferSize)
+				.append(", tcp=")
+				.append(tcpOptions)
+				.append(", tcpSpill=")
+				.append(spillOptions)
+				.append(", tls=")
+				.append(tlsOptions)
 				.append(", maxMessageLength=")
 				.append(maxMessageLength)
+				.append(", splitAtNewline=")
+				.append(splitAtNewline)
+				.append(", throwable=")
+				.append(throwableOptions)
 				.append(", header=")
-				.append(header)
-				.append(", localHostname=")
-				.append(localHostname)
+				.append(headerOptions)
 				.append(", layoutHeaderChecked=")
 				.append(layoutHeaderChecked)
+				.append(", concurrentLayout=")
+				.append(concurrentLayout)
+				.append(", filters=")
+				.append(filterStages)
+				.append(", jmx=")
+				.append(metricsJmx.isPresent())
+				.append(", async=")
+				.append(asyncOptions)
 				.append(']')
 				.toString();
 	}
@@ -0,0 +1,330 @@
+package com.github.loggly.log4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.apache.log4j.spi.ErrorCode;
+
+import com.github.loggly.log4j.helpers.SendResult;
+import com.github.loggly.log4j.helpers.SyslogMetrics;
+import com.github.loggly.log4j.helpers.SyslogPacketCompressor;
+import com.github.loggly.log4j.helpers.SyslogPacketEncoder;
+import com.github.loggly.log4j.helpers.SyslogPacketHeader;
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogPriorityWriter;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Reusable state of sending one event at a time. Packets of an event are
+ * collected and written at once, so that packets of concurrent events, e.g.
+ * fragments of split messages and stack trace lines, do not interleave on a
+ * shared connection.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+final class SyslogSender {
+	/**
+	 * Initial capacity of the message buffers of {@link BufferLayout}s
+	 */
+	private static final int MESSAGE_BUFFER_SIZE = 1024;
+
+	/**
+	 * Initial number of packets a sender collects per event
+	 */
+	private static final int EVENT_PACKETS = 8;
+
+	/**
+	 * Max capacity of the packet buffer a sender keeps between events
+	 */
+	private static final int MAX_RETAINED_EVENT_SIZE = 2 * SyslogAppender64k.UPPER_MAX_MSG_LENGTH;
+
+	private final SyslogAppender64k appender;
+
+	private final SyslogMetrics metrics;
+
+	/**
+	 * Collects encoded packets of the event being sent
+	 */
+	private final Consumer<ByteBuffer> packetWriter = this::collect;
+
+	private Optional<SyslogPacketEncoder> encoder = Optional.empty();
+
+	/**
+	 * Compressor of TCP packets, present if compression is enabled
+	 */
+	private Optional<SyslogPacketCompressor> compressor = Optional.empty();
+
+	/**
+	 * Value of {@link SyslogAppender64k#getEncodingGeneration()} when
+	 * {@link #encoder} and {@link #compressor} were created
+	 */
+	private int generation = 0;
+
+	/**
+	 * Writer of the event being sent, providing the encoded PRI parts
+	 */
+	private SyslogPriorityWriter writer = null;
+
+	/**
+	 * Connection assigned to the event being sent
+	 */
+	private SyslogPacketWriter target = null;
+
+	/**
+	 * First failure of writing the event being sent
+	 */
+	private Optional<IOException> failure = Optional.empty();
+
+	/**
+	 * Records failures of {@link #writer}
+	 */
+	private final Consumer<IOException> failures = this::onFailure;
+
+	/**
+	 * Number of packets written for the message being sent
+	 */
+	private int packets = 0;
+
+	/**
+	 * Copies of the packets of the event being sent, as encoder and compressor
+	 * reuse their buffers
+	 */
+	private byte[] eventBuffer = new byte[MESSAGE_BUFFER_SIZE];
+
+	/**
+	 * Number of bytes used in {@link #eventBuffer}
+	 */
+	private int eventLength = 0;
+
+	/**
+	 * End index inside {@link #eventBuffer} of each collected packet
+	 */
+	private int[] packetEnds = new int[EVENT_PACKETS];
+
+	/**
+	 * Number of packets collected for the event being sent
+	 */
+	private int packetCount = 0;
+
+	/**
+	 * Reusable views of {@link #eventBuffer}, one per packet index
+	 */
+	private ByteBuffer[] packetViews = new ByteBuffer[EVENT_PACKETS];
+
+	/**
+	 * Reusable list of the collected packets handed over to the writer
+	 */
+	private final List<ByteBuffer> eventPackets = new ArrayList<>(EVENT_PACKETS);
+
+	/**
+	 * Reusable buffer of {@link BufferLayout}s
+	 */
+	@SuppressWarnings("PMD.AvoidStringBufferField")
+	private StringBuffer messageBuffer = new StringBuffer(MESSAGE_BUFFER_SIZE);
+
+	/**
+	 * Creates a sender of events of {@code appender}.
+	 *
+	 * @param appender the appender providing packet encoders and the error handler
+	 * @param metrics  the metrics of {@code appender}
+	 */
+	SyslogSender(final SyslogAppender64k appender, final SyslogMetrics metrics) {
+		this.appender = appender;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Encodes and writes one packet consisting of PRI part, {@code packetHeader},
+	 * {@code prefix} and {@code message} starting at character index
+	 * {@code messageStart}. Packets exceeding the max message length are split.
+	 *
+	 * @param severity     the syslog severity
+	 * @param packetHeader the HEADER part
+	 * @param prefix       text to write between header and message
+	 * @param message      the message
+	 * @param messageStart index of the first character of {@code message} to write
+	 */
+	void send(final int severity,
+			final SyslogPacketHeader packetHeader,
+			final String prefix,
+			final CharSequence message,
+			final int messageStart) {
+		packets = 0;
+		if (!getEncoder()
+				.encode(writer.getPriority(severity), packetHeader, prefix, message, messageStart, packetWriter)) {
+			metrics.onTruncated();
+		}
+		if (packets > 1) {
+			metrics.onSplit(packets);
+		}
+	}
+
+	/**
+	 * Starts sending an event using {@code writerToUse} and
+	 * {@code targetToUse}.
+	 *
+	 * @param writerToUse the writer providing the encoded PRI parts
+	 * @param targetToUse the connection assigned to the event
+	 */
+	void begin(final SyslogPriorityWriter writerToUse, final SyslogPacketWriter targetToUse) {
+		writer = writerToUse;
+		target = targetToUse;
+		failure = Optional.empty();
+		clearPackets();
+	}
+
+	/**
+	 * Writes the collected packets and flushes the writer of the event being
+	 * sent.
+	 */
+	void flush() {
+		writePackets();
+		writer.flush(failures);
+	}
+
+	/**
+	 * Finishes sending an event. A failure is counted and reported to the error
+	 * handler once per event.
+	 *
+	 * @param errorMessage the message to report on failure
+	 * @return the outcome of sending the event
+	 */
+	SendResult finish(final String errorMessage) {
+		writePackets();
+		writer = null;
+		target = null;
+		if (!failure.isPresent()) {
+			return SendResult.SENT;
+		}
+		metrics.onEventFailed();
+		appender.getErrorHandler().error(errorMessage, failure.get(), ErrorCode.WRITE_FAILURE);
+		failure = Optional.empty();
+		return SendResult.FAILED;
+	}
+
+	/**
+	 * Records the first failure of the event being sent.
+	 *
+	 * @param exception the failure
+	 */
+	private void onFailure(final IOException exception) {
+		if (!failure.isPresent()) {
+			failure = Optional.of(exception);
+		}
+	}
+
+	/**
+	 * Returns the empty message buffer, replacing it if an unusually large message
+	 * let it grow beyond the max message length.
+	 *
+	 * @return the empty message buffer
+	 */
+	StringBuffer clearMessageBuffer() {
+		if (messageBuffer.capacity() > SyslogAppender64k.UPPER_MAX_MSG_LENGTH) {
+			messageBuffer = new StringBuffer(MESSAGE_BUFFER_SIZE);
+		} else {
+			messageBuffer.setLength(0);
+		}
+		return messageBuffer;
+	}
+
+	/**
+	 * Returns the encoder of this thread, recreating it and the compressor if
+	 * options changed.
+	 *
+	 * @return the packet encoder
+	 */
+	private SyslogPacketEncoder getEncoder() {
+		final int currentGeneration = appender.getEncodingGeneration();
+		if (!encoder.isPresent() || generation != currentGeneration) {
+			encoder = Optional.of(appender.createPacketEncoder());
+			compressor.ifPresent(SyslogPacketCompressor::close);
+			compressor = appender.createPacketCompressor();
+			generation = currentGeneration;
+		}
+		return encoder.get();
+	}
+
+	/**
+	 * Copies an encoded packet to the packets of the event being sent,
+	 * compressing it if enabled.
+	 *
+	 * @param packet the encoded packet
+	 */
+	private void collect(final ByteBuffer packet) {
+		final ByteBuffer packetToWrite = compressor.isPresent() ? compressor.get().compress(packet) : packet;
+		final int length = packetToWrite.remaining();
+		packets += 1;
+		metrics.onPacket(length);
+
+		if (eventBuffer.length - eventLength < length) {
+			eventBuffer = Arrays.copyOf(eventBuffer, Math.max(2 * eventBuffer.length, eventLength + length));
+			Arrays.fill(packetViews, null);
+		}
+		if (packetCount == packetEnds.length) {
+			packetEnds = Arrays.copyOf(packetEnds, 2 * packetCount);
+			packetViews = Arrays.copyOf(packetViews, 2 * packetCount);
+		}
+		packetToWrite.get(eventBuffer, eventLength, length);
+		eventLength += length;
+		packetEnds[packetCount] = eventLength;
+		packetCount += 1;
+	}
+
+	/**
+	 * Writes the collected packets at once, counting failures.
+	 */
+	private void writePackets() {
+		if (packetCount == 0) {
+			return;
+		}
+		eventPackets.clear();
+		int start = 0;
+		for (int index = 0; index < packetCount; index += 1) {
+			if (packetViews[index] == null) {
+				packetViews[index] = ByteBuffer.wrap(eventBuffer);
+			}
+			final ByteBuffer view = packetViews[index];
+			view.clear();
+			view.position(start);
+			view.limit(packetEnds[index]);
+			eventPackets.add(view);
+			start = packetEnds[index];
+		}
+
+		final int written = writer.write(target, eventPackets, failures);
+		if (written < packetCount) {
+			metrics.onWriteFailures(packetCount - written);
+		}
+		clearPackets();
+	}
+
+	/**
+	 * Releases the compressor of this sender.
+	 */
+	void close() {
+		compressor.ifPresent(SyslogPacketCompressor::close);
+		compressor = Optional.empty();
+		encoder = Optional.empty();
+	}
+
+	/**
+	 * Discards collected packets, replacing the buffer if an unusually large event
+	 * let it grow beyond twice the max message length.
+	 */
+	private void clearPackets() {
+		eventPackets.clear();
+		eventLength = 0;
+		packetCount = 0;
+		if (eventBuffer.length > MAX_RETAINED_EVENT_SIZE) {
+			eventBuffer = new byte[MESSAGE_BUFFER_SIZE];
+			Arrays.fill(packetViews, null);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.github.loggly.log4j;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Idle senders with their reusable encoders. Threads prefer the slot of their
+ * ID, so that a sender is usually reused by the same thread. Senders are not
+ * bound to threads, therefore pooled threads do not keep closed appenders
+ * reachable.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+final class SyslogSenderPool {
+	/**
+	 * Number of idle senders kept for reuse
+	 */
+	private static final int SLOTS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+	private final AtomicReferenceArray<SyslogSender> senders = new AtomicReferenceArray<>(SLOTS);
+
+	private final Supplier<SyslogSender> factory;
+
+	/**
+	 * Set by {@link #close()}, after which released senders are closed instead of
+	 * being kept
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param factory creates a sender if all slots are empty
+	 */
+	SyslogSenderPool(final Supplier<SyslogSender> factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Takes an idle sender, preferring the slot of the current thread, or creates
+	 * a new one if all slots are empty.
+	 *
+	 * @return the sender to use for one event
+	 */
+	SyslogSender acquire() {
+		final int home = getSlot();
+		for (int offset = 0; offset < SLOTS; offset += 1) {
+			final int slot = (home + offset) % SLOTS;
+			final SyslogSender sender = senders.get(slot);
+			if (sender != null && senders.compareAndSet(slot, sender, null)) {
+				return sender;
+			}
+		}
+		return factory.get();
+	}
+
+	/**
+	 * Returns {@code sender} to an empty slot for reuse. It is closed if all slots
+	 * are taken or if this pool is closed.
+	 *
+	 * @param sender the sender taken by {@link #acquire()}
+	 */
+	void release(final SyslogSender sender) {
+		if (!closed) {
+			final int home = getSlot();
+			for (int offset = 0; offset < SLOTS; offset += 1) {
+				final int slot = (home + offset) % SLOTS;
+				if (senders.compareAndSet(slot, null, sender)) {
+					// close might have passed the slot already
+					if (closed && senders.compareAndSet(slot, sender, null)) {
+						sender.close();
+					}
+					return;
+				}
+			}
+		}
+		sender.close();
+	}
+
+	private static int getSlot() {
+		return (int) (Thread.currentThread().getId() % SLOTS);
+	}
+
+	/**
+	 * Closes all idle senders and senders released later on.
+	 */
+	void close() {
+		closed = true;
+		for (int slot = 0; slot < SLOTS; slot += 1) {
+			Optional.ofNullable(senders.getAndSet(slot, null)).ifPresent(SyslogSender::close);
+		}
+	}
+}
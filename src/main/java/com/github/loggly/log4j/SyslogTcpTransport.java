@@ -0,0 +1,121 @@
+package com.github.loggly.log4j;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.apache.log4j.helpers.LogLog;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogSpillWriter64k;
+import com.github.loggly.log4j.helpers.SyslogTcpBatchWriter64k;
+import com.github.loggly.log4j.helpers.SyslogTcpPoolWriter64k;
+import com.github.loggly.log4j.helpers.SyslogTcpWriter64k;
+
+/**
+ * Transport writing framed packets to TCP connections, optionally batching
+ * frames, spreading them over a pool of connections and spilling them to disk
+ * while the syslog host is unavailable.
+ */
+public final class SyslogTcpTransport implements SyslogTransport {
+	/**
+	 * Name of this protocol
+	 */
+	public static final String PROTOCOL = "tcp";
+
+	public SyslogTcpTransport() {
+		// nothing to initialize
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getProtocol() {
+		return PROTOCOL;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	public SyslogPacketWriter createWriter(final SyslogAppender64k appender,
+			final String host,
+			final boolean multiHost) {
+		final Optional<Path> spillDirectory = appender.getTcpSpillPath();
+		if (spillDirectory.isPresent()) {
+			return new SyslogSpillWriter64k(host,
+					appender.getCharset(),
+					discardedPackets -> createConnections(appender, host, Optional.of(discardedPackets)),
+					multiHost ? spillDirectory.get().resolve(host.replaceAll("[^A-Za-z0-9.-]", "_")) : spillDirectory.get(),
+					appender.getTcpSpillMaxSize(),
+					appender.getTcpSpillSegmentSize(),
+					Duration.ofMillis(appender.getTcpSpillRetentionMillis()));
+		}
+		return createConnections(appender, host, Optional.empty());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public boolean isFlushingEvents(final SyslogAppender64k appender) {
+		if (appender.getTcpBatchSize() > 0 && appender.getTcpSocketFactory().isPresent()) {
+			LogLog.warn("TCP batching is not supported in combination with a TCP socket factory.");
+		}
+		return !isBatching(appender);
+	}
+
+	private static boolean isBatching(final SyslogAppender64k appender) {
+		return appender.getTcpBatchSize() > 0 && !appender.getTcpSocketFactory().isPresent();
+	}
+
+	/**
+	 * Creates the writer of all TCP connections to {@code host}.
+	 *
+	 * @param appender         the appender to read transport options of
+	 * @param host             the syslog host, optionally including a port
+	 * @param discardedPackets consumer of packets discarded by batching writers
+	 *                         after a failure, or empty to drop them
+	 * @return the new writer
+	 */
+	private static SyslogPacketWriter createConnections(final SyslogAppender64k appender,
+			final String host,
+			final Optional<Consumer<ByteBuffer>> discardedPackets) {
+		if (appender.getTcpConnections() > 1) {
+			return new SyslogTcpPoolWriter64k(host,
+					appender.getCharset(),
+					appender.getTcpConnections(),
+					() -> createConnection(appender, host, discardedPackets));
+		}
+		return createConnection(appender, host, discardedPackets);
+	}
+
+	/**
+	 * Creates the writer of a single TCP connection to {@code host}.
+	 *
+	 * @param appender         the appender to read transport options of
+	 * @param host             the syslog host, optionally including a port
+	 * @param discardedPackets consumer of packets discarded by batching writers
+	 *                         after a failure, or empty to drop them
+	 * @return the new writer
+	 */
+	private static SyslogPacketWriter createConnection(final SyslogAppender64k appender,
+			final String host,
+			final Optional<Consumer<ByteBuffer>> discardedPackets) {
+		if (isBatching(appender)) {
+			return new SyslogTcpBatchWriter64k(host,
+					appender.getCharset(),
+					appender.getTcpSocketTimeout(),
+					appender.getTcpFramingMethod(),
+					appender.getTcpBatchSize(),
+					Duration.ofMillis(appender.getTcpLingerMillis()),
+					appender.getTcpReconnectBackoff(),
+					discardedPackets);
+		}
+		return new SyslogTcpWriter64k(host,
+				appender.getCharset(),
+				appender.getTcpSocketFactory(),
+				appender.getTcpSocketTimeout(),
+				appender.getTcpFramingMethod(),
+				appender.getTcpReconnectBackoff());
+	}
+}
@@ -0,0 +1,75 @@
+package com.github.loggly.log4j;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+import javax.net.ssl.SSLContext;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogTlsWriter64k;
+
+/**
+ * Transport writing framed packets to TLS connections according to RFC 5425.
+ * The port is 6514 by default. Frames use the <b>TcpFraming</b> option and are
+ * coalesced into TLS records if <b>TcpBatchSize</b> is greater than zero, which
+ * keeps frames pending up to <b>TcpLingerMillis</b>.
+ *
+ * <p>
+ * Writers of all syslog hosts share the context of the <b>TlsContext</b> option
+ * or the default context, so that reconnects resume previous sessions.
+ */
+public final class SyslogTlsTransport implements SyslogTransport {
+	/**
+	 * Name of this protocol
+	 */
+	public static final String PROTOCOL = "tls";
+
+	public SyslogTlsTransport() {
+		// nothing to initialize
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getProtocol() {
+		return PROTOCOL;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SyslogPacketWriter createWriter(final SyslogAppender64k appender,
+			final String host,
+			final boolean multiHost) {
+		return new SyslogTlsWriter64k(host,
+				appender.getCharset(),
+				getContext(appender),
+				appender.getTlsHostnameVerification(),
+				appender.getTcpSocketTimeout(),
+				appender.getTcpFramingMethod(),
+				appender.getTcpBatchSize() > 0 ? Duration.ofMillis(appender.getTcpLingerMillis()) : Duration.ZERO,
+				appender.getTcpReconnectBackoff());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isFlushingEvents(final SyslogAppender64k appender) {
+		return appender.getTcpBatchSize() < 1;
+	}
+
+	/**
+	 * Returns the context of the <b>TlsContext</b> option or the default context.
+	 *
+	 * @param appender the appender to read transport options of
+	 * @return the context
+	 * @throws IllegalStateException if the default context is not available
+	 */
+	private static SSLContext getContext(final SyslogAppender64k appender) {
+		if (appender.getTlsContext().isPresent()) {
+			return appender.getTlsContext().get();
+		}
+		try {
+			return SSLContext.getDefault();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Default TLS context is not available.", e);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.loggly.log4j;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+
+/**
+ * Service provider interface of transports, which deliver encoded syslog
+ * packets to a syslog host. Transports are loaded using
+ * {@link java.util.ServiceLoader} and selected by the <b>Protocol</b> option of
+ * {@link SyslogAppender64k}.
+ *
+ * <p>
+ * Implementations are registered by listing their class names inside
+ * {@code META-INF/services/com.github.loggly.log4j.SyslogTransport} and need a
+ * public no-argument constructor. UDP, TCP, TLS and Unix domain sockets are
+ * registered by this library. Transports visible to the context class loader
+ * only, e.g. inside a web application, are found as well.
+ */
+public interface SyslogTransport {
+	/**
+	 * Returns the name of the protocol, which is matched case-insensitively
+	 * against the <b>Protocol</b> option, e.g. {@code tcp}.
+	 *
+	 * @return the name of the protocol
+	 */
+	String getProtocol();
+
+	/**
+	 * Creates the writer to a single syslog host. The appender is passed to read
+	 * transport options, e.g. timeouts.
+	 *
+	 * @param appender  the appender to create the writer for
+	 * @param host      the syslog host as given by the <b>SyslogHost</b> option,
+	 *                  e.g. a host name with optional port or a socket path
+	 * @param multiHost {@code true} if {@code host} is one of multiple syslog
+	 *                  hosts
+	 * @return the new writer
+	 */
+	SyslogPacketWriter createWriter(SyslogAppender64k appender, String host, boolean multiHost);
+
+	/**
+	 * Returns whether writers of this transport shall be flushed after each event.
+	 * Transports batching on their own return {@code false}.
+	 *
+	 * @param appender the appender to read transport options of
+	 * @return {@code true} to flush after each event
+	 */
+	default boolean isFlushingEvents(final SyslogAppender64k appender) {
+		return true;
+	}
+}
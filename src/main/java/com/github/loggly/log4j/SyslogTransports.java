@@ -0,0 +1,78 @@
+package com.github.loggly.log4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Transports available to {@link SyslogAppender64k}. Transports visible to the
+ * class loader of this library are loaded once using {@link ServiceLoader}.
+ * Transports visible to the context class loader only, e.g. packaged inside a
+ * web application while this library is part of a parent class loader, are
+ * looked up on demand, so that they are not kept reachable after the web
+ * application has been stopped.
+ */
+final class SyslogTransports {
+	/**
+	 * Transports of the class loader of this library by lower case protocol name
+	 */
+	private static final Map<String, SyslogTransport> TRANSPORTS
+			= Collections.unmodifiableMap(load(SyslogTransport.class.getClassLoader()));
+
+	private SyslogTransports() {
+		// utility class
+	}
+
+	private static Map<String, SyslogTransport> load(final ClassLoader classLoader) {
+		final Map<String, SyslogTransport> transports = new TreeMap<>();
+		for (final SyslogTransport transport : ServiceLoader.load(SyslogTransport.class, classLoader)) {
+			transports.putIfAbsent(Strings.toLowerCaseNeutral(transport.getProtocol()), transport);
+		}
+		return transports;
+	}
+
+	/**
+	 * Returns the transports of the context class loader of the current thread
+	 * unless it is the class loader of this library.
+	 *
+	 * @return the transports by lower case protocol name
+	 */
+	private static Map<String, SyslogTransport> loadContextTransports() {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		if (contextClassLoader == null || contextClassLoader == SyslogTransport.class.getClassLoader()) {
+			return Collections.emptyMap();
+		}
+		return load(contextClassLoader);
+	}
+
+	/**
+	 * Returns the transport of {@code protocol}. Transports of this library take
+	 * precedence over those of the context class loader.
+	 *
+	 * @param protocol the protocol name, case is unimportant
+	 * @return the transport or empty if no transport supports {@code protocol}
+	 */
+	static Optional<SyslogTransport> get(final String protocol) {
+		final String key = Strings.toLowerCaseNeutral(protocol);
+		final SyslogTransport transport = TRANSPORTS.get(key);
+		if (transport != null) {
+			return Optional.of(transport);
+		}
+		return Optional.ofNullable(loadContextTransports().get(key));
+	}
+
+	/**
+	 * Returns the names of all available protocols.
+	 *
+	 * @return the protocol names in lower case
+	 */
+	static Iterable<String> getProtocols() {
+		final Map<String, SyslogTransport> transports = new TreeMap<>(loadContextTransports());
+		transports.putAll(TRANSPORTS);
+		return transports.keySet();
+	}
+}
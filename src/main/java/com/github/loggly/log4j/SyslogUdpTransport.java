@@ -0,0 +1,44 @@
+package com.github.loggly.log4j;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogUdpChannelWriter64k;
+import com.github.loggly.log4j.helpers.SyslogUdpWriter64k;
+
+/**
+ * Transport sending one datagram per packet. If the <b>UdpBufferSize</b> option
+ * is set, datagrams are queued and sent by a sender thread.
+ */
+public final class SyslogUdpTransport implements SyslogTransport {
+	/**
+	 * Name of this protocol
+	 */
+	public static final String PROTOCOL = "udp";
+
+	public SyslogUdpTransport() {
+		// nothing to initialize
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getProtocol() {
+		return PROTOCOL;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	public SyslogPacketWriter createWriter(final SyslogAppender64k appender,
+			final String host,
+			final boolean multiHost) {
+		if (appender.getUdpBufferSize() > 0) {
+			return new SyslogUdpChannelWriter64k(host, appender.getCharset(), appender.getUdpBufferSize());
+		}
+		return new SyslogUdpWriter64k(host, appender.getCharset());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isFlushingEvents(final SyslogAppender64k appender) {
+		return appender.getUdpBufferSize() < 1;
+	}
+}
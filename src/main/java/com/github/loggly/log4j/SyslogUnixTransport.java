@@ -0,0 +1,39 @@
+package com.github.loggly.log4j;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+import com.github.loggly.log4j.helpers.SyslogUnixWriter64k;
+
+/**
+ * Transport writing framed packets to a local syslog daemon listening on a Unix
+ * domain stream socket. The <b>SyslogHost</b> option is the path of the socket,
+ * e.g. {@code /run/rsyslog/imptcp.sock}. Frames use the <b>TcpFraming</b>
+ * option and reconnects the delays of <b>TcpReconnectDelayMillis</b> and
+ * <b>TcpReconnectMaxDelayMillis</b>.
+ *
+ * <p>
+ * Unix domain sockets require Java 16 or later.
+ */
+public final class SyslogUnixTransport implements SyslogTransport {
+	/**
+	 * Name of this protocol
+	 */
+	public static final String PROTOCOL = "unix";
+
+	public SyslogUnixTransport() {
+		// nothing to initialize
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getProtocol() {
+		return PROTOCOL;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SyslogPacketWriter createWriter(final SyslogAppender64k appender,
+			final String host,
+			final boolean multiHost) {
+		return new SyslogUnixWriter64k(host, appender.getTcpFramingMethod(), appender.getTcpReconnectBackoff());
+	}
+}
@@ -0,0 +1,451 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Bounded queue of logging events, which is drained by a dedicated sender
+ * thread. Logging threads pay for an enqueue only, while formatting and network
+ * I/O happen inside the sender thread.
+ *
+ * <p>
+ * The slots of the queue are allocated once. The sender thread takes all
+ * available events at once to keep the time holding the lock short.
+ *
+ * <p>
+ * Optionally events are distributed to priority lanes, which share the slots of
+ * the given capacity. Each lane is a queue of slots linked by index. Lane
+ * {@code 0} has the highest priority. The sender thread drains the highest
+ * non-empty lane first and takes at most {@link #LANE_BATCH_SIZE} events per
+ * batch, so that an event of a higher lane waits for a few sends only. If all
+ * slots are taken, the oldest event of the lowest non-empty lane below the lane
+ * of a new event is dropped to make room. Only if there is no such lane, the new
+ * event is handled according to the {@link AsyncFullPolicy}. Events of different
+ * lanes may be sent out of order.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class AsyncDispatcher implements Closeable {
+	/**
+	 * Max number of events taken at once if there is more than one lane
+	 */
+	private static final int LANE_BATCH_SIZE = 32;
+
+	/**
+	 * Index of no slot, marking the end of a lane or of the free slots
+	 */
+	private static final int NO_SLOT = -1;
+
+	/**
+	 * Events of all lanes, guarded by {@link #lock}
+	 */
+	private final LoggingEvent[] slots;
+
+	/**
+	 * Index of the slot following each slot inside its lane or inside the free
+	 * slots, guarded by {@link #lock}
+	 */
+	private final int[] nextSlots;
+
+	private final ToIntFunction<LoggingEvent> laneSelector;
+
+	private final LoggingEvent[] batch;
+
+	private final Lock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final Condition notFull = lock.newCondition();
+
+	private final AsyncFullPolicy fullPolicy;
+
+	private final Priority dropThreshold;
+
+	private final Duration shutdownTimeout;
+
+	private final Consumer<LoggingEvent> consumer;
+
+	private final Thread thread;
+
+	private final LongAdder droppedEvents = new LongAdder();
+
+	/**
+	 * Index of the slot of the oldest event of each lane, guarded by {@link #lock}
+	 */
+	private final int[] heads;
+
+	/**
+	 * Index of the slot of the newest event of each lane, guarded by {@link #lock}
+	 */
+	private final int[] tails;
+
+	/**
+	 * Number of events inside each lane, guarded by {@link #lock}
+	 */
+	private final int[] sizes;
+
+	/**
+	 * Number of events inside all lanes, guarded by {@link #lock}
+	 */
+	private int size = 0;
+
+	/**
+	 * Index of the first free slot, guarded by {@link #lock}
+	 */
+	private int freeSlot = 0;
+
+	/**
+	 * Set when no more events are accepted, guarded by {@link #lock}
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Set when the shutdown timeout elapsed and remaining events shall be discarded
+	 */
+	private volatile boolean discarding = false;
+
+	public AsyncDispatcher(final String name,
+			final int capacity,
+			final AsyncFullPolicy fullPolicy,
+			final Priority dropThreshold,
+			final Duration shutdownTimeout,
+			final Consumer<LoggingEvent> consumer) {
+		this(name, capacity, 1, event -> 0, fullPolicy, dropThreshold, shutdownTimeout, false, consumer);
+	}
+
+	/**
+	 * Creates a dispatcher distributing events to priority lanes.
+	 *
+	 * @param name            the name of the sender thread
+	 * @param capacity        the capacity shared by all lanes
+	 * @param lanes           the number of lanes
+	 * @param laneSelector    selects the lane of an event, {@code 0} being the
+	 *                        highest priority. Results out of range are clamped.
+	 * @param fullPolicy      the behavior if all slots are taken and there are no
+	 *                        events of lower lanes
+	 * @param dropThreshold   the threshold of
+	 *                        {@link AsyncFullPolicy#DROP_BELOW_LEVEL}
+	 * @param shutdownTimeout the max time to wait for draining on close
+	 * @param virtualThread   {@code true} to run the sender thread as virtual
+	 *                        thread if supported by the running JVM
+	 * @param consumer        sends events inside the sender thread
+	 */
+	@SuppressWarnings("checkstyle:ParameterNumber")
+	public AsyncDispatcher(final String name,
+			final int capacity,
+			final int lanes,
+			final ToIntFunction<LoggingEvent> laneSelector,
+			final AsyncFullPolicy fullPolicy,
+			final Priority dropThreshold,
+			final Duration shutdownTimeout,
+			final boolean virtualThread,
+			final Consumer<LoggingEvent> consumer) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException(String.format("Invalid capacity: %s", capacity));
+		}
+		if (lanes < 1) {
+			throw new IllegalArgumentException(String.format("Invalid lanes: %s", lanes));
+		}
+
+		slots = new LoggingEvent[capacity];
+		nextSlots = new int[capacity];
+		heads = new int[lanes];
+		tails = new int[lanes];
+		sizes = new int[lanes];
+		clear();
+		batch = new LoggingEvent[lanes == 1 ? capacity : Math.min(capacity, LANE_BATCH_SIZE)];
+		this.laneSelector = laneSelector;
+		this.fullPolicy = fullPolicy;
+		this.dropThreshold = dropThreshold;
+		this.shutdownTimeout = shutdownTimeout;
+		this.consumer = consumer;
+
+		thread = VirtualThreads.newSenderThread(name, this::run, virtualThread);
+	}
+
+	/**
+	 * Empties all lanes and links all slots as free slots, guarded by
+	 * {@link #lock}.
+	 */
+	private void clear() {
+		Arrays.fill(slots, null);
+		for (int slot = 0; slot < nextSlots.length; slot += 1) {
+			nextSlots[slot] = slot + 1 < nextSlots.length ? slot + 1 : NO_SLOT;
+		}
+		freeSlot = 0;
+		Arrays.fill(heads, NO_SLOT);
+		Arrays.fill(tails, NO_SLOT);
+		Arrays.fill(sizes, 0);
+		size = 0;
+	}
+
+	/**
+	 * Starts the sender thread.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Enqueues {@code event} for the sender thread. If all slots are taken, the
+	 * oldest event of a lower lane is dropped. If there is none, this method waits
+	 * for a free slot or drops {@code event} depending on the
+	 * {@link AsyncFullPolicy}.
+	 *
+	 * @param event the event to enqueue
+	 * @return {@code true} if the event was enqueued, {@code false} if it was
+	 *         dropped
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Waiting without timeout is the purpose of the BLOCK policy")
+	public boolean offer(final LoggingEvent event) {
+		final int lane = getLane(event);
+		lock.lock();
+		try {
+			while (!closed && size == slots.length && !evictBelow(lane)) {
+				if (!fullPolicy.waitsFor(event.getLevel(), dropThreshold)) {
+					droppedEvents.increment();
+					return false;
+				}
+				notFull.await();
+			}
+			if (closed) {
+				droppedEvents.increment();
+				return false;
+			}
+
+			final int slot = freeSlot;
+			freeSlot = nextSlots[slot];
+			slots[slot] = event;
+			nextSlots[slot] = NO_SLOT;
+			if (sizes[lane] == 0) {
+				heads[lane] = slot;
+			} else {
+				nextSlots[tails[lane]] = slot;
+			}
+			tails[lane] = slot;
+			sizes[lane] += 1;
+			size += 1;
+			notEmpty.signal();
+			return true;
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			droppedEvents.increment();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops the oldest event of the lowest non-empty lane below {@code lane},
+	 * guarded by {@link #lock}.
+	 *
+	 * @param lane the lane of the event to make room for
+	 * @return {@code true} if an event has been dropped, {@code false} if all lower
+	 *         lanes are empty
+	 */
+	private boolean evictBelow(final int lane) {
+		int lowest = sizes.length - 1;
+		while (lowest > lane && sizes[lowest] == 0) {
+			lowest -= 1;
+		}
+		if (lowest <= lane) {
+			return false;
+		}
+		poll(lowest);
+		droppedEvents.increment();
+		return true;
+	}
+
+	/**
+	 * Removes the oldest event of the non-empty {@code lane} and frees its slot,
+	 * guarded by {@link #lock}.
+	 *
+	 * @param lane the lane
+	 * @return the oldest event of {@code lane}
+	 */
+	private LoggingEvent poll(final int lane) {
+		final int slot = heads[lane];
+		final LoggingEvent event = slots[slot];
+		slots[slot] = null;
+		heads[lane] = nextSlots[slot];
+		nextSlots[slot] = freeSlot;
+		freeSlot = slot;
+		sizes[lane] -= 1;
+		size -= 1;
+		return event;
+	}
+
+	/**
+	 * Selects the lane of {@code event}.
+	 *
+	 * @param event the event
+	 * @return the index of the lane
+	 */
+	private int getLane(final LoggingEvent event) {
+		return Math.max(0, Math.min(sizes.length - 1, laneSelector.applyAsInt(event)));
+	}
+
+	/**
+	 * Returns the number of events that were dropped since this dispatcher was
+	 * created.
+	 *
+	 * @return the number of dropped events
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.sum();
+	}
+
+	/**
+	 * Returns the number of events of all lanes waiting for the sender thread.
+	 *
+	 * @return the number of waiting events
+	 */
+	public int getSize() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting events and waits up to the shutdown timeout for the sender
+	 * thread to drain the queue. Events left after the timeout are discarded.
+	 *
+	 * <p>
+	 * The sender thread is not interrupted, because interrupting a thread blocked
+	 * on an NIO channel closes that channel, which is shared with the next
+	 * dispatcher when options change at runtime. Instead the sender thread finishes
+	 * the current event and discards the remaining ones.
+	 */
+	@Override
+	public void close() {
+		close(System.nanoTime() + shutdownTimeout.toNanos());
+	}
+
+	/**
+	 * Stops accepting events and waits up to {@code deadline} for the sender
+	 * thread to drain the queue, so that callers can share one deadline between
+	 * multiple shutdown steps. Events left after the deadline are discarded.
+	 *
+	 * @param deadline the deadline in terms of {@link System#nanoTime()}
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void close(final long deadline) {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		if (Thread.currentThread() == thread) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(1, deadline - System.nanoTime()));
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (thread.isAlive()) {
+			discarding = true;
+			LogLog.warn("Sender thread \""
+					+ thread.getName()
+					+ "\" did not finish before the shutdown deadline. Discarding remaining events.");
+		}
+
+		final long dropped = getDroppedEvents();
+		if (dropped > 0) {
+			LogLog.warn(String.format("Sender thread \"%s\" dropped %s events.", thread.getName(), dropped));
+		}
+	}
+
+	private void run() {
+		int count = takeBatch();
+		while (count > 0) {
+			for (int index = 0; index < count; index += 1) {
+				dispatch(batch[index]);
+				batch[index] = null;
+			}
+			count = takeBatch();
+		}
+	}
+
+	@SuppressWarnings({ "checkstyle:IllegalCatch", "PMD.AvoidCatchingGenericException", "PMD.GuardLogStatement" })
+	private void dispatch(final LoggingEvent event) {
+		if (discarding) {
+			droppedEvents.increment();
+			return;
+		}
+		try {
+			consumer.accept(event);
+		} catch (final RuntimeException e) {
+			LogLog.error(String.format("Sender thread \"%s\" failed to dispatch an event.", thread.getName()), e);
+		}
+	}
+
+	/**
+	 * Waits for events and moves the available events of the highest non-empty
+	 * lane to {@link #batch}.
+	 *
+	 * <p>
+	 * If interrupted while waiting, the dispatcher is closed and waiting events
+	 * are dropped, so that logging threads waiting for a free slot do not wait for
+	 * a sender thread, which has exited.
+	 *
+	 * @return the number of events inside {@link #batch} or {@code 0} if the
+	 *         dispatcher has been closed and drained
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT", justification = "Waiting for events or close")
+	private int takeBatch() {
+		lock.lock();
+		try {
+			while (size == 0 && !closed) {
+				notEmpty.await();
+			}
+
+			int lane = 0;
+			while (lane < sizes.length && sizes[lane] == 0) {
+				lane += 1;
+			}
+			if (lane == sizes.length) {
+				return 0;
+			}
+
+			final int count = Math.min(sizes[lane], batch.length);
+			for (int index = 0; index < count; index += 1) {
+				batch[index] = poll(lane);
+			}
+			notFull.signalAll();
+			return count;
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			closed = true;
+			droppedEvents.add(size);
+			clear();
+			notFull.signalAll();
+			return 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.github.loggly.log4j.helpers;
+
+import org.apache.log4j.Priority;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Decides what happens to an event if the ring buffer of an
+ * {@link AsyncDispatcher} is full.
+ */
+public enum AsyncFullPolicy {
+	/**
+	 * The logging thread waits until the sender thread frees a slot.
+	 */
+	BLOCK,
+
+	/**
+	 * The event, which does not fit into the buffer anymore, is discarded.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * Events less severe than the drop threshold are discarded, while the logging
+	 * thread waits for a free slot for all other events.
+	 */
+	DROP_BELOW_LEVEL;
+
+	/**
+	 * Returns the policy matching {@code name}. The matching is case-insensitive
+	 * and accepts dashes instead of underscores, e.g. "drop-newest".
+	 *
+	 * @param name the policy name
+	 * @return the matching policy
+	 * @throws IllegalArgumentException if no policy matches {@code name}
+	 */
+	public static AsyncFullPolicy of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()).replace('-', '_'));
+	}
+
+	/**
+	 * Returns whether the logging thread shall wait for a free slot instead of
+	 * dropping an event of the given level.
+	 *
+	 * @param level         the level of the event to enqueue
+	 * @param dropThreshold events less severe than this level are dropped if the
+	 *                      policy is {@link #DROP_BELOW_LEVEL}
+	 * @return {@code true} to wait for a free slot, {@code false} to drop the event
+	 */
+	boolean waitsFor(final Priority level, final Priority dropThreshold) {
+		switch (this) {
+		case BLOCK:
+			return true;
+		case DROP_NEWEST:
+			return false;
+		case DROP_BELOW_LEVEL:
+			return level.isGreaterOrEqual(dropThreshold);
+		default:
+			throw new IllegalStateException(String.format("Unexpected policy: %s", this));
+		}
+	}
+}
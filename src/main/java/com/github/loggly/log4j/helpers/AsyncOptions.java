@@ -0,0 +1,451 @@
+package com.github.loggly.log4j.helpers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Options of handing over events to a sender thread, configured by the
+ * <b>Async</b> options of {@link com.github.loggly.log4j.SyslogAppender64k},
+ * together with the sender thread created of them. Changing an option stops
+ * the current sender thread after draining its queue, so that the next event
+ * starts a new one using the changed options.
+ */
+public final class AsyncOptions {
+	private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+	/**
+	 * Number of syslog severities, which is the number of lanes if
+	 * {@link #priorityLanes} is enabled
+	 */
+	private static final int SYSLOG_SEVERITIES = 8;
+
+	/**
+	 * Separator of logger names inside the <b>AsyncPriorityLoggers</b> option
+	 */
+	private static final char LOGGER_SEPARATOR = ',';
+
+	/**
+	 * If true, events are handed over to a sender thread instead of being sent by
+	 * the logging thread.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Number of events the ring buffer of the sender thread can hold.
+	 */
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private AsyncFullPolicy fullPolicy = AsyncFullPolicy.BLOCK;
+
+	/**
+	 * Events less severe than this level are dropped if the ring buffer is full and
+	 * {@link #fullPolicy} is {@link AsyncFullPolicy#DROP_BELOW_LEVEL}.
+	 */
+	private Level dropThreshold = Level.WARN;
+
+	private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+	/**
+	 * If true, location information is captured before handing over events to the
+	 * sender thread.
+	 */
+	private boolean locationInfo = false;
+
+	/**
+	 * If true, the sender thread is a virtual thread if supported by the JVM.
+	 */
+	private boolean virtualThread = false;
+
+	/**
+	 * If true, the sender thread keeps one lane per syslog severity and sends more
+	 * severe events first.
+	 */
+	private boolean priorityLanes = false;
+
+	/**
+	 * Events of loggers starting with one of these names are put into the highest
+	 * lane if {@link #priorityLanes} is enabled.
+	 */
+	private String[] priorityLoggers = new String[0];
+
+	/**
+	 * Sender thread and its ring buffer, started lazily on the first event if
+	 * {@link #enabled} is true
+	 */
+	private final AtomicReference<AsyncDispatcher> dispatcher = new AtomicReference<>(null);
+
+	/**
+	 * Set by {@link #close(long)}, after which no sender thread is started
+	 */
+	private volatile boolean closed = false;
+
+	public AsyncOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the sender thread if async mode is enabled, starting it if required.
+	 *
+	 * @param threadName the name of the sender thread to start
+	 * @param consumer   sends events handed over to the sender thread
+	 * @return the sender thread or empty if events shall be sent synchronously
+	 */
+	public Optional<AsyncDispatcher> getDispatcher(final String threadName, final Consumer<LoggingEvent> consumer) {
+		if (!enabled || closed) {
+			return Optional.empty();
+		}
+
+		final AsyncDispatcher current = dispatcher.get();
+		if (current != null) {
+			return Optional.of(current);
+		}
+
+		final AsyncDispatcher created = new AsyncDispatcher(threadName,
+				bufferSize,
+				priorityLanes ? SYSLOG_SEVERITIES : 1,
+				this::getLane,
+				fullPolicy,
+				dropThreshold,
+				shutdownTimeout,
+				virtualThread,
+				consumer);
+		if (dispatcher.compareAndSet(null, created)) {
+			// close(long) might have cleared dispatcher before the CAS, so that nobody
+			// else would close the created dispatcher
+			if (closed) {
+				if (dispatcher.compareAndSet(created, null)) {
+					created.close();
+				}
+				return Optional.empty();
+			}
+			created.start();
+			return Optional.of(created);
+		}
+		return Optional.ofNullable(dispatcher.get());
+	}
+
+	/**
+	 * Returns the sender thread without starting it.
+	 *
+	 * @return the sender thread or empty if none is running
+	 */
+	public Optional<AsyncDispatcher> getCurrentDispatcher() {
+		return Optional.ofNullable(dispatcher.get());
+	}
+
+	/**
+	 * Stops the sender thread after draining its queue, waiting at most until
+	 * {@code deadline}. No sender thread is started afterwards.
+	 *
+	 * @param deadline the deadline in terms of {@link System#nanoTime()}
+	 */
+	public void close(final long deadline) {
+		closed = true;
+		closeDispatcher(deadline);
+	}
+
+	/**
+	 * Stops the sender thread after draining its queue. A new sender thread is
+	 * started on the next event if async mode is still enabled.
+	 */
+	private void closeDispatcher() {
+		closeDispatcher(System.nanoTime() + shutdownTimeout.toNanos());
+	}
+
+	/**
+	 * Stops the sender thread after draining its queue, waiting at most until
+	 * {@code deadline}.
+	 *
+	 * @param deadline the deadline in terms of {@link System#nanoTime()}
+	 */
+	private void closeDispatcher(final long deadline) {
+		Optional.ofNullable(dispatcher.getAndSet(null)).ifPresent(current -> current.close(deadline));
+	}
+
+	/**
+	 * Selects the lane of {@code event} if {@link #priorityLanes} is enabled.
+	 * Events of priority loggers take the highest lane, others the lane of their
+	 * syslog severity.
+	 *
+	 * @param event the event to hand over to the sender thread
+	 * @return the lane, {@code 0} being the highest priority
+	 */
+	private int getLane(final LoggingEvent event) {
+		final String loggerName = event.getLoggerName();
+		if (loggerName != null) {
+			for (final String priorityLogger : priorityLoggers) {
+				if (loggerName.startsWith(priorityLogger)) {
+					return 0;
+				}
+			}
+		}
+		return event.getLevel().getSyslogEquivalent();
+	}
+
+	/**
+	 * Captures the thread-bound state of {@code event}, so that it can be formatted
+	 * by the sender thread later on.
+	 *
+	 * @param event the event to hand over to the sender thread
+	 * @return {@code event}
+	 */
+	public LoggingEvent prepare(final LoggingEvent event) {
+		event.getNDC();
+		event.getThreadName();
+		event.getMDCCopy();
+		event.getRenderedMessage();
+		event.getThrowableStrRep();
+		if (locationInfo) {
+			event.getLocationInformation();
+		}
+		return event;
+	}
+
+	/**
+	 * Returns the value of the <b>Async</b> option.
+	 *
+	 * @return {@code true} if events are sent by a sender thread, else
+	 *         {@code false}
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * If the <b>Async</b> option is set to true, logging threads hand over events
+	 * to a bounded ring buffer, which is drained by a dedicated sender thread. It
+	 * is <em>false</em> by default.
+	 *
+	 * @param enabled {@code true} to send events by a sender thread, {@code false}
+	 *                to send them by the logging thread
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the number of events the ring buffer of the sender thread can hold.
+	 *
+	 * @return the ring buffer capacity
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Sets the number of events the ring buffer of the sender thread can hold.
+	 *
+	 * @param bufferSize the ring buffer capacity
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void setBufferSize(final int bufferSize) {
+		if (bufferSize > 0) {
+			this.bufferSize = bufferSize;
+		} else {
+			this.bufferSize = DEFAULT_BUFFER_SIZE;
+			LogLog.warn(
+					String.format("%s is an invalid buffer size. Defaulting to %s.", bufferSize, DEFAULT_BUFFER_SIZE));
+		}
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the policy applied if the ring buffer is full.
+	 *
+	 * @return the policy
+	 */
+	public AsyncFullPolicy getFullPolicy() {
+		return fullPolicy;
+	}
+
+	/**
+	 * Sets the policy applied if the ring buffer is full. Supported values are
+	 * BLOCK, DROP_NEWEST and DROP_BELOW_LEVEL. Case is unimportant.
+	 *
+	 * @param fullPolicy the policy name
+	 * @throws IllegalArgumentException if {@code fullPolicy} is unknown
+	 */
+	public void setFullPolicy(final String fullPolicy) {
+		try {
+			this.fullPolicy = fullPolicy == null ? AsyncFullPolicy.BLOCK : AsyncFullPolicy.of(fullPolicy);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid async full policy: %s", fullPolicy), e);
+		}
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the level below which events are dropped if the ring buffer is full
+	 * and the policy is DROP_BELOW_LEVEL.
+	 *
+	 * @return the drop threshold
+	 */
+	public Level getDropThreshold() {
+		return dropThreshold;
+	}
+
+	/**
+	 * Sets the level below which events are dropped if the ring buffer is full and
+	 * the policy is DROP_BELOW_LEVEL. More severe events wait for a free slot.
+	 *
+	 * @param dropThreshold the drop threshold
+	 */
+	public void setDropThreshold(final Level dropThreshold) {
+		this.dropThreshold = dropThreshold == null ? Level.WARN : dropThreshold;
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns how long closing the appender waits for the sender thread to drain
+	 * the ring buffer and for events being sent by logging threads.
+	 *
+	 * @return the shutdown timeout
+	 */
+	public Duration getShutdownTimeout() {
+		return shutdownTimeout;
+	}
+
+	/**
+	 * Sets how long closing the appender waits in total for the sender thread to
+	 * drain the ring buffer and, afterwards, for events being sent by logging
+	 * threads. Events left after the timeout are discarded.
+	 *
+	 * @param shutdownTimeout the shutdown timeout
+	 */
+	public void setShutdownTimeout(final Duration shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout == null ? Duration.ZERO : shutdownTimeout;
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the value of the <b>AsyncLocationInfo</b> option.
+	 *
+	 * @return {@code true} if location information is captured before handing over
+	 *         events to the sender thread, else {@code false}
+	 */
+	public boolean isLocationInfo() {
+		return locationInfo;
+	}
+
+	/**
+	 * If the <b>AsyncLocationInfo</b> option is set to true, location information
+	 * is captured by the logging thread before handing over events to the sender
+	 * thread. This is required for layouts printing the caller location. It is
+	 * <em>false</em> by default.
+	 *
+	 * @param locationInfo {@code true} to capture location information
+	 */
+	public void setLocationInfo(final boolean locationInfo) {
+		this.locationInfo = locationInfo;
+	}
+
+	/**
+	 * Returns the value of the <b>AsyncVirtualThread</b> option.
+	 *
+	 * @return {@code true} if the sender thread shall be a virtual thread, else
+	 *         {@code false}
+	 */
+	public boolean isVirtualThread() {
+		return virtualThread;
+	}
+
+	/**
+	 * If the <b>AsyncVirtualThread</b> option is set to true, the sender thread is
+	 * started as virtual thread on Java 21 and later. Older JVMs fall back to a
+	 * platform thread. Writers do not hold monitors while blocked in I/O, so a
+	 * stalled syslog host does not pin carrier threads. It is <em>false</em> by
+	 * default.
+	 *
+	 * @param virtualThread {@code true} to prefer a virtual sender thread
+	 */
+	public void setVirtualThread(final boolean virtualThread) {
+		this.virtualThread = virtualThread;
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the value of the <b>AsyncPriorityLanes</b> option.
+	 *
+	 * @return {@code true} if the sender thread sends more severe events first,
+	 *         else {@code false}
+	 */
+	public boolean isPriorityLanes() {
+		return priorityLanes;
+	}
+
+	/**
+	 * If the <b>AsyncPriorityLanes</b> option is set to true, the sender thread
+	 * keeps one lane per syslog severity, which share the <b>AsyncBufferSize</b>
+	 * slots, and drains more severe lanes first. If all slots are taken, the oldest
+	 * event of the least severe lane is dropped to make room for a more severe
+	 * one, so that a flood of debug events is shed first while errors keep being
+	 * accepted. The <b>AsyncFullPolicy</b> applies only if there is no less severe
+	 * event. Events of different severities may be sent out of order. It is
+	 * <em>false</em> by default.
+	 *
+	 * @param priorityLanes {@code true} to send more severe events first
+	 */
+	public void setPriorityLanes(final boolean priorityLanes) {
+		this.priorityLanes = priorityLanes;
+		closeDispatcher();
+	}
+
+	/**
+	 * Returns the value of the <b>AsyncPriorityLoggers</b> option.
+	 *
+	 * @return the comma separated logger names
+	 */
+	public String getPriorityLoggers() {
+		return String.join(String.valueOf(LOGGER_SEPARATOR), priorityLoggers);
+	}
+
+	/**
+	 * The <b>AsyncPriorityLoggers</b> option takes a comma separated list of logger
+	 * names. If <b>AsyncPriorityLanes</b> is enabled, events of loggers starting
+	 * with one of these names are sent before all other events, independent of
+	 * their severity. It is empty by default.
+	 *
+	 * @param priorityLoggers the comma separated logger names
+	 */
+	public void setPriorityLoggers(final String priorityLoggers) {
+		this.priorityLoggers = priorityLoggers == null
+				? new String[0]
+				: Arrays.stream(priorityLoggers.split(String.valueOf(LOGGER_SEPARATOR)))
+						.map(String::trim)
+						.filter(loggerName -> !loggerName.isEmpty())
+						.toArray(String[]::new);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("AsyncOptions [enabled=") //
+				.append(enabled)
+				.append(", bufferSize=")
+				.append(bufferSize)
+				.append(", fullPolicy=")
+				.append(fullPolicy)
+				.append(", dropThreshold=")
+				.append(dropThreshold)
+				.append(", shutdownTimeout=")
+				.append(shutdownTimeout)
+				.append(", locationInfo=")
+				.append(locationInfo)
+				.append(", virtualThread=")
+				.append(virtualThread)
+				.append(", priorityLanes=")
+				.append(priorityLanes)
+				.append(", priorityLoggers=")
+				.append(getPriorityLoggers())
+				.append(']')
+				.toString();
+	}
+}
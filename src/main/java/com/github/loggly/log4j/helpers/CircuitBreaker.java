@@ -0,0 +1,181 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Circuit breaker of a connection. After a failure the circuit opens, so that
+ * callers fail fast instead of waiting for a connect timeout each. A background
+ * thread probes the connection using exponential backoff and closes the circuit
+ * as soon as a probe succeeded.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+final class CircuitBreaker implements Closeable {
+	private final String name;
+
+	private final ReconnectBackoff backoff;
+
+	private final IORunnable probe;
+
+	private final AtomicBoolean open = new AtomicBoolean(false);
+
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * Delay before the next probe without jitter, guarded by {@link #lock}
+	 */
+	private long delayNanos = 0;
+
+	/**
+	 * Thread running probes, guarded by {@link #lock} and created lazily
+	 */
+	private Optional<ScheduledExecutorService> scheduler = Optional.empty();
+
+	private final LongAdder reconnects = new LongAdder();
+
+	/**
+	 * Set when probing has been stopped for good, written while holding
+	 * {@link #lock}
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a closed circuit breaker.
+	 *
+	 * @param name    the name of the probe thread
+	 * @param backoff the backoff between probes
+	 * @param probe   tries to restore the connection, throwing an
+	 *                {@link IOException} on failure
+	 */
+	CircuitBreaker(final String name, final ReconnectBackoff backoff, final IORunnable probe) {
+		this.name = name;
+		this.backoff = backoff;
+		this.probe = probe;
+	}
+
+	/**
+	 * Returns whether the circuit is open, so that callers shall fail fast.
+	 *
+	 * @return {@code true} if the connection is known to be broken
+	 */
+	public boolean isOpen() {
+		return open.get();
+	}
+
+	/**
+	 * Returns whether probing has been stopped by {@link #close()}. Probes check
+	 * this while holding the lock of their writer before installing a new
+	 * connection, so that connections created concurrently to closing are not
+	 * leaked.
+	 *
+	 * @return {@code true} if this circuit breaker has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the number of successful probes.
+	 *
+	 * @return the number of reconnects
+	 */
+	public long getReconnects() {
+		return reconnects.sum();
+	}
+
+	/**
+	 * Opens the circuit and starts probing the connection in the background unless
+	 * the circuit is open already or this circuit breaker has been closed. After
+	 * closing, the circuit stays closed, so that callers connect on their own.
+	 */
+	public void onFailure() {
+		if (open.get()) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!closed && open.compareAndSet(false, true)) {
+				delayNanos = backoff.getInitialDelayNanos();
+				schedule();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Schedules the next probe, guarded by {@link #lock}.
+	 */
+	private void schedule() {
+		if (closed) {
+			return;
+		}
+		if (!scheduler.isPresent()) {
+			scheduler = Optional.of(Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		scheduler.get().schedule(this::runProbe, ReconnectBackoff.jitter(delayNanos), TimeUnit.NANOSECONDS);
+	}
+
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void runProbe() {
+		try {
+			probe.run();
+			reconnects.increment();
+			open.set(false);
+			LogLog.debug(String.format("Probe \"%s\" restored the connection.", name));
+		} catch (@SuppressWarnings("unused") final IOException e) {
+			scheduleNext();
+		} catch (final RuntimeException e) {
+			// keep probing, as the circuit would stay open forever otherwise
+			LogLog.error(String.format("Probe \"%s\" failed unexpectedly.", name), e);
+			scheduleNext();
+		}
+	}
+
+	/**
+	 * Schedules the next probe after a failed one using the next backoff delay.
+	 */
+	private void scheduleNext() {
+		lock.lock();
+		try {
+			delayNanos = backoff.next(delayNanos);
+			schedule();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops probing for good and closes the circuit, so that the next caller
+	 * connects on its own.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			open.set(false);
+			scheduler.ifPresent(ScheduledExecutorService::shutdownNow);
+			scheduler = Optional.empty();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Suppresses repeated messages inside a time window, like the repeated message
+ * reduction of rsyslog. The first occurrence of a message opens a window, in
+ * which further occurrences are counted instead of being sent. Once the window
+ * expires, a summary {@code message repeated N times: [message]} is reported.
+ *
+ * <p>
+ * Messages are keyed by a 64 bit hash of their text. The number of windows is
+ * bounded, evicting the oldest window first, and only the beginning of each
+ * message is kept for its summary. Expired windows are reported while filtering
+ * later messages or when draining.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class DuplicateFilter {
+	/**
+	 * Max number of characters of a message kept for its summary
+	 */
+	private static final int MAX_SUMMARY_LENGTH = 256;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long windowMillis;
+
+	private final int maxWindows;
+
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * Open windows by hash of their message, ordered by their start
+	 */
+	private final Map<Long, Window> windows = new LinkedHashMap<>();
+
+	/**
+	 * Creates a filter without open windows.
+	 *
+	 * @param windowMillis the duration of a window in milliseconds
+	 * @param maxWindows   the max number of open windows
+	 */
+	public DuplicateFilter(final long windowMillis, final int maxWindows) {
+		if (windowMillis < 1 || maxWindows < 1) {
+			throw new IllegalArgumentException(String
+					.format(Locale.ROOT, "Invalid duplicate filter: %d ms window, %d windows", windowMillis, maxWindows));
+		}
+		this.windowMillis = windowMillis;
+		this.maxWindows = maxWindows;
+	}
+
+	/**
+	 * Returns the 64 bit FNV-1a hash of {@code message}.
+	 *
+	 * @param message the message
+	 * @return the hash
+	 */
+	private static long hash(final CharSequence message) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int index = 0; index < message.length(); index += 1) {
+			hash ^= message.charAt(index);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Adds the summary of {@code window} to {@code summaries} if it suppressed any
+	 * message.
+	 *
+	 * @param summaries the summaries, possibly immutable if empty
+	 * @param window    the closed window
+	 * @return the summaries
+	 */
+	private static List<Repeated> addSummary(final List<Repeated> summaries, final Window window) {
+		if (window.suppressed == 0) {
+			return summaries;
+		}
+		final List<Repeated> mutable = summaries.isEmpty() ? new ArrayList<>() : summaries;
+		mutable.add(new Repeated(window.severity,
+				String.format(Locale.ROOT, "message repeated %d times: [%s]", window.suppressed, window.message)));
+		return mutable;
+	}
+
+	/**
+	 * Decides if {@code message} shall be sent. Summaries of windows, which expired
+	 * or were evicted meanwhile, are passed to {@code summaries} after releasing
+	 * the lock of this filter.
+	 *
+	 * @param message   the formatted message
+	 * @param severity  the syslog severity of {@code message}
+	 * @param timeStamp number of milliseconds after the standard base time
+	 * @param summaries consumer of summaries to send
+	 * @return {@code true} if {@code message} shall be sent, {@code false} if it is
+	 *         suppressed
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public boolean accept(final CharSequence message,
+			final int severity,
+			final long timeStamp,
+			final Consumer<Repeated> summaries) {
+		final Long key = hash(message);
+		List<Repeated> closed = Collections.emptyList();
+		final boolean accepted;
+		try {
+			lock.lock();
+			closed = expire(closed, timeStamp);
+
+			final Window window = windows.get(key);
+			accepted = window == null;
+			if (accepted) {
+				windows.put(key, new Window(timeStamp, severity, message));
+				if (windows.size() > maxWindows) {
+					final Iterator<Window> eldest = windows.values().iterator();
+					closed = addSummary(closed, eldest.next());
+					eldest.remove();
+				}
+			} else {
+				window.suppressed += 1;
+			}
+		} finally {
+			lock.unlock();
+		}
+		closed.forEach(summaries);
+		return accepted;
+	}
+
+	/**
+	 * Closes the windows expired at {@code timeStamp}.
+	 *
+	 * @param summaries the summaries, possibly immutable if empty
+	 * @param timeStamp number of milliseconds after the standard base time
+	 * @return the summaries including those of the expired windows
+	 */
+	private List<Repeated> expire(final List<Repeated> summaries, final long timeStamp) {
+		List<Repeated> closed = summaries;
+		final Iterator<Window> iterator = windows.values().iterator();
+		boolean expired = true;
+		while (expired && iterator.hasNext()) {
+			final Window window = iterator.next();
+			expired = timeStamp - window.start >= windowMillis;
+			if (expired) {
+				closed = addSummary(closed, window);
+				iterator.remove();
+			}
+		}
+		return closed;
+	}
+
+	/**
+	 * Closes all windows and passes their summaries to {@code summaries}.
+	 *
+	 * @param summaries consumer of summaries to send
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void drain(final Consumer<Repeated> summaries) {
+		List<Repeated> closed = Collections.emptyList();
+		try {
+			lock.lock();
+			for (final Window window : windows.values()) {
+				closed = addSummary(closed, window);
+			}
+			windows.clear();
+		} finally {
+			lock.unlock();
+		}
+		closed.forEach(summaries);
+	}
+
+	/**
+	 * Summary of a message, which has been suppressed
+	 */
+	public static final class Repeated {
+		private final int severity;
+
+		private final String text;
+
+		Repeated(final int severity, final String text) {
+			this.severity = severity;
+			this.text = text;
+		}
+
+		/**
+		 * Returns the syslog severity of the suppressed message.
+		 *
+		 * @return the syslog severity
+		 */
+		public int getSeverity() {
+			return severity;
+		}
+
+		/**
+		 * Returns the text of the summary.
+		 *
+		 * @return the summary text
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * Returns the text of the summary.
+		 *
+		 * @return the summary text
+		 */
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+	/**
+	 * Window of a message, mutated while holding the lock of its filter
+	 */
+	private static final class Window {
+		private final long start;
+
+		private final int severity;
+
+		/**
+		 * The beginning of the message
+		 */
+		private final String message;
+
+		private int suppressed = 0;
+
+		Window(final long start, final int severity, final CharSequence message) {
+			this.start = start;
+			this.severity = severity;
+			this.message = (message.length() > MAX_SUMMARY_LENGTH ? message.subSequence(0, MAX_SUMMARY_LENGTH) : message)
+					.toString();
+		}
+	}
+}
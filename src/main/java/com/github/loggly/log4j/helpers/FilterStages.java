@@ -0,0 +1,348 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Optional;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Sampling, rate limiting and duplicate suppression stages of
+ * {@link com.github.loggly.log4j.SyslogAppender64k} together with their
+ * options. Stages are recreated whenever one of their options changes.
+ *
+ * <p>
+ * Sampling and rate limiting apply before an event is formatted, see
+ * {@link #accept(LoggingEvent, SyslogMetrics)}. Duplicate suppression applies
+ * to formatted messages, see {@link #getDuplicateFilter()}.
+ */
+public final class FilterStages {
+	private static final int DEFAULT_DUPLICATE_MAX_MESSAGES = 1000;
+
+	/**
+	 * Number of events per second and bucket or zero to disable rate limiting
+	 */
+	private int rateLimit = 0;
+
+	/**
+	 * Number of events accepted at once per bucket or zero to accept the events of
+	 * one second
+	 */
+	private int rateLimitBurst = 0;
+
+	private RateLimitScope rateLimitScope = RateLimitScope.APPENDER;
+
+	/**
+	 * Token buckets, present if {@link #rateLimit} is greater than zero
+	 */
+	private volatile Optional<RateLimiter> rateLimiter = Optional.empty();
+
+	/**
+	 * Time window in milliseconds of suppressing repeated messages or zero to
+	 * disable suppression
+	 */
+	private long duplicateWindowMillis = 0;
+
+	/**
+	 * Max number of distinct messages tracked for suppression
+	 */
+	private int duplicateMaxMessages = DEFAULT_DUPLICATE_MAX_MESSAGES;
+
+	/**
+	 * Repeated message windows, present if {@link #duplicateWindowMillis} is
+	 * greater than zero
+	 */
+	private volatile Optional<DuplicateFilter> duplicateFilter = Optional.empty();
+
+	/**
+	 * Comma separated sampling ratios per level or empty to disable sampling
+	 */
+	private String samplingRatios = "";
+
+	/**
+	 * Events at or above this level are never sampled out
+	 */
+	private Level samplingKeepLevel = Level.WARN;
+
+	/**
+	 * MDC key to sample by, e.g. a trace id, or empty to sample randomly
+	 */
+	private Optional<String> samplingKey = Optional.empty();
+
+	/**
+	 * Sampling stage, present if {@link #samplingRatios} is not empty
+	 */
+	private volatile Optional<Sampler> sampler = Optional.empty();
+
+	public FilterStages() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Applies sampling and rate limiting to {@code event}, counting rejected
+	 * events.
+	 *
+	 * @param event   the event to filter
+	 * @param metrics the metrics to count rejected events at
+	 * @return {@code true} if {@code event} shall be sent
+	 */
+	public boolean accept(final LoggingEvent event, final SyslogMetrics metrics) {
+		final Optional<Sampler> eventSampler = sampler;
+		if (eventSampler.isPresent() && !eventSampler.get().accept(event)) {
+			metrics.onSampledOut(event.getLevel());
+			return false;
+		}
+		final Optional<RateLimiter> limiter = rateLimiter;
+		if (limiter.isPresent() && !limiter.get().tryAcquire(event, System.nanoTime())) {
+			metrics.onRateLimited();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the repeated message windows.
+	 *
+	 * @return the duplicate filter or empty if suppression is disabled
+	 */
+	public Optional<DuplicateFilter> getDuplicateFilter() {
+		return duplicateFilter;
+	}
+
+	/**
+	 * Returns the value of the <b>RateLimit</b> option.
+	 *
+	 * @return the number of events per second and bucket or zero if rate limiting
+	 *         is disabled
+	 */
+	public int getRateLimit() {
+		return rateLimit;
+	}
+
+	/**
+	 * The <b>RateLimit</b> option sets the number of events per second sent by
+	 * the appender, applied per bucket of <b>RateLimitScope</b>. Events exceeding
+	 * the limit are dropped before being formatted. The default value is zero,
+	 * which disables rate limiting.
+	 *
+	 * @param rateLimit the number of events per second or zero to disable rate
+	 *                  limiting
+	 */
+	public void setRateLimit(final int rateLimit) {
+		this.rateLimit = Math.max(0, rateLimit);
+		updateRateLimiter();
+	}
+
+	/**
+	 * Returns the value of the <b>RateLimitBurst</b> option.
+	 *
+	 * @return the number of events accepted at once per bucket or zero if equal to
+	 *         <b>RateLimit</b>
+	 */
+	public int getRateLimitBurst() {
+		return rateLimitBurst;
+	}
+
+	/**
+	 * The <b>RateLimitBurst</b> option sets the number of events accepted at once
+	 * per bucket before <b>RateLimit</b> applies. The default value is zero, which
+	 * accepts the events of one second.
+	 *
+	 * @param rateLimitBurst the number of events accepted at once or zero
+	 */
+	public void setRateLimitBurst(final int rateLimitBurst) {
+		this.rateLimitBurst = Math.max(0, rateLimitBurst);
+		updateRateLimiter();
+	}
+
+	/**
+	 * Returns the scope of rate limiting buckets.
+	 *
+	 * @return the scope
+	 */
+	public RateLimitScope getRateLimitScope() {
+		return rateLimitScope;
+	}
+
+	/**
+	 * Sets which events share a rate limiting bucket. Supported values are APPENDER
+	 * (default), LOGGER and LEVEL. Case is unimportant.
+	 *
+	 * @param rateLimitScope the scope name
+	 * @throws IllegalArgumentException if {@code rateLimitScope} is unknown
+	 */
+	public void setRateLimitScope(final String rateLimitScope) {
+		try {
+			this.rateLimitScope = rateLimitScope == null ? RateLimitScope.APPENDER : RateLimitScope.of(rateLimitScope);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid rate limit scope: %s", rateLimitScope), e);
+		}
+		updateRateLimiter();
+	}
+
+	/**
+	 * Recreates the token buckets to apply changed rate limiting options.
+	 */
+	private void updateRateLimiter() {
+		rateLimiter = rateLimit > 0
+				? Optional.of(new RateLimiter(rateLimit, rateLimitBurst > 0 ? rateLimitBurst : rateLimit, rateLimitScope))
+				: Optional.empty();
+	}
+
+	/**
+	 * Returns the value of the <b>DuplicateWindowMillis</b> option.
+	 *
+	 * @return the time window in milliseconds of suppressing repeated messages or
+	 *         zero if suppression is disabled
+	 */
+	public long getDuplicateWindowMillis() {
+		return duplicateWindowMillis;
+	}
+
+	/**
+	 * The <b>DuplicateWindowMillis</b> option suppresses messages equal to a
+	 * message sent within the given number of milliseconds. After the window
+	 * expired, a summary {@code message repeated N times: [message]} is sent
+	 * together with the next event or when the appender is closed. The default
+	 * value is zero, which disables suppression.
+	 *
+	 * @param duplicateWindowMillis the time window in milliseconds or zero to
+	 *                              disable suppression
+	 */
+	public void setDuplicateWindowMillis(final long duplicateWindowMillis) {
+		this.duplicateWindowMillis = Math.max(0, duplicateWindowMillis);
+		updateDuplicateFilter();
+	}
+
+	/**
+	 * Returns the value of the <b>DuplicateMaxMessages</b> option.
+	 *
+	 * @return the max number of distinct messages tracked for suppression
+	 */
+	public int getDuplicateMaxMessages() {
+		return duplicateMaxMessages;
+	}
+
+	/**
+	 * The <b>DuplicateMaxMessages</b> option bounds the number of distinct messages
+	 * tracked for suppression. If exceeded, the oldest message is evicted and its
+	 * summary is sent early. The default value is 1000.
+	 *
+	 * @param duplicateMaxMessages the max number of distinct messages
+	 */
+	public void setDuplicateMaxMessages(final int duplicateMaxMessages) {
+		this.duplicateMaxMessages = Math.max(1, duplicateMaxMessages);
+		updateDuplicateFilter();
+	}
+
+	/**
+	 * Recreates the repeated message windows to apply changed suppression options.
+	 */
+	private void updateDuplicateFilter() {
+		duplicateFilter = duplicateWindowMillis > 0
+				? Optional.of(new DuplicateFilter(duplicateWindowMillis, duplicateMaxMessages))
+				: Optional.empty();
+	}
+
+	/**
+	 * Returns the value of the <b>SamplingRatios</b> option.
+	 *
+	 * @return the comma separated sampling ratios per level or an empty string if
+	 *         sampling is disabled
+	 */
+	public String getSamplingRatios() {
+		return samplingRatios;
+	}
+
+	/**
+	 * The <b>SamplingRatios</b> option sets the ratio of events kept per level as
+	 * comma separated list, e.g. {@code DEBUG=0.01,INFO=0.1}. Events sampled out
+	 * are dropped before being formatted and counted as sampled out, so that
+	 * dashboards can scale volumes back up. Levels without ratio and levels at or
+	 * above <b>SamplingKeepLevel</b> are not sampled. The default value is empty,
+	 * which disables sampling.
+	 *
+	 * @param samplingRatios the comma separated sampling ratios per level
+	 * @throws IllegalArgumentException if {@code samplingRatios} cannot be parsed
+	 */
+	public void setSamplingRatios(final String samplingRatios) {
+		updateSampler(samplingRatios == null ? "" : samplingRatios.trim());
+	}
+
+	/**
+	 * Returns the level at and above which events are never sampled out.
+	 *
+	 * @return the sampling keep level
+	 */
+	public Level getSamplingKeepLevel() {
+		return samplingKeepLevel;
+	}
+
+	/**
+	 * Sets the level at and above which events are never sampled out, even if
+	 * <b>SamplingRatios</b> contains a ratio for it. It is <em>WARN</em> by
+	 * default.
+	 *
+	 * @param samplingKeepLevel the sampling keep level
+	 */
+	public void setSamplingKeepLevel(final Level samplingKeepLevel) {
+		this.samplingKeepLevel = samplingKeepLevel == null ? Level.WARN : samplingKeepLevel;
+		updateSampler(samplingRatios);
+	}
+
+	/**
+	 * Returns the value of the <b>SamplingKey</b> option.
+	 *
+	 * @return the MDC key to sample by or an empty string if events are sampled
+	 *         randomly
+	 */
+	public String getSamplingKey() {
+		return samplingKey.orElse("");
+	}
+
+	/**
+	 * The <b>SamplingKey</b> option sets the MDC key to sample by, e.g. a trace id.
+	 * Events sharing the same MDC value are kept or dropped together, so that whole
+	 * requests are kept. Events without MDC value are sampled randomly. The
+	 * default value is empty, which samples all events randomly.
+	 *
+	 * @param samplingKey the MDC key to sample by
+	 */
+	public void setSamplingKey(final String samplingKey) {
+		this.samplingKey = Optional.ofNullable(samplingKey).map(String::trim).filter(key -> !key.isEmpty());
+		updateSampler(samplingRatios);
+	}
+
+	/**
+	 * Recreates the sampling stage to apply changed sampling options. The ratios
+	 * are stored only if they could be parsed.
+	 *
+	 * @param ratios the comma separated sampling ratios per level
+	 */
+	private void updateSampler(final String ratios) {
+		sampler = ratios.isEmpty() ? Optional.empty() : Optional.of(new Sampler(ratios, samplingKeepLevel, samplingKey));
+		samplingRatios = ratios;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("FilterStages [rateLimit=") //
+				.append(rateLimit)
+				.append(", rateLimitBurst=")
+				.append(rateLimitBurst)
+				.append(", rateLimitScope=")
+				.append(rateLimitScope)
+				.append(", duplicateWindowMillis=")
+				.append(duplicateWindowMillis)
+				.append(", duplicateMaxMessages=")
+				.append(duplicateMaxMessages)
+				.append(", samplingRatios=")
+				.append(samplingRatios)
+				.append(", samplingKeepLevel=")
+				.append(samplingKeepLevel)
+				.append(", samplingKey=")
+				.append(getSamplingKey())
+				.append(']')
+				.toString();
+	}
+}
@@ -0,0 +1,271 @@
+package com.github.loggly.log4j.helpers;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Optional;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Options of the HEADER part of syslog packets, configured by the
+ * <b>Header</b> and <b>Format</b> options of
+ * {@link com.github.loggly.log4j.SyslogAppender64k}, together with the cached
+ * headers created of them.
+ */
+public final class HeaderOptions {
+	/**
+	 * Default SD-ID of MDC and NDC values, using the enterprise number reserved for
+	 * documentation
+	 */
+	private static final String DEFAULT_STRUCTURED_DATA_ID = "mdc@32473";
+
+	/**
+	 * If true, the appender will generate the HEADER (timestamp and host name) part
+	 * of RFC 3164 packets.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Host name used to identify messages of the appender.
+	 */
+	private String localHostname;
+
+	/**
+	 * HEADER part of the current second, created lazily if {@link #enabled} is
+	 * true
+	 */
+	private volatile Optional<SyslogHeaderCache> headerCache = Optional.empty();
+
+	private SyslogFormat format = SyslogFormat.RFC3164;
+
+	private Optional<String> appName = Optional.empty();
+
+	private Optional<String> msgId = Optional.empty();
+
+	private String structuredDataId = DEFAULT_STRUCTURED_DATA_ID;
+
+	/**
+	 * Pre-encoded static fields of RFC 5424 packets, created by
+	 * {@link #prepare(Charset)} or lazily
+	 */
+	private volatile Optional<Rfc5424Header> rfc5424Header = Optional.empty();
+
+	public HeaderOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Gets HEADER portion of packet.
+	 *
+	 * @param charset    the charset of packets
+	 * @param timeStamp  number of milliseconds after the standard base time.
+	 * @param properties the MDC values, used for RFC 5424 only
+	 * @param ndc        the NDC or {@code null}, used for RFC 5424 only
+	 * @return HEADER portion of packet, will be empty if header is false and the
+	 *         format is RFC 3164.
+	 */
+	public SyslogPacketHeader get(final Charset charset,
+			final long timeStamp,
+			final Map<?, ?> properties,
+			final String ndc) {
+		if (format == SyslogFormat.RFC5424) {
+			return getRfc5424Header(charset).get(timeStamp, properties, ndc);
+		}
+		if (!enabled) {
+			return SyslogPacketHeader.EMPTY;
+		}
+		if (!headerCache.isPresent()) {
+			headerCache = Optional.of(new SyslogHeaderCache(getLocalHostname()));
+		}
+		return headerCache.get().get(timeStamp);
+	}
+
+	/**
+	 * Initializes the local host name and the RFC 5424 header, if required by the
+	 * current options.
+	 *
+	 * @param charset the charset of packets
+	 */
+	public void prepare(final Charset charset) {
+		if (enabled) {
+			getLocalHostname();
+		}
+		if (format == SyslogFormat.RFC5424) {
+			getRfc5424Header(charset);
+		}
+	}
+
+	/**
+	 * Discards the RFC 5424 header, so that it is recreated using the current
+	 * options.
+	 */
+	public void reset() {
+		rfc5424Header = Optional.empty();
+	}
+
+	/**
+	 * Get the host name used to identify the appender.
+	 *
+	 * @return local host name
+	 */
+	@SuppressFBWarnings(value = "MDM_INETADDRESS_GETLOCALHOST",
+			justification = "Calling InetAddress.getLocalHost() by intention.")
+	private String getLocalHostname() {
+		if (localHostname == null) {
+			try {
+				localHostname = InetAddress.getLocalHost().getHostName();
+			} catch (@SuppressWarnings("unused") final UnknownHostException ignore) {
+				localHostname = "UNKNOWN_HOST";
+			}
+		}
+		return localHostname;
+	}
+
+	/**
+	 * Returns the RFC 5424 header, creating it if required.
+	 *
+	 * @param charset the charset of packets
+	 * @return the RFC 5424 header
+	 */
+	private Rfc5424Header getRfc5424Header(final Charset charset) {
+		if (!rfc5424Header.isPresent()) {
+			rfc5424Header = Optional.of(new Rfc5424Header(charset,
+					getLocalHostname(),
+					appName.orElse(null),
+					Rfc5424Header.getProcessId(),
+					msgId.orElse(null),
+					structuredDataId));
+		}
+		return rfc5424Header.get();
+	}
+
+	/**
+	 * Returns whether the HEADER part (that is, timestamp and host name) of RFC
+	 * 3164 packets is produced.
+	 *
+	 * @return {@code true} if the syslog header part is produced, else
+	 *         {@code false}
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * If true, the appender will generate the HEADER part (that is, timestamp and
+	 * host name) of RFC 3164 packets. Default value is false for compatibility
+	 * with existing behavior, however should be true unless there is a specific
+	 * justification.
+	 *
+	 * @param enabled {@code true} to produce the syslog header part, {@code false}
+	 *                to exclude it.
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the value of the <b>Format</b> option.
+	 *
+	 * @return the syslog format
+	 */
+	public SyslogFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * The <b>Format</b> option sets the syslog format, either {@code RFC3164}
+	 * (default) or {@code RFC5424}. RFC 5424 packets always contain the HEADER
+	 * part, including the options <b>AppName</b> and <b>MsgId</b>, and
+	 * STRUCTURED-DATA taken from MDC and NDC. STRUCTURED-DATA, which would take
+	 * more than half of the space left by <b>MaxMessageLength</b>, is replaced by
+	 * {@code -} and counted as truncated message.
+	 *
+	 * @param format the syslog format name
+	 * @throws IllegalArgumentException if {@code format} is unknown
+	 */
+	public void setFormat(final String format) {
+		try {
+			this.format = format == null ? SyslogFormat.RFC3164 : SyslogFormat.of(format);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid syslog format: %s", format), e);
+		}
+	}
+
+	/**
+	 * Returns the value of the <b>AppName</b> option.
+	 *
+	 * @return the APP-NAME or {@code null}
+	 */
+	public String getAppName() {
+		return appName.orElse(null);
+	}
+
+	/**
+	 * The <b>AppName</b> option sets the APP-NAME of RFC 5424 packets.
+	 *
+	 * @param appName the APP-NAME or {@code null}
+	 */
+	public void setAppName(final String appName) {
+		this.appName = Optional.ofNullable(appName);
+	}
+
+	/**
+	 * Returns the value of the <b>MsgId</b> option.
+	 *
+	 * @return the MSGID or {@code null}
+	 */
+	public String getMsgId() {
+		return msgId.orElse(null);
+	}
+
+	/**
+	 * The <b>MsgId</b> option sets the MSGID of RFC 5424 packets.
+	 *
+	 * @param msgId the MSGID or {@code null}
+	 */
+	public void setMsgId(final String msgId) {
+		this.msgId = Optional.ofNullable(msgId);
+	}
+
+	/**
+	 * Returns the value of the <b>StructuredDataId</b> option.
+	 *
+	 * @return the SD-ID of MDC and NDC values
+	 */
+	public String getStructuredDataId() {
+		return structuredDataId;
+	}
+
+	/**
+	 * The <b>StructuredDataId</b> option sets the SD-ID of the STRUCTURED-DATA
+	 * element containing MDC and NDC values of RFC 5424 packets. Custom SD-IDs must
+	 * contain an at-sign followed by a private enterprise number, e.g.
+	 * {@code mdc@32473} (default).
+	 *
+	 * @param structuredDataId the SD-ID
+	 */
+	public void setStructuredDataId(final String structuredDataId) {
+		this.structuredDataId = structuredDataId == null ? DEFAULT_STRUCTURED_DATA_ID : structuredDataId;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("HeaderOptions [enabled=") //
+				.append(enabled)
+				.append(", localHostname=")
+				.append(localHostname)
+				.append(", format=")
+				.append(format)
+				.append(", appName=")
+				.append(appName)
+				.append(", msgId=")
+				.append(msgId)
+				.append(", structuredDataId=")
+				.append(structuredDataId)
+				.append(']')
+				.toString();
+	}
+}
@@ -0,0 +1,16 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+
+/**
+ * Runnable throwing {@link IOException}
+ */
+@FunctionalInterface
+interface IORunnable {
+	/**
+	 * Runs this operation.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	void run() throws IOException;
+}
@@ -0,0 +1,49 @@
+package com.github.loggly.log4j.helpers;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Decides which events of an appender share a {@link TokenBucket}.
+ */
+public enum RateLimitScope {
+	/**
+	 * All events of the appender share a single bucket.
+	 */
+	APPENDER,
+
+	/**
+	 * Events share a bucket per logger.
+	 */
+	LOGGER,
+
+	/**
+	 * Events share a bucket per level.
+	 */
+	LEVEL;
+
+	/**
+	 * Returns the scope matching {@code name}. The matching is case-insensitive.
+	 *
+	 * @param name the scope name
+	 * @return the matching scope
+	 * @throws IllegalArgumentException if no scope matches {@code name}
+	 */
+	public static RateLimitScope of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()));
+	}
+
+	/**
+	 * Returns the key of the bucket of {@code event}.
+	 *
+	 * @param event the event to limit
+	 * @return the bucket key
+	 */
+	public String getKey(final LoggingEvent event) {
+		if (this == LOGGER) {
+			return event.getLoggerName();
+		}
+		return this == LEVEL ? event.getLevel().toString() : "";
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Limits the rate of events using a {@link TokenBucket} per key of
+ * {@link RateLimitScope}.
+ *
+ * <p>
+ * Buckets are kept for the lifetime of the limiter. Their number is bounded by
+ * the number of loggers or levels, which are held by log4j anyway.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class RateLimiter {
+	private final int eventsPerSecond;
+
+	private final int burst;
+
+	private final RateLimitScope scope;
+
+	private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a limiter with full buckets.
+	 *
+	 * @param eventsPerSecond the number of events per second and bucket
+	 * @param burst           the number of events accepted at once per bucket
+	 * @param scope           the scope of buckets
+	 * @throws IllegalArgumentException if {@code eventsPerSecond} or {@code burst}
+	 *                                  is less than one
+	 */
+	public RateLimiter(final int eventsPerSecond, final int burst, final RateLimitScope scope) {
+		TokenBucket.checkArguments(eventsPerSecond, burst);
+
+		this.eventsPerSecond = eventsPerSecond;
+		this.burst = burst;
+		this.scope = scope;
+	}
+
+	/**
+	 * Takes a token from the bucket of {@code event}, if available.
+	 *
+	 * @param event    the event to limit
+	 * @param nowNanos the current value of {@link System#nanoTime()}
+	 * @return {@code true} if {@code event} may be sent, {@code false} if it
+	 *         exceeds the rate limit
+	 */
+	public boolean tryAcquire(final LoggingEvent event, final long nowNanos) {
+		final String key = scope.getKey(event);
+		TokenBucket bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(eventsPerSecond, burst, nowNanos));
+		}
+		return bucket.tryAcquire(nowNanos);
+	}
+}
@@ -0,0 +1,71 @@
+package com.github.loggly.log4j.helpers;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Exponential backoff with jitter between reconnect attempts. The delay starts
+ * at the initial delay and doubles per failed attempt up to the max delay. Each
+ * delay is randomized between its half and its full value, so that many clients
+ * do not reconnect in lockstep.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class ReconnectBackoff {
+	private static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+
+	private static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+
+	/**
+	 * Backoff starting at 500 milliseconds up to 30 seconds
+	 */
+	public static final ReconnectBackoff DEFAULT = new ReconnectBackoff(Duration.ofMillis(DEFAULT_INITIAL_DELAY_MILLIS),
+			Duration.ofMillis(DEFAULT_MAX_DELAY_MILLIS));
+
+	private final long initialDelayNanos;
+
+	private final long maxDelayNanos;
+
+	/**
+	 * Creates a backoff.
+	 *
+	 * @param initialDelay the delay before the first reconnect attempt
+	 * @param maxDelay     the max delay between reconnect attempts
+	 */
+	public ReconnectBackoff(final Duration initialDelay, final Duration maxDelay) {
+		initialDelayNanos = Math.max(1, initialDelay.toNanos());
+		maxDelayNanos = Math.max(initialDelayNanos, maxDelay.toNanos());
+	}
+
+	/**
+	 * Returns the delay before the first reconnect attempt without jitter.
+	 *
+	 * @return the initial delay in nanoseconds
+	 */
+	long getInitialDelayNanos() {
+		return initialDelayNanos;
+	}
+
+	/**
+	 * Returns the delay following {@code delayNanos} without jitter.
+	 *
+	 * @param delayNanos the previous delay in nanoseconds
+	 * @return the doubled delay limited to the max delay
+	 */
+	long next(final long delayNanos) {
+		return delayNanos > maxDelayNanos / 2 ? maxDelayNanos : delayNanos * 2;
+	}
+
+	/**
+	 * Randomizes {@code delayNanos} between its half and its full value.
+	 *
+	 * @param delayNanos the delay in nanoseconds
+	 * @return the randomized delay in nanoseconds
+	 */
+	static long jitter(final long delayNanos) {
+		final long half = delayNanos / 2;
+		return half + ThreadLocalRandom.current().nextLong(delayNanos - half + 1);
+	}
+}
@@ -0,0 +1,278 @@
+package com.github.loggly.log4j.helpers;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Creates the HEADER and STRUCTURED-DATA parts of
+ * <a href="https://tools.ietf.org/html/rfc5424">RFC 5424</a> packets, e.g.
+ * {@code 1 2003-10-11T22:14:15.003Z host app 1234 - [mdc@32473 key="value"] }.
+ *
+ * <p>
+ * HOSTNAME, APP-NAME, PROCID and MSGID do not change while logging. Therefore
+ * they are encoded once and the resulting bytes are copied into each packet.
+ * The timestamp is rendered in UTC once per second, while milliseconds are
+ * encoded without creating a String. STRUCTURED-DATA is taken from the MDC and
+ * the NDC of each event.
+ *
+ * <p>
+ * STRUCTURED-DATA, which does not fit into half of the space left by the other
+ * fields, is replaced by {@code -}, so that it does not crowd out the message.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class Rfc5424Header {
+	private static final long MILLIS_PER_SECOND = 1000;
+
+	private static final int MILLIS_DIGITS = 3;
+
+	private static final int MAX_HOSTNAME_LENGTH = 255;
+
+	private static final int MAX_APP_NAME_LENGTH = 48;
+
+	private static final int MAX_PROC_ID_LENGTH = 128;
+
+	/**
+	 * Max length of MSGID, SD-ID and PARAM-NAME
+	 */
+	private static final int MAX_NAME_LENGTH = 32;
+
+	/**
+	 * Value of fields without value
+	 */
+	private static final String NIL = "-";
+
+	/**
+	 * STRUCTURED-DATA without elements including its trailing space
+	 */
+	private static final String NIL_STRUCTURED_DATA = NIL + " ";
+
+	private static final String NDC_PARAM_NAME = "ndc";
+
+	/**
+	 * Format of VERSION and the timestamp up to seconds
+	 */
+	private static final DateTimeFormatter SECOND_FORMAT
+			= DateTimeFormatter.ofPattern("'1 'yyyy-MM-dd'T'HH:mm:ss'.'", Locale.ROOT).withZone(ZoneOffset.UTC);
+
+	/**
+	 * Encoded time zone, HOSTNAME, APP-NAME, PROCID and MSGID
+	 */
+	private final byte[] staticPart;
+
+	private final String structuredDataId;
+
+	/**
+	 * VERSION and timestamp of the most recent second
+	 */
+	private volatile Second second;
+
+	/**
+	 * Creates headers using the given static fields. Missing values are written as
+	 * {@code -}, invalid characters are replaced by underscores and values are
+	 * truncated to their max length.
+	 *
+	 * @param charset          the charset to encode with
+	 * @param hostname         the HOSTNAME
+	 * @param appName          the APP-NAME or {@code null}
+	 * @param procId           the PROCID or {@code null}
+	 * @param msgId            the MSGID or {@code null}
+	 * @param structuredDataId the SD-ID of MDC and NDC values
+	 */
+	public Rfc5424Header(final Charset charset,
+			final String hostname,
+			final String appName,
+			final String procId,
+			final String msgId,
+			final String structuredDataId) {
+		staticPart = String.format("Z %s %s %s %s ",
+				toField(hostname, MAX_HOSTNAME_LENGTH),
+				toField(appName, MAX_APP_NAME_LENGTH),
+				toField(procId, MAX_PROC_ID_LENGTH),
+				toField(msgId, MAX_NAME_LENGTH)).getBytes(charset);
+		this.structuredDataId = toName(structuredDataId);
+		second = new Second(Long.MIN_VALUE, "");
+	}
+
+	/**
+	 * Returns the ID of the current process or {@code null} if not available.
+	 *
+	 * @return the process ID
+	 */
+	public static String getProcessId() {
+		final String name = ManagementFactory.getRuntimeMXBean().getName();
+		final int index = name.indexOf('@');
+		return index > 0 ? name.substring(0, index) : null;
+	}
+
+	/**
+	 * Converts {@code value} to a header field consisting of printable US-ASCII
+	 * characters.
+	 *
+	 * @param value     the value or {@code null}
+	 * @param maxLength the max length
+	 * @return the header field
+	 */
+	private static String toField(final String value, final int maxLength) {
+		if (value == null || value.trim().isEmpty()) {
+			return NIL;
+		}
+		final StringBuilder builder = new StringBuilder(Math.min(value.length(), maxLength));
+		for (int index = 0; index < value.length() && index < maxLength; index += 1) {
+			final char character = value.charAt(index);
+			builder.append(character > ' ' && character < '\u007f' ? character : '_');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Converts {@code name} to a valid SD-ID or PARAM-NAME.
+	 *
+	 * @param name the name
+	 * @return the valid name
+	 */
+	private static String toName(final String name) {
+		return toField(name, MAX_NAME_LENGTH).replace('=', '_').replace(']', '_').replace('"', '_');
+	}
+
+	/**
+	 * Returns the header of an event.
+	 *
+	 * @param timeStamp  number of milliseconds after the standard base time
+	 * @param properties the MDC values
+	 * @param ndc        the NDC or {@code null}
+	 * @return the header
+	 */
+	public SyslogPacketHeader get(final long timeStamp, final Map<?, ?> properties, final String ndc) {
+		return new Event(getSecond(timeStamp),
+				(int) Math.floorMod(timeStamp, MILLIS_PER_SECOND),
+				staticPart,
+				getStructuredData(properties, ndc));
+	}
+
+	/**
+	 * Returns VERSION and timestamp up to seconds, rendered once per second.
+	 *
+	 * @param timeStamp number of milliseconds after the standard base time
+	 * @return VERSION and timestamp
+	 */
+	private String getSecond(final long timeStamp) {
+		final long epochSecond = Math.floorDiv(timeStamp, MILLIS_PER_SECOND);
+		final Second current = second;
+		if (current.epochSecond == epochSecond) {
+			return current.text;
+		}
+
+		final Second rendered = new Second(epochSecond, SECOND_FORMAT.format(Instant.ofEpochSecond(epochSecond)));
+		second = rendered;
+		return rendered.text;
+	}
+
+	/**
+	 * Creates the STRUCTURED-DATA part including its trailing space.
+	 *
+	 * @param properties the MDC values
+	 * @param ndc        the NDC or {@code null}
+	 * @return the STRUCTURED-DATA part
+	 */
+	private String getStructuredData(final Map<?, ?> properties, final String ndc) {
+		if (properties.isEmpty() && ndc == null) {
+			return NIL_STRUCTURED_DATA;
+		}
+
+		final StringBuilder builder = new StringBuilder().append('[').append(structuredDataId);
+		for (final Entry<?, ?> property : properties.entrySet()) {
+			appendParam(builder, toName(String.valueOf(property.getKey())), String.valueOf(property.getValue()));
+		}
+		if (ndc != null) {
+			appendParam(builder, NDC_PARAM_NAME, ndc);
+		}
+		return builder.append("] ").toString();
+	}
+
+	/**
+	 * Appends an SD-PARAM, escaping its value.
+	 *
+	 * @param builder the builder to append to
+	 * @param name    the valid PARAM-NAME
+	 * @param value   the PARAM-VALUE
+	 */
+	private static void appendParam(final StringBuilder builder, final String name, final String value) {
+		builder.append(' ').append(name).append("=\"");
+		for (int index = 0; index < value.length(); index += 1) {
+			final char character = value.charAt(index);
+			if (character == '"' || character == '\\' || character == ']') {
+				builder.append('\\');
+			}
+			builder.append(character);
+		}
+		builder.append('"');
+	}
+
+	/**
+	 * Immutable pair of epoch second and its rendered VERSION and timestamp
+	 */
+	private static final class Second {
+		private final long epochSecond;
+
+		private final String text;
+
+		Second(final long epochSecond, final String text) {
+			this.epochSecond = epochSecond;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Header of a single event
+	 */
+	private static final class Event implements SyslogPacketHeader {
+		private final String second;
+
+		private final int millis;
+
+		private final byte[] staticPart;
+
+		private final String structuredData;
+
+		Event(final String second, final int millis, final byte[] staticPart, final String structuredData) {
+			this.second = second;
+			this.millis = millis;
+			this.staticPart = staticPart;
+			this.structuredData = structuredData;
+		}
+
+		/**
+		 * Encodes this header. STRUCTURED-DATA is replaced by {@code -} if it would
+		 * take more than half of the space left for STRUCTURED-DATA and message.
+		 *
+		 * @param encoder the encoder
+		 * @return {@code true} if the complete header fits into the packet, else
+		 *         {@code false}
+		 */
+		@Override
+		public boolean appendTo(final SyslogPacketEncoder encoder) {
+			if (!encoder.append(second)
+					|| !encoder.appendDigits(millis, MILLIS_DIGITS)
+					|| !encoder.append(staticPart)) {
+				return false;
+			}
+
+			final int length = encoder.length();
+			final int remaining = encoder.remaining();
+			if (encoder.append(structuredData) && encoder.remaining() >= remaining / 2) {
+				return true;
+			}
+			encoder.truncate(length).append(NIL_STRUCTURED_DATA);
+			return false;
+		}
+	}
+}
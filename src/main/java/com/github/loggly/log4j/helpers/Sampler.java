@@ -0,0 +1,168 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Priority;
+import org.apache.log4j.spi.LoggingEvent;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Samples events of high-volume levels before they are formatted. Each
+ * configured level keeps a ratio of its events, while levels at or above the
+ * keep level and levels without ratio keep all of their events.
+ *
+ * <p>
+ * If a sampling key is set and the MDC of an event contains a value for it,
+ * e.g. a trace id, the decision is derived from a hash of that value. Therefore
+ * all events of a request are kept or dropped together, and a request kept at a
+ * lower ratio is kept at all higher ratios. Events without such value are
+ * sampled randomly.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class Sampler {
+	/**
+	 * Number of distinct hash values, hashes being unsigned 32 bit integers
+	 */
+	private static final long HASH_RANGE = 1L << Integer.SIZE;
+
+	/**
+	 * Multipliers of the MurmurHash3 finalizer
+	 */
+	private static final int MIX_FIRST = 0x85ebca6b;
+
+	private static final int MIX_SECOND = 0xc2b2ae35;
+
+	private static final int MIX_SHIFT_WIDE = 16;
+
+	private static final int MIX_SHIFT_NARROW = 13;
+
+	private static final char RATIO_SEPARATOR = ',';
+
+	private static final char LEVEL_SEPARATOR = '=';
+
+	/**
+	 * Levels as of {@link Priority#toInt()} having a ratio
+	 */
+	private final int[] levels;
+
+	/**
+	 * Hashes less than the threshold of a level are kept, in the same order as
+	 * {@link #levels}
+	 */
+	private final long[] thresholds;
+
+	private final Priority keepLevel;
+
+	private final Optional<String> key;
+
+	/**
+	 * Creates a sampler.
+	 *
+	 * @param ratios    comma separated ratios per level between 0 and 1, e.g.
+	 *                  {@code DEBUG=0.01,INFO=0.1}
+	 * @param keepLevel events at or above this level are always kept
+	 * @param key       the MDC key to sample by, e.g. a trace id
+	 * @throws IllegalArgumentException if {@code ratios} cannot be parsed
+	 */
+	public Sampler(final String ratios, final Priority keepLevel, final Optional<String> key) {
+		final String[] parts = ratios.trim().isEmpty() ? new String[0] : ratios.split(String.valueOf(RATIO_SEPARATOR));
+		levels = new int[parts.length];
+		thresholds = new long[parts.length];
+		for (int index = 0; index < parts.length; index += 1) {
+			final int separator = parts[index].indexOf(LEVEL_SEPARATOR);
+			if (separator < 0) {
+				throw new IllegalArgumentException(
+						String.format(Locale.ROOT, "Invalid sampling ratio \"%s\", expected LEVEL=RATIO", parts[index]));
+			}
+			levels[index] = parseLevel(parts[index].substring(0, separator).trim()).toInt();
+			thresholds[index] = (long) (parseRatio(parts[index].substring(separator + 1).trim()) * HASH_RANGE);
+		}
+
+		this.keepLevel = keepLevel;
+		this.key = key;
+	}
+
+	private static Level parseLevel(final String level) {
+		final Level parsed = Level.toLevel(level, null);
+		if (parsed == null) {
+			throw new IllegalArgumentException(String.format(Locale.ROOT, "Invalid sampling level: %s", level));
+		}
+		return parsed;
+	}
+
+	private static double parseRatio(final String ratio) {
+		final double parsed;
+		try {
+			parsed = Double.parseDouble(ratio);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(String.format(Locale.ROOT, "Invalid sampling ratio: %s", ratio), e);
+		}
+		if (!(parsed >= 0 && parsed <= 1)) {
+			throw new IllegalArgumentException(
+					String.format(Locale.ROOT, "Sampling ratio must be between 0 and 1, got %s", ratio));
+		}
+		return parsed;
+	}
+
+	/**
+	 * Mixes the bits of {@code hash} using the finalizer of MurmurHash3, so that
+	 * similar keys, e.g. sequential ids, are spread uniformly.
+	 *
+	 * @param hash the hash to mix
+	 * @return the mixed hash as unsigned value
+	 */
+	private static long mix(final int hash) {
+		int mixed = hash;
+		mixed ^= mixed >>> MIX_SHIFT_WIDE;
+		mixed *= MIX_FIRST;
+		mixed ^= mixed >>> MIX_SHIFT_NARROW;
+		mixed *= MIX_SECOND;
+		mixed ^= mixed >>> MIX_SHIFT_WIDE;
+		return mixed & HASH_RANGE - 1;
+	}
+
+	/**
+	 * Returns the hash threshold of {@code level}.
+	 *
+	 * @param level the level as of {@link Priority#toInt()}
+	 * @return the threshold or {@link #HASH_RANGE} if the level has no ratio
+	 */
+	private long getThreshold(final int level) {
+		for (int index = 0; index < levels.length; index += 1) {
+			if (levels[index] == level) {
+				return thresholds[index];
+			}
+		}
+		return HASH_RANGE;
+	}
+
+	/**
+	 * Decides whether to keep {@code event}.
+	 *
+	 * @param event the event to sample
+	 * @return {@code true} if {@code event} is kept, {@code false} if it is
+	 *         sampled out
+	 */
+	public boolean accept(final LoggingEvent event) {
+		final Level level = event.getLevel();
+		if (level.isGreaterOrEqual(keepLevel)) {
+			return true;
+		}
+		final long threshold = getThreshold(level.toInt());
+		if (threshold >= HASH_RANGE) {
+			return true;
+		}
+		if (threshold <= 0) {
+			return false;
+		}
+
+		final Object value = key.isPresent() ? event.getMDC(key.get()) : null;
+		final long hash = value == null ? ThreadLocalRandom.current().nextInt() & HASH_RANGE - 1 : mix(value.hashCode());
+		return hash < threshold;
+	}
+}
@@ -0,0 +1,27 @@
+package com.github.loggly.log4j.helpers;
+
+/**
+ * Outcome of sending an event, reported instead of swallowing failures
+ */
+public enum SendResult {
+	/**
+	 * All packets of the event have been written.
+	 */
+	SENT,
+
+	/**
+	 * The event has not been written at all, e.g. because no syslog host is set or
+	 * the appender is closing.
+	 */
+	DROPPED,
+
+	/**
+	 * The event has been suppressed as duplicate of a recent message.
+	 */
+	SUPPRESSED,
+
+	/**
+	 * Writing at least one packet of the event failed.
+	 */
+	FAILED;
+}
@@ -0,0 +1,156 @@
+package com.github.loggly.log4j.helpers;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Options of spilling TCP packets to disk, configured by the <b>TcpSpill</b>
+ * options of {@link com.github.loggly.log4j.SyslogAppender64k}. Changed options
+ * apply to writers created afterwards.
+ */
+public final class SpillOptions {
+	private static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+	private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Max length in bytes of a packet
+	 */
+	private static final int MAX_PACKET_LENGTH = 65_507;
+
+	/**
+	 * Min size in bytes of a spill file, which fits the largest packet including
+	 * its length
+	 */
+	private static final int MIN_SEGMENT_SIZE = Integer.BYTES + MAX_PACKET_LENGTH;
+
+	private static final long DEFAULT_RETENTION_MILLIS = Duration.ofDays(7).toMillis();
+
+	/**
+	 * Directory to spill TCP packets to while the syslog host is unavailable or
+	 * empty to disable spilling.
+	 */
+	private Optional<Path> directory = Optional.empty();
+
+	/**
+	 * Max size in bytes of all spill files.
+	 */
+	private long maxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * Size in bytes of a single spill file.
+	 */
+	private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	/**
+	 * Max age in milliseconds of spill files.
+	 */
+	private long retentionMillis = DEFAULT_RETENTION_MILLIS;
+
+	public SpillOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the spill directory.
+	 *
+	 * @return the spill directory or empty if spilling is disabled
+	 */
+	public Optional<Path> getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * The <b>TcpSpillDirectory</b> option sets a directory to spill TCP packets to
+	 * while they cannot be written, e.g. during an outage of the syslog host.
+	 * Packets are stored in memory-mapped files and replayed in order as soon as
+	 * writing succeeds again, even after a restart. Multiple syslog hosts spill to
+	 * a subdirectory each. Spilling is disabled by default.
+	 *
+	 * @param directory the spill directory or {@code null} to disable spilling
+	 */
+	public void setDirectory(final String directory) {
+		this.directory = Optional.ofNullable(directory)
+				.map(String::trim)
+				.filter(value -> !value.isEmpty())
+				.map(Paths::get);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpSpillMaxSize</b> option.
+	 *
+	 * @return the max size in bytes of all spill files
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * The <b>TcpSpillMaxSize</b> option sets the max size in bytes of all spill
+	 * files. The oldest spill file is dropped if it would be exceeded. At least two
+	 * spill files are kept. The default value is 1 GiB.
+	 *
+	 * @param maxSize the max size in bytes
+	 */
+	public void setMaxSize(final long maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpSpillSegmentSize</b> option.
+	 *
+	 * @return the size in bytes of a spill file
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * The <b>TcpSpillSegmentSize</b> option sets the size in bytes of a single
+	 * spill file. Spill files are memory-mapped one at a time for writing and
+	 * replaying. Smaller values are raised to fit the largest packet, which is 4
+	 * bytes more than 65507. The default value is 16 MiB.
+	 *
+	 * @param segmentSize the size in bytes
+	 */
+	public void setSegmentSize(final int segmentSize) {
+		this.segmentSize = Math.max(MIN_SEGMENT_SIZE, segmentSize);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpSpillRetentionMillis</b> option.
+	 *
+	 * @return the max age in milliseconds of spill files
+	 */
+	public long getRetentionMillis() {
+		return retentionMillis;
+	}
+
+	/**
+	 * The <b>TcpSpillRetentionMillis</b> option sets the max age in milliseconds of
+	 * spill files. Older spill files are dropped instead of being replayed. The
+	 * default value is seven days.
+	 *
+	 * @param retentionMillis the max age in milliseconds
+	 */
+	public void setRetentionMillis(final long retentionMillis) {
+		this.retentionMillis = Math.max(0, retentionMillis);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("SpillOptions [directory=") //
+				.append(directory)
+				.append(", maxSize=")
+				.append(maxSize)
+				.append(", segmentSize=")
+				.append(segmentSize)
+				.append(", retentionMillis=")
+				.append(retentionMillis)
+				.append(']')
+				.toString();
+	}
+}
@@ -0,0 +1,462 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Persistent FIFO queue of syslog packets, stored in append-only memory-mapped
+ * segment files. Packets are replayed in order and the replay offset is stored
+ * in a memory-mapped file, so that replaying continues after a crash without
+ * losing or duplicating packets that have been confirmed.
+ *
+ * <p>
+ * Each record consists of the packet length followed by the packet. The length
+ * is written after the packet, so that a record interrupted by a crash is not
+ * visible. Segment files are deleted as soon as they have been replayed, if
+ * they exceed the retention or if the max disk size would be exceeded.
+ *
+ * <p>
+ * The directory is locked while the queue is open, so that only a single queue
+ * of any process uses it.
+ *
+ * <p>
+ * Instances are not thread-safe.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SpillQueue implements Closeable {
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	private static final String SEGMENT_NAME_FORMAT = "%020d" + SEGMENT_SUFFIX;
+
+	private static final String OFFSET_FILE_NAME = "replay.offset";
+
+	private static final String LOCK_FILE_NAME = "spill.lock";
+
+	/**
+	 * Factor of the segment ID inside the combined replay offset
+	 */
+	private static final long SEGMENT_FACTOR = (long) Integer.MAX_VALUE + 1;
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final long maxSegments;
+
+	private final Duration retention;
+
+	/**
+	 * Channel of the lock file, holding the lock of the directory until closed
+	 */
+	private final FileChannel lockChannel;
+
+	/**
+	 * Replay offset, consisting of segment ID and position
+	 */
+	private final MappedByteBuffer offset;
+
+	/**
+	 * IDs of existing segment files in order
+	 */
+	private final Deque<Long> segments = new ArrayDeque<>();
+
+	private final LongAdder droppedPackets = new LongAdder();
+
+	private long writeSegmentId = 0;
+
+	/**
+	 * Segment to append to, positioned at the end of its records, or {@code null}
+	 * if no segment exists
+	 */
+	private MappedByteBuffer writeSegment = null;
+
+	private long readSegmentId = 0;
+
+	private int readPosition = 0;
+
+	/**
+	 * Segment to replay from or {@code null} if not mapped yet
+	 */
+	private MappedByteBuffer readSegment = null;
+
+	/**
+	 * Length of the packet returned by {@link #peek()}, which has not been removed
+	 * yet, or zero
+	 */
+	private int peekedLength = 0;
+
+	/**
+	 * Opens the queue inside {@code directory}, recovering packets and replay
+	 * offset from a previous run.
+	 *
+	 * @param directory   the directory of the segment files
+	 * @param maxDiskSize the max size in bytes of all segment files
+	 * @param segmentSize the size in bytes of a segment file
+	 * @param retention   the max age of segment files
+	 * @throws IOException on I/O error or if the directory is locked by another
+	 *                     queue
+	 */
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	public SpillQueue(final Path directory, final long maxDiskSize, final int segmentSize, final Duration retention)
+			throws IOException {
+		if (segmentSize <= Integer.BYTES) {
+			throw new IllegalArgumentException(String.format("Invalid segment size: %s", segmentSize));
+		}
+
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		maxSegments = Math.max(2, maxDiskSize / segmentSize);
+		this.retention = retention;
+
+		lockChannel = lock(directory);
+		try {
+			offset = map(directory.resolve(OFFSET_FILE_NAME), Long.BYTES);
+			readSegmentId = offset.getLong(0) / SEGMENT_FACTOR;
+			readPosition = (int) (offset.getLong(0) % SEGMENT_FACTOR);
+			recover();
+		} catch (final IOException | RuntimeException e) {
+			lockChannel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Locks {@code directory} using its lock file.
+	 *
+	 * @param directory the directory to lock
+	 * @return the channel of the lock file, which releases the lock when closed
+	 * @throws IOException on I/O error or if the directory is locked already
+	 */
+	@SuppressWarnings("PMD.CloseResource")
+	private static FileChannel lock(final Path directory) throws IOException {
+		final FileChannel channel = FileChannel
+				.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock lock;
+		try {
+			lock = channel.tryLock();
+		} catch (@SuppressWarnings("unused") final OverlappingFileLockException e) {
+			lock = null;
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+		if (lock == null) {
+			channel.close();
+			throw new IOException(String.format("Spill directory \"%s\" is locked by another spill queue.", directory));
+		}
+		return channel;
+	}
+
+	/**
+	 * Memory-maps {@code file} with {@code size} bytes, creating it if required.
+	 *
+	 * @param file the file to map
+	 * @param size the size in bytes
+	 * @return the mapped buffer
+	 * @throws IOException on I/O error
+	 */
+	private static MappedByteBuffer map(final Path file, final int size) throws IOException {
+		try (FileChannel channel = FileChannel
+				.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * Lists existing segments, deletes replayed segments and positions the write
+	 * segment after its last record.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	private void recover() throws IOException {
+		final List<Long> ids = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			for (final Path file : files) {
+				final String name = file.getFileName().toString();
+				ids.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		Collections.sort(ids);
+
+		for (final Long id : ids) {
+			if (id < readSegmentId) {
+				Files.deleteIfExists(getSegmentFile(id));
+			} else {
+				segments.addLast(id);
+			}
+		}
+		if (segments.isEmpty()) {
+			readPosition = 0;
+			return;
+		}
+		if (segments.getFirst() != readSegmentId) {
+			readSegmentId = segments.getFirst();
+			readPosition = 0;
+		}
+
+		writeSegmentId = segments.getLast();
+		writeSegment = map(getSegmentFile(writeSegmentId), segmentSize);
+		int position = 0;
+		int length = getLength(writeSegment, position);
+		while (length > 0) {
+			position += Integer.BYTES + length;
+			length = getLength(writeSegment, position);
+		}
+		writeSegment.position(position);
+	}
+
+	private Path getSegmentFile(final long id) {
+		return directory.resolve(String.format(Locale.ROOT, SEGMENT_NAME_FORMAT, id));
+	}
+
+	/**
+	 * Returns the length of the record at {@code position} or zero if there is no
+	 * record.
+	 *
+	 * @param segment  the segment
+	 * @param position the position of the record
+	 * @return the length of the packet
+	 */
+	private static int getLength(final ByteBuffer segment, final int position) {
+		if (position + Integer.BYTES > segment.capacity()) {
+			return 0;
+		}
+		final int length = segment.getInt(position);
+		return length < 0 || position + Integer.BYTES + length > segment.capacity() ? 0 : length;
+	}
+
+	/**
+	 * Returns whether there are no packets to replay.
+	 *
+	 * @return {@code true} if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return writeSegment == null || readSegmentId == writeSegmentId && readPosition >= writeSegment.position();
+	}
+
+	/**
+	 * Returns the number of packets, which were dropped because they did not fit
+	 * into a segment or because the max disk size has been exceeded.
+	 *
+	 * @return the number of dropped packets
+	 */
+	public long getDroppedPackets() {
+		return droppedPackets.sum();
+	}
+
+	/**
+	 * Appends the remaining bytes of {@code packet}. Empty packets are skipped, as
+	 * a length of zero marks the end of a segment.
+	 *
+	 * @param packet the packet to append
+	 * @return {@code true} if the packet was appended or skipped, {@code false} if
+	 *         it was dropped because it does not fit into a segment
+	 * @throws IOException on I/O error
+	 */
+	public boolean offer(final ByteBuffer packet) throws IOException {
+		final int length = packet.remaining();
+		if (length == 0) {
+			return true;
+		}
+		if (Integer.BYTES + length > segmentSize) {
+			droppedPackets.increment();
+			return false;
+		}
+		if (writeSegment == null || writeSegment.remaining() < Integer.BYTES + length) {
+			addSegment();
+		}
+
+		final int start = writeSegment.position();
+		writeSegment.position(start + Integer.BYTES);
+		writeSegment.put(packet);
+		writeSegment.putInt(start, length);
+		return true;
+	}
+
+	/**
+	 * Creates a new write segment, deleting the oldest segments if the max disk
+	 * size would be exceeded.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void addSegment() throws IOException {
+		while (segments.size() >= maxSegments) {
+			LogLog.warn(String.format("Spill queue \"%s\" is full. Dropping oldest segment.", directory));
+			droppedPackets.add(countRecords(segments.getFirst()));
+			deleteReadSegment();
+		}
+
+		final long id = writeSegment == null ? readSegmentId : writeSegmentId + 1;
+		writeSegment = map(getSegmentFile(id), segmentSize);
+		writeSegmentId = id;
+		segments.addLast(id);
+	}
+
+	/**
+	 * Counts the records of a segment, which have not been replayed yet.
+	 *
+	 * @param id the segment ID
+	 * @return the number of records
+	 * @throws IOException on I/O error
+	 */
+	private long countRecords(final long id) throws IOException {
+		final ByteBuffer segment = id == writeSegmentId ? writeSegment : map(getSegmentFile(id), segmentSize);
+		int position = id == readSegmentId ? readPosition : 0;
+		long count = 0;
+		int length = getLength(segment, position);
+		while (length > 0) {
+			count += 1;
+			position += Integer.BYTES + length;
+			length = getLength(segment, position);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes queued packets to {@code target} in order until the queue is empty or
+	 * writing fails. The replay offset is stored after each packet.
+	 *
+	 * @param target the writer to replay to
+	 * @throws IOException on I/O error, while the failed packet remains queued
+	 */
+	public void replay(final SyslogPacketWriter target) throws IOException {
+		Optional<ByteBuffer> packet = peek();
+		while (packet.isPresent()) {
+			target.write(packet.get());
+			remove();
+			packet = peek();
+		}
+	}
+
+	/**
+	 * Returns the next queued packet without removing it. Expired and replayed
+	 * segments are deleted on the way.
+	 *
+	 * <p>
+	 * The returned buffer stays valid after further packets have been offered, so
+	 * that it can be written while other threads append to the queue.
+	 *
+	 * @return the next packet or empty if the queue is empty
+	 * @throws IOException on I/O error
+	 */
+	public Optional<ByteBuffer> peek() throws IOException {
+		while (!isEmpty()) {
+			final boolean mapping = readSegment == null;
+			if (mapping) {
+				readSegment = readSegmentId == writeSegmentId
+						? writeSegment
+						: map(getSegmentFile(readSegmentId), segmentSize);
+			}
+
+			if (mapping && isExpired(readSegmentId)) {
+				deleteReadSegment();
+			} else {
+				final int length = getLength(readSegment, readPosition);
+				if (length > 0) {
+					final ByteBuffer packet = readSegment.duplicate();
+					packet.limit(readPosition + Integer.BYTES + length);
+					packet.position(readPosition + Integer.BYTES);
+					peekedLength = length;
+					return Optional.of(packet);
+				}
+				if (readSegmentId == writeSegmentId) {
+					return Optional.empty();
+				}
+				deleteReadSegment();
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Removes the packet returned by {@link #peek()} and stores the replay offset.
+	 * Nothing is removed if that packet has been dropped meanwhile, e.g. because
+	 * the max disk size has been exceeded.
+	 */
+	public void remove() {
+		if (peekedLength > 0) {
+			readPosition += Integer.BYTES + peekedLength;
+			peekedLength = 0;
+			storeOffset();
+		}
+	}
+
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private boolean isExpired(final long id) throws IOException {
+		final Path file = getSegmentFile(id);
+		final long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+		if (id == writeSegmentId || age <= retention.toMillis()) {
+			return false;
+		}
+		LogLog.warn(String.format("Spill segment \"%s\" exceeded its retention. Dropping it.", file));
+		return true;
+	}
+
+	/**
+	 * Deletes the oldest segment and continues replaying with the next one.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	private void deleteReadSegment() throws IOException {
+		final long id = segments.removeFirst();
+		Files.deleteIfExists(getSegmentFile(id));
+		readSegment = null;
+		readPosition = 0;
+		peekedLength = 0;
+		if (id == writeSegmentId) {
+			writeSegment = null;
+			readSegmentId = id + 1;
+		} else {
+			readSegmentId = segments.isEmpty() ? id + 1 : segments.getFirst();
+		}
+		storeOffset();
+		offset.force();
+	}
+
+	private void storeOffset() {
+		offset.putLong(0, readSegmentId * SEGMENT_FACTOR + readPosition);
+	}
+
+	/**
+	 * Forces the replay offset and the write segment to the storage device and
+	 * unlocks the directory.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			offset.force();
+			if (writeSegment != null) {
+				writeSegment.force();
+			}
+		} finally {
+			lockChannel.close();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.github.loggly.log4j.helpers;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Syslog message formats
+ */
+public enum SyslogFormat {
+	/**
+	 * BSD syslog format according to
+	 * <a href="https://tools.ietf.org/html/rfc3164">RFC 3164</a>, with optional
+	 * HEADER part.
+	 */
+	RFC3164,
+
+	/**
+	 * Structured syslog format according to
+	 * <a href="https://tools.ietf.org/html/rfc5424">RFC 5424</a>, including
+	 * STRUCTURED-DATA taken from MDC and NDC.
+	 */
+	RFC5424;
+
+	/**
+	 * Returns the format matching {@code name}. The matching is case-insensitive
+	 * and ignores dashes, e.g. "rfc-5424".
+	 *
+	 * @param name the format name
+	 * @return the matching format
+	 * @throws IllegalArgumentException if no format matches {@code name}
+	 */
+	public static SyslogFormat of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()).replace("-", ""));
+	}
+}
@@ -0,0 +1,115 @@
+package com.github.loggly.log4j.helpers;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Renders the RFC 3164 HEADER part ({@code MMM dd HH:mm:ss hostname }) once per
+ * second and returns the same immutable header for all events inside that
+ * second.
+ *
+ * <p>
+ * The cached header is published using a volatile field without locking.
+ * Threads racing for a new second render it concurrently and the last one wins,
+ * which is harmless as all of them produce the same header.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogHeaderCache {
+	private static final long MILLIS_PER_SECOND = 1000;
+
+	/**
+	 * Index of the first digit of the day of month
+	 */
+	private static final int DAY_INDEX = 4;
+
+	/**
+	 * Date format of the HEADER part
+	 */
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT
+			= ThreadLocal.withInitial(() -> new SimpleDateFormat("MMM dd HH:mm:ss ", Locale.ENGLISH));
+
+	private final String hostname;
+
+	/**
+	 * The header of the most recent second
+	 */
+	private volatile Entry entry;
+
+	/**
+	 * Creates a cache for headers containing {@code hostname}.
+	 *
+	 * @param hostname the local host name
+	 */
+	public SyslogHeaderCache(final String hostname) {
+		this.hostname = hostname;
+		entry = new Entry(Long.MIN_VALUE, "");
+	}
+
+	/**
+	 * Returns the HEADER part for {@code timeStamp}.
+	 *
+	 * @param timeStamp number of milliseconds after the standard base time
+	 * @return the HEADER part, including the trailing space
+	 */
+	public SyslogPacketHeader get(final long timeStamp) {
+		final long second = Math.floorDiv(timeStamp, MILLIS_PER_SECOND);
+		final Entry current = entry;
+		if (current.second == second) {
+			return current;
+		}
+
+		final Entry rendered = new Entry(second, render(second * MILLIS_PER_SECOND));
+		entry = rendered;
+		return rendered;
+	}
+
+	/**
+	 * Renders the HEADER part for {@code timeStamp}.
+	 *
+	 * @param timeStamp number of milliseconds after the standard base time
+	 * @return the HEADER part
+	 */
+	private String render(final long timeStamp) {
+		final StringBuilder builder = new StringBuilder(DATE_FORMAT.get().format(new Date(timeStamp)));
+		// RFC 3164 says leading space, not leading zero on days 1-9
+		if (builder.charAt(DAY_INDEX) == '0') {
+			builder.setCharAt(DAY_INDEX, ' ');
+		}
+		builder.append(hostname);
+		builder.append(' ');
+		return builder.toString();
+	}
+
+	/**
+	 * Immutable pair of second and its header
+	 */
+	private static final class Entry implements SyslogPacketHeader {
+		private final long second;
+
+		private final String header;
+
+		Entry(final long second, final String header) {
+			this.second = second;
+			this.header = header;
+		}
+
+		@Override
+		public boolean appendTo(final SyslogPacketEncoder encoder) {
+			return encoder.append(header);
+		}
+
+		/**
+		 * Returns the rendered header.
+		 *
+		 * @return the HEADER part
+		 */
+		@Override
+		public String toString() {
+			return header;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.github.loggly.log4j.helpers;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Decides which of multiple syslog hosts of a {@link SyslogMultiWriter64k} a
+ * packet is written to.
+ */
+public enum SyslogHostStrategy {
+	/**
+	 * Packets are written to the first available host in the configured order.
+	 */
+	FAILOVER,
+
+	/**
+	 * Packets are spread over all available hosts in turn.
+	 */
+	ROUND_ROBIN,
+
+	/**
+	 * Packets are written to all available hosts.
+	 */
+	BROADCAST;
+
+	/**
+	 * Returns the strategy matching {@code name}. The matching is case-insensitive
+	 * and accepts dashes instead of underscores, e.g. "round-robin".
+	 *
+	 * @param name the strategy name
+	 * @return the matching strategy
+	 * @throws IllegalArgumentException if no strategy matches {@code name}
+	 */
+	public static SyslogHostStrategy of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()).replace('-', '_'));
+	}
+}
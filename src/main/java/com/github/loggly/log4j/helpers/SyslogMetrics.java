@@ -0,0 +1,536 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Priority;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Counters and send latency histogram of an appender. Counters are striped
+ * {@link LongAdder}s, so that concurrent senders do not contend on updates.
+ *
+ * <p>
+ * The latency histogram uses fixed buckets of powers of two nanoseconds.
+ * Percentiles are reported as upper bound of their bucket, therefore they are
+ * accurate within a factor of two. Buckets are never reset, so that percentiles
+ * cover all latencies since creation and do not decay. To watch recent
+ * latencies, consumers read the cumulative bucket counts periodically and
+ * compute percentiles of the differences of consecutive reads.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogMetrics {
+	/**
+	 * Number of latency buckets, the last one covering latencies of about nine
+	 * minutes and more
+	 */
+	private static final int LATENCY_BUCKETS = 40;
+
+	private static final double P50 = 0.5;
+
+	private static final double P99 = 0.99;
+
+	private static final double P999 = 0.999;
+
+	private final LongAdder eventsIn = new LongAdder();
+
+	private final LongAdder eventsOut = new LongAdder();
+
+	private final LongAdder packets = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private final LongAdder splitFragments = new LongAdder();
+
+	private final LongAdder truncatedMessages = new LongAdder();
+
+	private final LongAdder throwableLines = new LongAdder();
+
+	private final LongAdder writeFailures = new LongAdder();
+
+	private final LongAdder failedEvents = new LongAdder();
+
+	private final LongAdder droppedWithoutHost = new LongAdder();
+
+	private final LongAdder rateLimited = new LongAdder();
+
+	private final LongAdder sampledOut = new LongAdder();
+
+	/**
+	 * Number of events dropped by sampling per level name
+	 */
+	private final ConcurrentMap<String, LongAdder> sampledOutByLevel = new ConcurrentHashMap<>();
+
+	private final LongAdder suppressedDuplicates = new LongAdder();
+
+	/**
+	 * Number of send latencies per bucket, bucket {@code i} counting latencies of
+	 * less than {@code 2^i} nanoseconds
+	 */
+	private final LongAdder[] latencies = new LongAdder[LATENCY_BUCKETS];
+
+	public SyslogMetrics() {
+		for (int index = 0; index < LATENCY_BUCKETS; index += 1) {
+			latencies[index] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Counts an event accepted by the appender.
+	 */
+	public void onEventIn() {
+		eventsIn.increment();
+	}
+
+	/**
+	 * Counts an event, which has been sent, and its send latency.
+	 *
+	 * @param latencyNanos the time taken to format, encode and write the event
+	 */
+	public void onEventOut(final long latencyNanos) {
+		eventsOut.increment();
+		latencies[Math.min(LATENCY_BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, latencyNanos)))]
+				.increment();
+	}
+
+	/**
+	 * Counts a packet, which has been written.
+	 *
+	 * @param length the length of the packet in bytes
+	 */
+	public void onPacket(final int length) {
+		packets.increment();
+		bytes.add(length);
+	}
+
+	/**
+	 * Counts the packets of a message, which has been split.
+	 *
+	 * @param fragments the number of packets of the message
+	 */
+	public void onSplit(final int fragments) {
+		splitFragments.add(fragments);
+	}
+
+	/**
+	 * Counts a message, of which parts have been dropped as they did not fit into
+	 * the max message length.
+	 */
+	public void onTruncated() {
+		truncatedMessages.increment();
+	}
+
+	/**
+	 * Counts the lines of a stack trace.
+	 *
+	 * @param lines the number of lines
+	 */
+	public void onThrowableLines(final int lines) {
+		throwableLines.add(lines);
+	}
+
+	/**
+	 * Counts a packet, which could not be written.
+	 */
+	public void onWriteFailure() {
+		writeFailures.increment();
+	}
+
+	/**
+	 * Counts packets, which could not be written.
+	 *
+	 * @param packets the number of packets
+	 */
+	public void onWriteFailures(final int packets) {
+		writeFailures.add(packets);
+	}
+
+	/**
+	 * Counts an event, of which at least one packet could not be written.
+	 */
+	public void onEventFailed() {
+		failedEvents.increment();
+	}
+
+	/**
+	 * Counts an event dropped as no syslog host is set.
+	 */
+	public void onDroppedWithoutHost() {
+		droppedWithoutHost.increment();
+	}
+
+	/**
+	 * Counts an event dropped as it exceeds the rate limit.
+	 */
+	public void onRateLimited() {
+		rateLimited.increment();
+	}
+
+	/**
+	 * Counts an event dropped by sampling.
+	 *
+	 * @param level the level of the event
+	 */
+	public void onSampledOut(final Priority level) {
+		sampledOut.increment();
+		final String name = level.toString();
+		LongAdder counter = sampledOutByLevel.get(name);
+		if (counter == null) {
+			counter = sampledOutByLevel.computeIfAbsent(name, key -> new LongAdder());
+		}
+		counter.increment();
+	}
+
+	/**
+	 * Counts an event suppressed as duplicate of a recent message.
+	 */
+	public void onSuppressedDuplicate() {
+		suppressedDuplicates.increment();
+	}
+
+	/**
+	 * Returns the send latency percentile as upper bound of its bucket.
+	 *
+	 * @param counts     the number of latencies per bucket
+	 * @param total      the total number of latencies
+	 * @param percentile the percentile between 0 and 1
+	 * @return the upper bound in nanoseconds or zero if there are no latencies
+	 */
+	@SuppressWarnings("PMD.UseVarargs")
+	private static long getPercentile(final long[] counts, final long total, final double percentile) {
+		final long rank = (long) Math.ceil(total * percentile);
+		long count = 0;
+		int bucket = 0;
+		while (bucket < counts.length && (count < rank || count == 0)) {
+			count += counts[bucket];
+			bucket += 1;
+		}
+		return total == 0 ? 0 : 1L << bucket - 1;
+	}
+
+	/**
+	 * Creates a snapshot of all counters, adding the given values of other
+	 * components.
+	 *
+	 * @param queueDepth      the number of events waiting inside the async buffer
+	 * @param droppedQueue    the number of events dropped by the async buffer
+	 * @param droppedByWriter the number of packets dropped by the writer
+	 * @param reconnects      the number of restored connections
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot(final long queueDepth,
+			final long droppedQueue,
+			final long droppedByWriter,
+			final long reconnects) {
+		return new Snapshot(this, queueDepth, droppedQueue, droppedByWriter, reconnects);
+	}
+
+	/**
+	 * Immutable values of all metrics at a point in time
+	 */
+	@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+			justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+	public static final class Snapshot {
+		private final long eventsIn;
+
+		private final long eventsOut;
+
+		private final long packets;
+
+		private final long bytes;
+
+		private final long splitFragments;
+
+		private final long truncatedMessages;
+
+		private final long throwableLines;
+
+		private final long writeFailures;
+
+		private final long failedEvents;
+
+		private final long droppedWithoutHost;
+
+		private final long rateLimited;
+
+		private final long sampledOut;
+
+		private final SortedMap<String, Long> sampledOutByLevel;
+
+		private final long suppressedDuplicates;
+
+		private final long droppedByQueue;
+
+		private final long droppedByWriter;
+
+		private final long reconnects;
+
+		private final long queueDepth;
+
+		private final long latencyP50Nanos;
+
+		private final long latencyP99Nanos;
+
+		private final long latencyP999Nanos;
+
+		private final SortedMap<Long, Long> latencyBuckets;
+
+		Snapshot(final SyslogMetrics metrics,
+				final long queueDepth,
+				final long droppedByQueue,
+				final long droppedByWriter,
+				final long reconnects) {
+			eventsIn = metrics.eventsIn.sum();
+			eventsOut = metrics.eventsOut.sum();
+			packets = metrics.packets.sum();
+			bytes = metrics.bytes.sum();
+			splitFragments = metrics.splitFragments.sum();
+			truncatedMessages = metrics.truncatedMessages.sum();
+			throwableLines = metrics.throwableLines.sum();
+			writeFailures = metrics.writeFailures.sum();
+			failedEvents = metrics.failedEvents.sum();
+			droppedWithoutHost = metrics.droppedWithoutHost.sum();
+			rateLimited = metrics.rateLimited.sum();
+			sampledOut = metrics.sampledOut.sum();
+			final SortedMap<String, Long> sampledOutPerLevel = new TreeMap<>();
+			for (final Map.Entry<String, LongAdder> entry : metrics.sampledOutByLevel.entrySet()) {
+				sampledOutPerLevel.put(entry.getKey(), entry.getValue().sum());
+			}
+			sampledOutByLevel = Collections.unmodifiableSortedMap(sampledOutPerLevel);
+			suppressedDuplicates = metrics.suppressedDuplicates.sum();
+			this.droppedByQueue = droppedByQueue;
+			this.droppedByWriter = droppedByWriter;
+			this.reconnects = reconnects;
+			this.queueDepth = queueDepth;
+
+			final long[] counts = new long[LATENCY_BUCKETS];
+			final SortedMap<Long, Long> buckets = new TreeMap<>();
+			long total = 0;
+			for (int index = 0; index < LATENCY_BUCKETS; index += 1) {
+				counts[index] = metrics.latencies[index].sum();
+				total += counts[index];
+				buckets.put(index == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << index, total);
+			}
+			latencyBuckets = Collections.unmodifiableSortedMap(buckets);
+			latencyP50Nanos = getPercentile(counts, total, P50);
+			latencyP99Nanos = getPercentile(counts, total, P99);
+			latencyP999Nanos = getPercentile(counts, total, P999);
+		}
+
+		/**
+		 * Returns the number of events accepted by the appender.
+		 *
+		 * @return the number of events accepted by the appender
+		 */
+		public long getEventsIn() {
+			return eventsIn;
+		}
+
+		/**
+		 * Returns the number of events sent.
+		 *
+		 * @return the number of events sent
+		 */
+		public long getEventsOut() {
+			return eventsOut;
+		}
+
+		/**
+		 * Returns the number of packets written, i.e. datagrams or frames.
+		 *
+		 * @return the number of packets written, i.e. datagrams or frames
+		 */
+		public long getPackets() {
+			return packets;
+		}
+
+		/**
+		 * Returns the number of bytes written, excluding TCP framing.
+		 *
+		 * @return the number of bytes written, excluding TCP framing
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Returns the number of packets of messages, which have been split.
+		 *
+		 * @return the number of packets of messages, which have been split
+		 */
+		public long getSplitFragments() {
+			return splitFragments;
+		}
+
+		/**
+		 * Returns the number of messages, of which parts have been dropped as they did
+		 * not fit into the max message length, e.g. STRUCTURED-DATA.
+		 *
+		 * @return the number of truncated messages
+		 */
+		public long getTruncatedMessages() {
+			return truncatedMessages;
+		}
+
+		/**
+		 * Returns the number of stack trace lines.
+		 *
+		 * @return the number of stack trace lines
+		 */
+		public long getThrowableLines() {
+			return throwableLines;
+		}
+
+		/**
+		 * Returns the number of packets, which could not be written.
+		 *
+		 * @return the number of packets, which could not be written
+		 */
+		public long getWriteFailures() {
+			return writeFailures;
+		}
+
+		/**
+		 * Returns the number of events, of which at least one packet could not be
+		 * written.
+		 *
+		 * @return the number of failed events
+		 */
+		public long getFailedEvents() {
+			return failedEvents;
+		}
+
+		/**
+		 * Returns the number of events dropped as no syslog host is set.
+		 *
+		 * @return the number of events dropped as no syslog host is set
+		 */
+		public long getDroppedWithoutHost() {
+			return droppedWithoutHost;
+		}
+
+		/**
+		 * Returns the number of events dropped as they exceeded the rate limit.
+		 *
+		 * @return the number of events dropped as they exceeded the rate limit
+		 */
+		public long getRateLimited() {
+			return rateLimited;
+		}
+
+		/**
+		 * Returns the number of events dropped by sampling. Dashboards scale sampled
+		 * volumes back up using this count or the configured sampling ratios.
+		 *
+		 * @return the number of events dropped by sampling
+		 */
+		public long getSampledOut() {
+			return sampledOut;
+		}
+
+		/**
+		 * Returns the number of events dropped by sampling per level name, e.g.
+		 * {@code DEBUG}. Levels without sampled out events are missing. Dashboards
+		 * scale the volume of each level back up using its count and ratio.
+		 *
+		 * @return the number of events dropped by sampling per level name
+		 */
+		public SortedMap<String, Long> getSampledOutByLevel() {
+			return sampledOutByLevel;
+		}
+
+		/**
+		 * Returns the number of events suppressed as duplicates of recent messages.
+		 *
+		 * @return the number of events suppressed as duplicates of recent messages
+		 */
+		public long getSuppressedDuplicates() {
+			return suppressedDuplicates;
+		}
+
+		/**
+		 * Returns the number of events dropped by the async buffer.
+		 *
+		 * @return the number of events dropped by the async buffer
+		 */
+		public long getDroppedByQueue() {
+			return droppedByQueue;
+		}
+
+		/**
+		 * Returns the number of packets dropped by the writer, e.g. by a full spill
+		 * queue.
+		 *
+		 * @return the number of packets dropped by the writer, e.g. by a full spill
+		 *         queue
+		 */
+		public long getDroppedByWriter() {
+			return droppedByWriter;
+		}
+
+		/**
+		 * Returns the number of restored connections.
+		 *
+		 * @return the number of restored connections
+		 */
+		public long getReconnects() {
+			return reconnects;
+		}
+
+		/**
+		 * Returns the number of events waiting inside the async buffer.
+		 *
+		 * @return the number of events waiting inside the async buffer
+		 */
+		public long getQueueDepth() {
+			return queueDepth;
+		}
+
+		/**
+		 * Returns the median send latency in nanoseconds.
+		 *
+		 * @return the median send latency in nanoseconds
+		 */
+		public long getLatencyP50Nanos() {
+			return latencyP50Nanos;
+		}
+
+		/**
+		 * Returns the 99th percentile of the send latency in nanoseconds.
+		 *
+		 * @return the 99th percentile of the send latency in nanoseconds
+		 */
+		public long getLatencyP99Nanos() {
+			return latencyP99Nanos;
+		}
+
+		/**
+		 * Returns the 99.9th percentile of the send latency in nanoseconds.
+		 *
+		 * @return the 99.9th percentile of the send latency in nanoseconds
+		 */
+		public long getLatencyP999Nanos() {
+			return latencyP999Nanos;
+		}
+
+		/**
+		 * Returns the number of send latencies below each bucket bound in
+		 * nanoseconds since creation. The bound of the last bucket is
+		 * {@link Long#MAX_VALUE}, so that its count equals the number of all
+		 * latencies. Counts never decrease, therefore the differences of two
+		 * snapshots form the histogram of the latencies in between.
+		 *
+		 * @return the cumulative number of latencies per upper bucket bound
+		 */
+		public SortedMap<Long, Long> getLatencyBuckets() {
+			return latencyBuckets;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package com.github.loggly.log4j.helpers;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Publishes the metrics of an appender as MXBean named
+ * {@code com.github.loggly.log4j:type=SyslogAppender64k,name=<appender name>}
+ * on the platform MBean server.
+ *
+ * <p>
+ * Attributes read within {@link #SNAPSHOT_TTL_NANOS} share one
+ * {@link SyslogMetrics.Snapshot}, so that a monitoring system reading all
+ * attributes at once creates a single snapshot and gets consistent values.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogMetricsJmx implements SyslogMetricsMXBean {
+	private static final String DOMAIN = "com.github.loggly.log4j";
+
+	private static final String TYPE = "SyslogAppender64k";
+
+	/**
+	 * Time a snapshot is reused for reading attributes
+	 */
+	private static final long SNAPSHOT_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Supplier<SyslogMetrics.Snapshot> metrics;
+
+	/**
+	 * Last snapshot or {@code null} if no attribute has been read yet
+	 */
+	private volatile CachedSnapshot cached = null;
+
+	private final ObjectName objectName;
+
+	/**
+	 * Creates an MXBean reading snapshots from {@code metrics}.
+	 *
+	 * @param appenderName the name of the appender
+	 * @param metrics      supplier of current snapshots
+	 * @throws JMException if {@code appenderName} results in an invalid object name
+	 */
+	public SyslogMetricsJmx(final String appenderName, final Supplier<SyslogMetrics.Snapshot> metrics)
+			throws JMException {
+		this.metrics = metrics;
+		objectName = new ObjectName(DOMAIN + ":type=" + TYPE + ",name=" + ObjectName.quote(appenderName));
+	}
+
+	/**
+	 * Returns the object name of this MXBean.
+	 *
+	 * @return the object name
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	/**
+	 * Registers this MXBean, replacing an MXBean of another appender instance with
+	 * the same name.
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void register() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+		} catch (final JMException e) {
+			LogLog.warn("Failed to register MXBean " + objectName, e);
+		}
+	}
+
+	/**
+	 * Unregisters this MXBean, if registered.
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void unregister() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (final JMException e) {
+			LogLog.warn("Failed to unregister MXBean " + objectName, e);
+		}
+	}
+
+	/**
+	 * Returns the snapshot of the last {@link #SNAPSHOT_TTL_NANOS} or creates a new
+	 * one. Concurrent readers might create a snapshot each, which is harmless.
+	 *
+	 * @return the snapshot to read attributes of
+	 */
+	private SyslogMetrics.Snapshot getSnapshot() {
+		final long now = System.nanoTime();
+		final CachedSnapshot current = cached;
+		if (current != null && now - current.createdNanos < SNAPSHOT_TTL_NANOS) {
+			return current.snapshot;
+		}
+		final SyslogMetrics.Snapshot snapshot = metrics.get();
+		cached = new CachedSnapshot(snapshot, now);
+		return snapshot;
+	}
+
+	@Override
+	public long getEventsIn() {
+		return getSnapshot().getEventsIn();
+	}
+
+	@Override
+	public long getEventsOut() {
+		return getSnapshot().getEventsOut();
+	}
+
+	@Override
+	public long getPackets() {
+		return getSnapshot().getPackets();
+	}
+
+	@Override
+	public long getBytes() {
+		return getSnapshot().getBytes();
+	}
+
+	@Override
+	public long getSplitFragments() {
+		return getSnapshot().getSplitFragments();
+	}
+
+	@Override
+	public long getTruncatedMessages() {
+		return getSnapshot().getTruncatedMessages();
+	}
+
+	@Override
+	public long getThrowableLines() {
+		return getSnapshot().getThrowableLines();
+	}
+
+	@Override
+	public long getWriteFailures() {
+		return getSnapshot().getWriteFailures();
+	}
+
+	@Override
+	public long getFailedEvents() {
+		return getSnapshot().getFailedEvents();
+	}
+
+	@Override
+	public long getDroppedWithoutHost() {
+		return getSnapshot().getDroppedWithoutHost();
+	}
+
+	@Override
+	public long getRateLimited() {
+		return getSnapshot().getRateLimited();
+	}
+
+	@Override
+	public long getSampledOut() {
+		return getSnapshot().getSampledOut();
+	}
+
+	@Override
+	public Map<String, Long> getSampledOutByLevel() {
+		return getSnapshot().getSampledOutByLevel();
+	}
+
+	@Override
+	public long getSuppressedDuplicates() {
+		return getSnapshot().getSuppressedDuplicates();
+	}
+
+	@Override
+	public long getDroppedByQueue() {
+		return getSnapshot().getDroppedByQueue();
+	}
+
+	@Override
+	public long getDroppedByWriter() {
+		return getSnapshot().getDroppedByWriter();
+	}
+
+	@Override
+	public long getReconnects() {
+		return getSnapshot().getReconnects();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return getSnapshot().getQueueDepth();
+	}
+
+	@Override
+	public long getLatencyP50Nanos() {
+		return getSnapshot().getLatencyP50Nanos();
+	}
+
+	@Override
+	public long getLatencyP99Nanos() {
+		return getSnapshot().getLatencyP99Nanos();
+	}
+
+	@Override
+	public long getLatencyP999Nanos() {
+		return getSnapshot().getLatencyP999Nanos();
+	}
+
+	@Override
+	public Map<Long, Long> getLatencyBuckets() {
+		return getSnapshot().getLatencyBuckets();
+	}
+
+	/**
+	 * Snapshot and the value of {@link System#nanoTime()} when it was created
+	 */
+	@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+			justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+	private static final class CachedSnapshot {
+		private final SyslogMetrics.Snapshot snapshot;
+
+		private final long createdNanos;
+
+		CachedSnapshot(final SyslogMetrics.Snapshot snapshot, final long createdNanos) {
+			this.snapshot = snapshot;
+			this.createdNanos = createdNanos;
+		}
+	}
+}
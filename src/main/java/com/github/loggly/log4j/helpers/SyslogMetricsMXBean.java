@@ -0,0 +1,178 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link SyslogMetrics}. Attributes read within one second are
+ * read from the same {@link SyslogMetrics.Snapshot}.
+ *
+ * <p>
+ * Counters are totals since the appender was created. Values of the async
+ * buffer and of the writer start at zero whenever those are recreated, e.g.
+ * after changing the syslog host. Latency percentiles cover all events since
+ * the appender was created and do not decay, so that recent changes of the
+ * latency show slowly. Monitoring systems derive rates and recent latencies
+ * from the differences of consecutive reads of counters and latency buckets.
+ */
+public interface SyslogMetricsMXBean {
+	/**
+	 * Returns the number of events accepted by the appender.
+	 *
+	 * @return the number of events accepted by the appender
+	 */
+	long getEventsIn();
+
+	/**
+	 * Returns the number of events sent.
+	 *
+	 * @return the number of events sent
+	 */
+	long getEventsOut();
+
+	/**
+	 * Returns the number of packets written, i.e. datagrams or frames.
+	 *
+	 * @return the number of packets written, i.e. datagrams or frames
+	 */
+	long getPackets();
+
+	/**
+	 * Returns the number of bytes written, excluding TCP framing.
+	 *
+	 * @return the number of bytes written, excluding TCP framing
+	 */
+	long getBytes();
+
+	/**
+	 * Returns the number of packets of messages, which have been split.
+	 *
+	 * @return the number of packets of messages, which have been split
+	 */
+	long getSplitFragments();
+
+	/**
+	 * Returns the number of messages, of which parts have been dropped as they did
+	 * not fit into the max message length, e.g. STRUCTURED-DATA.
+	 *
+	 * @return the number of truncated messages
+	 */
+	long getTruncatedMessages();
+
+	/**
+	 * Returns the number of stack trace lines.
+	 *
+	 * @return the number of stack trace lines
+	 */
+	long getThrowableLines();
+
+	/**
+	 * Returns the number of packets, which could not be written.
+	 *
+	 * @return the number of packets, which could not be written
+	 */
+	long getWriteFailures();
+
+	/**
+	 * Returns the number of events, of which at least one packet could not be
+	 * written.
+	 *
+	 * @return the number of failed events
+	 */
+	long getFailedEvents();
+
+	/**
+	 * Returns the number of events dropped as no syslog host is set.
+	 *
+	 * @return the number of events dropped as no syslog host is set
+	 */
+	long getDroppedWithoutHost();
+
+	/**
+	 * Returns the number of events dropped as they exceeded the rate limit.
+	 *
+	 * @return the number of events dropped as they exceeded the rate limit
+	 */
+	long getRateLimited();
+
+	/**
+	 * Returns the number of events dropped by sampling.
+	 *
+	 * @return the number of events dropped by sampling
+	 */
+	long getSampledOut();
+
+	/**
+	 * Returns the number of events dropped by sampling per level name.
+	 *
+	 * @return the number of events dropped by sampling per level name
+	 */
+	Map<String, Long> getSampledOutByLevel();
+
+	/**
+	 * Returns the number of events suppressed as duplicates of recent messages.
+	 *
+	 * @return the number of events suppressed as duplicates of recent messages
+	 */
+	long getSuppressedDuplicates();
+
+	/**
+	 * Returns the number of events dropped by the async buffer.
+	 *
+	 * @return the number of events dropped by the async buffer
+	 */
+	long getDroppedByQueue();
+
+	/**
+	 * Returns the number of packets dropped by the writer.
+	 *
+	 * @return the number of packets dropped by the writer
+	 */
+	long getDroppedByWriter();
+
+	/**
+	 * Returns the number of restored connections.
+	 *
+	 * @return the number of restored connections
+	 */
+	long getReconnects();
+
+	/**
+	 * Returns the number of events waiting inside the async buffer.
+	 *
+	 * @return the number of events waiting inside the async buffer
+	 */
+	long getQueueDepth();
+
+	/**
+	 * Returns the median send latency in nanoseconds since the appender was
+	 * created.
+	 *
+	 * @return the median send latency in nanoseconds
+	 */
+	long getLatencyP50Nanos();
+
+	/**
+	 * Returns the 99th percentile of the send latency in nanoseconds since the
+	 * appender was created.
+	 *
+	 * @return the 99th percentile of the send latency in nanoseconds
+	 */
+	long getLatencyP99Nanos();
+
+	/**
+	 * Returns the 99.9th percentile of the send latency in nanoseconds since the
+	 * appender was created.
+	 *
+	 * @return the 99.9th percentile of the send latency in nanoseconds
+	 */
+	long getLatencyP999Nanos();
+
+	/**
+	 * Returns the number of send latencies below each bucket bound in nanoseconds
+	 * since the appender was created. The bound of the last bucket is
+	 * {@link Long#MAX_VALUE}.
+	 *
+	 * @return the cumulative number of latencies per upper bucket bound
+	 */
+	Map<Long, Long> getLatencyBuckets();
+}
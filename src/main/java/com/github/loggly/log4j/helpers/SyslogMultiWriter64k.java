@@ -0,0 +1,424 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes syslog packets to multiple syslog hosts, selected by a
+ * {@link SyslogHostStrategy}.
+ *
+ * <p>
+ * Each host keeps its own health state. A host failing to write is skipped
+ * until its backoff delay elapsed, which doubles per consecutive failure. The
+ * writers of hosts keep reconnecting on their own, e.g. TCP writers fail fast
+ * while their circuit is open.
+ *
+ * <p>
+ * Except for {@link SyslogHostStrategy#BROADCAST}, the host is selected once
+ * per event by {@link #route(String)}, so that all packets of an event are
+ * written to the same host unless it fails.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogMultiWriter64k extends Writer implements SyslogPacketWriter {
+	private final Charset charset;
+
+	private final SyslogHostStrategy strategy;
+
+	private final ReconnectBackoff backoff;
+
+	private final Destination[] destinations;
+
+	/**
+	 * Writers starting at the host of the same index, failing over to the
+	 * following hosts
+	 */
+	private final Route[] routes;
+
+	/**
+	 * Counter selecting the next host of {@link SyslogHostStrategy#ROUND_ROBIN}
+	 */
+	private final AtomicInteger next = new AtomicInteger(0);
+
+	/**
+	 * Creates a writer to the hosts of {@code writers}.
+	 *
+	 * @param charset  the charset used to encode String messages
+	 * @param strategy selects the hosts to write to
+	 * @param backoff  the delays of skipping failed hosts
+	 * @param writers  the writers of all hosts in the configured order
+	 * @throws IllegalArgumentException if {@code writers} is empty
+	 */
+	public SyslogMultiWriter64k(final Charset charset,
+			final SyslogHostStrategy strategy,
+			final ReconnectBackoff backoff,
+			final List<? extends SyslogPacketWriter> writers) {
+		super();
+
+		if (writers.isEmpty()) {
+			throw new IllegalArgumentException("No syslog hosts given");
+		}
+
+		this.charset = charset;
+		this.strategy = strategy;
+		this.backoff = backoff;
+		destinations = new Destination[writers.size()];
+		for (int index = 0; index < destinations.length; index += 1) {
+			destinations[index] = new Destination(writers.get(index));
+		}
+		routes = new Route[destinations.length];
+		for (int index = 0; index < routes.length; index += 1) {
+			routes[index] = new Route(index);
+		}
+	}
+
+	@Override
+	public long getReconnects() {
+		long reconnects = 0;
+		for (final Destination destination : destinations) {
+			reconnects += destination.writer.getReconnects();
+		}
+		return reconnects;
+	}
+
+	@Override
+	public long getDroppedPackets() {
+		long droppedPackets = 0;
+		for (final Destination destination : destinations) {
+			droppedPackets += destination.writer.getDroppedPackets();
+		}
+		return droppedPackets;
+	}
+
+	@Override
+	public void write(final char[] buf, final int off, final int len) throws IOException {
+		write(new String(buf, off, len));
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(charset)));
+	}
+
+	/**
+	 * Returns the writer to the host selected by the strategy. Using
+	 * {@link SyslogHostStrategy#ROUND_ROBIN}, each call selects the next host.
+	 * Using {@link SyslogHostStrategy#BROADCAST}, this writer is returned.
+	 *
+	 * @param key the routing key, which is ignored
+	 * @return the writer to use for the packets of one event
+	 */
+	@Override
+	public SyslogPacketWriter route(final String key) {
+		if (strategy == SyslogHostStrategy.BROADCAST) {
+			return this;
+		}
+		if (strategy == SyslogHostStrategy.ROUND_ROBIN) {
+			return routes[Math.floorMod(next.getAndIncrement(), routes.length)];
+		}
+		return routes[0];
+	}
+
+	/**
+	 * Writes {@code packet} to the hosts selected by the strategy.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException if no host could be written to
+	 */
+	@Override
+	public void write(final ByteBuffer packet) throws IOException {
+		if (strategy == SyslogHostStrategy.BROADCAST) {
+			writeAll(packet);
+		} else {
+			route(null).write(packet);
+		}
+	}
+
+	/**
+	 * Writes {@code packets} to the hosts selected by the strategy. Except for
+	 * {@link SyslogHostStrategy#BROADCAST}, all packets are written to the same
+	 * host unless it fails.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written
+	 */
+	@Override
+	public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		if (strategy == SyslogHostStrategy.BROADCAST) {
+			return SyslogPacketWriter.super.write(packets, failures);
+		}
+		return route(null).write(packets, failures);
+	}
+
+	/**
+	 * Writes {@code packet} to the first available host starting at
+	 * {@code start}, failing over to the following hosts.
+	 *
+	 * @param packet the encoded packet
+	 * @param start  the index of the preferred host
+	 * @throws IOException if no host could be written to
+	 */
+	private void writeFirstAvailable(final ByteBuffer packet, final int start) throws IOException {
+		final int position = packet.position();
+		final long now = System.nanoTime();
+		Optional<IOException> exception = Optional.empty();
+		for (int offset = 0; offset < destinations.length; offset += 1) {
+			final Destination destination = destinations[(start + offset) % destinations.length];
+			if (destination.isAvailable(now)) {
+				packet.position(position);
+				try {
+					destination.write(packet);
+					return;
+				} catch (final IOException e) {
+					destination.onFailure(now);
+					exception = Optional.of(addSuppressed(exception, e));
+				}
+			}
+		}
+		throw exception.orElseGet(() -> new IOException("All syslog hosts are unavailable."));
+	}
+
+	/**
+	 * Writes {@code packets} to the first available host starting at
+	 * {@code start}. If writing fails, the remaining packets are written to the
+	 * following hosts.
+	 *
+	 * @param packets  the encoded packets
+	 * @param start    the index of the preferred host
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written
+	 */
+	private int writeFirstAvailable(final List<ByteBuffer> packets,
+			final int start,
+			final Consumer<? super IOException> failures) {
+		// marks allow failing over with a packet, which has been written partially
+		for (final ByteBuffer packet : packets) {
+			packet.mark();
+		}
+
+		final long now = System.nanoTime();
+		final List<IOException> exceptions = new ArrayList<>(0);
+		int written = 0;
+		for (int offset = 0; offset < destinations.length && written < packets.size(); offset += 1) {
+			final Destination destination = destinations[(start + offset) % destinations.length];
+			if (destination.isAvailable(now)) {
+				packets.get(written).reset();
+				final List<ByteBuffer> remaining = written == 0 ? packets : packets.subList(written, packets.size());
+				final int count = destination.write(remaining, exceptions::add);
+				if (count < remaining.size()) {
+					destination.onFailure(now);
+				}
+				written += count;
+			}
+		}
+
+		if (written < packets.size()) {
+			Optional<IOException> exception = Optional.empty();
+			for (final IOException e : exceptions) {
+				exception = Optional.of(addSuppressed(exception, e));
+			}
+			failures.accept(exception.orElseGet(() -> new IOException("All syslog hosts are unavailable.")));
+		}
+		return written;
+	}
+
+	/**
+	 * Writes {@code packet} to all available hosts.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException if no host could be written to
+	 */
+	private void writeAll(final ByteBuffer packet) throws IOException {
+		final int position = packet.position();
+		final long now = System.nanoTime();
+		boolean written = false;
+		Optional<IOException> exception = Optional.empty();
+		for (final Destination destination : destinations) {
+			if (destination.isAvailable(now)) {
+				packet.position(position);
+				try {
+					destination.write(packet);
+					written = true;
+				} catch (final IOException e) {
+					destination.onFailure(now);
+					exception = Optional.of(addSuppressed(exception, e));
+				}
+			}
+		}
+		if (!written) {
+			throw exception.orElseGet(() -> new IOException("All syslog hosts are unavailable."));
+		}
+		packet.position(packet.limit());
+	}
+
+	/**
+	 * Flushes all hosts. Failures of single hosts do not prevent flushing the
+	 * others.
+	 *
+	 * @throws IOException on I/O error of any host
+	 */
+	@Override
+	public void flush() throws IOException {
+		Optional<IOException> exception = Optional.empty();
+		for (final Destination destination : destinations) {
+			try {
+				destination.writer.flush();
+			} catch (final IOException e) {
+				exception = Optional.of(addSuppressed(exception, e));
+			}
+		}
+		if (exception.isPresent()) {
+			throw exception.get();
+		}
+	}
+
+	/**
+	 * Closes all hosts. Failures of single hosts do not prevent closing the others.
+	 *
+	 * @throws IOException on I/O error of any host
+	 */
+	@Override
+	public void close() throws IOException {
+		Optional<IOException> exception = Optional.empty();
+		for (final Destination destination : destinations) {
+			try {
+				destination.writer.close();
+			} catch (final IOException e) {
+				exception = Optional.of(addSuppressed(exception, e));
+			}
+		}
+		if (exception.isPresent()) {
+			throw exception.get();
+		}
+	}
+
+	/**
+	 * Adds {@code exception} as suppressed exception to {@code first} if present.
+	 *
+	 * @param first     the first exception
+	 * @param exception the exception to add
+	 * @return the first exception or {@code exception} if no exception occurred
+	 *         before
+	 */
+	private static IOException addSuppressed(final Optional<IOException> first, final IOException exception) {
+		if (!first.isPresent()) {
+			return exception;
+		}
+		first.get().addSuppressed(exception);
+		return first.get();
+	}
+
+	/**
+	 * Writer and health state of a single syslog host
+	 */
+	private final class Destination {
+		private final SyslogPacketWriter writer;
+
+		/**
+		 * Current backoff delay in nanoseconds or zero while healthy
+		 */
+		private volatile long delayNanos = 0;
+
+		/**
+		 * Value of {@link System#nanoTime()} when writing is retried after failures
+		 */
+		private volatile long retryNanos = 0;
+
+		Destination(final SyslogPacketWriter writer) {
+			this.writer = writer;
+		}
+
+		/**
+		 * Returns whether this host is healthy or its backoff delay elapsed.
+		 *
+		 * @param now the current value of {@link System#nanoTime()}
+		 * @return {@code true} if this host shall be written to
+		 */
+		private boolean isAvailable(final long now) {
+			return delayNanos == 0 || now - retryNanos >= 0;
+		}
+
+		/**
+		 * Writes {@code packet} and marks this host as healthy on success.
+		 *
+		 * @param packet the encoded packet
+		 * @throws IOException on I/O error
+		 */
+		private void write(final ByteBuffer packet) throws IOException {
+			writer.write(packet);
+			if (delayNanos != 0) {
+				delayNanos = 0;
+			}
+		}
+
+		/**
+		 * Writes {@code packets} at once and marks this host as healthy if all have
+		 * been written.
+		 *
+		 * @param packets  the encoded packets
+		 * @param failures consumer of the cause of a failure
+		 * @return the number of packets written
+		 */
+		private int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+			final int written = writer.write(packets, failures);
+			if (written == packets.size() && delayNanos != 0) {
+				delayNanos = 0;
+			}
+			return written;
+		}
+
+		/**
+		 * Marks this host as failed, skipping it for the next backoff delay.
+		 *
+		 * @param now the current value of {@link System#nanoTime()}
+		 */
+		private void onFailure(final long now) {
+			final long delay = delayNanos == 0 ? backoff.getInitialDelayNanos() : backoff.next(delayNanos);
+			retryNanos = now + ReconnectBackoff.jitter(delay);
+			delayNanos = delay;
+		}
+	}
+
+	/**
+	 * Writer to the host of a fixed index, failing over to the following hosts
+	 */
+	@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+			justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+	private final class Route implements SyslogPacketWriter {
+		private final int start;
+
+		Route(final int start) {
+			this.start = start;
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			writeFirstAvailable(packet, start);
+		}
+
+		@Override
+		public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+			return writeFirstAvailable(packets, start, failures);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			SyslogMultiWriter64k.this.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			SyslogMultiWriter64k.this.close();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.github.loggly.log4j.helpers;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Compresses encoded packets the way rsyslog does for its compressed TCP mode.
+ * A compressed packet consists of the marker {@code z} followed by the zlib
+ * stream of the original packet. As plain packets start with the {@code <} of
+ * the PRI part, receivers tell both kinds apart by the first byte.
+ *
+ * <p>
+ * Packets below the threshold and packets, which would not shrink, are passed
+ * as they are. The {@link Deflater} and the output buffer are reused for all
+ * packets, therefore compressing does not allocate in steady state.
+ *
+ * <p>
+ * Instances are not thread-safe. Each sender is expected to use its own
+ * instance. Closing releases the native memory of the {@link Deflater} instead
+ * of leaving it to garbage collection.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogPacketCompressor implements AutoCloseable {
+	/**
+	 * First byte of compressed packets
+	 */
+	public static final byte MARKER = 'z';
+
+	private final Deflater deflater;
+
+	/**
+	 * Min length in bytes of packets to compress
+	 */
+	private final int threshold;
+
+	/**
+	 * Reusable array for packets not backed by an accessible array
+	 */
+	private byte[] input = new byte[0];
+
+	/**
+	 * Reusable array holding the compressed packet
+	 */
+	private byte[] output = new byte[0];
+
+	/**
+	 * Creates a compressor.
+	 *
+	 * @param level     the zlib compression level from 0 to 9 or -1 for the
+	 *                  default level
+	 * @param threshold the min length in bytes of packets to compress
+	 * @throws IllegalArgumentException if {@code level} is invalid or
+	 *                                  {@code threshold} is less than one
+	 */
+	public SyslogPacketCompressor(final int level, final int threshold) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION || threshold < 1) {
+			throw new IllegalArgumentException(String
+					.format(Locale.ROOT, "Invalid compression: level %d, threshold %d bytes", level, threshold));
+		}
+		deflater = new Deflater(level);
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Compresses {@code packet} if it reaches the threshold and shrinks. The
+	 * returned buffer is valid until the next call.
+	 *
+	 * @param packet the encoded packet
+	 * @return the compressed packet or {@code packet} itself
+	 */
+	public ByteBuffer compress(final ByteBuffer packet) {
+		final int length = packet.remaining();
+		if (length < threshold) {
+			return packet;
+		}
+
+		if (packet.hasArray()) {
+			deflater.setInput(packet.array(), packet.arrayOffset() + packet.position(), length);
+		} else {
+			if (input.length < length) {
+				input = new byte[length];
+			}
+			packet.duplicate().get(input, 0, length);
+			deflater.setInput(input, 0, length);
+		}
+		deflater.finish();
+
+		// The compressed packet must be smaller, so that its last byte is a free one
+		if (output.length < length) {
+			output = new byte[length];
+		}
+		output[0] = MARKER;
+		final int compressedLength = 1 + deflater.deflate(output, 1, length - 1);
+		final boolean shrunk = deflater.finished() && compressedLength < length;
+		deflater.reset();
+
+		if (!shrunk) {
+			return packet;
+		}
+		packet.position(packet.limit());
+		return ByteBuffer.wrap(output, 0, compressedLength);
+	}
+
+	/**
+	 * Releases the {@link Deflater}. The compressor must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		deflater.end();
+	}
+}
@@ -0,0 +1,412 @@
+package com.github.loggly.log4j.helpers;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Encodes the parts of a syslog packet directly into a reusable
+ * {@link ByteBuffer}. Characters are copied chunk-wise into a reusable
+ * {@link CharBuffer} before encoding, so that encoding a packet does not
+ * allocate in steady state.
+ *
+ * <p>
+ * Messages exceeding the max packet length are split in a single pass. Each
+ * character is encoded once and fragments are cut at character boundaries right
+ * where the packet is full, so that each fragment is filled up to the max
+ * packet length including header and ellipsis.
+ *
+ * <p>
+ * Instances are not thread-safe. Each sender is expected to use its own
+ * instance.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogPacketEncoder {
+	/**
+	 * Number of characters copied and encoded at once
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	private static final int RADIX = 10;
+
+	/**
+	 * Marks the end of a fragment, which is continued by the next fragment, and the
+	 * start of a continuing fragment
+	 */
+	private static final String ELLIPSIS = "...";
+
+	private final CharsetEncoder encoder;
+
+	private final ByteBuffer packet;
+
+	private final char[] chunk = new char[CHUNK_SIZE];
+
+	private final CharBuffer chunkBuffer = CharBuffer.wrap(chunk);
+
+	/**
+	 * Number of bytes required to encode {@link #ELLIPSIS}
+	 */
+	private final int ellipsisLength;
+
+	/**
+	 * If true, fragments are preferably cut at line breaks
+	 */
+	private final boolean splitAtNewline;
+
+	/**
+	 * Whether characters of the current message have been dropped as there was no
+	 * space left
+	 */
+	private boolean messageTruncated = false;
+
+	/**
+	 * Creates an encoder for packets up to {@code maxPacketLength} bytes.
+	 *
+	 * @param charset         the charset to encode with
+	 * @param maxPacketLength the max length in bytes of a packet, including its PRI
+	 *                        part
+	 * @param splitAtNewline  {@code true} to cut fragments of split messages
+	 *                        preferably at line breaks
+	 */
+	public SyslogPacketEncoder(final Charset charset, final int maxPacketLength, final boolean splitAtNewline) {
+		encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		packet = ByteBuffer.allocate(maxPacketLength);
+		ellipsisLength = ELLIPSIS.getBytes(charset).length;
+		this.splitAtNewline = splitAtNewline;
+	}
+
+	/**
+	 * Encodes a message and passes the resulting packets to {@code packetConsumer}.
+	 * Messages exceeding the max packet length are split into fragments. Each
+	 * fragment but the last ends with an ellipsis, while each continuing fragment
+	 * starts with {@code header} and an ellipsis.
+	 *
+	 * <p>
+	 * If the PRI part, {@code header} and {@code prefix} do not leave space for the
+	 * message, the message is truncated. Headers drop optional parts, e.g.
+	 * STRUCTURED-DATA, instead of crowding out the message.
+	 *
+	 * @param priority       the encoded PRI part, e.g. of
+	 *                       {@link SyslogPriorityWriter#getPriority(int)}
+	 * @param header         the HEADER part
+	 * @param prefix         text to write between header and message in the first
+	 *                       fragment
+	 * @param message        the message, e.g. a String or a reusable buffer
+	 * @param messageStart   the index of the first character of {@code message} to
+	 *                       encode
+	 * @param packetConsumer consumer of encoded packets, which must not keep a
+	 *                       reference to the reusable buffer
+	 * @return {@code true} if the message has been encoded completely or
+	 *         {@code false} if parts of the header, the prefix or the message have
+	 *         been dropped
+	 */
+	public boolean encode(final byte[] priority,
+			final SyslogPacketHeader header,
+			final String prefix,
+			final CharSequence message,
+			final int messageStart,
+			final Consumer<ByteBuffer> packetConsumer) {
+		clear();
+		messageTruncated = false;
+		final boolean complete = appendPriority(priority) && header.appendTo(this) && append(prefix);
+
+		int offset = appendFragment(message, messageStart);
+		packetConsumer.accept(finish());
+
+		while (offset < message.length()) {
+			clear();
+			appendPriority(priority);
+			header.appendTo(this);
+			append(ELLIPSIS);
+
+			offset = appendFragment(message, offset);
+			packetConsumer.accept(finish());
+		}
+		return complete && !messageTruncated;
+	}
+
+	/**
+	 * Encodes as much of {@code message} as fits into the current packet. If the
+	 * message does not fit completely, the packet is terminated by an ellipsis.
+	 *
+	 * @param message the message
+	 * @param start   the index of the first character to encode
+	 * @return the index of the first character to encode into the next fragment or
+	 *         {@code message.length()} if the message is complete
+	 */
+	private int appendFragment(final CharSequence message, final int start) {
+		final int fragmentStart = packet.position();
+
+		// Reserve space for the trailing ellipsis
+		packet.limit(packet.capacity() - ellipsisLength);
+		int offset = append(message, start);
+		packet.limit(packet.capacity());
+		if (offset == message.length()) {
+			return offset;
+		}
+
+		// Check if the remaining characters fit into the reserved space
+		final int reservedStart = packet.position();
+		if (append(message, offset) == message.length()) {
+			return message.length();
+		}
+		packet.position(reservedStart);
+
+		// Avoid endless splitting if there is no space left for the message
+		if (offset == start) {
+			messageTruncated = true;
+			return message.length();
+		}
+
+		if (splitAtNewline) {
+			final int newline = lastIndexOfNewline(message, offset - 1);
+			if (newline >= start + (offset - start) / 2) {
+				packet.position(fragmentStart);
+				append(message, start, newline);
+				offset = newline + 1;
+			}
+		}
+		append(ELLIPSIS);
+		return offset;
+	}
+
+	/**
+	 * Returns the index of the last line feed of {@code text} at or before
+	 * {@code from}.
+	 *
+	 * @param text the text to search
+	 * @param from the index to start searching backwards
+	 * @return the index of the line feed or -1 if there is none
+	 */
+	private static int lastIndexOfNewline(final CharSequence text, final int from) {
+		int index = from;
+		while (index >= 0 && text.charAt(index) != '\n') {
+			index -= 1;
+		}
+		return index;
+	}
+
+	/**
+	 * Copies the characters of {@code text} from index {@code start} to index
+	 * {@code end} into {@code target}, using bulk copies of known types.
+	 *
+	 * @param text   the text to copy from
+	 * @param start  the index of the first character to copy
+	 * @param end    the index after the last character to copy
+	 * @param target the array to copy to, starting at index zero
+	 */
+	private static void getChars(final CharSequence text, final int start, final int end, final char[] target) {
+		if (text instanceof String) {
+			((String) text).getChars(start, end, target, 0);
+		} else if (text instanceof StringBuilder) {
+			((StringBuilder) text).getChars(start, end, target, 0);
+		} else if (text instanceof StringBuffer) {
+			((StringBuffer) text).getChars(start, end, target, 0);
+		} else {
+			for (int index = start; index < end; index += 1) {
+				target[index - start] = text.charAt(index);
+			}
+		}
+	}
+
+	/**
+	 * Discards the current packet to start a new one.
+	 *
+	 * @return this encoder
+	 */
+	public SyslogPacketEncoder clear() {
+		packet.clear();
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes encoded into the current packet.
+	 *
+	 * @return the current packet length in bytes
+	 */
+	public int length() {
+		return packet.position();
+	}
+
+	/**
+	 * Returns the number of bytes left in the current packet.
+	 *
+	 * @return the number of bytes left
+	 */
+	public int remaining() {
+		return packet.remaining();
+	}
+
+	/**
+	 * Discards the bytes encoded into the current packet after its first
+	 * {@code length} bytes, e.g. to replace an optional part, which does not fit.
+	 *
+	 * @param length the number of bytes to keep
+	 * @return this encoder
+	 */
+	public SyslogPacketEncoder truncate(final int length) {
+		packet.position(length);
+		return this;
+	}
+
+	/**
+	 * Copies the already encoded PRI part, e.g. {@code <14>}.
+	 *
+	 * @param priority the encoded PRI part
+	 * @return {@code true} if the PRI part fits into the packet, else {@code false}
+	 */
+	@SuppressWarnings("PMD.UseVarargs")
+	public boolean appendPriority(final byte[] priority) {
+		if (packet.remaining() < priority.length) {
+			return false;
+		}
+		packet.put(priority);
+		return true;
+	}
+
+	/**
+	 * Encodes the decimal digits of {@code value}, padded with leading zeros to
+	 * {@code width} digits, without creating a String.
+	 *
+	 * @param value the non-negative value
+	 * @param width the min number of digits
+	 * @return {@code true} if the digits fit into the packet, else {@code false}
+	 */
+	public boolean appendDigits(final int value, final int width) {
+		final int length = writeDigits(value, width, 0);
+
+		encoder.reset();
+		return !encodeChunk(length, true);
+	}
+
+	/**
+	 * Writes the decimal digits of {@code value} into {@link #chunk}.
+	 *
+	 * @param value  the non-negative value
+	 * @param width  the min number of digits
+	 * @param offset the index of {@link #chunk} to write the first digit to
+	 * @return the index of {@link #chunk} after the last digit
+	 */
+	private int writeDigits(final int value, final int width, final int offset) {
+		int divisor = 1;
+		int digits = 1;
+		while (divisor * RADIX <= value || digits < width) {
+			divisor *= RADIX;
+			digits += 1;
+		}
+
+		int length = offset;
+		while (divisor > 0) {
+			chunk[length] = Character.forDigit(value / divisor % RADIX, RADIX);
+			length += 1;
+			divisor /= RADIX;
+		}
+		return length;
+	}
+
+	/**
+	 * Copies pre-encoded {@code bytes} into the current packet. Nothing is copied
+	 * if {@code bytes} do not fit.
+	 *
+	 * @param bytes the encoded bytes
+	 * @return {@code true} if {@code bytes} fit into the packet, else {@code false}
+	 */
+	public boolean append(final byte[] bytes) {
+		if (packet.remaining() < bytes.length) {
+			return false;
+		}
+		packet.put(bytes);
+		return true;
+	}
+
+	/**
+	 * Encodes {@code text} into the current packet.
+	 *
+	 * @param text the text to encode
+	 * @return {@code true} if {@code text} fits into the packet, else {@code false}
+	 */
+	public boolean append(final String text) {
+		return append(text, 0) == text.length();
+	}
+
+	/**
+	 * Encodes {@code text} starting at character index {@code start} into the
+	 * current packet. Encoding stops at a character boundary if the packet is full.
+	 *
+	 * @param text  the text to encode
+	 * @param start the index of the first character to encode
+	 * @return the index of the first character, which did not fit into the packet
+	 *         or {@code text.length()} if all characters have been encoded
+	 */
+	public int append(final CharSequence text, final int start) {
+		return append(text, start, text.length());
+	}
+
+	/**
+	 * Encodes the characters of {@code text} from index {@code start} to index
+	 * {@code end} into the current packet. Encoding stops at a character boundary
+	 * if the packet is full.
+	 *
+	 * @param text  the text to encode
+	 * @param start the index of the first character to encode
+	 * @param end   the index after the last character to encode
+	 * @return the index of the first character, which did not fit into the packet
+	 *         or {@code end} if all characters have been encoded
+	 */
+	public int append(final CharSequence text, final int start, final int end) {
+		encoder.reset();
+
+		int offset = start;
+		while (offset < end) {
+			final int chunkEnd = Math.min(end, offset + chunk.length);
+			getChars(text, offset, chunkEnd, chunk);
+
+			final boolean overflow = encodeChunk(chunkEnd - offset, chunkEnd == end);
+			offset += chunkBuffer.position();
+			if (overflow) {
+				return offset;
+			}
+		}
+		if (start < end) {
+			encoder.flush(packet);
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the current packet ready to be written. Subsequent calls of any other
+	 * method but {@link #clear()} are not allowed.
+	 *
+	 * @return the current packet
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Exposing the reusable buffer is the purpose")
+	public ByteBuffer finish() {
+		packet.flip();
+		return packet;
+	}
+
+	/**
+	 * Encodes the first {@code length} characters of {@link #chunk}.
+	 *
+	 * <p>
+	 * The number of encoded characters is available as position of
+	 * {@link #chunkBuffer} afterwards.
+	 *
+	 * @param length     the number of characters to encode
+	 * @param endOfInput {@code true} if no more characters follow
+	 * @return {@code true} if the packet is full, else {@code false}
+	 */
+	private boolean encodeChunk(final int length, final boolean endOfInput) {
+		chunkBuffer.clear();
+		chunkBuffer.limit(length);
+		return encoder.encode(chunkBuffer, packet, endOfInput).isOverflow();
+	}
+}
@@ -0,0 +1,21 @@
+package com.github.loggly.log4j.helpers;
+
+/**
+ * The HEADER part of a syslog packet, written right after the PRI part of each
+ * packet and each fragment of a split message.
+ */
+@FunctionalInterface
+public interface SyslogPacketHeader {
+	/**
+	 * Header of packets without HEADER part
+	 */
+	SyslogPacketHeader EMPTY = encoder -> true;
+
+	/**
+	 * Encodes this header into the current packet of {@code encoder}.
+	 *
+	 * @param encoder the encoder
+	 * @return {@code true} if the header fits into the packet, else {@code false}
+	 */
+	boolean appendTo(SyslogPacketEncoder encoder);
+}
@@ -0,0 +1,85 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes already encoded syslog packets to a transport. Transports are
+ * byte-oriented: packets contain the complete syslog message including its PRI
+ * part, while framing, e.g. octet counting, is up to the transport.
+ *
+ * @see com.github.loggly.log4j.SyslogTransport
+ */
+public interface SyslogPacketWriter extends Closeable, Flushable {
+	/**
+	 * Writes the remaining bytes of {@code packet} as one syslog message. The
+	 * packet contains the PRI part already. The buffer might be reused by the
+	 * caller as soon as this method returns.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	void write(ByteBuffer packet) throws IOException;
+
+	/**
+	 * Writes the remaining bytes of each of {@code packets} as one syslog message
+	 * each, keeping their order. Writing stops at the first failure, which is
+	 * passed to {@code failures} instead of being thrown.
+	 *
+	 * <p>
+	 * The default implementation writes packet by packet. Transports able to write
+	 * multiple packets at once, e.g. by coalescing frames into fewer system calls,
+	 * override this.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written, which is less than the number of
+	 *         {@code packets} only if writing failed
+	 */
+	default int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		for (int index = 0; index < packets.size(); index += 1) {
+			try {
+				write(packets.get(index));
+			} catch (final IOException e) {
+				failures.accept(e);
+				return index;
+			}
+		}
+		return packets.size();
+	}
+
+	/**
+	 * Returns the writer to use for packets of the given routing key. Writers with
+	 * multiple connections return the connection assigned to {@code key}, so that
+	 * the order of packets with equal keys is kept.
+	 *
+	 * @param key the routing key, e.g. a thread or logger name
+	 * @return the writer to use for {@code key}
+	 */
+	default SyslogPacketWriter route(final String key) {
+		return this;
+	}
+
+	/**
+	 * Returns the number of connections restored after failures.
+	 *
+	 * @return the number of reconnects
+	 */
+	default long getReconnects() {
+		return 0;
+	}
+
+	/**
+	 * Returns the number of packets, which have been dropped by this writer instead
+	 * of failing, e.g. because a spill queue is full.
+	 *
+	 * @return the number of dropped packets
+	 */
+	default long getDroppedPackets() {
+		return 0;
+	}
+}
@@ -0,0 +1,198 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes encoded packets to the transport of an appender and reports the
+ * outcome of writing. The PRI parts of all severities of the configured
+ * facility, e.g. {@code <14>}, are encoded once, so that senders copy them into
+ * packets instead of formatting them per packet.
+ *
+ * <p>
+ * Changing the facility or charset creates a new instance sharing the same
+ * transport.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class SyslogPriorityWriter implements Closeable {
+	/**
+	 * Number of syslog severities from emergency (0) to debug (7)
+	 */
+	public static final int SEVERITIES = 8;
+
+	private final SyslogPacketWriter writer;
+
+	private final int facility;
+
+	private final Charset charset;
+
+	/**
+	 * Encoded PRI parts per severity
+	 */
+	private final byte[][] priorities = new byte[SEVERITIES][];
+
+	/**
+	 * Creates a writer to {@code writer}.
+	 *
+	 * @param writer   the transport
+	 * @param facility the syslog facility, e.g. {@code 1 << 3} for USER
+	 * @param charset  the charset to encode PRI parts with
+	 */
+	public SyslogPriorityWriter(final SyslogPacketWriter writer, final int facility, final Charset charset) {
+		this.writer = writer;
+		this.facility = facility;
+		this.charset = charset;
+
+		final CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		for (int severity = 0; severity < SEVERITIES; severity += 1) {
+			priorities[severity] = encode(encoder, "<" + (facility + severity) + ">");
+		}
+	}
+
+	private static byte[] encode(final CharsetEncoder encoder, final String priority) {
+		try {
+			final ByteBuffer encoded = encoder.encode(CharBuffer.wrap(priority));
+			final byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			return bytes;
+		} catch (final CharacterCodingException e) {
+			// cannot happen as malformed and unmappable characters are replaced
+			throw new IllegalStateException(String.format(Locale.ROOT, "Cannot encode %s", priority), e);
+		}
+	}
+
+	/**
+	 * Returns a writer to the same transport using {@code facilityToUse} and
+	 * {@code charsetToUse} for PRI parts.
+	 *
+	 * @param facilityToUse the syslog facility
+	 * @param charsetToUse  the charset to encode PRI parts with
+	 * @return this writer if nothing changed, else a new writer
+	 */
+	public SyslogPriorityWriter withEncoding(final int facilityToUse, final Charset charsetToUse) {
+		if (facilityToUse == facility && charsetToUse.equals(charset)) {
+			return this;
+		}
+		return new SyslogPriorityWriter(writer, facilityToUse, charsetToUse);
+	}
+
+	/**
+	 * Returns the encoded PRI part of {@code severity}. The returned array must not
+	 * be modified.
+	 *
+	 * @param severity the syslog severity, clamped to the range of severities
+	 * @return the encoded PRI part
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Shared by intention to avoid copying per packet")
+	public byte[] getPriority(final int severity) {
+		return priorities[Math.max(0, Math.min(SEVERITIES - 1, severity))];
+	}
+
+	public int getFacility() {
+		return facility;
+	}
+
+	/**
+	 * Returns the transport, which selects the connection of each packet on its
+	 * own.
+	 *
+	 * @return the transport
+	 */
+	public SyslogPacketWriter getPacketWriter() {
+		return writer;
+	}
+
+	/**
+	 * Returns the transport to use for packets of the given routing key.
+	 *
+	 * @param key the routing key, e.g. a thread or logger name
+	 * @return the transport to use for {@code key}
+	 * @see SyslogPacketWriter#route(String)
+	 */
+	public SyslogPacketWriter route(final String key) {
+		return writer.route(key);
+	}
+
+	/**
+	 * Writes {@code packet} to {@code target}. Failures are returned as result
+	 * instead of being thrown.
+	 *
+	 * @param target   the transport returned by {@link #route(String)}
+	 * @param packet   the encoded packet
+	 * @param failures consumer of the cause of a failure
+	 * @return {@link SendResult#SENT} on success, else {@link SendResult#FAILED}
+	 */
+	public SendResult write(final SyslogPacketWriter target,
+			final ByteBuffer packet,
+			final Consumer<? super IOException> failures) {
+		try {
+			target.write(packet);
+			return SendResult.SENT;
+		} catch (final IOException e) {
+			failures.accept(e);
+			return SendResult.FAILED;
+		}
+	}
+
+	/**
+	 * Writes {@code packets} to {@code target} at once, so that packets of
+	 * concurrent events do not interleave. Failures are passed to {@code failures}
+	 * instead of being thrown.
+	 *
+	 * @param target   the transport returned by {@link #route(String)}
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written, which is less than the number of
+	 *         {@code packets} only if writing failed
+	 * @see SyslogPacketWriter#write(List, Consumer)
+	 */
+	public int write(final SyslogPacketWriter target,
+			final List<ByteBuffer> packets,
+			final Consumer<? super IOException> failures) {
+		return target.write(packets, failures);
+	}
+
+	/**
+	 * Flushes the transport. Failures are returned as result instead of being
+	 * thrown.
+	 *
+	 * @param failures consumer of the cause of a failure
+	 * @return {@link SendResult#SENT} on success, else {@link SendResult#FAILED}
+	 */
+	public SendResult flush(final Consumer<? super IOException> failures) {
+		try {
+			writer.flush();
+			return SendResult.SENT;
+		} catch (final IOException e) {
+			failures.accept(e);
+			return SendResult.FAILED;
+		}
+	}
+
+	public long getReconnects() {
+		return writer.getReconnects();
+	}
+
+	public long getDroppedPackets() {
+		return writer.getDroppedPackets();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
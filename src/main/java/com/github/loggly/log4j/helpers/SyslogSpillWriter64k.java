@@ -0,0 +1,529 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes syslog packets to another writer and spills them to a
+ * {@link SpillQueue} on disk while that writer fails, e.g. during an outage of
+ * the syslog host. Spilled packets are replayed in order by a background
+ * thread. While packets are spilled, new packets are appended to the queue, so
+ * that they are written after the spilled ones.
+ *
+ * <p>
+ * {@link #writeLock} guards the queue only. Writing to the other writer does not
+ * hold it, so that concurrent callers are not serialized.
+ *
+ * <p>
+ * Packets buffered by the other writer at the moment its connection breaks are
+ * spilled if that writer passes them to the consumer given on creation, see
+ * {@link SyslogTcpBatchWriter64k}.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogSpillWriter64k extends SyslogWriter64k {
+	/**
+	 * Delay between replay attempts while the other writer fails
+	 */
+	private static final Duration REPLAY_RETRY_DELAY = Duration.ofSeconds(1);
+
+	/**
+	 * Max time to wait for the replay thread on close
+	 */
+	private static final Duration REPLAY_CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+	/**
+	 * Ignores failures of the other writer, as failed packets are spilled
+	 */
+	private static final Consumer<IOException> IGNORE_FAILURE = failure -> {
+		// packets are spilled instead
+	};
+
+	private final SyslogPacketWriter delegate;
+
+	private final Optional<SpillQueue> spillQueue;
+
+	/**
+	 * Number of packets discarded by the other writer, which could not be spilled
+	 */
+	private final LongAdder droppedPackets = new LongAdder();
+
+	/**
+	 * Spilling writers of the connections returned by
+	 * {@link SyslogPacketWriter#route(String)} of {@link #delegate}
+	 */
+	private final Map<SyslogPacketWriter, SyslogPacketWriter> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * Signals the replay thread to retry or to stop
+	 */
+	private final Condition replaySignal = writeLock.newCondition();
+
+	/**
+	 * Whether new packets are appended to the queue instead of being written,
+	 * written while holding {@link #writeLock}
+	 */
+	private volatile boolean spilling;
+
+	/**
+	 * Thread replaying spilled packets, guarded by {@link #writeLock}
+	 */
+	private Optional<Thread> replayThread = Optional.empty();
+
+	/**
+	 * Whether this writer has been closed, guarded by {@link #writeLock}
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a writer spilling to {@code directory}. If the spill queue cannot be
+	 * opened, e.g. because another appender uses the same directory, packets are
+	 * written to {@code delegate} without spilling.
+	 *
+	 * @param syslogHost  the syslog host, optionally including a port
+	 * @param charset     the charset used to encode String messages
+	 * @param delegate    the writer to write to
+	 * @param directory   the directory of the spill queue
+	 * @param maxDiskSize the max size in bytes of all spill files
+	 * @param segmentSize the size in bytes of a spill file
+	 * @param retention   the max age of spill files
+	 */
+	public SyslogSpillWriter64k(final String syslogHost,
+			final Charset charset,
+			final SyslogPacketWriter delegate,
+			final Path directory,
+			final long maxDiskSize,
+			final int segmentSize,
+			final Duration retention) {
+		this(syslogHost, charset, discardedPackets -> delegate, directory, maxDiskSize, segmentSize, retention);
+	}
+
+	/**
+	 * Creates a writer spilling to {@code directory}, which creates the other
+	 * writer using {@code delegateFactory}. The factory is passed a consumer
+	 * spilling packets, which the other writer discarded after a failure, e.g.
+	 * pending frames of a batch.
+	 *
+	 * @param syslogHost      the syslog host, optionally including a port
+	 * @param charset         the charset used to encode String messages
+	 * @param delegateFactory creates the writer to write to given a consumer of
+	 *                        discarded packets
+	 * @param directory       the directory of the spill queue
+	 * @param maxDiskSize     the max size in bytes of all spill files
+	 * @param segmentSize     the size in bytes of a spill file
+	 * @param retention       the max age of spill files
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public SyslogSpillWriter64k(final String syslogHost,
+			final Charset charset,
+			final Function<Consumer<ByteBuffer>, SyslogPacketWriter> delegateFactory,
+			final Path directory,
+			final long maxDiskSize,
+			final int segmentSize,
+			final Duration retention) {
+		super(syslogHost, charset);
+
+		SpillQueue queue = null;
+		try {
+			queue = new SpillQueue(directory, maxDiskSize, segmentSize, retention);
+		} catch (final IOException | IllegalArgumentException e) {
+			LogLog.error("Could not open spill queue in " + directory + ". Spilling is disabled.", e);
+		}
+		spillQueue = Optional.ofNullable(queue);
+		spilling = queue != null && !queue.isEmpty();
+		delegate = delegateFactory.apply(this::spillDiscarded);
+	}
+
+	@Override
+	public long getReconnects() {
+		return delegate.getReconnects();
+	}
+
+	@Override
+	public long getDroppedPackets() {
+		return delegate.getDroppedPackets()
+				+ spillQueue.map(SpillQueue::getDroppedPackets).orElse(0L)
+				+ droppedPackets.sum();
+	}
+
+	/**
+	 * Returns a writer spilling packets, which cannot be written to the connection
+	 * of {@code key}.
+	 *
+	 * @param key the routing key, e.g. a thread or logger name
+	 * @return the writer to use for {@code key}
+	 */
+	@Override
+	public SyslogPacketWriter route(final String key) {
+		final SyslogPacketWriter target = delegate.route(key);
+		if (target == delegate) {
+			return this;
+		}
+		return routes.computeIfAbsent(target, Route::new);
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Writes {@code packet} or spills it if writing fails or if spilled packets
+	 * are pending.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException if spilling fails
+	 */
+	@Override
+	public void write(final ByteBuffer packet) throws IOException {
+		write(delegate, packet);
+	}
+
+	/**
+	 * Writes {@code packets} at once or spills those, which cannot be written.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure to spill
+	 * @return the number of packets written or spilled
+	 */
+	@Override
+	public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		return write(delegate, packets, failures);
+	}
+
+	/**
+	 * Writes {@code packet} to {@code target} or spills it if writing fails or if
+	 * spilled packets are pending.
+	 *
+	 * @param target the writer to write to
+	 * @param packet the encoded packet
+	 * @throws IOException if spilling fails
+	 */
+	private void write(final SyslogPacketWriter target, final ByteBuffer packet) throws IOException {
+		if (!spillQueue.isPresent()) {
+			target.write(packet);
+			return;
+		}
+
+		if (!spilling) {
+			final int position = packet.position();
+			try {
+				target.write(packet);
+				return;
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				packet.position(position);
+			}
+		}
+		spill(packet);
+	}
+
+	/**
+	 * Writes {@code packets} to {@code target} at once or spills those, which
+	 * cannot be written.
+	 *
+	 * @param target   the writer to write to
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure to spill
+	 * @return the number of packets written or spilled
+	 */
+	private int write(final SyslogPacketWriter target,
+			final List<ByteBuffer> packets,
+			final Consumer<? super IOException> failures) {
+		if (!spillQueue.isPresent()) {
+			return target.write(packets, failures);
+		}
+
+		final boolean writing = !spilling;
+		int written = 0;
+		if (writing) {
+			// marks allow spilling a packet, which has been written partially
+			for (final ByteBuffer packet : packets) {
+				packet.mark();
+			}
+			written = target.write(packets, IGNORE_FAILURE);
+		}
+		for (int index = written; index < packets.size(); index += 1) {
+			final ByteBuffer packet = packets.get(index);
+			if (writing) {
+				packet.reset();
+			}
+			try {
+				spill(packet);
+			} catch (final IOException e) {
+				failures.accept(e);
+				return index;
+			}
+		}
+		return packets.size();
+	}
+
+	/**
+	 * Appends {@code packet} to the queue and starts replaying.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void spill(final ByteBuffer packet) throws IOException {
+		try {
+			writeLock.lock();
+			spillQueue.get().offer(packet);
+			spilling = true;
+			startReplay();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Spills {@code packet}, which the other writer discarded after a failure.
+	 * Packets, which cannot be spilled, are counted as dropped packets.
+	 *
+	 * @param packet the encoded packet
+	 */
+	private void spillDiscarded(final ByteBuffer packet) {
+		if (!spillQueue.isPresent()) {
+			droppedPackets.increment();
+			return;
+		}
+		try {
+			spill(packet);
+		} catch (@SuppressWarnings("unused") final IOException e) {
+			droppedPackets.increment();
+		}
+	}
+
+	/**
+	 * Starts the replay thread unless it is running already or this writer has
+	 * been closed, guarded by {@link #writeLock}.
+	 */
+	private void startReplay() {
+		if (closed || replayThread.isPresent()) {
+			return;
+		}
+		final Thread thread = new Thread(this::replay, "SyslogSpillWriter64k-replay");
+		thread.setDaemon(true);
+		replayThread = Optional.of(thread);
+		thread.start();
+	}
+
+	/**
+	 * Replays spilled packets until the queue is empty or this writer has been
+	 * closed. {@link #writeLock} is held while accessing the queue, but not while
+	 * writing to the other writer. Failed packets are retried after
+	 * {@link #REPLAY_RETRY_DELAY}.
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void replay() {
+		final SpillQueue queue = spillQueue.get();
+		try {
+			Optional<ByteBuffer> packet = peek(queue);
+			while (packet.isPresent()) {
+				boolean replayed;
+				try {
+					delegate.write(packet.get());
+					replayed = true;
+				} catch (@SuppressWarnings("unused") final IOException e) {
+					replayed = false;
+				}
+
+				try {
+					writeLock.lock();
+					if (replayed) {
+						queue.remove();
+					} else if (!closed) {
+						replaySignal.awaitNanos(REPLAY_RETRY_DELAY.toNanos());
+					}
+				} finally {
+					writeLock.unlock();
+				}
+				packet = peek(queue);
+			}
+			delegate.flush();
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IOException e) {
+			LogLog.error("Failed to replay spilled syslog packets.", e);
+		} finally {
+			stopReplay();
+		}
+	}
+
+	/**
+	 * Returns the next spilled packet. If the queue is empty, spilling and
+	 * replaying end, so that the next spilled packet starts another replay thread.
+	 *
+	 * @param queue the spill queue
+	 * @return the next packet or empty if the queue is empty or this writer has
+	 *         been closed
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private Optional<ByteBuffer> peek(final SpillQueue queue) throws IOException {
+		try {
+			writeLock.lock();
+			if (closed) {
+				return Optional.empty();
+			}
+			final Optional<ByteBuffer> packet = queue.peek();
+			if (!packet.isPresent()) {
+				spilling = false;
+				replayThread = Optional.empty();
+			}
+			return packet;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the current replay thread as stopped after a failure, so that the next
+	 * spilled packet starts another one.
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void stopReplay() {
+		try {
+			writeLock.lock();
+			if (replayThread.filter(thread -> thread == Thread.currentThread()).isPresent()) {
+				replayThread = Optional.empty();
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts replaying spilled packets if required and flushes the other writer.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void flush() throws IOException {
+		if (spilling) {
+			try {
+				writeLock.lock();
+				startReplay();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+		delegate.flush();
+	}
+
+	/**
+	 * Stops replaying and closes the other writer and the spill queue. Packets,
+	 * which have not been replayed yet, are replayed after the next start.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void close() throws IOException {
+		final Optional<Thread> thread;
+		try {
+			writeLock.lock();
+			closed = true;
+			replaySignal.signalAll();
+			thread = replayThread;
+		} finally {
+			writeLock.unlock();
+		}
+
+		try {
+			delegate.close();
+		} finally {
+			awaitReplay(thread);
+			if (spillQueue.isPresent()) {
+				closeSpillQueue(spillQueue.get());
+			}
+		}
+	}
+
+	/**
+	 * Waits up to {@link #REPLAY_CLOSE_TIMEOUT} for the replay thread to stop.
+	 *
+	 * @param thread the replay thread or empty
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private static void awaitReplay(final Optional<Thread> thread) {
+		if (!thread.isPresent()) {
+			return;
+		}
+		try {
+			thread.get().join(REPLAY_CLOSE_TIMEOUT.toMillis());
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (thread.get().isAlive()) {
+			LogLog.warn("Spilled syslog packets are still being replayed while closing.");
+		}
+	}
+
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void closeSpillQueue(final SpillQueue queue) throws IOException {
+		try {
+			writeLock.lock();
+			queue.close();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes to a single connection of the other writer, spilling packets, which
+	 * cannot be written
+	 */
+	@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+			justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+	private final class Route implements SyslogPacketWriter {
+		private final SyslogPacketWriter target;
+
+		Route(final SyslogPacketWriter target) {
+			this.target = target;
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			SyslogSpillWriter64k.this.write(target, packet);
+		}
+
+		@Override
+		public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+			return SyslogSpillWriter64k.this.write(target, packets, failures);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			target.close();
+		}
+	}
+}
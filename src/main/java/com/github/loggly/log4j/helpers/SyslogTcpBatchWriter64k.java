@@ -0,0 +1,524 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes syslog messages to a TCP stream, coalescing many frames into few
+ * writes. Frames are collected inside a direct buffer, which is written if it
+ * is full, if the linger time elapsed since the first pending frame or on
+ * {@link #flush()} and {@link #close()}.
+ *
+ * <p>
+ * A frame, which does not fit into the remaining buffer, is written together
+ * with the pending frames using a single gathering write without copying it.
+ *
+ * <p>
+ * If writing fails, pending frames are discarded. Their packets are passed to an
+ * optional consumer, e.g. a spill queue, or counted as dropped packets. While the syslog host is unavailable, frames are not collected, but
+ * writing fails fast.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogTcpBatchWriter64k extends SyslogWriter64k {
+	/**
+	 * Index of the packet inside {@link #gather}
+	 */
+	private static final int PACKET_INDEX = 2;
+
+	private final Duration socketTimeout;
+
+	private final TcpFraming framing;
+
+	private final Duration linger;
+
+	private final AtomicReference<SocketChannel> channel = new AtomicReference<>(null);
+
+	/**
+	 * Pending frames, guarded by {@link #writeLock}
+	 */
+	private final ByteBuffer batch;
+
+	/**
+	 * Number of frames inside {@link #batch}, guarded by {@link #writeLock}
+	 */
+	private int batchFrames = 0;
+
+	/**
+	 * Start and end of the packet of each frame inside {@link #batch}, guarded by
+	 * {@link #writeLock}
+	 */
+	private int[] batchPackets = new int[32];
+
+	/**
+	 * Consumer of the packets of discarded frames
+	 */
+	private final Optional<Consumer<ByteBuffer>> discardedPackets;
+
+	private final LongAdder droppedPackets = new LongAdder();
+
+	private final byte[] prefixBuffer = TcpFraming.createBuffer();
+
+	private final ByteBuffer prefix = ByteBuffer.wrap(prefixBuffer);
+
+	private final byte[] trailerBuffer = TcpFraming.createBuffer();
+
+	private final ByteBuffer trailer = ByteBuffer.wrap(trailerBuffer);
+
+	/**
+	 * Reusable buffers of a gathering write: pending frames, prefix, packet and
+	 * trailer, guarded by {@link #writeLock}
+	 */
+	private final ByteBuffer[] gather;
+
+	/**
+	 * Fails fast while the syslog host is unavailable and reconnects in the
+	 * background
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Thread flushing pending frames after the linger time, guarded by
+	 * {@link #writeLock} and created lazily
+	 */
+	private Optional<ScheduledExecutorService> lingerScheduler = Optional.empty();
+
+	/**
+	 * Scheduled flush of the pending frames, guarded by {@link #writeLock}
+	 */
+	private Optional<ScheduledFuture<?>> lingerFlush = Optional.empty();
+
+	/**
+	 * Creates a batching TCP writer.
+	 *
+	 * @param syslogHost       the syslog host, optionally including a port
+	 * @param charset          the charset used to encode String messages
+	 * @param socketTimeout    the connect timeout
+	 * @param framing          the framing of messages inside the TCP stream
+	 * @param batchSize        the size in bytes of the buffer collecting frames
+	 * @param linger           the max time frames are kept pending, or zero to
+	 *                         write pending frames only if the buffer is full or on
+	 *                         flush
+	 * @param reconnectBackoff the backoff between reconnect attempts while the
+	 *                         syslog host is unavailable
+	 */
+	public SyslogTcpBatchWriter64k(final String syslogHost,
+			final Charset charset,
+			final Duration socketTimeout,
+			final TcpFraming framing,
+			final int batchSize,
+			final Duration linger,
+			final ReconnectBackoff reconnectBackoff) {
+		this(syslogHost, charset, socketTimeout, framing, batchSize, linger, reconnectBackoff, Optional.empty());
+	}
+
+	/**
+	 * Creates a batching TCP writer passing the packets of discarded frames to
+	 * {@code discardedPackets} instead of dropping them.
+	 *
+	 * @param syslogHost       the syslog host, optionally including a port
+	 * @param charset          the charset used to encode String messages
+	 * @param socketTimeout    the connect timeout
+	 * @param framing          the framing of messages inside the TCP stream
+	 * @param batchSize        the size in bytes of the buffer collecting frames
+	 * @param linger           the max time frames are kept pending, or zero to
+	 *                         write pending frames only if the buffer is full or on
+	 *                         flush
+	 * @param reconnectBackoff the backoff between reconnect attempts while the
+	 *                         syslog host is unavailable
+	 * @param discardedPackets consumer of the packets of discarded frames, in
+	 *                         order, which must not keep the passed buffer, or
+	 *                         empty to drop them
+	 */
+	public SyslogTcpBatchWriter64k(final String syslogHost,
+			final Charset charset,
+			final Duration socketTimeout,
+			final TcpFraming framing,
+			final int batchSize,
+			final Duration linger,
+			final ReconnectBackoff reconnectBackoff,
+			final Optional<Consumer<ByteBuffer>> discardedPackets) {
+		super(syslogHost, charset);
+
+		if (batchSize < 1) {
+			throw new IllegalArgumentException(String.format("Invalid batch size: %s", batchSize));
+		}
+
+		this.socketTimeout = socketTimeout;
+		this.framing = framing;
+		this.linger = linger;
+		this.discardedPackets = discardedPackets;
+		batch = ByteBuffer.allocateDirect(batchSize);
+		gather = new ByteBuffer[] { batch, prefix, null, trailer };
+		circuitBreaker = new CircuitBreaker("SyslogTcpBatchWriter64k-reconnect", reconnectBackoff, this::reconnect);
+	}
+
+	/**
+	 * Returns the channel, connecting synchronously if the circuit is closed,
+	 * guarded by {@link #writeLock}. While the circuit is open, this fails fast
+	 * and reconnecting is left to the background probe.
+	 *
+	 * @return the channel
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	private SocketChannel getChannel() throws IOException {
+		final SocketChannel current = channel.get();
+		if (current != null) {
+			return current;
+		}
+		failIfUnavailable();
+
+		final SocketChannel created = connect();
+		channel.set(created);
+		return created;
+	}
+
+	/**
+	 * Fails fast if there is no channel and the circuit is open, so that frames
+	 * are neither collected nor written while the syslog host is unavailable.
+	 *
+	 * @throws IOException if the circuit is open
+	 */
+	private void failIfUnavailable() throws IOException {
+		if (channel.get() == null && circuitBreaker.isOpen()) {
+			throw new IOException("Syslog host is unavailable. Waiting for reconnect.");
+		}
+	}
+
+	/**
+	 * Creates a connected channel. While the circuit is closed, this is called by
+	 * {@link #getChannel()} holding {@link #writeLock}. The background probe calls
+	 * this without holding {@link #writeLock}.
+	 *
+	 * @return the connected channel
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "UNENCRYPTED_SOCKET", justification = "Offering insecure TCP")
+	private SocketChannel connect() throws IOException {
+		final InetAddress address = getSyslogHost();
+		if (address == null) {
+			throw new IOException("Unknown syslog host");
+		}
+
+		final SocketChannel created = SocketChannel.open();
+		try {
+			created.socket()
+					.connect(new InetSocketAddress(address, getSyslogPort()), (int) socketTimeout.toMillis());
+		} catch (final IOException e) {
+			created.close();
+			throw e;
+		}
+		return created;
+	}
+
+	/**
+	 * Connects in the background while the circuit is open. Callers are not blocked
+	 * while connecting. The new connection is discarded if another one has been
+	 * created meanwhile or if the writer has been closed.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void reconnect() throws IOException {
+		final SocketChannel created = connect();
+		try {
+			writeLock.lock();
+			if (channel.get() == null && !circuitBreaker.isClosed()) {
+				channel.set(created);
+			} else {
+				created.close();
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Appends {@code packet} as one frame to the pending frames. The octet count is
+	 * computed from the encoded length.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void write(final ByteBuffer packet) throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				writeFrame(packet);
+			} catch (final IOException e) {
+				closeOnFailure();
+				throw e;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Appends {@code packet} as one frame to the pending frames or writes it
+	 * together with them if the buffer is full, guarded by {@link #writeLock}.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	private void writeFrame(final ByteBuffer packet) throws IOException {
+		failIfUnavailable();
+
+		// compute syslog frame according to: https://tools.ietf.org/html/rfc6587
+		prefix.clear();
+		prefix.position(framing.prefix(packet.remaining(), prefixBuffer));
+		trailer.clear();
+		trailer.limit(framing.trailer(trailerBuffer));
+
+		if (prefix.remaining() + packet.remaining() + trailer.remaining() <= batch.remaining()) {
+			final boolean empty = batch.position() == 0;
+			if (batchPackets.length < 2 * batchFrames + 2) {
+				batchPackets = Arrays.copyOf(batchPackets, 2 * batchPackets.length);
+			}
+			batch.put(prefix);
+			batchPackets[2 * batchFrames] = batch.position();
+			batch.put(packet);
+			batchPackets[2 * batchFrames + 1] = batch.position();
+			batch.put(trailer);
+			batchFrames += 1;
+			if (empty) {
+				scheduleLingerFlush();
+			}
+			return;
+		}
+
+		batch.flip();
+		gather[PACKET_INDEX] = packet;
+		try {
+			writeFully(getChannel(), gather);
+			batchFrames = 0;
+		} finally {
+			gather[PACKET_INDEX] = null;
+			batch.clear();
+		}
+		cancelLingerFlush();
+	}
+
+	/**
+	 * Writes all remaining bytes of {@code buffers} using gathering writes.
+	 *
+	 * @param target  the channel to write to
+	 * @param buffers the buffers to write
+	 * @throws IOException on I/O error
+	 */
+	private static void writeFully(final SocketChannel target, final ByteBuffer[] buffers) throws IOException {
+		long remaining = 0;
+		for (final ByteBuffer buffer : buffers) {
+			remaining += buffer.remaining();
+		}
+		while (remaining > 0) {
+			remaining -= target.write(buffers);
+		}
+	}
+
+	/**
+	 * Schedules writing the pending frames after the linger time, guarded by
+	 * {@link #writeLock}.
+	 */
+	private void scheduleLingerFlush() {
+		if (linger.isZero() || linger.isNegative()) {
+			return;
+		}
+		if (!lingerScheduler.isPresent()) {
+			lingerScheduler = Optional.of(Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "SyslogTcpBatchWriter64k-linger");
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		lingerFlush = Optional
+				.of(lingerScheduler.get().schedule(this::flushQuietly, linger.toNanos(), TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Cancels the scheduled write of pending frames, guarded by
+	 * {@link #writeLock}.
+	 */
+	private void cancelLingerFlush() {
+		lingerFlush.ifPresent(future -> future.cancel(false));
+		lingerFlush = Optional.empty();
+	}
+
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (final IOException e) {
+			if (!circuitBreaker.isOpen()) {
+				LogLog.error("Failed to write pending syslog messages.", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending frames.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void flush() throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				flushBatch();
+			} catch (final IOException e) {
+				closeOnFailure();
+				throw e;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the pending frames, guarded by {@link #writeLock}.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	private void flushBatch() throws IOException {
+		cancelLingerFlush();
+		if (batch.position() == 0) {
+			return;
+		}
+
+		batch.flip();
+		try {
+			final SocketChannel target = getChannel();
+			while (batch.hasRemaining()) {
+				target.write(batch);
+			}
+			batchFrames = 0;
+		} finally {
+			batch.clear();
+		}
+	}
+
+	@Override
+	public long getReconnects() {
+		return circuitBreaker.getReconnects();
+	}
+
+	/**
+	 * Returns the number of pending frames, which have been discarded because
+	 * writing failed and which have not been passed to a consumer.
+	 *
+	 * @return the number of dropped packets
+	 */
+	@Override
+	public long getDroppedPackets() {
+		return droppedPackets.sum();
+	}
+
+	/**
+	 * Writes the pending frames and closes the connection. While the circuit is
+	 * open, pending frames are discarded instead of connecting.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		final boolean connecting = !circuitBreaker.isOpen();
+		circuitBreaker.close();
+		closeConnection(connecting);
+	}
+
+	/**
+	 * Writes the pending frames and closes the connection. Pending frames, which
+	 * cannot be written, are discarded and counted as dropped packets.
+	 *
+	 * @param connecting whether to connect for writing pending frames if there is
+	 *                   no channel
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void closeConnection(final boolean connecting) throws IOException {
+		try {
+			writeLock.lock();
+			// Using try-with-resource to avoid null checks and nested finally blocks
+			try (@SuppressWarnings("PMD.UnusedLocalVariable")
+			SocketChannel channelToClose = channel.get()) {
+				if (connecting || channelToClose != null) {
+					flushBatch();
+				}
+			} finally {
+				channel.set(null);
+				batch.clear();
+				discardBatch();
+				cancelLingerFlush();
+				lingerScheduler.ifPresent(ScheduledExecutorService::shutdownNow);
+				lingerScheduler = Optional.empty();
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Discards the pending frames, guarded by {@link #writeLock}. Their packets
+	 * are passed to {@link #discardedPackets} or counted as dropped packets.
+	 * Frames, which have been written partially, are discarded as a whole.
+	 */
+	private void discardBatch() {
+		if (discardedPackets.isPresent()) {
+			final ByteBuffer packet = batch.duplicate();
+			for (int frame = 0; frame < batchFrames; frame += 1) {
+				packet.clear();
+				packet.position(batchPackets[2 * frame]);
+				packet.limit(batchPackets[2 * frame + 1]);
+				discardedPackets.get().accept(packet);
+			}
+		} else {
+			droppedPackets.add(batchFrames);
+		}
+		batchFrames = 0;
+	}
+
+	/**
+	 * Closes the connection after a failure and opens the circuit. Pending frames
+	 * are discarded.
+	 */
+	private void closeOnFailure() {
+		batch.clear();
+		try {
+			closeConnection(false);
+		} catch (@SuppressWarnings("unused") final IOException ignored) {
+			// ignore because it shall not hide the original exception
+		}
+		circuitBreaker.onFailure();
+	}
+}
@@ -0,0 +1,152 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Spreads syslog packets over multiple parallel connections to the same syslog
+ * host, so that the receiving side can ingest them using multiple threads.
+ * Packets are routed by the hash of a key, e.g. a thread or logger name, to
+ * keep the order of packets with equal keys.
+ *
+ * <p>
+ * Each connection is an independent writer, which reconnects on its own after
+ * failures.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogTcpPoolWriter64k extends SyslogWriter64k {
+	private final SyslogPacketWriter[] connections;
+
+	/**
+	 * Creates a pool of {@code size} connections.
+	 *
+	 * @param syslogHost        the syslog host, optionally including a port
+	 * @param charset           the charset used to encode String messages
+	 * @param size              the number of connections
+	 * @param connectionFactory creates the writer of each connection
+	 */
+	public SyslogTcpPoolWriter64k(final String syslogHost,
+			final Charset charset,
+			final int size,
+			final Supplier<? extends SyslogPacketWriter> connectionFactory) {
+		super(syslogHost, charset);
+
+		if (size < 1) {
+			throw new IllegalArgumentException(String.format("Invalid number of connections: %s", size));
+		}
+
+		connections = new SyslogPacketWriter[size];
+		for (int index = 0; index < size; index += 1) {
+			connections[index] = connectionFactory.get();
+		}
+	}
+
+	/**
+	 * Returns the connection assigned to {@code key}.
+	 *
+	 * @param key the routing key, e.g. a thread or logger name
+	 * @return the connection to use for {@code key}
+	 */
+	@Override
+	public SyslogPacketWriter route(final String key) {
+		return connections[Math.floorMod(key.hashCode(), connections.length)];
+	}
+
+	@Override
+	public long getReconnects() {
+		long reconnects = 0;
+		for (final SyslogPacketWriter connection : connections) {
+			reconnects += connection.getReconnects();
+		}
+		return reconnects;
+	}
+
+	@Override
+	public long getDroppedPackets() {
+		long droppedPackets = 0;
+		for (final SyslogPacketWriter connection : connections) {
+			droppedPackets += connection.getDroppedPackets();
+		}
+		return droppedPackets;
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Writes {@code packet} to the connection assigned to the current thread.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void write(final ByteBuffer packet) throws IOException {
+		route(Thread.currentThread().getName()).write(packet);
+	}
+
+	/**
+	 * Flushes all connections. Failures of single connections do not prevent
+	 * flushing the others.
+	 *
+	 * @throws IOException on I/O error of any connection
+	 */
+	@Override
+	public void flush() throws IOException {
+		Optional<IOException> exception = Optional.empty();
+		for (final SyslogPacketWriter connection : connections) {
+			try {
+				connection.flush();
+			} catch (final IOException e) {
+				exception = Optional.of(addSuppressed(exception, e));
+			}
+		}
+		if (exception.isPresent()) {
+			throw exception.get();
+		}
+	}
+
+	/**
+	 * Closes all connections. Failures of single connections do not prevent closing
+	 * the others.
+	 *
+	 * @throws IOException on I/O error of any connection
+	 */
+	@Override
+	public void close() throws IOException {
+		Optional<IOException> exception = Optional.empty();
+		for (final SyslogPacketWriter connection : connections) {
+			try {
+				connection.close();
+			} catch (final IOException e) {
+				exception = Optional.of(addSuppressed(exception, e));
+			}
+		}
+		if (exception.isPresent()) {
+			throw exception.get();
+		}
+	}
+
+	/**
+	 * Adds {@code exception} as suppressed exception to {@code first} if present.
+	 *
+	 * @param first     the first exception
+	 * @param exception the exception to add
+	 * @return the first exception or {@code exception} if no exception occurred
+	 *         before
+	 */
+	private static IOException addSuppressed(final Optional<IOException> first, final IOException exception) {
+		if (!first.isPresent()) {
+			return exception;
+		}
+		first.get().addSuppressed(exception);
+		return first.get();
+	}
+}
@@ -1,13 +1,18 @@
 package com.github.loggly.log4j.helpers;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import javax.net.SocketFactory;
 
@@ -21,78 +26,282 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 @SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
 		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
 public class SyslogTcpWriter64k extends SyslogWriter64k {
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
 	private final Optional<SocketFactory> socketFactory;
 
 	private final Duration socketTimeout;
 
+	private final TcpFraming framing;
+
 	private final AtomicReference<Socket> socket = new AtomicReference<>(null);
 
-	private final AtomicReference<BufferedWriter> writer = new AtomicReference<>(null);
+	private final AtomicReference<OutputStream> outputStream = new AtomicReference<>(null);
+
+	/**
+	 * Fails fast while the syslog host is unavailable and reconnects in the
+	 * background
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Reusable buffer for the prefix and trailer of frames, guarded by
+	 * {@link #writeLock}
+	 */
+	private final byte[] frameBuffer = TcpFraming.createBuffer();
+
+	/**
+	 * Reusable array for packets not backed by an accessible array, guarded by
+	 * {@link #writeLock}
+	 */
+	private byte[] copyBuffer = new byte[0];
 
 	public SyslogTcpWriter64k(final String syslogHost,
 			final Charset charset,
 			final Optional<SocketFactory> socketFactory,
 			final Duration socketTimeout) {
+		this(syslogHost, charset, socketFactory, socketTimeout, TcpFraming.OCTET_COUNTING);
+	}
+
+	public SyslogTcpWriter64k(final String syslogHost,
+			final Charset charset,
+			final Optional<SocketFactory> socketFactory,
+			final Duration socketTimeout,
+			final TcpFraming framing) {
+		this(syslogHost, charset, socketFactory, socketTimeout, framing, ReconnectBackoff.DEFAULT);
+	}
+
+	public SyslogTcpWriter64k(final String syslogHost,
+			final Charset charset,
+			final Optional<SocketFactory> socketFactory,
+			final Duration socketTimeout,
+			final TcpFraming framing,
+			final ReconnectBackoff reconnectBackoff) {
 		super(syslogHost, charset);
 
 		this.socketFactory = socketFactory;
 		this.socketTimeout = socketTimeout;
+		this.framing = framing;
+		circuitBreaker = new CircuitBreaker("SyslogTcpWriter64k-reconnect", reconnectBackoff, this::reconnect);
 	}
 
 	@Override
 	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
 	public void flush() throws IOException {
-		final BufferedWriter writerToFlush = writer.get();
-		if (writerToFlush != null) {
-			closeOnIOException(writerToFlush::flush);
+		final OutputStream outputStreamToFlush = outputStream.get();
+		if (outputStreamToFlush != null) {
+			closeOnIOException(outputStreamToFlush::flush);
 		}
 	}
 
-	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.AvoidSynchronizedStatement", "resource" })
+	/**
+	 * Returns the output stream, connecting synchronously if the circuit is closed.
+	 * While the circuit is open, this fails fast and reconnecting is left to the
+	 * background probe.
+	 *
+	 * @return the output stream
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private OutputStream getOutputStream() throws IOException {
+		try {
+			writeLock.lock();
+			if (outputStream.get() == null) {
+				if (circuitBreaker.isOpen()) {
+					throw new IOException("Syslog host is unavailable. Waiting for reconnect.");
+				}
+				setSocket(connect());
+			}
+			return outputStream.get();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Creates a connected socket. While the circuit is closed, this is called by
+	 * {@link #getOutputStream()} holding {@link #writeLock}. The background probe
+	 * calls this without holding {@link #writeLock}.
+	 *
+	 * @return the connected socket
+	 * @throws IOException on I/O error
+	 */
 	@SuppressFBWarnings(value = { "OI_OPTIONAL_ISSUES_USES_IMMEDIATE_EXECUTION", "UNENCRYPTED_SOCKET" },
 			justification = "false-positive, as '0' is constant; Offering both: insecure TCP and secure TCP via custom SocketFactory")
-	private BufferedWriter getWriter() throws IOException {
-		synchronized (lock) {
-			if (writer.get() == null) {
-				final Socket socketToSet = socketFactory.isPresent()
-						? socketFactory.get().createSocket(getSyslogHost(), getSyslogPort())
-						: new Socket(getSyslogHost(), getSyslogPort());
-				socketToSet.setSoTimeout((int) socketTimeout.toMillis());
-				socket.set(socketToSet);
-
-				writer.set(new BufferedWriter(new OutputStreamWriter(socketToSet.getOutputStream(), getCharset())));
+	private Socket connect() throws IOException {
+		final InetAddress address = getSyslogHost();
+		final Socket created;
+		if (socketFactory.isPresent()) {
+			created = socketFactory.get().createSocket(address, getSyslogPort());
+		} else {
+			created = new Socket();
+			try {
+				created.connect(new InetSocketAddress(address, getSyslogPort()),
+						(int) socketTimeout.toMillis());
+			} catch (final IOException e) {
+				created.close();
+				throw e;
+			}
+		}
+		created.setSoTimeout((int) socketTimeout.toMillis());
+		return created;
+	}
+
+	/**
+	 * Uses {@code socketToSet} for writing, guarded by {@link #writeLock}.
+	 *
+	 * @param socketToSet the connected socket
+	 * @throws IOException on I/O error
+	 */
+	private void setSocket(final Socket socketToSet) throws IOException {
+		socket.set(socketToSet);
+		outputStream.set(new BufferedOutputStream(socketToSet.getOutputStream(), OUTPUT_BUFFER_SIZE));
+	}
+
+	/**
+	 * Connects in the background while the circuit is open. Callers are not blocked
+	 * while connecting. The new connection is discarded if another one has been
+	 * created meanwhile or if the writer has been closed.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void reconnect() throws IOException {
+		final Socket created = connect();
+		try {
+			writeLock.lock();
+			if (outputStream.get() == null && !circuitBreaker.isClosed()) {
+				setSocket(created);
+			} else {
+				created.close();
 			}
-			return writer.get();
+		} finally {
+			writeLock.unlock();
 		}
 	}
 
 	@Override
 	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Writes {@code packet} as one frame. The octet count is computed from the
+	 * encoded length and written straight into the output buffer of the socket
+	 * together with the payload.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void write(final ByteBuffer packet) throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				writeFrame(getOutputStream(), packet);
+			} catch (final IOException e) {
+				closeOnFailure();
+				throw e;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes {@code packets} as one frame each while holding {@link #writeLock}
+	 * once, so that the frames are coalesced inside the output buffer of the
+	 * socket.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written
+	 */
+	@Override
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "resource" })
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		int written = 0;
+		try {
+			writeLock.lock();
+			final OutputStream stream = getOutputStream();
+			for (final ByteBuffer packet : packets) {
+				writeFrame(stream, packet);
+				written += 1;
+			}
+		} catch (final IOException e) {
+			closeOnFailure();
+			failures.accept(e);
+		} finally {
+			writeLock.unlock();
+		}
+		return written;
+	}
+
+	/**
+	 * Writes {@code packet} as one frame to {@code stream}, guarded by
+	 * {@link #writeLock}.
+	 *
+	 * @param stream the stream to write to
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	private void writeFrame(final OutputStream stream, final ByteBuffer packet) throws IOException {
+		final int length = packet.remaining();
 		// compute syslog frame according to: https://tools.ietf.org/html/rfc6587
-		final String syslogFrame = String.format("%s %s", string.length(), string);
-		closeOnIOException(() -> getWriter().append(syslogFrame));
+		final int prefixStart = framing.prefix(length, frameBuffer);
+		stream.write(frameBuffer, prefixStart, frameBuffer.length - prefixStart);
+
+		if (packet.hasArray()) {
+			stream.write(packet.array(), packet.arrayOffset() + packet.position(), length);
+		} else {
+			if (copyBuffer.length < length) {
+				copyBuffer = new byte[length];
+			}
+			packet.get(copyBuffer, 0, length);
+			stream.write(copyBuffer, 0, length);
+		}
+		packet.position(packet.limit());
+
+		stream.write(frameBuffer, 0, framing.trailer(frameBuffer));
 	}
 
 	@Override
-	public void write(final char[] buf, final int off, final int len) throws IOException {
-		this.write(new String(buf, off, len));
+	public long getReconnects() {
+		return circuitBreaker.getReconnects();
 	}
 
 	@Override
-	@SuppressWarnings({ "PMD.AvoidSynchronizedStatement", "PMD.EmptyControlStatement" })
-	@SuppressFBWarnings(value = "AFBR_ABNORMAL_FINALLY_BLOCK_RETURN", justification = "Shouldn't matter in this case.")
 	public void close() throws IOException {
-		synchronized (lock) {
+		circuitBreaker.close();
+		closeConnection();
+	}
+
+	@SuppressWarnings("PMD.EmptyControlStatement")
+	@SuppressFBWarnings(value = { "AFBR_ABNORMAL_FINALLY_BLOCK_RETURN", "MDM_WAIT_WITHOUT_TIMEOUT" },
+			justification = "Shouldn't matter in this case; Using ReentrantLock instead of synchronized")
+	private void closeConnection() throws IOException {
+		try {
+			writeLock.lock();
 			// Using try-with-resource to avoid null checks and nested finally blocks
 			try (@SuppressWarnings("PMD.UnusedLocalVariable")
 			Socket socketToClose = socket.get();
 					@SuppressWarnings("PMD.UnusedLocalVariable")
-					BufferedWriter writerToClose = writer.get()) {
+					OutputStream outputStreamToClose = outputStream.get()) {
 				// nothing
 			} finally {
-				writer.set(null);
+				outputStream.set(null);
 				socket.set(null);
 			}
+		} finally {
+			writeLock.unlock();
 		}
 	}
 
@@ -100,17 +309,20 @@ public class SyslogTcpWriter64k extends SyslogWriter64k {
 		try {
 			runnable.run();
 		} catch (final IOException e) {
-			try {
-				close();
-			} catch (@SuppressWarnings("unused") final IOException ignored) {
-				// ignore because it shall not hide the original exception
-			}
+			closeOnFailure();
 			throw e;
 		}
 	}
 
-	@FunctionalInterface
-	private interface IORunnable {
-		void run() throws IOException;
+	/**
+	 * Closes the connection after a failure and opens the circuit.
+	 */
+	private void closeOnFailure() {
+		try {
+			closeConnection();
+		} catch (@SuppressWarnings("unused") final IOException ignored) {
+			// ignore because it shall not hide the original exception
+		}
+		circuitBreaker.onFailure();
 	}
 }
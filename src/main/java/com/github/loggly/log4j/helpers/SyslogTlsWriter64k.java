@@ -0,0 +1,489 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes syslog messages over TLS according to
+ * <a href="https://tools.ietf.org/html/rfc5425">RFC 5425</a>, using an
+ * {@link SSLEngine} on a non-blocking channel.
+ *
+ * <p>
+ * Frames are collected as plain text up to the max TLS record size, so that
+ * many frames are encrypted into one record and written at once. Pending frames
+ * are written if a record is full, if the linger time elapsed since the first
+ * pending frame or on {@link #flush()} and {@link #close()}.
+ *
+ * <p>
+ * Engines are created for the host and port of the syslog host using the same
+ * {@link SSLContext}, so that reconnects resume the previous session instead of
+ * repeating the full handshake.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogTlsWriter64k extends SyslogWriter64k {
+	/**
+	 * Port of syslog over TLS, see RFC 5425 section 4.1
+	 */
+	public static final int DEFAULT_TLS_PORT = 6514;
+
+	/**
+	 * Max length in bytes of the plain text of a TLS record
+	 */
+	private static final int MAX_RECORD_SIZE = 16 * 1024;
+
+	private final SSLContext sslContext;
+
+	private final boolean hostnameVerification;
+
+	private final Duration socketTimeout;
+
+	private final TcpFraming framing;
+
+	private final Duration linger;
+
+	/**
+	 * Fails fast while the syslog host is unavailable and reconnects in the
+	 * background
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Plain text of pending frames, guarded by {@link #writeLock}
+	 */
+	private final ByteBuffer record = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+
+	/**
+	 * Reusable buffer for the prefix and trailer of frames, guarded by
+	 * {@link #writeLock}
+	 */
+	private final byte[] frameBuffer = TcpFraming.createBuffer();
+
+	private final LongAdder resumedSessions = new LongAdder();
+
+	/**
+	 * Connected channel, guarded by {@link #writeLock}
+	 */
+	private Optional<TlsChannel> channel = Optional.empty();
+
+	/**
+	 * Thread flushing pending frames after the linger time, guarded by
+	 * {@link #writeLock} and created lazily
+	 */
+	private Optional<ScheduledExecutorService> lingerScheduler = Optional.empty();
+
+	/**
+	 * Scheduled flush of the pending frames, guarded by {@link #writeLock}
+	 */
+	private Optional<ScheduledFuture<?>> lingerFlush = Optional.empty();
+
+	/**
+	 * Creates a TLS writer.
+	 *
+	 * @param syslogHost           the syslog host, optionally including a port,
+	 *                             which is {@link #DEFAULT_TLS_PORT} by default
+	 * @param charset              the charset used to encode String messages
+	 * @param sslContext           the context to create engines and to cache
+	 *                             sessions
+	 * @param hostnameVerification {@code true} to verify the certificate of the
+	 *                             syslog host against its host name
+	 * @param socketTimeout        the timeout of connecting and of each wait for
+	 *                             the syslog host
+	 * @param framing              the framing of messages inside the TLS stream
+	 * @param linger               the max time frames are kept pending, or zero to
+	 *                             write pending frames only if a record is full or
+	 *                             on flush
+	 * @param reconnectBackoff     the backoff between reconnect attempts while the
+	 *                             syslog host is unavailable
+	 */
+	@SuppressWarnings("checkstyle:ParameterNumber")
+	public SyslogTlsWriter64k(final String syslogHost,
+			final Charset charset,
+			final SSLContext sslContext,
+			final boolean hostnameVerification,
+			final Duration socketTimeout,
+			final TcpFraming framing,
+			final Duration linger,
+			final ReconnectBackoff reconnectBackoff) {
+		super(syslogHost, charset, DEFAULT_TLS_PORT);
+
+		this.sslContext = sslContext;
+		this.hostnameVerification = hostnameVerification;
+		this.socketTimeout = socketTimeout;
+		this.framing = framing;
+		this.linger = linger;
+		circuitBreaker = new CircuitBreaker("SyslogTlsWriter64k-reconnect", reconnectBackoff, this::reconnect);
+	}
+
+	/**
+	 * Creates a client mode engine for the syslog host. Passing host and port
+	 * allows the context to resume cached sessions.
+	 *
+	 * @return the new engine
+	 */
+	private SSLEngine createEngine() {
+		final SSLEngine engine = sslContext.createSSLEngine(getSyslogHostName(), getSyslogPort());
+		engine.setUseClientMode(true);
+		if (hostnameVerification) {
+			final SSLParameters parameters = engine.getSSLParameters();
+			parameters.setEndpointIdentificationAlgorithm("HTTPS");
+			engine.setSSLParameters(parameters);
+		}
+		return engine;
+	}
+
+	/**
+	 * Creates a connected channel. While the circuit is closed, this is called by
+	 * {@link #getChannel()} holding {@link #writeLock}. The background probe calls
+	 * this without holding {@link #writeLock}.
+	 *
+	 * @return the connected channel
+	 * @throws IOException on I/O error or if the handshake failed
+	 */
+	private TlsChannel connect() throws IOException {
+		final InetAddress address = getSyslogHost();
+		if (address == null) {
+			throw new IOException("Unknown syslog host");
+		}
+
+		final TlsChannel created
+				= TlsChannel.open(new InetSocketAddress(address, getSyslogPort()), createEngine(), socketTimeout);
+		if (created.isResumed()) {
+			resumedSessions.increment();
+		}
+		return created;
+	}
+
+	/**
+	 * Returns the channel, connecting synchronously if the circuit is closed,
+	 * guarded by {@link #writeLock}. While the circuit is open, this fails fast
+	 * and reconnecting is left to the background probe.
+	 *
+	 * @return the channel
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	private TlsChannel getChannel() throws IOException {
+		if (!channel.isPresent()) {
+			failIfUnavailable();
+			channel = Optional.of(connect());
+		}
+		return channel.get();
+	}
+
+	/**
+	 * Fails fast if there is no channel and the circuit is open, so that frames
+	 * are neither collected nor written while the syslog host is unavailable,
+	 * guarded by {@link #writeLock}.
+	 *
+	 * @throws IOException if the circuit is open
+	 */
+	private void failIfUnavailable() throws IOException {
+		if (!channel.isPresent() && circuitBreaker.isOpen()) {
+			throw new IOException("Syslog host is unavailable. Waiting for reconnect.");
+		}
+	}
+
+	/**
+	 * Connects in the background while the circuit is open. Callers are not blocked
+	 * while connecting. The new connection is discarded if another one has been
+	 * created meanwhile or if the writer has been closed.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void reconnect() throws IOException {
+		final TlsChannel created = connect();
+		try {
+			writeLock.lock();
+			if (channel.isPresent() || circuitBreaker.isClosed()) {
+				created.close();
+			} else {
+				channel = Optional.of(created);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Appends {@code packet} as one frame to the pending frames.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void write(final ByteBuffer packet) throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				writeFrame(packet);
+			} catch (final IOException e) {
+				closeOnFailure();
+				throw e;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Appends {@code packets} as one frame each while holding {@link #writeLock}
+	 * once.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		int written = 0;
+		try {
+			writeLock.lock();
+			for (final ByteBuffer packet : packets) {
+				writeFrame(packet);
+				written += 1;
+			}
+		} catch (final IOException e) {
+			closeOnFailure();
+			failures.accept(e);
+		} finally {
+			writeLock.unlock();
+		}
+		return written;
+	}
+
+	/**
+	 * Appends {@code packet} as one frame to the pending frames, writing full
+	 * records, guarded by {@link #writeLock}.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	private void writeFrame(final ByteBuffer packet) throws IOException {
+		failIfUnavailable();
+		final boolean empty = record.position() == 0;
+
+		// compute syslog frame according to: https://tools.ietf.org/html/rfc6587
+		final int prefixStart = framing.prefix(packet.remaining(), frameBuffer);
+		put(ByteBuffer.wrap(frameBuffer, prefixStart, frameBuffer.length - prefixStart));
+		put(packet);
+		put(ByteBuffer.wrap(frameBuffer, 0, framing.trailer(frameBuffer)));
+
+		if (empty && record.position() > 0) {
+			scheduleLingerFlush();
+		}
+	}
+
+	/**
+	 * Appends the remaining bytes of {@code source} to the pending frames, writing
+	 * each full record, guarded by {@link #writeLock}.
+	 *
+	 * @param source the bytes to append
+	 * @throws IOException on I/O error
+	 */
+	private void put(final ByteBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			if (!record.hasRemaining()) {
+				writeRecord();
+			}
+			final int limit = source.limit();
+			source.limit(source.position() + Math.min(source.remaining(), record.remaining()));
+			record.put(source);
+			source.limit(limit);
+		}
+	}
+
+	/**
+	 * Encrypts and writes the pending frames as one record, guarded by
+	 * {@link #writeLock}.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	private void writeRecord() throws IOException {
+		cancelLingerFlush();
+		if (record.position() == 0) {
+			return;
+		}
+
+		record.flip();
+		try {
+			getChannel().write(record);
+		} finally {
+			record.clear();
+		}
+	}
+
+	/**
+	 * Schedules writing the pending frames after the linger time, guarded by
+	 * {@link #writeLock}.
+	 */
+	private void scheduleLingerFlush() {
+		if (linger.isZero() || linger.isNegative()) {
+			return;
+		}
+		if (!lingerScheduler.isPresent()) {
+			lingerScheduler = Optional.of(Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "SyslogTlsWriter64k-linger");
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		lingerFlush = Optional
+				.of(lingerScheduler.get().schedule(this::flushQuietly, linger.toNanos(), TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Cancels the scheduled write of pending frames, guarded by
+	 * {@link #writeLock}.
+	 */
+	private void cancelLingerFlush() {
+		lingerFlush.ifPresent(future -> future.cancel(false));
+		lingerFlush = Optional.empty();
+	}
+
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (final IOException e) {
+			if (!circuitBreaker.isOpen()) {
+				LogLog.error("Failed to write pending syslog messages.", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending frames.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void flush() throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				writeRecord();
+			} catch (final IOException e) {
+				closeOnFailure();
+				throw e;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public long getReconnects() {
+		return circuitBreaker.getReconnects();
+	}
+
+	/**
+	 * Returns the number of connections, which resumed a previous session instead
+	 * of performing a full handshake.
+	 *
+	 * @return the number of resumed sessions
+	 */
+	public long getResumedSessions() {
+		return resumedSessions.sum();
+	}
+
+	/**
+	 * Writes the pending frames and closes the connection. While the circuit is
+	 * open, pending frames are discarded instead of connecting.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		final boolean connecting = !circuitBreaker.isOpen();
+		circuitBreaker.close();
+		closeConnection(connecting);
+	}
+
+	/**
+	 * Writes the pending frames and closes the connection.
+	 *
+	 * @param connecting whether to connect for writing pending frames if there is
+	 *                   no channel
+	 * @throws IOException on I/O error
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void closeConnection(final boolean connecting) throws IOException {
+		try {
+			writeLock.lock();
+			try {
+				if (connecting || channel.isPresent()) {
+					writeRecord();
+				}
+			} finally {
+				final Optional<TlsChannel> channelToClose = channel;
+				channel = Optional.empty();
+				record.clear();
+				cancelLingerFlush();
+				lingerScheduler.ifPresent(ScheduledExecutorService::shutdownNow);
+				lingerScheduler = Optional.empty();
+				if (channelToClose.isPresent()) {
+					channelToClose.get().close();
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the connection after a failure and opens the circuit. Pending frames
+	 * are discarded.
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void closeOnFailure() {
+		try {
+			writeLock.lock();
+			record.clear();
+			cancelLingerFlush();
+			if (channel.isPresent()) {
+				channel.get().abort();
+			}
+		} catch (@SuppressWarnings("unused") final IOException ignored) {
+			// ignore because it shall not hide the original exception
+		} finally {
+			channel = Optional.empty();
+			writeLock.unlock();
+		}
+		circuitBreaker.onFailure();
+	}
+}
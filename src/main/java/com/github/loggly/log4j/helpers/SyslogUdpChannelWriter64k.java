@@ -0,0 +1,384 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.helpers.LogLog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Sends syslog packets using a connected {@link DatagramChannel}. Logging
+ * threads copy packets into a direct buffer, while a sender thread swaps it
+ * with a second direct buffer and sends all queued datagrams in a tight loop.
+ *
+ * <p>
+ * Connecting the channel once avoids resolving and checking the target address
+ * per datagram. The channel is connected again if the address of the syslog
+ * host changed after resolving it again. Both buffers are allocated once, so
+ * that sending does not allocate in steady state.
+ *
+ * <p>
+ * Queued datagrams, which the sender thread fails to send, are counted as
+ * dropped packets, because writing them succeeded already.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogUdpChannelWriter64k extends SyslogWriter64k {
+	/**
+	 * Max time to wait for the sender thread to send queued datagrams on close
+	 */
+	private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Connected channel or {@code null} if not connected yet, replaced while
+	 * holding {@link #writeLock}
+	 */
+	private final AtomicReference<DatagramChannel> channel = new AtomicReference<>(null);
+
+	/**
+	 * Address {@link #channel} is connected to or {@code null} if not connected
+	 * yet, written while holding {@link #writeLock}
+	 */
+	private volatile InetAddress channelAddress = null;
+
+	private final LongAdder droppedPackets = new LongAdder();
+
+	private final Lock queueLock = new ReentrantLock();
+
+	private final Condition notEmpty = queueLock.newCondition();
+
+	private final Condition notFull = queueLock.newCondition();
+
+	private final Condition drained = queueLock.newCondition();
+
+	private final Thread sender;
+
+	/**
+	 * Datagrams queued by logging threads, each prefixed by its length, guarded by
+	 * {@link #queueLock}
+	 */
+	private ByteBuffer filling;
+
+	/**
+	 * Datagrams taken by the sender thread, owned by the sender thread
+	 */
+	private ByteBuffer draining;
+
+	/**
+	 * Set while the sender thread sends {@link #draining}, guarded by
+	 * {@link #queueLock}
+	 */
+	private boolean sending = false;
+
+	/**
+	 * Guarded by {@link #queueLock}
+	 */
+	private boolean started = false;
+
+	/**
+	 * Written while holding {@link #queueLock}
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a writer queueing datagrams in two buffers of {@code bufferSize}
+	 * bytes each. Packets not fitting into an empty buffer are sent by the logging
+	 * thread directly after the queued datagrams have been sent.
+	 *
+	 * @param syslogHost the syslog host, optionally including a port
+	 * @param charset    the charset used to encode String messages
+	 * @param bufferSize the size in bytes of each buffer
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public SyslogUdpChannelWriter64k(final String syslogHost, final Charset charset, final int bufferSize) {
+		super(syslogHost, charset);
+
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException(String.format("Invalid buffer size: %s", bufferSize));
+		}
+
+		if (getSyslogHost() != null) {
+			try {
+				getChannel();
+			} catch (final IOException e) {
+				LogLog.error("Could not connect DatagramChannel to " + syslogHost + ". Connecting is retried.", e);
+			}
+		}
+
+		filling = ByteBuffer.allocateDirect(bufferSize);
+		draining = ByteBuffer.allocateDirect(bufferSize);
+		sender = new Thread(this::run, "SyslogUdpChannelWriter64k-sender");
+		sender.setDaemon(true);
+	}
+
+	@SuppressWarnings("PMD.CloseResource")
+	private static void closeQuietly(final DatagramChannel channelToClose) {
+		if (channelToClose != null) {
+			try {
+				channelToClose.close();
+			} catch (@SuppressWarnings("unused") final IOException ignored) {
+				// ignore because it shall not hide the original exception
+			}
+		}
+	}
+
+	/**
+	 * Returns the channel connected to the current address of the syslog host. The
+	 * channel is created if it is missing, e.g. because connecting failed before,
+	 * and connected again if the address changed.
+	 *
+	 * @return the connected channel
+	 * @throws IOException if the syslog host is unknown or connecting fails
+	 */
+	@SuppressWarnings("PMD.CloseResource")
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private DatagramChannel getChannel() throws IOException {
+		final InetAddress address = getSyslogHost();
+		if (address == null) {
+			throw new IOException("Unknown syslog host");
+		}
+
+		final DatagramChannel connected = channel.get();
+		if (connected != null && address.equals(channelAddress)) {
+			return connected;
+		}
+
+		try {
+			writeLock.lock();
+			final DatagramChannel current = channel.get();
+			if (current != null && address.equals(channelAddress)) {
+				return current;
+			}
+			if (closed) {
+				throw new IOException("Writer is closed.");
+			}
+
+			final DatagramChannel created = DatagramChannel.open();
+			try {
+				created.connect(new InetSocketAddress(address, getSyslogPort()));
+			} catch (final IOException e) {
+				closeQuietly(created);
+				throw e;
+			}
+			channel.set(created);
+			channelAddress = address;
+			closeQuietly(current);
+			return created;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of queued datagrams, which the sender thread failed to
+	 * send.
+	 *
+	 * @return the number of dropped packets
+	 */
+	@Override
+	public long getDroppedPackets() {
+		return droppedPackets.sum();
+	}
+
+	@Override
+	public void write(final String string) throws IOException {
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	/**
+	 * Queues {@code packet} for the sender thread, waiting if the queue is full.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error, if the channel cannot be connected or if
+	 *                     this writer is closed
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Waiting for the sender thread to free space")
+	public void write(final ByteBuffer packet) throws IOException {
+		final DatagramChannel target = getChannel();
+
+		final int frameLength = Integer.BYTES + packet.remaining();
+		if (frameLength > filling.capacity()) {
+			// keep the order of datagrams
+			flush();
+			target.write(packet);
+			return;
+		}
+
+		queueLock.lock();
+		try {
+			if (!started) {
+				sender.start();
+				started = true;
+			}
+			while (!closed && filling.remaining() < frameLength) {
+				notFull.await();
+			}
+			if (closed) {
+				throw new IOException("Writer is closed.");
+			}
+
+			filling.putInt(packet.remaining());
+			filling.put(packet);
+			notEmpty.signal();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (IOException) new InterruptedIOException().initCause(e);
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends queued datagrams until this writer is closed and the queue is empty.
+	 */
+	private void run() {
+		while (takeQueue()) {
+			sendAll(draining);
+		}
+	}
+
+	/**
+	 * Waits for queued datagrams and swaps the buffers, so that logging threads
+	 * continue queueing while the sender thread sends.
+	 *
+	 * @return {@code true} if {@link #draining} contains datagrams to send,
+	 *         {@code false} if this writer is closed and the queue is empty
+	 */
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT", justification = "Waiting for datagrams to send")
+	private boolean takeQueue() {
+		queueLock.lock();
+		try {
+			sending = false;
+			drained.signalAll();
+			while (!closed && filling.position() == 0) {
+				notEmpty.await();
+			}
+			if (filling.position() == 0) {
+				return false;
+			}
+
+			final ByteBuffer taken = filling;
+			filling = draining;
+			draining = taken;
+			sending = true;
+			notFull.signalAll();
+			return true;
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends all datagrams of {@code buffer} and clears it. Datagrams failing to be
+	 * sent are counted as dropped packets.
+	 *
+	 * @param buffer the datagrams, each prefixed by its length
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	private void sendAll(final ByteBuffer buffer) {
+		buffer.flip();
+		final int end = buffer.limit();
+		int failed = 0;
+		IOException lastException = null;
+		DatagramChannel target = null;
+		try {
+			target = getChannel();
+		} catch (final IOException e) {
+			lastException = e;
+		}
+		while (buffer.position() < end) {
+			final int next = buffer.getInt() + buffer.position();
+			if (target == null) {
+				failed += 1;
+			} else {
+				buffer.limit(next);
+				try {
+					target.write(buffer);
+				} catch (final IOException e) {
+					failed += 1;
+					lastException = e;
+				}
+				buffer.limit(end);
+			}
+			buffer.position(next);
+		}
+		buffer.clear();
+
+		if (failed > 0) {
+			droppedPackets.add(failed);
+			LogLog.error(String.format("Failed to send %s syslog packets.", failed), lastException);
+		}
+	}
+
+	/**
+	 * Waits until all queued datagrams have been sent.
+	 *
+	 * @throws IOException if interrupted while waiting
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT", justification = "Waiting for the sender thread")
+	public void flush() throws IOException {
+		queueLock.lock();
+		try {
+			while (started && sender.isAlive() && (sending || filling.position() > 0)) {
+				drained.await();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (IOException) new InterruptedIOException().initCause(e);
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting datagrams, waits for the sender thread to send queued
+	 * datagrams and closes the channel.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		queueLock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			queueLock.unlock();
+		}
+
+		if (sender.isAlive()) {
+			try {
+				TimeUnit.MILLISECONDS.timedJoin(sender, CLOSE_TIMEOUT_MILLIS);
+			} catch (@SuppressWarnings("unused") final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			writeLock.lock();
+			closeQuietly(channel.getAndSet(null));
+			channelAddress = null;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
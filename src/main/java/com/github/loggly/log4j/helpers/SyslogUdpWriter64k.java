@@ -3,7 +3,9 @@ package com.github.loggly.log4j.helpers;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import org.apache.log4j.helpers.LogLog;
@@ -19,6 +21,17 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 public class SyslogUdpWriter64k extends SyslogWriter64k {
 	private final DatagramSocket socket;
 
+	/**
+	 * Reusable packet, guarded by {@link #writeLock}
+	 */
+	private final DatagramPacket datagram = new DatagramPacket(new byte[0], 0);
+
+	/**
+	 * Reusable array for packets not backed by an accessible array, guarded by
+	 * {@link #writeLock}
+	 */
+	private byte[] copyBuffer = new byte[0];
+
 	@SuppressWarnings({ "PMD.CloseResource", "PMD.GuardLogStatement" })
 	public SyslogUdpWriter64k(final String syslogHost, final Charset charset) {
 		super(syslogHost, charset);
@@ -39,11 +52,39 @@ public class SyslogUdpWriter64k extends SyslogWriter64k {
 
 	@Override
 	public void write(final String string) throws IOException {
-		final byte[] bytes = string.getBytes(getCharset());
-		final DatagramPacket packet = new DatagramPacket(bytes, bytes.length, getSyslogHost(), getSyslogPort());
+		write(ByteBuffer.wrap(string.getBytes(getCharset())));
+	}
+
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void write(final ByteBuffer packet) throws IOException {
+		if (socket == null) {
+			return;
+		}
+		final InetAddress address = getSyslogHost();
+		if (address == null) {
+			throw new IOException("Unknown syslog host");
+		}
 
-		if (this.socket != null) {
-			socket.send(packet);
+		try {
+			writeLock.lock();
+			final int length = packet.remaining();
+			if (packet.hasArray()) {
+				datagram.setData(packet.array(), packet.arrayOffset() + packet.position(), length);
+			} else {
+				if (copyBuffer.length < length) {
+					copyBuffer = new byte[length];
+				}
+				packet.get(copyBuffer, 0, length);
+				datagram.setData(copyBuffer, 0, length);
+			}
+			datagram.setAddress(address);
+			datagram.setPort(getSyslogPort());
+			socket.send(datagram);
+			packet.position(packet.limit());
+		} finally {
+			writeLock.unlock();
 		}
 	}
 
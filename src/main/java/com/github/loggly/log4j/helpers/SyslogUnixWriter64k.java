@@ -0,0 +1,369 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Writes syslog packets to a local syslog daemon listening on a Unix domain
+ * stream socket, e.g. rsyslog's imptcp or syslog-ng's {@code unix-stream()}.
+ * Local delivery avoids the loopback IP stack entirely.
+ *
+ * <p>
+ * Frames are coalesced inside a direct buffer and written on flush or as soon
+ * as the buffer is full. Unix domain sockets are supported by the JDK starting
+ * with Java 16. As this library is compiled for Java 8, that API is accessed
+ * reflectively. Datagram sockets, as used by {@code /dev/log} on most systems,
+ * are not supported by the JDK.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public class SyslogUnixWriter64k implements SyslogPacketWriter {
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * {@code StandardProtocolFamily.UNIX} or empty if not supported
+	 */
+	private static final Optional<ProtocolFamily> UNIX = getUnixProtocolFamily();
+
+	/**
+	 * {@code SocketChannel.open(ProtocolFamily)} or empty if not supported
+	 */
+	private static final Optional<Method> OPEN = getMethod(SocketChannel.class, "open", ProtocolFamily.class);
+
+	/**
+	 * {@code UnixDomainSocketAddress.of(String)} or empty if not supported
+	 */
+	private static final Optional<Method> ADDRESS_OF = getAddressMethod();
+
+	private final String path;
+
+	private final TcpFraming framing;
+
+	/**
+	 * Guards the connection state and {@link #output}
+	 */
+	private final Lock writeLock = new ReentrantLock();
+
+	/**
+	 * Fails fast while the syslog daemon is unavailable and reconnects in the
+	 * background
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Frames not yet written to the socket, guarded by {@link #writeLock}
+	 */
+	private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+
+	/**
+	 * Reusable buffer for the prefix and trailer of frames, guarded by
+	 * {@link #writeLock}
+	 */
+	private final byte[] frameBuffer = TcpFraming.createBuffer();
+
+	/**
+	 * Connected channel, guarded by {@link #writeLock}
+	 */
+	private Optional<SocketChannel> channel = Optional.empty();
+
+	/**
+	 * Creates a writer connecting lazily to the socket at {@code path}.
+	 *
+	 * @param path             the path of the socket
+	 * @param framing          the method used to frame messages inside the stream
+	 * @param reconnectBackoff the backoff between reconnect attempts
+	 * @throws UnsupportedOperationException if the running JVM does not support
+	 *                                       Unix domain sockets
+	 */
+	public SyslogUnixWriter64k(final String path, final TcpFraming framing, final ReconnectBackoff reconnectBackoff) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Unix domain sockets require Java 16 or later.");
+		}
+		this.path = path;
+		this.framing = framing;
+		circuitBreaker = new CircuitBreaker("SyslogUnixWriter64k-reconnect", reconnectBackoff, this::reconnect);
+	}
+
+	private static Optional<ProtocolFamily> getUnixProtocolFamily() {
+		try {
+			return Optional.of(StandardProtocolFamily.valueOf("UNIX"));
+		} catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<Method> getMethod(final Class<?> type, final String name, final Class<?>... parameters) {
+		try {
+			return Optional.of(type.getMethod(name, parameters));
+		} catch (@SuppressWarnings("unused") final NoSuchMethodException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<Method> getAddressMethod() {
+		try {
+			return getMethod(Class.forName("java.net.UnixDomainSocketAddress"), "of", String.class);
+		} catch (@SuppressWarnings("unused") final ClassNotFoundException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Returns whether the running JVM supports Unix domain sockets.
+	 *
+	 * @return {@code true} if Unix domain sockets are supported
+	 */
+	public static boolean isSupported() {
+		return UNIX.isPresent() && OPEN.isPresent() && ADDRESS_OF.isPresent();
+	}
+
+	/**
+	 * Invokes {@code method} reflectively, unwrapping I/O errors.
+	 *
+	 * @param method    the static method to invoke
+	 * @param arguments the arguments
+	 * @return the result
+	 * @throws IOException on I/O error
+	 */
+	private static Object invoke(final Method method, final Object... arguments) throws IOException {
+		try {
+			return method.invoke(null, arguments);
+		} catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(String.format(Locale.ROOT, "Failed invoking %s", method.getName()), e.getCause());
+		} catch (final IllegalAccessException e) {
+			throw new IOException(String.format(Locale.ROOT, "Failed invoking %s", method.getName()), e);
+		}
+	}
+
+	/**
+	 * Creates a channel connected to {@link #path}. While the circuit is closed,
+	 * this is called by {@link #getChannel()} holding {@link #writeLock}. The
+	 * background probe calls this without holding {@link #writeLock}.
+	 *
+	 * @return the connected channel
+	 * @throws IOException on I/O error
+	 */
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	private SocketChannel connect() throws IOException {
+		final SocketChannel created = (SocketChannel) invoke(OPEN.get(), UNIX.get());
+		try {
+			created.connect((SocketAddress) invoke(ADDRESS_OF.get(), path));
+		} catch (final IOException e) {
+			created.close();
+			throw e;
+		}
+		return created;
+	}
+
+	/**
+	 * Returns the channel, connecting synchronously if the circuit is closed.
+	 * While the circuit is open, this fails fast and reconnecting is left to the
+	 * background probe. Guarded by {@link #writeLock}.
+	 *
+	 * @return the connected channel
+	 * @throws IOException on I/O error or if the circuit is open
+	 */
+	private SocketChannel getChannel() throws IOException {
+		if (!channel.isPresent()) {
+			if (circuitBreaker.isOpen()) {
+				throw new IOException("Syslog socket is unavailable. Waiting for reconnect.");
+			}
+			channel = Optional.of(connect());
+		}
+		return channel.get();
+	}
+
+	/**
+	 * Connects in the background while the circuit is open. Callers are not blocked
+	 * while connecting. The new connection is discarded if another one has been
+	 * created meanwhile or if the writer has been closed.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void reconnect() throws IOException {
+		final SocketChannel created = connect();
+		try {
+			writeLock.lock();
+			if (channel.isPresent() || circuitBreaker.isClosed()) {
+				created.close();
+			} else {
+				channel = Optional.of(created);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Appends {@code packet} as one frame to the output buffer, writing the buffer
+	 * to the socket whenever it is full. Guarded by {@link #writeLock}.
+	 *
+	 * @param packet the encoded packet
+	 * @throws IOException on I/O error
+	 */
+	private void writeFrame(final ByteBuffer packet) throws IOException {
+		final int prefixStart = framing.prefix(packet.remaining(), frameBuffer);
+		put(ByteBuffer.wrap(frameBuffer, prefixStart, frameBuffer.length - prefixStart));
+		put(packet);
+		put(ByteBuffer.wrap(frameBuffer, 0, framing.trailer(frameBuffer)));
+	}
+
+	/**
+	 * Appends the remaining bytes of {@code source} to the output buffer, writing
+	 * the buffer to the socket whenever it is full. Guarded by {@link #writeLock}.
+	 *
+	 * @param source the bytes to append
+	 * @throws IOException on I/O error
+	 */
+	private void put(final ByteBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			if (!output.hasRemaining()) {
+				drain();
+			}
+			final int length = Math.min(source.remaining(), output.remaining());
+			final int limit = source.limit();
+			source.limit(source.position() + length);
+			output.put(source);
+			source.limit(limit);
+		}
+	}
+
+	/**
+	 * Writes the output buffer to the socket. Guarded by {@link #writeLock}.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	private void drain() throws IOException {
+		output.flip();
+		try {
+			final SocketChannel connected = getChannel();
+			while (output.hasRemaining()) {
+				connected.write(output);
+			}
+		} finally {
+			output.clear();
+		}
+	}
+
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void write(final ByteBuffer packet) throws IOException {
+		try {
+			writeLock.lock();
+			writeFrame(packet);
+		} catch (final IOException e) {
+			closeOnFailure();
+			throw e;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Appends {@code packets} as one frame each while holding {@link #writeLock}
+	 * once, so that multiple frames are written by a single system call.
+	 *
+	 * @param packets  the encoded packets
+	 * @param failures consumer of the cause of a failure
+	 * @return the number of packets written
+	 */
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public int write(final List<ByteBuffer> packets, final Consumer<? super IOException> failures) {
+		int written = 0;
+		try {
+			writeLock.lock();
+			for (final ByteBuffer packet : packets) {
+				writeFrame(packet);
+				written += 1;
+			}
+		} catch (final IOException e) {
+			closeOnFailure();
+			failures.accept(e);
+		} finally {
+			writeLock.unlock();
+		}
+		return written;
+	}
+
+	@Override
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	public void flush() throws IOException {
+		try {
+			writeLock.lock();
+			if (output.position() > 0) {
+				drain();
+			}
+		} catch (final IOException e) {
+			closeOnFailure();
+			throw e;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public long getReconnects() {
+		return circuitBreaker.getReconnects();
+	}
+
+	@Override
+	public void close() throws IOException {
+		circuitBreaker.close();
+		try {
+			flush();
+		} finally {
+			closeChannel();
+		}
+	}
+
+	@SuppressFBWarnings(value = "MDM_WAIT_WITHOUT_TIMEOUT",
+			justification = "Using ReentrantLock instead of synchronized")
+	private void closeChannel() throws IOException {
+		try {
+			writeLock.lock();
+			if (channel.isPresent()) {
+				channel.get().close();
+			}
+		} finally {
+			channel = Optional.empty();
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the connection after a failure and opens the circuit.
+	 */
+	private void closeOnFailure() {
+		try {
+			closeChannel();
+		} catch (@SuppressWarnings("unused") final IOException ignored) {
+			// ignore because it shall not hide the original exception
+		}
+		circuitBreaker.onFailure();
+	}
+}
@@ -7,47 +7,162 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.helpers.LogLog;
 
 import de.larssh.utils.annotations.PackagePrivate;
 
-abstract class SyslogWriter64k extends Writer {
+/**
+ * Base class of writers to a single syslog host.
+ */
+public abstract class SyslogWriter64k extends Writer implements SyslogPacketWriter {
 	@PackagePrivate
 	static final int DEFAULT_SYSLOG_PORT = 514;
 
+	/**
+	 * Time after which the address of the syslog host is resolved again, so that
+	 * DNS changes are picked up. {@link InetAddress} caches additionally according
+	 * to {@code networkaddress.cache.ttl}.
+	 */
+	private static final long RESOLVE_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * Thread resolving the addresses of syslog hosts again, so that callers do not
+	 * wait for slow or unavailable DNS. The thread ends when idle.
+	 */
+	private static final ExecutorService RESOLVER
+			= new ThreadPoolExecutor(0, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+				final Thread thread = new Thread(runnable, "SyslogWriter64k-resolve");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Guards the connection state of writers. Unlike {@code synchronized} blocks,
+	 * waiting for this lock and blocking I/O while holding it do not pin the
+	 * carrier thread of virtual threads.
+	 */
+	protected final Lock writeLock = new ReentrantLock();
+
 	private final Charset charset;
 
-	private final InetAddress syslogHost;
+	/**
+	 * Host name or address of the syslog host or {@code null} if it is malformed
+	 */
+	private final String syslogHostName;
 
 	private final int syslogPort;
 
-	@SuppressWarnings("PMD.GuardLogStatement")
+	/**
+	 * Last resolved address or {@code null} if it could not be resolved yet
+	 */
+	private volatile InetAddress syslogHost = null;
+
+	/**
+	 * Value of {@link System#nanoTime()} when {@link #syslogHost} shall be resolved
+	 * again
+	 */
+	private volatile long resolveNanos;
+
+	/**
+	 * Whether resolving again has been passed to {@link #RESOLVER}
+	 */
+	private final AtomicBoolean resolving = new AtomicBoolean(false);
+
 	protected SyslogWriter64k(final String syslogHost, final Charset charset) {
+		this(syslogHost, charset, DEFAULT_SYSLOG_PORT);
+	}
+
+	/**
+	 * Creates a writer to {@code syslogHost} using {@code defaultPort} if the host
+	 * does not include a port.
+	 *
+	 * @param syslogHost  the syslog host, optionally including a port
+	 * @param charset     the charset used to encode String messages
+	 * @param defaultPort the port of the transport, e.g. 6514 for TLS
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	protected SyslogWriter64k(final String syslogHost, final Charset charset, final int defaultPort) {
 		this.charset = charset;
 
-		InetAddress host = null;
+		String hostName = null;
 		int port = -1;
 		try {
 			if (syslogHost.contains(":")) {
 				final URL url = new URL("http://" + syslogHost);
-				host = InetAddress.getByName(url.getHost());
+				hostName = url.getHost();
 				port = url.getPort();
 			} else {
-				host = InetAddress.getByName(syslogHost);
-				port = DEFAULT_SYSLOG_PORT;
+				hostName = syslogHost;
+				port = defaultPort;
 			}
-		} catch (final UnknownHostException | MalformedURLException e) {
+		} catch (final MalformedURLException e) {
 			LogLog.error("Could not find " + syslogHost + ". All logging will FAIL.", e);
 		}
-		this.syslogHost = host;
-		this.syslogPort = port;
+		syslogHostName = hostName;
+		syslogPort = port;
+
+		resolveNanos = System.nanoTime();
+		resolve();
+		if (this.syslogHost == null && hostName != null) {
+			LogLog.error("Could not find " + syslogHost + ". All logging will FAIL until it can be resolved.");
+		}
+	}
+
+	/**
+	 * Resolves the address of the syslog host. The previous address is kept if
+	 * resolving fails.
+	 */
+	private void resolve() {
+		if (syslogHostName == null) {
+			return;
+		}
+		resolveNanos = System.nanoTime() + RESOLVE_TTL_NANOS;
+		try {
+			syslogHost = InetAddress.getByName(syslogHostName);
+		} catch (@SuppressWarnings("unused") final UnknownHostException ignore) {
+			// keep the previous address and retry after the TTL
+		}
 	}
 
+	/**
+	 * Returns the last resolved address of the syslog host. After its TTL expired,
+	 * the address is resolved again in the background, so that callers never wait
+	 * for DNS. Callers shall read the address once per packet or connection.
+	 *
+	 * @return the address of the syslog host or {@code null} if it could not be
+	 *         resolved
+	 */
 	protected InetAddress getSyslogHost() {
+		if (System.nanoTime() - resolveNanos >= 0 && resolving.compareAndSet(false, true)) {
+			RESOLVER.execute(() -> {
+				try {
+					resolve();
+				} finally {
+					resolving.set(false);
+				}
+			});
+		}
 		return syslogHost;
 	}
 
+	/**
+	 * Returns the host name or address of the syslog host as configured, e.g. to
+	 * verify certificates against.
+	 *
+	 * @return the host name or {@code null} if the syslog host is malformed
+	 */
+	protected String getSyslogHostName() {
+		return syslogHostName;
+	}
+
 	protected int getSyslogPort() {
 		return syslogPort;
 	}
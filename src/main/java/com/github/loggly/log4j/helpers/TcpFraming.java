@@ -0,0 +1,91 @@
+package com.github.loggly.log4j.helpers;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Methods to frame syslog messages inside a TCP stream according to
+ * <a href="https://tools.ietf.org/html/rfc6587">RFC 6587</a>.
+ */
+public enum TcpFraming {
+	/**
+	 * Each message is prefixed by its length in bytes and a space, see RFC 6587
+	 * section 3.4.1.
+	 */
+	OCTET_COUNTING,
+
+	/**
+	 * Each message is terminated by a line feed, see RFC 6587 section 3.4.2.
+	 * Messages must not contain line feeds themselves.
+	 */
+	NON_TRANSPARENT;
+
+	private static final int RADIX = 10;
+
+	/**
+	 * Max number of decimal digits of an octet count
+	 */
+	private static final int MAX_OCTET_COUNT_DIGITS = 10;
+
+	private static final byte SPACE = ' ';
+
+	private static final byte LINE_FEED = '\n';
+
+	/**
+	 * Returns the framing matching {@code name}. The matching is case-insensitive
+	 * and accepts dashes instead of underscores, e.g. "octet-counting".
+	 *
+	 * @param name the framing name
+	 * @return the matching framing
+	 * @throws IllegalArgumentException if no framing matches {@code name}
+	 */
+	public static TcpFraming of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()).replace('-', '_'));
+	}
+
+	/**
+	 * Creates a reusable buffer, which is large enough to hold any prefix and
+	 * trailer.
+	 *
+	 * @return a new buffer
+	 */
+	static byte[] createBuffer() {
+		return new byte[MAX_OCTET_COUNT_DIGITS + 1];
+	}
+
+	/**
+	 * Writes the prefix of a frame to the end of {@code buffer} without allocating.
+	 *
+	 * @param length the length in bytes of the encoded message
+	 * @param buffer a buffer created by {@link #createBuffer()}
+	 * @return the index of the first byte of the prefix inside {@code buffer} or
+	 *         {@code buffer.length} if this framing has no prefix
+	 */
+	int prefix(final int length, final byte[] buffer) {
+		int start = buffer.length;
+		if (this == OCTET_COUNTING) {
+			start -= 1;
+			buffer[start] = SPACE;
+			int remainder = length;
+			do {
+				start -= 1;
+				buffer[start] = (byte) Character.forDigit(remainder % RADIX, RADIX);
+				remainder /= RADIX;
+			} while (remainder > 0);
+		}
+		return start;
+	}
+
+	/**
+	 * Writes the trailer of a frame to the start of {@code buffer}.
+	 *
+	 * @param buffer a buffer created by {@link #createBuffer()}
+	 * @return the length of the trailer in bytes
+	 */
+	int trailer(final byte[] buffer) {
+		if (this == NON_TRANSPARENT) {
+			buffer[0] = LINE_FEED;
+			return 1;
+		}
+		return 0;
+	}
+}
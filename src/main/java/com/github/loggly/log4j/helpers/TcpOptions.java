@@ -0,0 +1,390 @@
+package com.github.loggly.log4j.helpers;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+import javax.net.SocketFactory;
+
+import org.apache.log4j.helpers.LogLog;
+
+/**
+ * Options of TCP connections, configured by the <b>Tcp</b> options of
+ * {@link com.github.loggly.log4j.SyslogAppender64k}. Changed options apply to
+ * writers and packet encoders created afterwards.
+ */
+public final class TcpOptions {
+	private static final long DEFAULT_LINGER_MILLIS = 10;
+
+	private static final long DEFAULT_RECONNECT_DELAY_MILLIS = 500;
+
+	private static final long DEFAULT_RECONNECT_MAX_DELAY_MILLIS = 30_000;
+
+	private Optional<SocketFactory> socketFactory = Optional.empty();
+
+	private Duration socketTimeout = Duration.ofMinutes(1);
+
+	private TcpFraming framing = TcpFraming.OCTET_COUNTING;
+
+	/**
+	 * Size in bytes of the buffer used to coalesce TCP frames or zero to disable
+	 * batching.
+	 */
+	private int batchSize = 0;
+
+	/**
+	 * Max time in milliseconds coalesced TCP frames are kept pending.
+	 */
+	private long lingerMillis = DEFAULT_LINGER_MILLIS;
+
+	/**
+	 * Delay in milliseconds before the first reconnect attempt after a TCP
+	 * connection failed.
+	 */
+	private long reconnectDelayMillis = DEFAULT_RECONNECT_DELAY_MILLIS;
+
+	/**
+	 * Max delay in milliseconds between TCP reconnect attempts.
+	 */
+	private long reconnectMaxDelayMillis = DEFAULT_RECONNECT_MAX_DELAY_MILLIS;
+
+	/**
+	 * Min length in bytes of TCP packets to compress or zero to disable
+	 * compression.
+	 */
+	private int compressionThreshold = 0;
+
+	/**
+	 * zlib compression level of TCP packets
+	 */
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * Number of parallel TCP connections to the syslog host.
+	 */
+	private int connections = 1;
+
+	/**
+	 * Decides which TCP connection an event is written to if {@link #connections}
+	 * is greater than one.
+	 */
+	private TcpRouting routing = TcpRouting.THREAD;
+
+	public TcpOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the factory used to create TCP sockets.
+	 *
+	 * @return the socket factory or empty to create plain sockets
+	 */
+	public Optional<SocketFactory> getSocketFactory() {
+		return socketFactory;
+	}
+
+	/**
+	 * Sets the factory used to create TCP sockets.
+	 *
+	 * @param socketFactory the socket factory or {@code null} to create plain
+	 *                      sockets
+	 */
+	public void setSocketFactory(final SocketFactory socketFactory) {
+		this.socketFactory = Optional.ofNullable(socketFactory);
+	}
+
+	/**
+	 * Returns the timeout of connecting and writing TCP sockets.
+	 *
+	 * @return the socket timeout
+	 */
+	public Duration getSocketTimeout() {
+		return socketTimeout;
+	}
+
+	/**
+	 * Sets the timeout of connecting and writing TCP sockets.
+	 *
+	 * @param socketTimeout the socket timeout or {@code null} for no timeout
+	 */
+	public void setSocketTimeout(final Duration socketTimeout) {
+		this.socketTimeout = socketTimeout == null ? Duration.ZERO : socketTimeout;
+	}
+
+	/**
+	 * Returns the method used to frame messages inside a TCP stream.
+	 *
+	 * @return the framing
+	 */
+	public TcpFraming getFraming() {
+		return framing;
+	}
+
+	/**
+	 * Sets the method used to frame messages inside a TCP stream according to RFC
+	 * 6587. Supported values are OCTET_COUNTING (default) and NON_TRANSPARENT,
+	 * which terminates each message by a line feed. Case is unimportant.
+	 *
+	 * @param framing the framing name
+	 * @throws IllegalArgumentException if {@code framing} is unknown
+	 */
+	public void setFraming(final String framing) {
+		try {
+			this.framing = framing == null ? TcpFraming.OCTET_COUNTING : TcpFraming.of(framing);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid TCP framing: %s", framing), e);
+		}
+	}
+
+	/**
+	 * Returns the value of the <b>TcpCompressionThreshold</b> option.
+	 *
+	 * @return the min length in bytes of TCP packets to compress or zero if
+	 *         compression is disabled
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * The <b>TcpCompressionThreshold</b> option compresses TCP packets of at least
+	 * the given length in bytes using zlib, as done by the compressed TCP mode of
+	 * rsyslog: a compressed packet consists of the byte {@code z} followed by the
+	 * zlib stream of the packet. Packets, which would not shrink, are sent as they
+	 * are. The receiver needs to support this mode. Compression requires
+	 * OCTET_COUNTING framing. The default value is zero, which disables
+	 * compression.
+	 *
+	 * @param compressionThreshold the min packet length in bytes or zero to
+	 *                             disable compression
+	 */
+	public void setCompressionThreshold(final int compressionThreshold) {
+		this.compressionThreshold = Math.max(0, compressionThreshold);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpCompressionLevel</b> option.
+	 *
+	 * @return the zlib compression level
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * The <b>TcpCompressionLevel</b> option sets the zlib compression level from 0
+	 * to 9 of TCP packets. The default value is -1, which uses the default level
+	 * of zlib.
+	 *
+	 * @param compressionLevel the zlib compression level
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public void setCompressionLevel(final int compressionLevel) {
+		if (compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION) {
+			this.compressionLevel = compressionLevel;
+		} else {
+			this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+			LogLog.warn(compressionLevel + " is an invalid compression level. Defaulting to "
+					+ Deflater.DEFAULT_COMPRESSION + ".");
+		}
+	}
+
+	/**
+	 * Determines whether packets are compressed, warning about framings not
+	 * supporting compression.
+	 *
+	 * @param tcpProtocol {@code true} if the protocol in use is plain TCP, the only
+	 *                    protocol supporting compression
+	 * @return {@code true} if packets shall be compressed
+	 */
+	@SuppressWarnings("PMD.GuardLogStatement")
+	public boolean isCompressing(final boolean tcpProtocol) {
+		final boolean enabled = compressionThreshold > 0 && tcpProtocol;
+		if (enabled && framing != TcpFraming.OCTET_COUNTING) {
+			LogLog.warn("TCP compression requires OCTET_COUNTING framing.");
+		}
+		return enabled && framing == TcpFraming.OCTET_COUNTING;
+	}
+
+	/**
+	 * Creates a compressor of TCP packets using the current options.
+	 *
+	 * @return the packet compressor
+	 */
+	public SyslogPacketCompressor createCompressor() {
+		return new SyslogPacketCompressor(compressionLevel, compressionThreshold);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpReconnectDelayMillis</b> option.
+	 *
+	 * @return the delay in milliseconds before the first reconnect attempt
+	 */
+	public long getReconnectDelayMillis() {
+		return reconnectDelayMillis;
+	}
+
+	/**
+	 * The <b>TcpReconnectDelayMillis</b> option sets the delay in milliseconds
+	 * before the first reconnect attempt after a TCP connection failed. While
+	 * disconnected, events are dropped without waiting for a connect timeout and a
+	 * background thread tries to reconnect. The delay doubles per failed attempt up
+	 * to <b>TcpReconnectMaxDelayMillis</b> and is randomized by up to its half. The
+	 * default value is 500.
+	 *
+	 * @param reconnectDelayMillis the initial reconnect delay in milliseconds
+	 */
+	public void setReconnectDelayMillis(final long reconnectDelayMillis) {
+		this.reconnectDelayMillis = Math.max(1, reconnectDelayMillis);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpReconnectMaxDelayMillis</b> option.
+	 *
+	 * @return the max delay in milliseconds between reconnect attempts
+	 */
+	public long getReconnectMaxDelayMillis() {
+		return reconnectMaxDelayMillis;
+	}
+
+	/**
+	 * The <b>TcpReconnectMaxDelayMillis</b> option sets the max delay in
+	 * milliseconds between TCP reconnect attempts. The default value is 30000.
+	 *
+	 * @param reconnectMaxDelayMillis the max reconnect delay in milliseconds
+	 */
+	public void setReconnectMaxDelayMillis(final long reconnectMaxDelayMillis) {
+		this.reconnectMaxDelayMillis = Math.max(1, reconnectMaxDelayMillis);
+	}
+
+	/**
+	 * Returns the backoff between reconnect attempts of the
+	 * <b>TcpReconnectDelayMillis</b> and <b>TcpReconnectMaxDelayMillis</b> options.
+	 *
+	 * @return the reconnect backoff
+	 */
+	public ReconnectBackoff getReconnectBackoff() {
+		return new ReconnectBackoff(Duration.ofMillis(reconnectDelayMillis), Duration.ofMillis(reconnectMaxDelayMillis));
+	}
+
+	/**
+	 * Returns the value of the <b>TcpConnections</b> option.
+	 *
+	 * @return the number of parallel TCP connections
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * The <b>TcpConnections</b> option sets the number of parallel TCP connections
+	 * to the syslog host. Events are spread over the connections by the hash of
+	 * their thread or logger name, see {@link #setRouting(String)}, to keep the
+	 * order of events per source. Each connection reconnects independently. The
+	 * default value is one.
+	 *
+	 * @param connections the number of connections
+	 */
+	public void setConnections(final int connections) {
+		this.connections = Math.max(1, connections);
+	}
+
+	/**
+	 * Returns the key used to spread events over TCP connections.
+	 *
+	 * @return the routing
+	 */
+	public TcpRouting getRouting() {
+		return routing;
+	}
+
+	/**
+	 * Sets the key used to spread events over TCP connections if
+	 * <b>TcpConnections</b> is greater than one. Supported values are THREAD
+	 * (default) and LOGGER. Case is unimportant.
+	 *
+	 * @param routing the routing name
+	 * @throws IllegalArgumentException if {@code routing} is unknown
+	 */
+	public void setRouting(final String routing) {
+		try {
+			this.routing = routing == null ? TcpRouting.THREAD : TcpRouting.of(routing);
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid TCP routing: %s", routing), e);
+		}
+	}
+
+	/**
+	 * Returns the value of the <b>TcpBatchSize</b> option.
+	 *
+	 * @return the size in bytes of the buffer used to coalesce TCP frames or zero
+	 *         if batching is disabled
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * The <b>TcpBatchSize</b> option sets the size in bytes of a buffer used to
+	 * coalesce TCP frames. If greater than zero, frames are written when the buffer
+	 * is full, after the linger time or when the appender is closed instead of
+	 * flushing each event. If writing fails, the pending frames are spilled if
+	 * <b>TcpSpillPath</b> is set, or lost and counted as dropped packets
+	 * otherwise. Batching is not available in combination with a TCP socket
+	 * factory. The default value is zero, which disables batching.
+	 *
+	 * @param batchSize the buffer size in bytes or zero to disable batching
+	 */
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = Math.max(0, batchSize);
+	}
+
+	/**
+	 * Returns the value of the <b>TcpLingerMillis</b> option.
+	 *
+	 * @return the max time in milliseconds coalesced TCP frames are kept pending
+	 */
+	public long getLingerMillis() {
+		return lingerMillis;
+	}
+
+	/**
+	 * The <b>TcpLingerMillis</b> option sets the max time in milliseconds coalesced
+	 * TCP frames are kept pending before being written. Zero keeps frames pending
+	 * until the buffer is full or the appender is closed. The default value is 10.
+	 *
+	 * @param lingerMillis the linger time in milliseconds
+	 */
+	public void setLingerMillis(final long lingerMillis) {
+		this.lingerMillis = Math.max(0, lingerMillis);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("TcpOptions [socketFactory=") //
+				.append(socketFactory)
+				.append(", socketTimeout=")
+				.append(socketTimeout)
+				.append(", framing=")
+				.append(framing)
+				.append(", batchSize=")
+				.append(batchSize)
+				.append(", lingerMillis=")
+				.append(lingerMillis)
+				.append(", reconnectDelayMillis=")
+				.append(reconnectDelayMillis)
+				.append(", reconnectMaxDelayMillis=")
+				.append(reconnectMaxDelayMillis)
+				.append(", compressionThreshold=")
+				.append(compressionThreshold)
+				.append(", compressionLevel=")
+				.append(compressionLevel)
+				.append(", connections=")
+				.append(connections)
+				.append(", routing=")
+				.append(routing)
+				.append(']')
+				.toString();
+	}
+}
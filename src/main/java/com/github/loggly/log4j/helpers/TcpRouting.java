@@ -0,0 +1,43 @@
+package com.github.loggly.log4j.helpers;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+import de.larssh.utils.text.Strings;
+
+/**
+ * Decides which connection of a {@link SyslogTcpPoolWriter64k} an event is
+ * written to. Events with equal keys are written to the same connection, so
+ * that their order is kept.
+ */
+public enum TcpRouting {
+	/**
+	 * Events are routed by the name of the thread logging them.
+	 */
+	THREAD,
+
+	/**
+	 * Events are routed by the name of their logger.
+	 */
+	LOGGER;
+
+	/**
+	 * Returns the routing matching {@code name}. The matching is case-insensitive.
+	 *
+	 * @param name the routing name
+	 * @return the matching routing
+	 * @throws IllegalArgumentException if no routing matches {@code name}
+	 */
+	public static TcpRouting of(final String name) {
+		return valueOf(Strings.toUpperCaseNeutral(name.trim()));
+	}
+
+	/**
+	 * Returns the routing key of {@code event}.
+	 *
+	 * @param event the event to route
+	 * @return the routing key
+	 */
+	public String getKey(final LoggingEvent event) {
+		return this == LOGGER ? event.getLoggerName() : event.getThreadName();
+	}
+}
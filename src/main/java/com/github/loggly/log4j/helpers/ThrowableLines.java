@@ -0,0 +1,116 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Methods to reduce the number of packets and bytes sent for the lines of a
+ * stack trace, as returned by
+ * {@link org.apache.log4j.spi.LoggingEvent#getThrowableStrRep()}.
+ */
+public final class ThrowableLines {
+	private static final String FRAME_PREFIX = "at ";
+
+	private static final char TAB = '\t';
+
+	private ThrowableLines() {
+		// utility class
+	}
+
+	/**
+	 * Keeps the first {@code maxFrames} frames of each throwable, cause and
+	 * suppressed throwable. Omitted frames are replaced by a single line, e.g.
+	 * {@code "\t... 42 frames omitted"}.
+	 *
+	 * @param lines     the lines of a stack trace
+	 * @param maxFrames the max number of frames per throwable or zero to keep all
+	 *                  frames
+	 * @return the limited lines or {@code lines} if no frame is omitted
+	 */
+	@SuppressWarnings("PMD.UseVarargs")
+	public static String[] limitFrames(final String[] lines, final int maxFrames) {
+		if (maxFrames < 1) {
+			return lines;
+		}
+
+		final List<String> limited = new ArrayList<>(lines.length);
+		int frames = 0;
+		int omitted = 0;
+		String indent = "";
+		for (final String line : lines) {
+			final int frameStart = getFrameStart(line);
+			if (frameStart < 0) {
+				addOmitted(limited, indent, omitted);
+				frames = 0;
+				omitted = 0;
+				limited.add(line);
+			} else if (frames < maxFrames) {
+				frames += 1;
+				limited.add(line);
+			} else {
+				if (omitted == 0) {
+					indent = line.substring(0, frameStart);
+				}
+				omitted += 1;
+			}
+		}
+		addOmitted(limited, indent, omitted);
+
+		return limited.size() == lines.length ? lines : limited.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns the index of {@code "at "} if {@code line} is a frame, which is
+	 * indented by tabs, else {@code -1}.
+	 *
+	 * @param line the line of a stack trace
+	 * @return the index of the frame text or {@code -1}
+	 */
+	private static int getFrameStart(final String line) {
+		int index = 0;
+		while (index < line.length() && line.charAt(index) == TAB) {
+			index += 1;
+		}
+		return index > 0 && line.startsWith(FRAME_PREFIX, index) ? index : -1;
+	}
+
+	/**
+	 * Adds the line replacing {@code omitted} frames, if any.
+	 *
+	 * @param lines   the lines to add to
+	 * @param indent  the indent of the omitted frames
+	 * @param omitted the number of omitted frames
+	 */
+	private static void addOmitted(final List<String> lines, final String indent, final int omitted) {
+		if (omitted > 0) {
+			lines.add(String.format(Locale.ROOT, "%s... %d frames omitted", indent, omitted));
+		}
+	}
+
+	/**
+	 * Joins {@code lines} into a single message, replacing the leading tab of
+	 * indented lines by {@code tab}.
+	 *
+	 * @param lines         the lines of a stack trace
+	 * @param tab           the replacement of leading tabs
+	 * @param lineSeparator the separator between lines
+	 * @return the joined lines
+	 */
+	@SuppressWarnings("PMD.UseVarargs")
+	public static String join(final String[] lines, final String tab, final String lineSeparator) {
+		final StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < lines.length; index += 1) {
+			if (index > 0) {
+				builder.append(lineSeparator);
+			}
+			final String line = lines[index];
+			if (!line.isEmpty() && line.charAt(0) == TAB) {
+				builder.append(tab).append(line, 1, line.length());
+			} else {
+				builder.append(line);
+			}
+		}
+		return builder.toString();
+	}
+}
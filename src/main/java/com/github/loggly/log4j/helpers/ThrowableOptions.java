@@ -0,0 +1,130 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Optional;
+
+import org.apache.log4j.helpers.LogLog;
+
+/**
+ * Options of sending stack traces, configured by the <b>Throwable</b> options
+ * of {@link com.github.loggly.log4j.SyslogAppender64k}.
+ */
+public final class ThrowableOptions {
+	private static final String DEFAULT_LINE_SEPARATOR = "\n";
+
+	/**
+	 * Default separator between lines of packed stack traces if using
+	 * non-transparent TCP framing, which terminates frames by line feeds. It
+	 * equals the escape sequence used by rsyslog for line feeds.
+	 */
+	private static final String NON_TRANSPARENT_LINE_SEPARATOR = "#012";
+
+	/**
+	 * If true, all lines of a stack trace are joined into a single message
+	 */
+	private boolean packing = false;
+
+	/**
+	 * Separator between lines of packed stack traces or empty to depend on the TCP
+	 * framing
+	 */
+	private Optional<String> lineSeparator = Optional.empty();
+
+	/**
+	 * Max number of frames per throwable or zero for no limit
+	 */
+	private int maxFrames = 0;
+
+	public ThrowableOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the value of the <b>ThrowablePacking</b> option.
+	 *
+	 * @return {@code true} if stack traces are sent as a single message
+	 */
+	public boolean isPacking() {
+		return packing;
+	}
+
+	/**
+	 * The <b>ThrowablePacking</b> option joins all lines of a stack trace using
+	 * <b>ThrowableLineSeparator</b> and sends them as a single message instead of
+	 * one message per line. Stack traces exceeding the max message length are split
+	 * into as few packets as possible. Disabled by default.
+	 *
+	 * @param packing {@code true} to send stack traces as a single message
+	 */
+	public void setPacking(final boolean packing) {
+		this.packing = packing;
+	}
+
+	/**
+	 * Returns the separator between lines of packed stack traces.
+	 *
+	 * @param framing the TCP framing in use
+	 * @return the separator between lines of packed stack traces
+	 */
+	public String getLineSeparator(final TcpFraming framing) {
+		return lineSeparator.orElse(
+				framing == TcpFraming.NON_TRANSPARENT ? NON_TRANSPARENT_LINE_SEPARATOR : DEFAULT_LINE_SEPARATOR);
+	}
+
+	/**
+	 * The <b>ThrowableLineSeparator</b> option sets the separator between lines of
+	 * stack traces if <b>ThrowablePacking</b> is enabled. Defaults to a line feed
+	 * or to {@code #012} if using non-transparent TCP framing, as line feeds
+	 * terminate frames in that case.
+	 *
+	 * @param lineSeparator the separator between lines or {@code null} for the
+	 *                      default
+	 */
+	public void setLineSeparator(final String lineSeparator) {
+		this.lineSeparator = Optional.ofNullable(lineSeparator);
+	}
+
+	/**
+	 * Warns if packed stack traces would contain line feeds, which split frames
+	 * when using non-transparent TCP framing.
+	 *
+	 * @param framing the TCP framing in use
+	 */
+	public void checkLineSeparator(final TcpFraming framing) {
+		if (packing && framing == TcpFraming.NON_TRANSPARENT && getLineSeparator(framing).indexOf('\n') >= 0) {
+			LogLog.warn("ThrowableLineSeparator must not contain line feeds if using NON_TRANSPARENT framing.");
+		}
+	}
+
+	/**
+	 * Returns the value of the <b>ThrowableMaxFrames</b> option.
+	 *
+	 * @return the max number of frames per throwable or zero for no limit
+	 */
+	public int getMaxFrames() {
+		return maxFrames;
+	}
+
+	/**
+	 * The <b>ThrowableMaxFrames</b> option limits the number of frames sent per
+	 * throwable, cause and suppressed throwable. Omitted frames are replaced by a
+	 * single line. Zero (default) sends all frames.
+	 *
+	 * @param maxFrames the max number of frames per throwable or zero for no limit
+	 */
+	public void setMaxFrames(final int maxFrames) {
+		this.maxFrames = Math.max(0, maxFrames);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("ThrowableOptions [packing=") //
+				.append(packing)
+				.append(", lineSeparator=")
+				.append(lineSeparator)
+				.append(", maxFrames=")
+				.append(maxFrames)
+				.append(']')
+				.toString();
+	}
+}
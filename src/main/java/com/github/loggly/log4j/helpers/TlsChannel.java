@@ -0,0 +1,324 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * TLS connection driving an {@link SSLEngine} on a non-blocking
+ * {@link SocketChannel}. Writing waits for the channel using a selector, so
+ * that timeouts apply to each wait. Data received from the syslog host is read
+ * without blocking before each write, so that session tickets are stored for
+ * resuming later connections and closed connections are detected early.
+ *
+ * <p>
+ * Instances are not thread-safe. Callers guard them by their own lock.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+final class TlsChannel implements Closeable {
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final SocketChannel channel;
+
+	private final Selector selector;
+
+	private final SelectionKey key;
+
+	private final SSLEngine engine;
+
+	private final long timeoutMillis;
+
+	/**
+	 * Encrypted records to be written
+	 */
+	private ByteBuffer networkOut;
+
+	/**
+	 * Encrypted records read, but not yet unwrapped
+	 */
+	private ByteBuffer networkIn;
+
+	/**
+	 * Application data received from the syslog host, which is discarded
+	 */
+	private ByteBuffer applicationIn;
+
+	/**
+	 * Set if the session of the handshake has been resumed
+	 */
+	private final boolean resumed;
+
+	@SuppressWarnings({ "checkstyle:SuppressWarnings", "PMD.CloseResource", "resource" })
+	private TlsChannel(final SocketChannel channel, final SSLEngine engine, final Duration timeout)
+			throws IOException {
+		this.channel = channel;
+		this.engine = engine;
+		timeoutMillis = timeout.toMillis();
+
+		networkOut = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+		networkIn = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+		applicationIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		try {
+			key = channel.register(selector, 0);
+		} catch (final IOException e) {
+			selector.close();
+			throw e;
+		}
+
+		final long handshakeStart = System.currentTimeMillis();
+		try {
+			engine.beginHandshake();
+			handshake(engine.getHandshakeStatus());
+		} catch (final IOException e) {
+			selector.close();
+			throw e;
+		}
+		// resumed sessions keep the creation time of their initial handshake
+		resumed = engine.getSession().getCreationTime() < handshakeStart;
+	}
+
+	/**
+	 * Connects to {@code address} and performs the handshake of {@code engine}.
+	 *
+	 * @param address the address of the syslog host
+	 * @param engine  the client mode engine to use for the connection
+	 * @param timeout the timeout of connecting and of each wait for the syslog
+	 *                host or zero to wait infinitely
+	 * @return the connected channel
+	 * @throws IOException on I/O error or if the handshake failed
+	 */
+	@SuppressFBWarnings(value = "UNENCRYPTED_SOCKET", justification = "Encrypted using SSLEngine")
+	static TlsChannel open(final InetSocketAddress address, final SSLEngine engine, final Duration timeout)
+			throws IOException {
+		final SocketChannel channel = SocketChannel.open();
+		try {
+			channel.socket().connect(address, (int) timeout.toMillis());
+			return new TlsChannel(channel, engine, timeout);
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns whether the session of this connection has been resumed instead of
+	 * performing a full handshake.
+	 *
+	 * @return {@code true} if the session has been resumed
+	 */
+	boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * Encrypts and writes the remaining bytes of {@code plain}. Each wrap creates
+	 * one TLS record holding up to the max record size of plain text, therefore
+	 * callers pass as many bytes at once as possible.
+	 *
+	 * @param plain the plain text to write
+	 * @throws IOException on I/O error or if the connection has been closed
+	 */
+	void write(final ByteBuffer plain) throws IOException {
+		poll();
+		while (plain.hasRemaining()) {
+			handshake(wrap(plain));
+			if (engine.isOutboundDone()) {
+				throw new SSLException("TLS connection has been closed.");
+			}
+		}
+	}
+
+	/**
+	 * Continues the handshake starting at {@code status} until it is finished.
+	 *
+	 * @param status the current handshake status
+	 * @throws IOException on I/O error or if the handshake failed
+	 */
+	private void handshake(final HandshakeStatus status) throws IOException {
+		HandshakeStatus current = status;
+		while (current != HandshakeStatus.FINISHED && current != HandshakeStatus.NOT_HANDSHAKING) {
+			if (current == HandshakeStatus.NEED_WRAP) {
+				current = wrap(EMPTY);
+			} else if (current == HandshakeStatus.NEED_TASK) {
+				Runnable task = engine.getDelegatedTask();
+				while (task != null) {
+					task.run();
+					task = engine.getDelegatedTask();
+				}
+				current = engine.getHandshakeStatus();
+			} else {
+				// NEED_UNWRAP and NEED_UNWRAP_AGAIN of Java 9
+				current = unwrap(true);
+			}
+		}
+	}
+
+	/**
+	 * Wraps {@code source} into one record and writes it.
+	 *
+	 * @param source the plain text to wrap
+	 * @return the handshake status after wrapping
+	 * @throws IOException on I/O error
+	 */
+	private HandshakeStatus wrap(final ByteBuffer source) throws IOException {
+		networkOut.clear();
+		SSLEngineResult result = engine.wrap(source, networkOut);
+		while (result.getStatus() == Status.BUFFER_OVERFLOW) {
+			networkOut = ByteBuffer.allocateDirect(networkOut.capacity() * 2);
+			result = engine.wrap(source, networkOut);
+		}
+		networkOut.flip();
+		while (networkOut.hasRemaining()) {
+			if (channel.write(networkOut) == 0) {
+				await(SelectionKey.OP_WRITE);
+			}
+		}
+		return result.getHandshakeStatus();
+	}
+
+	/**
+	 * Unwraps one record, reading from the channel as needed. Application data is
+	 * discarded, as syslog hosts are not expected to send any.
+	 *
+	 * @param blocking {@code true} to wait for a complete record
+	 * @return the handshake status after unwrapping or
+	 *         {@link HandshakeStatus#NOT_HANDSHAKING} if not blocking and no
+	 *         complete record is available
+	 * @throws IOException on I/O error or if the connection has been closed
+	 */
+	private HandshakeStatus unwrap(final boolean blocking) throws IOException {
+		while (true) {
+			networkIn.flip();
+			final SSLEngineResult result = engine.unwrap(networkIn, applicationIn);
+			networkIn.compact();
+			applicationIn.clear();
+
+			if (result.getStatus() == Status.CLOSED) {
+				throw new SSLException("Syslog host closed the TLS connection.");
+			}
+			if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+				applicationIn = ByteBuffer.allocate(applicationIn.capacity() * 2);
+			} else if (result.getStatus() == Status.BUFFER_UNDERFLOW) {
+				if (!read(blocking)) {
+					return HandshakeStatus.NOT_HANDSHAKING;
+				}
+			} else {
+				return result.getHandshakeStatus();
+			}
+		}
+	}
+
+	/**
+	 * Reads available records, e.g. session tickets, alerts or post-handshake
+	 * messages, without blocking.
+	 *
+	 * @throws IOException on I/O error or if the connection has been closed
+	 */
+	private void poll() throws IOException {
+		while (read(false) || networkIn.position() > 0) {
+			final int buffered = networkIn.position();
+			handshake(unwrap(false));
+			if (networkIn.position() == buffered) {
+				// incomplete record
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads from the channel into {@link #networkIn}.
+	 *
+	 * @param blocking {@code true} to wait until at least one byte has been read
+	 * @return {@code true} if bytes have been read
+	 * @throws IOException on I/O error or if the syslog host closed the connection
+	 */
+	private boolean read(final boolean blocking) throws IOException {
+		if (!networkIn.hasRemaining()) {
+			final ByteBuffer larger = ByteBuffer.allocateDirect(networkIn.capacity() * 2);
+			networkIn.flip();
+			larger.put(networkIn);
+			networkIn = larger;
+		}
+
+		int read = channel.read(networkIn);
+		while (read == 0 && blocking) {
+			await(SelectionKey.OP_READ);
+			read = channel.read(networkIn);
+		}
+		if (read < 0) {
+			throw new EOFException("Syslog host closed the connection.");
+		}
+		return read > 0;
+	}
+
+	/**
+	 * Waits until the channel is ready for {@code operation}.
+	 *
+	 * @param operation the operation, e.g. {@link SelectionKey#OP_WRITE}
+	 * @throws IOException on I/O error or if the timeout elapsed
+	 */
+	private void await(final int operation) throws IOException {
+		key.interestOps(operation);
+		try {
+			if (selector.select(timeoutMillis) == 0) {
+				throw new SocketTimeoutException("Timed out waiting for the syslog host.");
+			}
+		} finally {
+			selector.selectedKeys().clear();
+			key.interestOps(0);
+		}
+	}
+
+	/**
+	 * Closes the channel without sending close_notify, e.g. after a failure.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	void abort() throws IOException {
+		try {
+			selector.close();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Sends close_notify if possible and closes the channel.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			engine.closeOutbound();
+			if (channel.isConnected()) {
+				wrap(EMPTY);
+			}
+		} finally {
+			try {
+				selector.close();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Optional;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Options of TLS connections, configured by the <b>Tls</b> options of
+ * {@link com.github.loggly.log4j.SyslogAppender64k}. Changed options apply to
+ * writers created afterwards.
+ */
+public final class TlsOptions {
+	/**
+	 * Context used to create TLS connections or empty to use the default context,
+	 * which is configured by the {@code javax.net.ssl} system properties.
+	 */
+	private Optional<SSLContext> context = Optional.empty();
+
+	/**
+	 * If true, the certificate of the syslog host is verified against its host
+	 * name.
+	 */
+	private boolean hostnameVerification = true;
+
+	public TlsOptions() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Returns the context used to create TLS connections.
+	 *
+	 * @return the context or empty if the default context is used
+	 */
+	public Optional<SSLContext> getContext() {
+		return context;
+	}
+
+	/**
+	 * Sets the context used to create TLS connections. Connections created using
+	 * the same context resume the cached session of the syslog host. If not set,
+	 * the default context is used, which is configured by the
+	 * {@code javax.net.ssl} system properties.
+	 *
+	 * @param context the context or {@code null} to use the default context
+	 */
+	public void setContext(final SSLContext context) {
+		this.context = Optional.ofNullable(context);
+	}
+
+	/**
+	 * Returns the value of the <b>TlsHostnameVerification</b> option.
+	 *
+	 * @return {@code true} if the certificate of the syslog host is verified
+	 *         against its host name, else {@code false}
+	 */
+	public boolean isHostnameVerification() {
+		return hostnameVerification;
+	}
+
+	/**
+	 * The <b>TlsHostnameVerification</b> option decides if the certificate of the
+	 * syslog host is verified against its host name. The default value is true.
+	 *
+	 * @param hostnameVerification {@code true} to verify the host name
+	 */
+	public void setHostnameVerification(final boolean hostnameVerification) {
+		this.hostnameVerification = hostnameVerification;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return new StringBuilder("TlsOptions [context=") //
+				.append(context)
+				.append(", hostnameVerification=")
+				.append(hostnameVerification)
+				.append(']')
+				.toString();
+	}
+}
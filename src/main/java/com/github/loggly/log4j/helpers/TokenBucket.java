@@ -0,0 +1,81 @@
+package com.github.loggly.log4j.helpers;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Lock-free token bucket, implemented as generic cell rate algorithm. Instead
+ * of refilling tokens, the bucket keeps the theoretical arrival time of the
+ * next event, which advances by one interval per accepted event.
+ */
+@SuppressFBWarnings(value = "IMC_IMMATURE_CLASS_NO_TOSTRING",
+		justification = "Instance fields cannot be stringified nicely, therefore toString does not make that much sense.")
+public final class TokenBucket {
+	/**
+	 * Nanoseconds per token
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * Nanoseconds the theoretical arrival time may be ahead of now, allowing bursts
+	 */
+	private final long toleranceNanos;
+
+	/**
+	 * Theoretical arrival time of the next event in terms of
+	 * {@link System#nanoTime()}
+	 */
+	private final AtomicLong arrival;
+
+	/**
+	 * Creates a full bucket.
+	 *
+	 * @param eventsPerSecond the number of events per second
+	 * @param burst           the number of events accepted at once
+	 * @param nowNanos        the current value of {@link System#nanoTime()}
+	 */
+	public TokenBucket(final int eventsPerSecond, final int burst, final long nowNanos) {
+		checkArguments(eventsPerSecond, burst);
+		intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+		toleranceNanos = intervalNanos * (burst - 1);
+		arrival = new AtomicLong(nowNanos);
+	}
+
+	/**
+	 * Checks the arguments of {@link #TokenBucket(int, int, long)}.
+	 *
+	 * @param eventsPerSecond the number of events per second
+	 * @param burst           the number of events accepted at once
+	 * @throws IllegalArgumentException if any argument is less than one
+	 */
+	static void checkArguments(final int eventsPerSecond, final int burst) {
+		if (eventsPerSecond < 1 || burst < 1) {
+			throw new IllegalArgumentException(String
+					.format(Locale.ROOT, "Invalid token bucket: %d events per second, burst %d", eventsPerSecond, burst));
+		}
+	}
+
+	/**
+	 * Takes a token if available.
+	 *
+	 * @param nowNanos the current value of {@link System#nanoTime()}
+	 * @return {@code true} if a token was taken, {@code false} if the bucket is
+	 *         empty
+	 */
+	public boolean tryAcquire(final long nowNanos) {
+		long current;
+		boolean accepted;
+		do {
+			current = arrival.get();
+			final long base = current - nowNanos < 0 ? nowNanos : current;
+			accepted = base - nowNanos <= toleranceNanos;
+			if (accepted && arrival.compareAndSet(current, base + intervalNanos)) {
+				return true;
+			}
+		} while (accepted);
+		return false;
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.loggly.log4j.helpers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+/**
+ * Creates virtual threads if the running JVM supports them. As this library is
+ * compiled for Java 8, the builder API of Java 21 is accessed reflectively.
+ */
+public final class VirtualThreads {
+	/**
+	 * {@code Thread.ofVirtual()} or empty if not supported
+	 */
+	private static final Optional<Method> OF_VIRTUAL = getMethod(Thread.class, "ofVirtual");
+
+	/**
+	 * {@code Thread.Builder.name(String)} or empty if not supported
+	 */
+	private static final Optional<Method> NAME = getBuilderMethod("name", String.class);
+
+	/**
+	 * {@code Thread.Builder.unstarted(Runnable)} or empty if not supported
+	 */
+	private static final Optional<Method> UNSTARTED = getBuilderMethod("unstarted", Runnable.class);
+
+	private VirtualThreads() {
+		// utility class
+	}
+
+	private static Optional<Method> getMethod(final Class<?> type, final String name, final Class<?>... parameters) {
+		try {
+			return Optional.of(type.getMethod(name, parameters));
+		} catch (@SuppressWarnings("unused") final NoSuchMethodException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<Method> getBuilderMethod(final String name, final Class<?>... parameters) {
+		try {
+			return getMethod(Class.forName("java.lang.Thread$Builder"), name, parameters);
+		} catch (@SuppressWarnings("unused") final ClassNotFoundException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Creates an unstarted virtual thread if supported by the running JVM.
+	 *
+	 * @param name the name of the thread
+	 * @param task the task to run
+	 * @return the virtual thread or empty if virtual threads are not supported
+	 */
+	@SuppressWarnings({ "checkstyle:IllegalCatch", "PMD.AvoidCatchingGenericException" })
+	public static Optional<Thread> newThread(final String name, final Runnable task) {
+		if (!OF_VIRTUAL.isPresent() || !NAME.isPresent() || !UNSTARTED.isPresent()) {
+			return Optional.empty();
+		}
+		try {
+			final Object builder = NAME.get().invoke(OF_VIRTUAL.get().invoke(null), name);
+			return Optional.of((Thread) UNSTARTED.get().invoke(builder, task));
+		} catch (@SuppressWarnings("unused") final IllegalAccessException | InvocationTargetException
+				| RuntimeException e) {
+			// e.g. virtual threads being a preview feature of Java 19 and 20
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Creates an unstarted virtual thread if supported by the running JVM or else
+	 * an unstarted platform daemon thread.
+	 *
+	 * @param name    the name of the thread
+	 * @param task    the task to run
+	 * @param virtual {@code true} to prefer a virtual thread
+	 * @return the unstarted thread
+	 */
+	public static Thread newSenderThread(final String name, final Runnable task, final boolean virtual) {
+		final Optional<Thread> virtualThread = virtual ? newThread(name, task) : Optional.empty();
+		if (virtualThread.isPresent()) {
+			return virtualThread.get();
+		}
+		final Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
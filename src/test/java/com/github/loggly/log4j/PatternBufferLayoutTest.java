@@ -0,0 +1,67 @@
+package com.github.loggly.log4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.NDC;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link PatternBufferLayout}
+ */
+@SuppressWarnings("java:S5786")
+public class PatternBufferLayoutTest {
+	private static final Logger LOGGER = Logger.getLogger(PatternBufferLayoutTest.class);
+
+	private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5p %c{1} %x - %m%%%n";
+
+	public PatternBufferLayoutTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void formatEqualsPatternLayout() {
+		// given
+		final PatternBufferLayout layout = new PatternBufferLayout(PATTERN);
+		final StringBuffer buffer = new StringBuffer("kept:");
+		NDC.push("ndc");
+		try {
+			final LoggingEvent event = new LoggingEvent(PatternBufferLayoutTest.class.getName(),
+					LOGGER,
+					Level.WARN,
+					"message",
+					null);
+
+			// when
+			layout.format(event, buffer);
+
+			// then
+			assertThat(buffer.toString()).isEqualTo("kept:" + new PatternLayout(PATTERN).format(event));
+		} finally {
+			NDC.pop();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void setConversionPattern() {
+		// given
+		final PatternBufferLayout layout = new PatternBufferLayout();
+		final StringBuffer buffer = new StringBuffer();
+
+		// when
+		layout.setConversionPattern("%p:%m");
+		layout.format(new LoggingEvent(PatternBufferLayoutTest.class.getName(), LOGGER, Level.INFO, "text", null),
+				buffer);
+
+		// then
+		assertThat(buffer.toString()).isEqualTo("INFO:text");
+		assertThat(layout.getConversionPattern()).isEqualTo("%p:%m");
+	}
+}
@@ -0,0 +1,563 @@
+package com.github.loggly.log4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.NDC;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import com.github.loggly.log4j.helpers.CompressedFrameDecoder;
+import com.github.loggly.log4j.helpers.SyslogMetrics;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogAppender64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogAppender64kTest {
+	private static final Logger LOGGER = Logger.getLogger(SyslogAppender64kTest.class);
+
+	public SyslogAppender64kTest() {
+		// nothing to initialize
+	}
+
+	private static LoggingEvent event(final Level level, final String message, final Throwable throwable) {
+		return new LoggingEvent(SyslogAppender64kTest.class.getName(), LOGGER, level, message, throwable);
+	}
+
+	private static String receive(final DatagramSocket socket) throws IOException {
+		final byte[] buffer = new byte[SyslogAppender64k.UPPER_MAX_MSG_LENGTH];
+		final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		socket.receive(packet);
+		return new String(buffer, 0, packet.getLength(), StandardCharsets.UTF_8);
+	}
+
+	private static DatagramSocket createReceiver() throws IOException {
+		final DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		socket.setSoTimeout(10_000);
+		return socket;
+	}
+
+	@Test
+	@PackagePrivate
+	void appendWithPriorityAndFacility() throws IOException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_LOCAL0);
+			appender.setFacilityPrinting(true);
+
+			// when
+			appender.append(event(Level.WARN, "wärning", new IllegalStateException("boom")));
+			appender.close();
+
+			// then
+			assertThat(receive(socket)).isEqualTo("<132>local0:wärning");
+			assertThat(receive(socket)).isEqualTo("<132>java.lang.IllegalStateException: boom");
+			assertThat(receive(socket)).startsWith("<132>    at " + SyslogAppender64kTest.class.getName());
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendSplitsAtCharacterBoundaries() throws IOException {
+		// given
+		final StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < 1000; index += 1) {
+			builder.append("ä€𝄞");
+		}
+		final String message = builder.toString();
+
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setMaxMessageLength(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+
+			// when
+			appender.append(event(Level.INFO, message, null));
+			appender.close();
+
+			// then
+			final StringBuilder reassembled = new StringBuilder();
+			final List<String> packets = receiveFragments(socket);
+			for (int index = 0; index < packets.size(); index += 1) {
+				final String packet = packets.get(index);
+				final int length = packet.getBytes(StandardCharsets.UTF_8).length;
+				assertThat(length).isLessThanOrEqualTo(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+
+				final boolean last = index == packets.size() - 1;
+				if (!last) {
+					// filled up to the last incomplete character
+					assertThat(length).isGreaterThan(SyslogAppender64k.LOWER_MAX_MSG_LENGTH - 4);
+				}
+				final String content = packet.substring(index == 0 ? "<14>".length() : "<14>...".length(),
+						last ? packet.length() : packet.length() - "...".length());
+				reassembled.append(content);
+			}
+			assertThat(reassembled.toString()).isEqualTo(message);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendSplitsAtNewline() throws IOException {
+		// given
+		final String line = "0123456789012345678901234567890123456789012345678901234567890123456789\n";
+		final StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < 10; index += 1) {
+			builder.append(line);
+		}
+
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setMaxMessageLength(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+			appender.setSplitAtNewline(true);
+
+			// when
+			appender.append(event(Level.INFO, builder.toString(), null));
+			appender.close();
+
+			// then
+			final String first = receive(socket);
+			assertThat(first).startsWith("<14>0123").endsWith("6789...");
+			assertThat(receive(socket)).startsWith("<14>...0123");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendSplitsBufferLayoutAtNewline() throws IOException {
+		// given
+		final String line = "0123456789012345678901234567890123456789012345678901234567890123456789\n";
+		final String message = String.join("", Collections.nCopies(10, line));
+
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternBufferLayout("%p %m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setMaxMessageLength(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+			appender.setSplitAtNewline(true);
+
+			// when
+			appender.append(event(Level.INFO, message, null));
+			appender.append(event(Level.WARN, "second", null));
+			appender.close();
+
+			// then
+			final List<String> packets = receiveFragments(socket);
+			assertThat(packets.get(0)).startsWith("<14>INFO 0123").endsWith("6789...");
+			assertThat(String.join("", packets).replace("...<14>...", "\n"))
+					.isEqualTo("<14>INFO " + message);
+			assertThat(receive(socket)).isEqualTo("<12>WARN second");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendRfc5424WithStructuredData() throws IOException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setFormat("rfc5424");
+			appender.setAppName("app");
+			appender.setMsgId("msg");
+			appender.activateOptions();
+
+			// when
+			MDC.put("key", "va\"l]");
+			NDC.push("context");
+			try {
+				appender.append(event(Level.INFO, "message", null));
+			} finally {
+				MDC.remove("key");
+				NDC.remove();
+			}
+			appender.append(event(Level.INFO, "plain", null));
+			appender.close();
+
+			// then
+			assertThat(receive(socket))
+					.containsPattern("^<14>1 \\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}Z \\S+ app \\d+ msg "
+							+ "\\[mdc@32473 key=\"va\\\\\"l\\\\]\" ndc=\"context\"\\] message$");
+			assertThat(receive(socket)).containsPattern("^<14>1 \\S+ \\S+ app \\d+ msg - plain$");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendPacksThrowable() throws IOException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setThrowablePacking(true);
+			appender.setThrowableMaxFrames(1);
+
+			// when
+			appender.append(event(Level.ERROR, "failed", new IllegalStateException("boom")));
+			appender.close();
+
+			// then
+			assertThat(receive(socket)).isEqualTo("<11>failed");
+			assertThat(receive(socket))
+					.startsWith("<11>java.lang.IllegalStateException: boom\n    at "
+							+ SyslogAppender64kTest.class.getName())
+					.containsPattern("\n    \\.\\.\\. \\d+ frames omitted$");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendPacksThrowableWithoutLineFeedsIfNonTransparent() throws IOException {
+		// given
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + server.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setProtocol("TCP");
+			appender.setTcpFraming("NON_TRANSPARENT");
+			appender.setThrowablePacking(true);
+			appender.setThrowableMaxFrames(1);
+
+			// when
+			appender.append(event(Level.ERROR, "failed", new IllegalStateException("boom")));
+			appender.close();
+
+			// then
+			assertThat(appender.getThrowableLineSeparator()).isEqualTo("#012");
+			try (Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+				assertThat(reader.readLine()).isEqualTo("<11>failed");
+				assertThat(reader.readLine())
+						.startsWith("<11>java.lang.IllegalStateException: boom#012    at "
+								+ SyslogAppender64kTest.class.getName())
+						.containsPattern("#012    \\.\\.\\. \\d+ frames omitted$");
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendSuppressesDuplicatesAndLimitsRate() throws IOException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setDuplicateWindowMillis(60_000);
+			appender.setRateLimit(1);
+			appender.setRateLimitBurst(4);
+
+			// when
+			appender.append(event(Level.WARN, "loop", null));
+			appender.append(event(Level.WARN, "loop", null));
+			appender.append(event(Level.WARN, "loop", null));
+			appender.append(event(Level.INFO, "other", null));
+			appender.append(event(Level.INFO, "limited", null));
+			final SyslogMetrics.Snapshot metrics = appender.getMetrics();
+			appender.close();
+
+			// then
+			assertThat(receive(socket)).isEqualTo("<12>loop");
+			assertThat(receive(socket)).isEqualTo("<14>other");
+			assertThat(receive(socket)).isEqualTo("<12>message repeated 2 times: [loop]");
+			assertThat(metrics.getSuppressedDuplicates()).isEqualTo(2);
+			assertThat(metrics.getRateLimited()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendSamplesBelowKeepLevel() throws IOException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setSamplingRatios("DEBUG=0,INFO=0,WARN=0");
+
+			// when
+			appender.append(event(Level.DEBUG, "debug", null));
+			appender.append(event(Level.INFO, "info", null));
+			appender.append(event(Level.WARN, "warn", null));
+			final SyslogMetrics.Snapshot metrics = appender.getMetrics();
+			appender.close();
+
+			// then
+			assertThat(receive(socket)).isEqualTo("<12>warn");
+			assertThat(metrics.getEventsIn()).isEqualTo(3);
+			assertThat(metrics.getSampledOut()).isEqualTo(2);
+			assertThat(metrics.getSampledOutByLevel()).containsExactly(entry("DEBUG", 1L), entry("INFO", 1L));
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void setProtocolSelectsTransport() throws IOException {
+		// given
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + server.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+
+			// when
+			appender.setProtocol("TCP");
+			appender.append(event(Level.INFO, "over tcp", null));
+			appender.close();
+
+			// then
+			assertThat(appender.getProtocol()).isEqualTo(SyslogTcpTransport.PROTOCOL);
+			assertThatThrownBy(() -> appender.setProtocol("smtp")).isInstanceOf(IllegalArgumentException.class)
+					.hasMessageContaining("tcp, tls, udp, unix");
+			try (Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+				assertThat(reader.readLine()).isEqualTo("12 <14>over tcp");
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendCompressedOverTcp() throws IOException {
+		// given
+		final String json = String.join(",", Collections.nCopies(500, "{\"key\":\"value\"}"));
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + server.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setProtocol("tcp");
+			appender.setTcpCompressionThreshold(1024);
+
+			// when
+			appender.append(event(Level.INFO, "short", null));
+			appender.append(event(Level.INFO, json, null));
+			final SyslogMetrics.Snapshot metrics = appender.getMetrics();
+			appender.close();
+
+			// then
+			try (Socket socket = server.accept()) {
+				assertThat(CompressedFrameDecoder.readAll(socket.getInputStream(), StandardCharsets.UTF_8))
+						.containsExactly("<14>short", "<14>" + json);
+			}
+			assertThat(metrics.getBytes()).isLessThan(json.length() / 5);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendBroadcastsToMultipleHosts() throws IOException {
+		// given
+		try (DatagramSocket first = createReceiver(); DatagramSocket second = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + first.getLocalPort() + ", localhost:" + second.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setSyslogHostStrategy("broadcast");
+
+			// when
+			appender.append(event(Level.INFO, "everywhere", null));
+			appender.close();
+
+			// then
+			assertThat(receive(first)).isEqualTo("<14>everywhere");
+			assertThat(receive(second)).isEqualTo("<14>everywhere");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendConcurrently() throws IOException, InterruptedException {
+		// given
+		final int threads = 4;
+		final int events = 500;
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + server.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setProtocol("tcp");
+			appender.setTcpFraming("non-transparent");
+
+			// when
+			final List<Thread> senders = new ArrayList<>();
+			for (int thread = 0; thread < threads; thread += 1) {
+				final String prefix = "thread-" + thread + "-";
+				senders.add(new Thread(() -> {
+					for (int event = 0; event < events; event += 1) {
+						appender.doAppend(event(Level.INFO, prefix + event, null));
+					}
+				}));
+			}
+			senders.forEach(Thread::start);
+			for (final Thread sender : senders) {
+				sender.join();
+			}
+			appender.close();
+
+			// then
+			final List<String> lines = new ArrayList<>();
+			try (Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+				String line = reader.readLine();
+				while (line != null) {
+					lines.add(line);
+					line = reader.readLine();
+				}
+			}
+			assertThat(lines).hasSize(threads * events);
+			for (int thread = 0; thread < threads; thread += 1) {
+				final String prefix = "<14>thread-" + thread + "-";
+				final List<String> received = new ArrayList<>();
+				for (final String line : lines) {
+					if (line.startsWith(prefix)) {
+						received.add(line);
+					}
+				}
+				assertThat(received).hasSize(events).startsWith(prefix + 0).endsWith(prefix + (events - 1));
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void appendConcurrentlyKeepsFragmentsContiguous() throws IOException, InterruptedException {
+		// given
+		final int threads = 4;
+		final int events = 50;
+		final Set<String> messages = ConcurrentHashMap.newKeySet();
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + server.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setProtocol("tcp");
+			appender.setTcpFraming("non-transparent");
+			appender.setMaxMessageLength(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+
+			// when
+			final List<Thread> senders = new ArrayList<>();
+			for (int thread = 0; thread < threads; thread += 1) {
+				final String filler = String.join("", Collections.nCopies(2000, String.valueOf((char) ('a' + thread))));
+				final String prefix = "thread-" + thread + "-";
+				senders.add(new Thread(() -> {
+					for (int event = 0; event < events; event += 1) {
+						final String message = prefix + event + " " + filler;
+						messages.add(message);
+						appender.doAppend(event(Level.INFO, message, null));
+					}
+				}));
+			}
+			senders.forEach(Thread::start);
+			for (final Thread sender : senders) {
+				sender.join();
+			}
+			appender.close();
+
+			// then
+			final List<String> reassembled = new ArrayList<>();
+			try (Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+				final StringBuilder message = new StringBuilder();
+				String line = reader.readLine();
+				while (line != null) {
+					final boolean continued = message.length() > 0;
+					assertThat(line).startsWith(continued ? "<14>..." : "<14>thread-");
+					final boolean last = !line.endsWith("...");
+					message.append(line, continued ? "<14>...".length() : "<14>".length(),
+							last ? line.length() : line.length() - "...".length());
+					if (last) {
+						reassembled.add(message.toString());
+						message.setLength(0);
+					}
+					line = reader.readLine();
+				}
+			}
+			assertThat(reassembled).hasSize(threads * events).containsExactlyInAnyOrderElementsOf(messages);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void getMetricsUsingJmx() throws IOException, JMException {
+		// given
+		try (DatagramSocket socket = createReceiver()) {
+			final SyslogAppender64k appender = new SyslogAppender64k(new PatternLayout("%m"),
+					"localhost:" + socket.getLocalPort(),
+					SyslogAppender64k.LOG_USER);
+			appender.setName("metrics");
+			appender.setMaxMessageLength(SyslogAppender64k.LOWER_MAX_MSG_LENGTH);
+			appender.setJmx(true);
+			final ObjectName objectName
+					= new ObjectName("com.github.loggly.log4j:type=SyslogAppender64k,name=\"metrics\"");
+
+			// when
+			appender.append(event(Level.INFO, "short", null));
+			appender.append(event(Level.INFO, String.join("", Collections.nCopies(1000, "x")), null));
+
+			// then
+			final SyslogMetrics.Snapshot metrics = appender.getMetrics();
+			assertThat(metrics.getEventsIn()).isEqualTo(2);
+			assertThat(metrics.getEventsOut()).isEqualTo(2);
+			assertThat(metrics.getPackets()).isEqualTo(4);
+			assertThat(metrics.getSplitFragments()).isEqualTo(3);
+			assertThat(metrics.getLatencyP99Nanos()).isPositive();
+			assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Packets")).isEqualTo(4L);
+
+			// when
+			appender.close();
+
+			// then
+			assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)).isFalse();
+		}
+	}
+
+	private static List<String> receiveFragments(final DatagramSocket socket) throws IOException {
+		final List<String> packets = new ArrayList<>();
+		String packet = receive(socket);
+		packets.add(packet);
+		while (packet.endsWith("...")) {
+			packet = receive(socket);
+			packets.add(packet);
+		}
+		return packets;
+	}
+}
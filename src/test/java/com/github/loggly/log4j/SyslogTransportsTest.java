@@ -0,0 +1,77 @@
+package com.github.loggly.log4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.loggly.log4j.helpers.SyslogPacketWriter;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogTransports}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogTransportsTest {
+	public SyslogTransportsTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void getFindsTransportsOfContextClassLoader(@TempDir final Path directory) throws IOException {
+		// given
+		final Path services = directory.resolve("META-INF/services/" + SyslogTransport.class.getName());
+		Files.createDirectories(services.getParent());
+		Files.write(services, ContextTransport.class.getName().getBytes(StandardCharsets.UTF_8));
+
+		final Thread thread = Thread.currentThread();
+		final ClassLoader previous = thread.getContextClassLoader();
+		try (URLClassLoader classLoader
+				= new URLClassLoader(new URL[] { directory.toUri().toURL() }, getClass().getClassLoader())) {
+			// when
+			thread.setContextClassLoader(classLoader);
+
+			// then
+			assertThat(SyslogTransports.get("CONTEXT")).containsInstanceOf(ContextTransport.class);
+			assertThat(SyslogTransports.get("tcp")).containsInstanceOf(SyslogTcpTransport.class);
+			assertThat(SyslogTransports.getProtocols()).contains("context", "tcp", "udp");
+		} finally {
+			thread.setContextClassLoader(previous);
+		}
+
+		// then
+		assertThat(SyslogTransports.get("context")).isEmpty();
+	}
+
+	/**
+	 * Transport registered for the context class loader only
+	 */
+	public static final class ContextTransport implements SyslogTransport {
+		public ContextTransport() {
+			// nothing to initialize
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String getProtocol() {
+			return "context";
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public SyslogPacketWriter createWriter(final SyslogAppender64k appender,
+				final String host,
+				final boolean multiHost) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
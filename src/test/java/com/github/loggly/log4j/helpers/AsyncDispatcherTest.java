@@ -0,0 +1,204 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link AsyncDispatcher}
+ */
+@SuppressWarnings("java:S5786")
+public class AsyncDispatcherTest {
+	private static final Logger LOGGER = Logger.getLogger(AsyncDispatcherTest.class);
+
+	public AsyncDispatcherTest() {
+		// nothing to initialize
+	}
+
+	private static LoggingEvent event(final Level level, final String message) {
+		return new LoggingEvent(AsyncDispatcherTest.class.getName(), LOGGER, level, message, null);
+	}
+
+	@Test
+	@PackagePrivate
+	void drainsOnClose() {
+		// given
+		final List<Object> messages = new CopyOnWriteArrayList<>();
+		final AsyncDispatcher dispatcher = new AsyncDispatcher("test",
+				4,
+				AsyncFullPolicy.BLOCK,
+				Level.WARN,
+				Duration.ofSeconds(10),
+				event -> messages.add(event.getMessage()));
+		dispatcher.start();
+
+		// when
+		for (int index = 0; index < 100; index += 1) {
+			dispatcher.offer(event(Level.INFO, "message " + index));
+		}
+		dispatcher.close();
+
+		// then
+		assertThat(messages).hasSize(100).startsWith("message 0").endsWith("message 99");
+		assertThat(dispatcher.getDroppedEvents()).isZero();
+		assertThat(dispatcher.offer(event(Level.INFO, "closed"))).isFalse();
+	}
+
+	@Test
+	@PackagePrivate
+	void dropsBelowLevelIfFull() throws InterruptedException {
+		// given
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Object> messages = new CopyOnWriteArrayList<>();
+		final AsyncDispatcher dispatcher = new AsyncDispatcher("test",
+				1,
+				AsyncFullPolicy.DROP_BELOW_LEVEL,
+				Level.WARN,
+				Duration.ofSeconds(10),
+				event -> {
+					blocked.countDown();
+					await(release);
+					messages.add(event.getMessage());
+				});
+		dispatcher.start();
+
+		// when
+		assertThat(dispatcher.offer(event(Level.INFO, "in flight"))).isTrue();
+		assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(dispatcher.offer(event(Level.INFO, "queued"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "dropped"))).isFalse();
+		release.countDown();
+		assertThat(dispatcher.offer(event(Level.ERROR, "waiting"))).isTrue();
+		dispatcher.close();
+
+		// then
+		assertThat(messages).containsExactly("in flight", "queued", "waiting");
+		assertThat(dispatcher.getDroppedEvents()).isEqualTo(1);
+	}
+
+	@Test
+	@PackagePrivate
+	void drainsHigherLanesFirst() throws InterruptedException {
+		// given
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Object> messages = new CopyOnWriteArrayList<>();
+		final AsyncDispatcher dispatcher = new AsyncDispatcher("test",
+				4,
+				8,
+				event -> event.getLevel().getSyslogEquivalent(),
+				AsyncFullPolicy.DROP_NEWEST,
+				Level.WARN,
+				Duration.ofSeconds(10),
+				false,
+				event -> {
+					blocked.countDown();
+					await(release);
+					messages.add(event.getMessage());
+				});
+		dispatcher.start();
+
+		// when
+		assertThat(dispatcher.offer(event(Level.DEBUG, "in flight"))).isTrue();
+		assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "debug 1"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "debug 2"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.INFO, "info"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.ERROR, "error"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "shed"))).isFalse();
+		assertThat(dispatcher.getSize()).isEqualTo(4);
+		release.countDown();
+		dispatcher.close();
+
+		// then
+		assertThat(messages).containsExactly("in flight", "error", "info", "debug 1", "debug 2");
+		assertThat(dispatcher.getDroppedEvents()).isEqualTo(1);
+	}
+
+	@Test
+	@PackagePrivate
+	void evictsLowerLanesIfFull() throws InterruptedException {
+		// given
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Object> messages = new CopyOnWriteArrayList<>();
+		final AsyncDispatcher dispatcher = new AsyncDispatcher("test",
+				2,
+				8,
+				event -> event.getLevel().getSyslogEquivalent(),
+				AsyncFullPolicy.BLOCK,
+				Level.WARN,
+				Duration.ofSeconds(10),
+				false,
+				event -> {
+					blocked.countDown();
+					await(release);
+					messages.add(event.getMessage());
+				});
+		dispatcher.start();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "in flight"))).isTrue();
+		assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(dispatcher.offer(event(Level.DEBUG, "debug 1"))).isTrue();
+		assertThat(dispatcher.offer(event(Level.INFO, "info"))).isTrue();
+
+		// when
+		final boolean offered = dispatcher.offer(event(Level.ERROR, "error"));
+		release.countDown();
+		dispatcher.close();
+
+		// then
+		assertThat(offered).isTrue();
+		assertThat(messages).containsExactly("in flight", "error", "info");
+		assertThat(dispatcher.getDroppedEvents()).isEqualTo(1);
+	}
+
+	@Test
+	@PackagePrivate
+	void closesIfSenderThreadIsInterrupted() throws InterruptedException {
+		// given
+		final CountDownLatch dispatched = new CountDownLatch(1);
+		final List<Thread> senders = new CopyOnWriteArrayList<>();
+		final AsyncDispatcher dispatcher = new AsyncDispatcher("test",
+				1,
+				AsyncFullPolicy.BLOCK,
+				Level.WARN,
+				Duration.ofSeconds(10),
+				event -> {
+					senders.add(Thread.currentThread());
+					dispatched.countDown();
+				});
+		dispatcher.start();
+		assertThat(dispatcher.offer(event(Level.INFO, "dispatched"))).isTrue();
+		assertThat(dispatched.await(10, TimeUnit.SECONDS)).isTrue();
+
+		// when
+		senders.get(0).interrupt();
+		senders.get(0).join(10_000);
+
+		// then
+		assertThat(senders.get(0).isAlive()).isFalse();
+		assertThat(dispatcher.offer(event(Level.INFO, "first"))).isFalse();
+		assertThat(dispatcher.offer(event(Level.INFO, "second"))).isFalse();
+		dispatcher.close();
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (@SuppressWarnings("unused") final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link CircuitBreaker}
+ */
+@SuppressWarnings("java:S5786")
+public class CircuitBreakerTest {
+	public CircuitBreakerTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void onFailureProbesUntilSuccess() throws InterruptedException {
+		// given
+		final AtomicInteger attempts = new AtomicInteger(0);
+		try (CircuitBreaker circuitBreaker
+				= new CircuitBreaker("test", new ReconnectBackoff(Duration.ofMillis(1), Duration.ofMillis(4)), () -> {
+					if (attempts.incrementAndGet() < 3) {
+						throw new IOException("unavailable");
+					}
+				})) {
+			// when
+			circuitBreaker.onFailure();
+
+			// then
+			assertThat(circuitBreaker.isOpen()).isTrue();
+			final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (circuitBreaker.isOpen() && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			assertThat(circuitBreaker.isOpen()).isFalse();
+			assertThat(attempts).hasValue(3);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void onFailureProbesAfterRuntimeException() throws InterruptedException {
+		// given
+		final AtomicInteger attempts = new AtomicInteger(0);
+		try (CircuitBreaker circuitBreaker
+				= new CircuitBreaker("test", new ReconnectBackoff(Duration.ofMillis(1), Duration.ofMillis(4)), () -> {
+					if (attempts.incrementAndGet() < 2) {
+						throw new IllegalStateException("unexpected");
+					}
+				})) {
+			// when
+			circuitBreaker.onFailure();
+
+			// then
+			final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (circuitBreaker.isOpen() && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			assertThat(circuitBreaker.isOpen()).isFalse();
+			assertThat(attempts).hasValue(2);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void onFailureAfterCloseDoesNotProbe() throws InterruptedException {
+		// given
+		final AtomicInteger attempts = new AtomicInteger(0);
+		final CircuitBreaker circuitBreaker = new CircuitBreaker("test",
+				new ReconnectBackoff(Duration.ofMillis(1), Duration.ofMillis(4)),
+				attempts::incrementAndGet);
+		circuitBreaker.close();
+
+		// when
+		circuitBreaker.onFailure();
+		Thread.sleep(50);
+
+		// then
+		assertThat(circuitBreaker.isClosed()).isTrue();
+		assertThat(circuitBreaker.isOpen()).isFalse();
+		assertThat(attempts).hasValue(0);
+	}
+}
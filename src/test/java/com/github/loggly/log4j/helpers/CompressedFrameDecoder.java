@@ -0,0 +1,85 @@
+package com.github.loggly.log4j.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Test receiver decoding octet-counted TCP frames, which might be compressed by
+ * {@link SyslogPacketCompressor}
+ */
+public final class CompressedFrameDecoder {
+	private static final int RADIX = 10;
+
+	private CompressedFrameDecoder() {
+		// utility class
+	}
+
+	/**
+	 * Decompresses {@code frame} if it starts with
+	 * {@link SyslogPacketCompressor#MARKER}.
+	 *
+	 * @param frame the frame content
+	 * @return the plain packet
+	 * @throws IOException if the compressed data is corrupt
+	 */
+	public static byte[] decode(final byte[] frame) throws IOException {
+		if (frame.length == 0 || frame[0] != SyslogPacketCompressor.MARKER) {
+			return frame;
+		}
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(frame, 1, frame.length - 1);
+			final ByteArrayOutputStream packet = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			while (!inflater.finished()) {
+				final int length = inflater.inflate(buffer);
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated compressed frame");
+				}
+				packet.write(buffer, 0, length);
+			}
+			return packet.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Reads octet-counted frames until the end of {@code stream} and decodes them.
+	 *
+	 * @param stream  the received TCP stream
+	 * @param charset the charset of packets
+	 * @return the plain packets
+	 * @throws IOException on I/O error or if a frame is corrupt
+	 */
+	public static List<String> readAll(final InputStream stream, final Charset charset) throws IOException {
+		final DataInputStream input = new DataInputStream(stream);
+		final List<String> packets = new ArrayList<>();
+		int next = input.read();
+		while (next != -1) {
+			int length = 0;
+			while (next != ' ') {
+				if (next == -1) {
+					throw new EOFException("Truncated octet count");
+				}
+				length = length * RADIX + Character.digit(next, RADIX);
+				next = input.read();
+			}
+			final byte[] frame = new byte[length];
+			input.readFully(frame);
+			packets.add(new String(decode(frame), charset));
+			next = input.read();
+		}
+		return packets;
+	}
+}
@@ -0,0 +1,71 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link DuplicateFilter}
+ */
+@SuppressWarnings("java:S5786")
+public class DuplicateFilterTest {
+	public DuplicateFilterTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void acceptSuppressesRepeatedMessagesWithinWindow() {
+		// given
+		final DuplicateFilter filter = new DuplicateFilter(1000, 10);
+		final List<String> summaries = new ArrayList<>();
+
+		// when
+		assertThat(filter.accept("loop", 6, 0, repeated -> summaries.add(repeated.getText()))).isTrue();
+		assertThat(filter.accept("loop", 6, 10, repeated -> summaries.add(repeated.getText()))).isFalse();
+		assertThat(filter.accept("loop", 6, 20, repeated -> summaries.add(repeated.getText()))).isFalse();
+		assertThat(filter.accept("other", 6, 30, repeated -> summaries.add(repeated.getText()))).isTrue();
+
+		// then
+		assertThat(summaries).isEmpty();
+
+		// when
+		assertThat(filter.accept("loop", 6, 1000, repeated -> summaries.add(repeated.getText()))).isTrue();
+
+		// then
+		assertThat(summaries).containsExactly("message repeated 2 times: [loop]");
+	}
+
+	@Test
+	@PackagePrivate
+	void acceptEvictsOldestWindow() {
+		// given
+		final DuplicateFilter filter = new DuplicateFilter(1000, 2);
+		final List<DuplicateFilter.Repeated> summaries = new ArrayList<>();
+
+		// when
+		filter.accept("first", 3, 0, summaries::add);
+		filter.accept("first", 3, 1, summaries::add);
+		filter.accept("second", 6, 2, summaries::add);
+		filter.accept("third", 6, 3, summaries::add);
+
+		// then
+		assertThat(summaries).hasSize(1);
+		assertThat(summaries.get(0).getSeverity()).isEqualTo(3);
+		assertThat(summaries.get(0).getText()).isEqualTo("message repeated 1 times: [first]");
+
+		// when
+		summaries.clear();
+		filter.accept("third", 6, 4, summaries::add);
+		filter.drain(summaries::add);
+
+		// then
+		assertThat(summaries).extracting(DuplicateFilter.Repeated::getText)
+				.containsExactly("message repeated 1 times: [third]");
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link Rfc5424Header}
+ */
+@SuppressWarnings("java:S5786")
+public class Rfc5424HeaderTest {
+	public Rfc5424HeaderTest() {
+		// nothing to initialize
+	}
+
+	private static String encode(final SyslogPacketHeader header) {
+		final SyslogPacketEncoder encoder = new SyslogPacketEncoder(StandardCharsets.UTF_8, 1024, false);
+		final StringBuilder builder = new StringBuilder();
+		encoder.encode("<14>".getBytes(StandardCharsets.US_ASCII), header, "", "message", 0, packet -> {
+			final byte[] bytes = new byte[packet.remaining()];
+			packet.get(bytes);
+			builder.append(new String(bytes, StandardCharsets.UTF_8));
+		});
+		return builder.toString();
+	}
+
+	@Test
+	@PackagePrivate
+	void getEncodesStaticFields() {
+		// given
+		final Rfc5424Header header
+				= new Rfc5424Header(StandardCharsets.UTF_8, "host name", "app", "1234", null, "x y@32473");
+
+		// when
+		final String packet = encode(header.get(1_065_910_455_003L, Collections.emptyMap(), null));
+		final String next = encode(header.get(1_065_910_455_070L, Collections.singletonMap("a=b", "c"), "d"));
+
+		// then
+		assertThat(packet).isEqualTo("<14>1 2003-10-11T22:14:15.003Z host_name app 1234 - - message");
+		assertThat(next).isEqualTo(
+				"<14>1 2003-10-11T22:14:15.070Z host_name app 1234 - [x_y@32473 a_b=\"c\" ndc=\"d\"] message");
+	}
+
+	@Test
+	@PackagePrivate
+	void appendToDropsStructuredDataCrowdingOutMessage() {
+		// given
+		final Rfc5424Header header = new Rfc5424Header(StandardCharsets.UTF_8, "host", "app", "1234", null, "mdc@32473");
+		final SyslogPacketEncoder encoder = new SyslogPacketEncoder(StandardCharsets.UTF_8, 128, false);
+		final List<String> packets = new ArrayList<>();
+
+		// when
+		final boolean complete = encoder.encode("<14>".getBytes(StandardCharsets.US_ASCII),
+				header.get(1_065_910_455_003L,
+						Collections.singletonMap("key", String.join("", Collections.nCopies(100, "x"))),
+						null),
+				"",
+				"message",
+				0,
+				packet -> {
+					final byte[] bytes = new byte[packet.remaining()];
+					packet.get(bytes);
+					packets.add(new String(bytes, StandardCharsets.UTF_8));
+				});
+
+		// then
+		assertThat(complete).isFalse();
+		assertThat(packets).containsExactly("<14>1 2003-10-11T22:14:15.003Z host app 1234 - - message");
+	}
+
+	@Test
+	@PackagePrivate
+	void getProcessIdIsNumeric() {
+		// when
+		final String processId = Rfc5424Header.getProcessId();
+
+		// then
+		assertThat(processId).containsPattern("^\\d+$");
+	}
+}
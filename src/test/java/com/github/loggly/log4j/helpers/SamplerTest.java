@@ -0,0 +1,97 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Optional;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link Sampler}
+ */
+@SuppressWarnings("java:S5786")
+public class SamplerTest {
+	private static final Logger LOGGER = Logger.getLogger(SamplerTest.class);
+
+	private static final String TRACE_ID = "traceId";
+
+	public SamplerTest() {
+		// nothing to initialize
+	}
+
+	private static LoggingEvent event(final Level level) {
+		return new LoggingEvent(SamplerTest.class.getName(), LOGGER, level, "message", null);
+	}
+
+	@Test
+	@PackagePrivate
+	void acceptKeepsLevelsAtOrAboveKeepLevel() {
+		// given
+		final Sampler sampler = new Sampler("INFO=0, WARN=0", Level.WARN, Optional.empty());
+
+		// when
+		final boolean debug = sampler.accept(event(Level.DEBUG));
+		final boolean info = sampler.accept(event(Level.INFO));
+		final boolean warn = sampler.accept(event(Level.WARN));
+		final boolean error = sampler.accept(event(Level.ERROR));
+
+		// then
+		assertThat(debug).isTrue();
+		assertThat(info).isFalse();
+		assertThat(warn).isTrue();
+		assertThat(error).isTrue();
+	}
+
+	@Test
+	@PackagePrivate
+	void acceptKeepsRequestsTogether() {
+		// given
+		final Sampler sampler = new Sampler("DEBUG=0.1,INFO=0.5", Level.WARN, Optional.of(TRACE_ID));
+		int keptDebug = 0;
+		int keptInfo = 0;
+
+		// when
+		for (int request = 0; request < 1000; request += 1) {
+			MDC.put(TRACE_ID, "request-" + request);
+			try {
+				final boolean debug = sampler.accept(event(Level.DEBUG));
+				final boolean info = sampler.accept(event(Level.INFO));
+
+				// then
+				assertThat(sampler.accept(event(Level.DEBUG))).isEqualTo(debug);
+				assertThat(sampler.accept(event(Level.INFO))).isEqualTo(info);
+				if (debug) {
+					assertThat(info).isTrue();
+					keptDebug += 1;
+				}
+				if (info) {
+					keptInfo += 1;
+				}
+			} finally {
+				MDC.remove(TRACE_ID);
+			}
+		}
+
+		// then
+		assertThat(keptDebug).isBetween(50, 150);
+		assertThat(keptInfo).isBetween(400, 600);
+	}
+
+	@Test
+	@PackagePrivate
+	void rejectsInvalidRatios() {
+		assertThatThrownBy(() -> new Sampler("DEBUG", Level.WARN, Optional.empty()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new Sampler("DEBUG=2", Level.WARN, Optional.empty()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new Sampler("NOPE=0.5", Level.WARN, Optional.empty()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
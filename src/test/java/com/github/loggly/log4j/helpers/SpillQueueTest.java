@@ -0,0 +1,149 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SpillQueue}
+ */
+@SuppressWarnings("java:S5786")
+public class SpillQueueTest {
+	public SpillQueueTest() {
+		// nothing to initialize
+	}
+
+	private static ByteBuffer packet(final String packet) {
+		return ByteBuffer.wrap(packet.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	@PackagePrivate
+	void replayContinuesAfterReopen(@TempDir final Path directory) throws IOException {
+		// given
+		try (SpillQueue queue = new SpillQueue(directory, 1024, 32, Duration.ofDays(1))) {
+			for (int index = 0; index < 10; index += 1) {
+				assertThat(queue.offer(packet("<14>packet " + index))).isTrue();
+			}
+
+			// when
+			final RecordingWriter failing = new RecordingWriter(4);
+			assertThatThrownBy(() -> queue.replay(failing)).isInstanceOf(IOException.class);
+
+			// then
+			assertThat(failing.packets).containsExactly("<14>packet 0", "<14>packet 1", "<14>packet 2", "<14>packet 3");
+			assertThat(queue.isEmpty()).isFalse();
+		}
+
+		try (SpillQueue queue = new SpillQueue(directory, 1024, 32, Duration.ofDays(1))) {
+			// when
+			final RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+			queue.replay(writer);
+
+			// then
+			assertThat(writer.packets).containsExactly("<14>packet 4",
+					"<14>packet 5",
+					"<14>packet 6",
+					"<14>packet 7",
+					"<14>packet 8",
+					"<14>packet 9");
+			assertThat(queue.isEmpty()).isTrue();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void offerDropsOldestSegmentIfFull(@TempDir final Path directory) throws IOException {
+		// given
+		try (SpillQueue queue = new SpillQueue(directory, 64, 32, Duration.ofDays(1))) {
+			// when
+			for (int index = 0; index < 10; index += 1) {
+				queue.offer(packet("<14>packet " + index));
+			}
+			final boolean oversized = queue.offer(packet("<14>a packet larger than a segment"));
+
+			// then
+			final RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+			queue.replay(writer);
+			assertThat(oversized).isFalse();
+			assertThat(writer.packets).containsExactly("<14>packet 6", "<14>packet 7", "<14>packet 8", "<14>packet 9");
+			assertThat(queue.getDroppedPackets()).isEqualTo(7);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void offerSkipsEmptyPackets(@TempDir final Path directory) throws IOException {
+		// given
+		try (SpillQueue queue = new SpillQueue(directory, 1024, 32, Duration.ofDays(1))) {
+			// when
+			queue.offer(packet("<14>first"));
+			final boolean empty = queue.offer(packet(""));
+			queue.offer(packet("<14>second"));
+
+			// then
+			final RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+			queue.replay(writer);
+			assertThat(empty).isTrue();
+			assertThat(writer.packets).containsExactly("<14>first", "<14>second");
+			assertThat(queue.getDroppedPackets()).isZero();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void constructorFailsIfDirectoryIsLocked(@TempDir final Path directory) throws IOException {
+		// given
+		try (SpillQueue queue = new SpillQueue(directory, 1024, 32, Duration.ofDays(1))) {
+			// when
+			assertThatThrownBy(() -> new SpillQueue(directory, 1024, 32, Duration.ofDays(1)))
+					// then
+					.isInstanceOf(IOException.class);
+		}
+	}
+
+	/**
+	 * Records written packets and fails after a number of packets
+	 */
+	private static final class RecordingWriter implements SyslogPacketWriter {
+		private final int maxPackets;
+
+		private final List<String> packets = new ArrayList<>();
+
+		RecordingWriter(final int maxPackets) {
+			this.maxPackets = maxPackets;
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			if (packets.size() == maxPackets) {
+				throw new IOException("unavailable");
+			}
+			final byte[] bytes = new byte[packet.remaining()];
+			packet.get(bytes);
+			packets.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void flush() {
+			// nothing to flush
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+}
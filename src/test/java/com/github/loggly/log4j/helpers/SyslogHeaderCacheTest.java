@@ -0,0 +1,69 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogHeaderCache}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogHeaderCacheTest {
+	public SyslogHeaderCacheTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void getMatchesDateFormat() {
+		// given
+		final SyslogHeaderCache cache = new SyslogHeaderCache("host");
+		final SimpleDateFormat format = new SimpleDateFormat("MMM dd HH:mm:ss ", Locale.ENGLISH);
+
+		for (long timeStamp = 0; timeStamp < 400L * 24 * 60 * 60 * 1000; timeStamp += 7_777_777) {
+			// when
+			final String header = cache.get(timeStamp).toString();
+
+			// then
+			final String expected = format.format(new Date(timeStamp)) + "host ";
+			assertThat(header).isEqualTo(
+					expected.charAt(4) == '0' ? expected.substring(0, 4) + ' ' + expected.substring(5) : expected);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void getUsesLeadingSpaceForSingleDigitDays() {
+		// given
+		final SyslogHeaderCache cache = new SyslogHeaderCache("host");
+		final long timeStamp = new Date(2024 - 1900, 2, 5, 7, 8, 9).getTime();
+
+		// when
+		final String header = cache.get(timeStamp).toString();
+
+		// then
+		assertThat(header).isEqualTo("Mar  5 07:08:09 host ");
+	}
+
+	@Test
+	@PackagePrivate
+	void getReusesHeaderInsideSecond() {
+		// given
+		final SyslogHeaderCache cache = new SyslogHeaderCache("host");
+
+		// when
+		final SyslogPacketHeader first = cache.get(5_000);
+		final SyslogPacketHeader second = cache.get(5_999);
+		final SyslogPacketHeader next = cache.get(6_000);
+
+		// then
+		assertThat(second).isSameAs(first);
+		assertThat(next.toString()).isNotEqualTo(first.toString());
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import org.apache.log4j.Level;
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogMetrics}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogMetricsTest {
+	public SyslogMetricsTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void snapshotCounters() {
+		// given
+		final SyslogMetrics metrics = new SyslogMetrics();
+		metrics.onEventIn();
+		metrics.onEventIn();
+		metrics.onPacket(100);
+		metrics.onPacket(50);
+		metrics.onSplit(2);
+		metrics.onTruncated();
+		metrics.onThrowableLines(3);
+		metrics.onWriteFailure();
+		metrics.onEventFailed();
+		metrics.onDroppedWithoutHost();
+		metrics.onRateLimited();
+		metrics.onSampledOut(Level.DEBUG);
+		metrics.onSampledOut(Level.DEBUG);
+		metrics.onSampledOut(Level.INFO);
+		metrics.onSuppressedDuplicate();
+		metrics.onSuppressedDuplicate();
+
+		// when
+		final SyslogMetrics.Snapshot snapshot = metrics.snapshot(4, 5, 6, 7);
+
+		// then
+		assertThat(snapshot.getEventsIn()).isEqualTo(2);
+		assertThat(snapshot.getEventsOut()).isZero();
+		assertThat(snapshot.getPackets()).isEqualTo(2);
+		assertThat(snapshot.getBytes()).isEqualTo(150);
+		assertThat(snapshot.getSplitFragments()).isEqualTo(2);
+		assertThat(snapshot.getTruncatedMessages()).isEqualTo(1);
+		assertThat(snapshot.getThrowableLines()).isEqualTo(3);
+		assertThat(snapshot.getWriteFailures()).isEqualTo(1);
+		assertThat(snapshot.getFailedEvents()).isEqualTo(1);
+		assertThat(snapshot.getDroppedWithoutHost()).isEqualTo(1);
+		assertThat(snapshot.getRateLimited()).isEqualTo(1);
+		assertThat(snapshot.getSampledOut()).isEqualTo(3);
+		assertThat(snapshot.getSampledOutByLevel()).containsExactly(entry("DEBUG", 2L), entry("INFO", 1L));
+		assertThat(snapshot.getSuppressedDuplicates()).isEqualTo(2);
+		assertThat(snapshot.getQueueDepth()).isEqualTo(4);
+		assertThat(snapshot.getDroppedByQueue()).isEqualTo(5);
+		assertThat(snapshot.getDroppedByWriter()).isEqualTo(6);
+		assertThat(snapshot.getReconnects()).isEqualTo(7);
+		assertThat(snapshot.getLatencyP50Nanos()).isZero();
+	}
+
+	@Test
+	@PackagePrivate
+	void snapshotLatencyPercentiles() {
+		// given
+		final SyslogMetrics metrics = new SyslogMetrics();
+		for (int index = 0; index < 999; index += 1) {
+			metrics.onEventOut(1000);
+		}
+		metrics.onEventOut(1_000_000);
+
+		// when
+		final SyslogMetrics.Snapshot snapshot = metrics.snapshot(0, 0, 0, 0);
+
+		// then
+		assertThat(snapshot.getEventsOut()).isEqualTo(1000);
+		assertThat(snapshot.getLatencyP50Nanos()).isEqualTo(1024);
+		assertThat(snapshot.getLatencyP99Nanos()).isEqualTo(1024);
+		assertThat(snapshot.getLatencyP999Nanos()).isEqualTo(1024);
+		assertThat(snapshot.getLatencyBuckets()).hasSize(40)
+				.containsEntry(512L, 0L)
+				.containsEntry(1024L, 999L)
+				.containsEntry(1L << 20, 1000L)
+				.containsEntry(Long.MAX_VALUE, 1000L);
+
+		// when
+		metrics.onEventOut(1_000_000);
+
+		// then
+		assertThat(metrics.snapshot(0, 0, 0, 0).getLatencyP999Nanos()).isEqualTo(1 << 20);
+	}
+}
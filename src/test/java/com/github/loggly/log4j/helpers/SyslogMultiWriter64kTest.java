@@ -0,0 +1,164 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogMultiWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogMultiWriter64kTest {
+	private static final ReconnectBackoff BACKOFF = new ReconnectBackoff(Duration.ofHours(1), Duration.ofHours(1));
+
+	public SyslogMultiWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static SyslogMultiWriter64k createWriter(final SyslogHostStrategy strategy,
+			final RecordingWriter... writers) {
+		return new SyslogMultiWriter64k(StandardCharsets.UTF_8, strategy, BACKOFF, Arrays.asList(writers));
+	}
+
+	private static void write(final SyslogMultiWriter64k writer, final String packet) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap(packet.getBytes(StandardCharsets.UTF_8));
+		writer.write(buffer);
+		assertThat(buffer.hasRemaining()).isFalse();
+	}
+
+	private static List<ByteBuffer> packets(final String... packets) {
+		final List<ByteBuffer> buffers = new ArrayList<>();
+		for (final String packet : packets) {
+			buffers.add(ByteBuffer.wrap(packet.getBytes(StandardCharsets.UTF_8)));
+		}
+		return buffers;
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFailsOverAndSkipsFailedHost() throws IOException {
+		// given
+		final RecordingWriter primary = new RecordingWriter();
+		final RecordingWriter secondary = new RecordingWriter();
+		try (SyslogMultiWriter64k writer = createWriter(SyslogHostStrategy.FAILOVER, primary, secondary)) {
+			// when
+			write(writer, "<14>first");
+			primary.failing = true;
+			write(writer, "<14>second");
+			primary.failing = false;
+			write(writer, "<14>third");
+
+			// then
+			assertThat(primary.packets).containsExactly("<14>first");
+			assertThat(primary.attempts).isEqualTo(2);
+			assertThat(secondary.packets).containsExactly("<14>second", "<14>third");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeRoundRobin() throws IOException {
+		// given
+		final RecordingWriter first = new RecordingWriter();
+		final RecordingWriter second = new RecordingWriter();
+		try (SyslogMultiWriter64k writer = createWriter(SyslogHostStrategy.ROUND_ROBIN, first, second)) {
+			// when
+			write(writer, "<14>a");
+			write(writer, "<14>b");
+			write(writer, "<14>c");
+
+			// then
+			assertThat(first.packets).containsExactly("<14>a", "<14>c");
+			assertThat(second.packets).containsExactly("<14>b");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void routeRoundRobinWritesEventToOneHost() throws IOException {
+		// given
+		final RecordingWriter first = new RecordingWriter();
+		final RecordingWriter second = new RecordingWriter();
+		try (SyslogMultiWriter64k writer = createWriter(SyslogHostStrategy.ROUND_ROBIN, first, second)) {
+			// when
+			final int written = writer.route("key").write(packets("<14>a1", "<14>a2"), failure -> fail("failed"));
+			second.failing = true;
+			final int failedOver = writer.route("key").write(packets("<14>b1", "<14>b2"), failure -> fail("failed"));
+
+			// then
+			assertThat(written).isEqualTo(2);
+			assertThat(failedOver).isEqualTo(2);
+			assertThat(first.packets).containsExactly("<14>a1", "<14>a2", "<14>b1", "<14>b2");
+			assertThat(second.packets).isEmpty();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeBroadcast() throws IOException {
+		// given
+		final RecordingWriter first = new RecordingWriter();
+		final RecordingWriter second = new RecordingWriter();
+		try (SyslogMultiWriter64k writer = createWriter(SyslogHostStrategy.BROADCAST, first, second)) {
+			// when
+			write(writer, "<14>a");
+			second.failing = true;
+			write(writer, "<14>b");
+			first.failing = true;
+
+			// then
+			assertThat(first.packets).containsExactly("<14>a", "<14>b");
+			assertThat(second.packets).containsExactly("<14>a");
+			assertThatThrownBy(() -> write(writer, "<14>c")).isInstanceOf(IOException.class);
+		}
+	}
+
+	/**
+	 * Writer recording packets or failing on demand
+	 */
+	private static final class RecordingWriter implements SyslogPacketWriter {
+		private final List<String> packets = new ArrayList<>();
+
+		private int attempts = 0;
+
+		private boolean failing = false;
+
+		RecordingWriter() {
+			// nothing to initialize
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			attempts += 1;
+			if (failing) {
+				packet.get();
+				throw new IOException("failing");
+			}
+			final byte[] bytes = new byte[packet.remaining()];
+			packet.get(bytes);
+			packets.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void flush() {
+			// nothing to flush
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+}
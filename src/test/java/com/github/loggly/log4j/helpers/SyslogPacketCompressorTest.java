@@ -0,0 +1,70 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogPacketCompressor}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogPacketCompressorTest {
+	public SyslogPacketCompressorTest() {
+		// nothing to initialize
+	}
+
+	private static byte[] toArray(final ByteBuffer buffer) {
+		final byte[] array = new byte[buffer.remaining()];
+		buffer.get(array);
+		return array;
+	}
+
+	@Test
+	@PackagePrivate
+	void compressRoundTrip() throws IOException {
+		// given
+		final SyslogPacketCompressor compressor = new SyslogPacketCompressor(-1, 100);
+		final String json = "<14>" + String.join(",", Collections.nCopies(200, "{\"key\":\"value\"}"));
+		final ByteBuffer packet = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+
+		// when
+		final byte[] compressed = toArray(compressor.compress(packet));
+
+		// then
+		assertThat(packet.hasRemaining()).isFalse();
+		assertThat(compressed[0]).isEqualTo(SyslogPacketCompressor.MARKER);
+		assertThat(compressed.length).isLessThan(json.length() / 5);
+		assertThat(new String(CompressedFrameDecoder.decode(compressed), StandardCharsets.UTF_8)).isEqualTo(json);
+
+		// when reusing the compressor
+		final byte[] again = toArray(compressor.compress(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8))));
+
+		// then
+		assertThat(again).isEqualTo(compressed);
+	}
+
+	@Test
+	@PackagePrivate
+	void compressPassesSmallAndIncompressiblePackets() {
+		// given
+		final SyslogPacketCompressor compressor = new SyslogPacketCompressor(9, 10);
+		final ByteBuffer small = ByteBuffer.wrap("<14>small".getBytes(StandardCharsets.UTF_8));
+		final ByteBuffer random = ByteBuffer.wrap("<14>q8Zk2Lm0Xv".getBytes(StandardCharsets.UTF_8));
+
+		// when
+		final ByteBuffer smallResult = compressor.compress(small);
+		final ByteBuffer randomResult = compressor.compress(random);
+
+		// then
+		assertThat(smallResult).isSameAs(small);
+		assertThat(randomResult).isSameAs(random);
+		assertThat(random.remaining()).isEqualTo(14);
+	}
+}
@@ -0,0 +1,88 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogPriorityWriter}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogPriorityWriterTest {
+	public SyslogPriorityWriterTest() {
+		// nothing to initialize
+	}
+
+	private static final class FailingWriter implements SyslogPacketWriter {
+		private int writes = 0;
+
+		FailingWriter() {
+			// nothing to initialize
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			writes += 1;
+			if (writes > 1) {
+				throw new IOException("failed");
+			}
+			packet.position(packet.limit());
+		}
+
+		@Override
+		public void flush() {
+			// nothing to flush
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void getPriorityEncodesAllSeverities() {
+		// given
+		final SyslogPriorityWriter writer = new SyslogPriorityWriter(new FailingWriter(), 16 << 3, StandardCharsets.UTF_8);
+
+		// when
+		final String emergency = new String(writer.getPriority(0), StandardCharsets.UTF_8);
+		final String debug = new String(writer.getPriority(7), StandardCharsets.UTF_8);
+		final String clamped = new String(writer.getPriority(42), StandardCharsets.UTF_8);
+
+		// then
+		assertThat(emergency).isEqualTo("<128>");
+		assertThat(debug).isEqualTo("<135>");
+		assertThat(clamped).isEqualTo("<135>");
+		assertThat(writer.withEncoding(16 << 3, StandardCharsets.UTF_8)).isSameAs(writer);
+		assertThat(writer.withEncoding(1 << 3, StandardCharsets.UTF_8).getPriority(6))
+				.isEqualTo("<14>".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	@PackagePrivate
+	void writeReportsFailures() {
+		// given
+		final SyslogPriorityWriter writer = new SyslogPriorityWriter(new FailingWriter(), 1 << 3, StandardCharsets.UTF_8);
+		final List<IOException> failures = new CopyOnWriteArrayList<>();
+		final SyslogPacketWriter target = writer.route("key");
+
+		// when
+		final SendResult first = writer.write(target, ByteBuffer.wrap(writer.getPriority(6)), failures::add);
+		final SendResult second = writer.write(target, ByteBuffer.wrap(writer.getPriority(6)), failures::add);
+
+		// then
+		assertThat(first).isEqualTo(SendResult.SENT);
+		assertThat(second).isEqualTo(SendResult.FAILED);
+		assertThat(failures).hasSize(1).first().extracting(IOException::getMessage).isEqualTo("failed");
+	}
+}
@@ -0,0 +1,126 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogSpillWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogSpillWriter64kTest {
+	public SyslogSpillWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static ByteBuffer packet(final String packet) {
+		return ByteBuffer.wrap(packet.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	@PackagePrivate
+	void writeReplaysSpilledPacketsInBackground(@TempDir final Path directory)
+			throws IOException, InterruptedException {
+		// given
+		final RecordingWriter delegate = new RecordingWriter();
+		final SyslogSpillWriter64k writer = new SyslogSpillWriter64k("localhost",
+				StandardCharsets.UTF_8,
+				delegate,
+				directory,
+				1024 * 1024,
+				64 * 1024,
+				Duration.ofDays(1));
+		try {
+			writer.write(packet("<14>spilled 0"));
+			writer.write(packet("<14>spilled 1"));
+
+			// when
+			delegate.available = true;
+			writer.write(packet("<14>appended"));
+
+			// then
+			final long timeout = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (delegate.packets.size() < 3 && System.nanoTime() < timeout) {
+				Thread.sleep(10);
+			}
+			assertThat(delegate.packets).containsExactly("<14>spilled 0", "<14>spilled 1", "<14>appended");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeReplaysPacketsDiscardedByOtherWriter(@TempDir final Path directory)
+			throws IOException, InterruptedException {
+		// given
+		final RecordingWriter delegate = new RecordingWriter();
+		final AtomicReference<Consumer<ByteBuffer>> discardedPackets = new AtomicReference<>();
+		final SyslogSpillWriter64k writer = new SyslogSpillWriter64k("localhost", StandardCharsets.UTF_8, consumer -> {
+			discardedPackets.set(consumer);
+			return delegate;
+		}, directory, 1024 * 1024, 64 * 1024, Duration.ofDays(1));
+		try {
+			discardedPackets.get().accept(packet("<14>discarded"));
+
+			// when
+			delegate.available = true;
+			writer.write(packet("<14>appended"));
+
+			// then
+			final long timeout = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (delegate.packets.size() < 2 && System.nanoTime() < timeout) {
+				Thread.sleep(10);
+			}
+			assertThat(delegate.packets).containsExactly("<14>discarded", "<14>appended");
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Records written packets while available
+	 */
+	private static final class RecordingWriter implements SyslogPacketWriter {
+		private volatile boolean available = false;
+
+		private final List<String> packets = new CopyOnWriteArrayList<>();
+
+		RecordingWriter() {
+			// nothing to initialize
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) throws IOException {
+			if (!available) {
+				throw new IOException("unavailable");
+			}
+			final byte[] bytes = new byte[packet.remaining()];
+			packet.get(bytes);
+			packets.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void flush() {
+			// nothing to flush
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+}
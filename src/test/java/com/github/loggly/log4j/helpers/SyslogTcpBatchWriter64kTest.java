@@ -0,0 +1,142 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogTcpBatchWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogTcpBatchWriter64kTest {
+	public SyslogTcpBatchWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static ServerSocket createReceiver() throws IOException {
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		server.setSoTimeout(10_000);
+		return server;
+	}
+
+	private static SyslogTcpBatchWriter64k createWriter(final ServerSocket server,
+			final int batchSize,
+			final Duration linger) {
+		return new SyslogTcpBatchWriter64k("localhost:" + server.getLocalPort(),
+				StandardCharsets.UTF_8,
+				Duration.ofSeconds(10),
+				TcpFraming.OCTET_COUNTING,
+				batchSize,
+				linger,
+				ReconnectBackoff.DEFAULT);
+	}
+
+	private static String readAll(final Socket socket) throws IOException {
+		try (InputStream input = socket.getInputStream()) {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int length = input.read(buffer);
+			while (length >= 0) {
+				output.write(buffer, 0, length);
+				length = input.read(buffer);
+			}
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFlushesPendingFramesOnClose() throws IOException {
+		// given
+		try (ServerSocket server = createReceiver()) {
+			final SyslogTcpBatchWriter64k writer = createWriter(server, 16, Duration.ZERO);
+
+			// when
+			writer.write("<14>wärning");
+			writer.write("<14>one frame larger than the batch");
+			writer.write("<14>€");
+			writer.close();
+
+			// then
+			try (Socket socket = server.accept()) {
+				assertThat(readAll(socket)).isEqualTo("12 <14>wärning35 <14>one frame larger than the batch7 <14>€");
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFlushesPendingFramesAfterLinger() throws IOException {
+		// given
+		try (ServerSocket server = createReceiver()) {
+			final SyslogTcpBatchWriter64k writer = createWriter(server, 1024, Duration.ofMillis(10));
+
+			// when
+			writer.write("<14>linger");
+
+			// then
+			try (Socket socket = server.accept();
+					InputStream input = socket.getInputStream()) {
+				socket.setSoTimeout(10_000);
+				final byte[] buffer = new byte[13];
+				int length = 0;
+				while (length < buffer.length) {
+					length += input.read(buffer, length, buffer.length - length);
+				}
+				assertThat(new String(buffer, StandardCharsets.UTF_8)).isEqualTo("10 <14>linger");
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void flushCountsDiscardedFramesAsDropped() throws IOException {
+		// given
+		final SyslogTcpBatchWriter64k writer;
+		try (ServerSocket server = createReceiver()) {
+			writer = createWriter(server, 1024, Duration.ZERO);
+		}
+		writer.write("<14>one");
+		writer.write("<14>two");
+
+		// when
+		assertThatThrownBy(writer::flush).isInstanceOf(IOException.class);
+		writer.close();
+
+		// then
+		assertThat(writer.getDroppedPackets()).isEqualTo(2);
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFailsFastWhileCircuitIsOpen() throws IOException {
+		// given
+		final SyslogTcpBatchWriter64k writer;
+		try (ServerSocket server = createReceiver()) {
+			writer = createWriter(server, 1024, Duration.ZERO);
+		}
+		writer.write("<14>one");
+		assertThatThrownBy(writer::flush).isInstanceOf(IOException.class);
+
+		// when
+		assertThatThrownBy(() -> writer.write("<14>two")).isInstanceOf(IOException.class);
+		writer.close();
+
+		// then
+		assertThat(writer.getDroppedPackets()).isEqualTo(1);
+	}
+}
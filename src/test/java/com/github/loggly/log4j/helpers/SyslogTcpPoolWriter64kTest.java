@@ -0,0 +1,82 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogTcpPoolWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogTcpPoolWriter64kTest {
+	public SyslogTcpPoolWriter64kTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void routeKeepsKeysOnOneConnection() throws IOException {
+		// given
+		final List<RecordingWriter> connections = new ArrayList<>();
+		final SyslogTcpPoolWriter64k writer = new SyslogTcpPoolWriter64k("localhost", StandardCharsets.UTF_8, 4, () -> {
+			final RecordingWriter connection = new RecordingWriter();
+			connections.add(connection);
+			return connection;
+		});
+
+		// when
+		final Set<SyslogPacketWriter> used = new HashSet<>();
+		for (int index = 0; index < 100; index += 1) {
+			final SyslogPacketWriter connection = writer.route("thread-" + index);
+			assertThat(writer.route("thread-" + index)).isSameAs(connection);
+			used.add(connection);
+		}
+		writer.route("logger").write(ByteBuffer.wrap("<14>message".getBytes(StandardCharsets.UTF_8)));
+		writer.close();
+
+		// then
+		assertThat(connections).hasSize(4);
+		assertThat(used).hasSize(4);
+		assertThat(((RecordingWriter) writer.route("logger")).packets).isEqualTo(1);
+		assertThat(connections).allMatch(connection -> connection.closed);
+	}
+
+	/**
+	 * Counts written packets
+	 */
+	private static final class RecordingWriter implements SyslogPacketWriter {
+		private int packets = 0;
+
+		private boolean closed = false;
+
+		RecordingWriter() {
+			// nothing to initialize
+		}
+
+		@Override
+		public void write(final ByteBuffer packet) {
+			packets += 1;
+			packet.position(packet.limit());
+		}
+
+		@Override
+		public void flush() {
+			// nothing to flush
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogTcpWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogTcpWriter64kTest {
+	public SyslogTcpWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static byte[] send(final TcpFraming framing, final String... messages) throws IOException {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogTcpWriter64k writer = new SyslogTcpWriter64k("localhost:"
+					+ server.getLocalPort(), StandardCharsets.UTF_8, Optional.empty(), Duration.ofSeconds(10), framing);
+			for (final String message : messages) {
+				writer.write(message);
+			}
+			final ByteBuffer direct = ByteBuffer.allocateDirect(4);
+			direct.put("<6>d".getBytes(StandardCharsets.US_ASCII));
+			direct.flip();
+			writer.write(direct);
+			writer.close();
+
+			try (Socket socket = server.accept();
+					InputStream input = socket.getInputStream()) {
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				final byte[] buffer = new byte[1024];
+				int length = input.read(buffer);
+				while (length >= 0) {
+					output.write(buffer, 0, length);
+					length = input.read(buffer);
+				}
+				return output.toByteArray();
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeCountsOctets() throws IOException {
+		// when
+		final byte[] stream = send(TcpFraming.OCTET_COUNTING, "<14>wärning", "<14>€");
+
+		// then
+		assertThat(new String(stream, StandardCharsets.UTF_8)).isEqualTo("12 <14>wärning7 <14>€4 <6>d");
+	}
+
+	@Test
+	@PackagePrivate
+	void writeTerminatesByLineFeed() throws IOException {
+		// when
+		final byte[] stream = send(TcpFraming.NON_TRANSPARENT, "<14>wärning", "<14>€");
+
+		// then
+		assertThat(new String(stream, StandardCharsets.UTF_8)).isEqualTo("<14>wärning\n<14>€\n<6>d\n");
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFailsFastAndReconnects() throws IOException, InterruptedException {
+		// given
+		final int port;
+		try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = unused.getLocalPort();
+		}
+		try (SyslogTcpWriter64k writer = new SyslogTcpWriter64k("localhost:" + port,
+				StandardCharsets.UTF_8,
+				Optional.empty(),
+				Duration.ofSeconds(10),
+				TcpFraming.OCTET_COUNTING,
+				new ReconnectBackoff(Duration.ofMillis(1), Duration.ofMillis(10)))) {
+			assertThatThrownBy(() -> writer.write("<14>refused")).isInstanceOf(IOException.class);
+			assertThatThrownBy(() -> writer.write("<14>failing fast")).isInstanceOf(IOException.class)
+					.hasMessageContaining("unavailable");
+
+			// when
+			try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+				server.setSoTimeout(10_000);
+
+				// then
+				final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+				boolean written = false;
+				while (!written && System.nanoTime() < deadline) {
+					try {
+						writer.write("<14>reconnected");
+						written = true;
+					} catch (@SuppressWarnings("unused") final IOException e) {
+						Thread.sleep(1);
+					}
+				}
+				assertThat(written).isTrue();
+				writer.flush();
+				try (Socket socket = server.accept()) {
+					assertThat(socket.isConnected()).isTrue();
+				}
+			}
+		}
+	}
+
+	private static Runnable writing(final SyslogTcpWriter64k writer,
+			final String packet,
+			final AtomicBoolean running) {
+		return () -> {
+			try {
+				while (running.get()) {
+					writer.write(packet);
+				}
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// stopped by the receiver
+			}
+		};
+	}
+
+	private static Thread startWriting(final SyslogTcpWriter64k writer,
+			final String packet,
+			final AtomicBoolean running) {
+		final Thread thread = new Thread(writing(writer, packet, running), "SyslogTcpWriter64kTest-writer");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	@PackagePrivate
+	void writeWaitsWithoutMonitorWhileReceiverStalls() throws IOException, InterruptedException {
+		// given
+		final char[] message = new char[32 * 1024];
+		Arrays.fill(message, 'x');
+		final String packet = "<14>" + new String(message);
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(10_000);
+			final SyslogTcpWriter64k writer = new SyslogTcpWriter64k("localhost:"
+					+ server.getLocalPort(), StandardCharsets.UTF_8, Optional.empty(), Duration.ofSeconds(10));
+			final Thread[] threads = { startWriting(writer, packet, running), startWriting(writer, packet, running) };
+
+			// when
+			boolean blocked = false;
+			boolean waiting = false;
+			try (Socket stalled = server.accept()) {
+				final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+				while (!waiting && System.nanoTime() < deadline) {
+					for (final Thread thread : threads) {
+						final Thread.State state = thread.getState();
+						blocked |= state == Thread.State.BLOCKED;
+						waiting |= state == Thread.State.WAITING;
+					}
+					Thread.sleep(1);
+				}
+				running.set(false);
+			}
+			for (final Thread thread : threads) {
+				TimeUnit.SECONDS.timedJoin(thread, 10);
+			}
+			try {
+				writer.close();
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// the stalled receiver reset the connection
+			}
+
+			// then
+			assertThat(blocked).isFalse();
+			assertThat(waiting).isTrue();
+			assertThat(threads).noneMatch(Thread::isAlive);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeDoesNotPinVirtualThreadsWhileReceiverStalls(@TempDir final Path directory)
+			throws IOException, InterruptedException, ReflectiveOperationException {
+		assumeTrue(VirtualThreads.newThread("probe", () -> {
+			// checking support only
+		}).isPresent(), "Virtual threads require Java 21 or later.");
+
+		// given
+		final char[] message = new char[32 * 1024];
+		Arrays.fill(message, 'x');
+		final String packet = "<14>" + new String(message);
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+				PinnedThreadRecording recording = new PinnedThreadRecording()) {
+			server.setSoTimeout(10_000);
+			final SyslogTcpWriter64k writer = new SyslogTcpWriter64k("localhost:"
+					+ server.getLocalPort(), StandardCharsets.UTF_8, Optional.empty(), Duration.ofSeconds(10));
+			final Thread[] threads = {
+					VirtualThreads.newThread("SyslogTcpWriter64kTest-writer", writing(writer, packet, running)).get(),
+					VirtualThreads.newThread("SyslogTcpWriter64kTest-writer", writing(writer, packet, running)).get() };
+			for (final Thread thread : threads) {
+				thread.start();
+			}
+
+			// when
+			try (Socket stalled = server.accept()) {
+				final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+				boolean waiting = false;
+				while (!waiting && System.nanoTime() < deadline) {
+					waiting = true;
+					for (final Thread thread : threads) {
+						waiting &= thread.getState() == Thread.State.WAITING;
+					}
+					Thread.sleep(1);
+				}
+				Thread.sleep(100);
+				running.set(false);
+			}
+			for (final Thread thread : threads) {
+				TimeUnit.SECONDS.timedJoin(thread, 10);
+			}
+			try {
+				writer.close();
+			} catch (@SuppressWarnings("unused") final IOException e) {
+				// the stalled receiver reset the connection
+			}
+
+			// then
+			assertThat(recording.getPinnedEvents(directory.resolve("pinned.jfr"))).isZero();
+			assertThat(threads).noneMatch(Thread::isAlive);
+		}
+	}
+
+	/**
+	 * Records {@code jdk.VirtualThreadPinned} events using JFR. As tests are
+	 * compiled for Java 8, the JFR API is accessed reflectively.
+	 */
+	private static final class PinnedThreadRecording implements AutoCloseable {
+		private static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+
+		private final Class<?> recordingClass;
+
+		private final Object recording;
+
+		PinnedThreadRecording() throws ReflectiveOperationException {
+			recordingClass = Class.forName("jdk.jfr.Recording");
+			recording = recordingClass.getConstructor().newInstance();
+			final Object settings = recordingClass.getMethod("enable", String.class).invoke(recording, EVENT_NAME);
+			Class.forName("jdk.jfr.EventSettings").getMethod("withoutThreshold").invoke(settings);
+			recordingClass.getMethod("start").invoke(recording);
+		}
+
+		/**
+		 * Stops recording and returns the number of recorded pinning events.
+		 *
+		 * @param file the file to dump the recording to
+		 * @return the number of {@code jdk.VirtualThreadPinned} events
+		 * @throws ReflectiveOperationException if JFR is not available
+		 */
+		long getPinnedEvents(final Path file) throws ReflectiveOperationException {
+			recordingClass.getMethod("stop").invoke(recording);
+			recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+
+			final Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+			final Class<?> eventType = Class.forName("jdk.jfr.EventType");
+			final List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+					.getMethod("readAllEvents", Path.class)
+					.invoke(null, file);
+			long pinned = 0;
+			for (final Object event : events) {
+				final Object type = recordedEvent.getMethod("getEventType").invoke(event);
+				if (EVENT_NAME.equals(eventType.getMethod("getName").invoke(type))) {
+					pinned += 1;
+				}
+			}
+			return pinned;
+		}
+
+		@Override
+		public void close() throws ReflectiveOperationException {
+			recordingClass.getMethod("close").invoke(recording);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogTlsWriter64k} against a loopback server using the self
+ * signed certificate of {@code localhost.p12}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogTlsWriter64kTest {
+	private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+
+	public SyslogTlsWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static KeyStore loadKeyStore() throws IOException, GeneralSecurityException {
+		final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		try (InputStream input = SyslogTlsWriter64kTest.class.getResourceAsStream("localhost.p12")) {
+			keyStore.load(input, KEY_STORE_PASSWORD);
+		}
+		return keyStore;
+	}
+
+	/**
+	 * Creates a server limited to TLS 1.2, which resumes sessions by ID without
+	 * depending on the arrival of TLS 1.3 session tickets.
+	 *
+	 * @return the server
+	 */
+	private static SSLServerSocket createReceiver() throws IOException, GeneralSecurityException {
+		final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(loadKeyStore(), KEY_STORE_PASSWORD);
+		final SSLContext context = SSLContext.getInstance("TLS");
+		context.init(keyManagers.getKeyManagers(), null, null);
+
+		final SSLServerSocket server = (SSLServerSocket) context.getServerSocketFactory()
+				.createServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		server.setEnabledProtocols(new String[] { "TLSv1.2" });
+		server.setSoTimeout(10_000);
+		return server;
+	}
+
+	private static SSLContext createClientContext() throws IOException, GeneralSecurityException {
+		final TrustManagerFactory trustManagers
+				= TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(loadKeyStore());
+		final SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, trustManagers.getTrustManagers(), null);
+		return context;
+	}
+
+	private static SyslogTlsWriter64k createWriter(final SSLServerSocket server, final SSLContext context) {
+		return new SyslogTlsWriter64k("localhost:" + server.getLocalPort(),
+				StandardCharsets.UTF_8,
+				context,
+				true,
+				Duration.ofSeconds(10),
+				TcpFraming.OCTET_COUNTING,
+				Duration.ZERO,
+				ReconnectBackoff.DEFAULT);
+	}
+
+	/**
+	 * Accepts the next connection in the background, as the writer blocks until
+	 * the handshake finished.
+	 *
+	 * @return the future of everything received by the connection
+	 */
+	private static Future<String> receive(final ExecutorService executor, final SSLServerSocket server) {
+		return executor.submit(() -> {
+			try (Socket socket = server.accept()) {
+				return readAll(socket);
+			}
+		});
+	}
+
+	private static String readAll(final Socket socket) throws IOException {
+		try (InputStream input = socket.getInputStream()) {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int length = input.read(buffer);
+			while (length >= 0) {
+				output.write(buffer, 0, length);
+				length = input.read(buffer);
+			}
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeCoalescesFramesIntoRecords()
+			throws IOException, GeneralSecurityException, InterruptedException, ExecutionException, TimeoutException {
+		// given
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (SSLServerSocket server = createReceiver()) {
+			final Future<String> received = receive(executor, server);
+			final SyslogTlsWriter64k writer = createWriter(server, createClientContext());
+			final String large = "<14>" + String.join("", Collections.nCopies(20_000, "x"));
+
+			// when
+			writer.write("<14>wärning");
+			final int written = writer.write(Arrays.asList(StandardCharsets.UTF_8.encode(large),
+					StandardCharsets.UTF_8.encode("<14>€")), failure -> {
+						throw new AssertionError(failure);
+					});
+			writer.close();
+
+			// then
+			assertThat(written).isEqualTo(2);
+			assertThat(received.get(10, TimeUnit.SECONDS)).isEqualTo("12 <14>wärning20004 " + large + "7 <14>€");
+			assertThat(writer.getResumedSessions()).isZero();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void connectResumesSessionOfSameContext()
+			throws IOException, GeneralSecurityException, InterruptedException, ExecutionException, TimeoutException {
+		// given
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (SSLServerSocket server = createReceiver()) {
+			final SSLContext context = createClientContext();
+			final Future<String> firstReceived = receive(executor, server);
+			final SyslogTlsWriter64k first = createWriter(server, context);
+			first.write("<14>first");
+			first.close();
+			assertThat(firstReceived.get(10, TimeUnit.SECONDS)).isEqualTo("9 <14>first");
+
+			// when
+			final Future<String> secondReceived = receive(executor, server);
+			final SyslogTlsWriter64k second = createWriter(server, context);
+			second.write("<14>second");
+			second.close();
+
+			// then
+			assertThat(secondReceived.get(10, TimeUnit.SECONDS)).isEqualTo("10 <14>second");
+			assertThat(first.getResumedSessions()).isZero();
+			assertThat(second.getResumedSessions()).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFailsFastWhileCircuitIsOpen() throws IOException, GeneralSecurityException {
+		// given
+		final SyslogTlsWriter64k writer;
+		try (SSLServerSocket server = createReceiver()) {
+			writer = createWriter(server, createClientContext());
+		}
+		writer.write("<14>one");
+		assertThatThrownBy(writer::flush).isInstanceOf(IOException.class);
+
+		// when
+		assertThatThrownBy(() -> writer.write("<14>two")).isInstanceOf(IOException.class);
+
+		// then
+		writer.close();
+	}
+}
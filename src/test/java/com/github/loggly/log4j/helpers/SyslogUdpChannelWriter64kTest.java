@@ -0,0 +1,71 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogUdpChannelWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogUdpChannelWriter64kTest {
+	public SyslogUdpChannelWriter64kTest() {
+		// nothing to initialize
+	}
+
+	private static String receive(final DatagramSocket socket) throws IOException {
+		final byte[] buffer = new byte[1024];
+		final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		socket.receive(packet);
+		return new String(buffer, 0, packet.getLength(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	@PackagePrivate
+	void writeSendsQueuedDatagramsInOrder() throws IOException {
+		// given
+		try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+			socket.setSoTimeout(10_000);
+			final SyslogUdpChannelWriter64k writer
+					= new SyslogUdpChannelWriter64k("localhost:" + socket.getLocalPort(), StandardCharsets.UTF_8, 64);
+
+			// when
+			for (int index = 0; index < 20; index += 1) {
+				writer.write("<14>wärning " + index);
+			}
+			writer.write("<14>a datagram larger than the buffers of the writer, sent directly");
+			writer.flush();
+			writer.close();
+
+			// then
+			for (int index = 0; index < 20; index += 1) {
+				assertThat(receive(socket)).isEqualTo("<14>wärning " + index);
+			}
+			assertThat(receive(socket))
+					.isEqualTo("<14>a datagram larger than the buffers of the writer, sent directly");
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void writeFailsWithoutChannel() throws IOException {
+		// given
+		final SyslogUdpChannelWriter64k writer
+				= new SyslogUdpChannelWriter64k("unknown.invalid", StandardCharsets.UTF_8, 64);
+
+		// when
+		assertThatThrownBy(() -> writer.write("<14>lost"))
+				// then
+				.isInstanceOf(IOException.class);
+		writer.close();
+	}
+}
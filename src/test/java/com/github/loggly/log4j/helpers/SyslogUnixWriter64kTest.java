@@ -0,0 +1,115 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link SyslogUnixWriter64k}
+ */
+@SuppressWarnings("java:S5786")
+public class SyslogUnixWriter64kTest {
+	public SyslogUnixWriter64kTest() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Binds a server to a Unix domain socket. The API of Java 16 is accessed
+	 * reflectively, as tests are compiled for Java 8.
+	 *
+	 * @param path the path of the socket
+	 * @return the bound server
+	 * @throws ReflectiveOperationException if Unix domain sockets are not supported
+	 */
+	private static ServerSocketChannel bind(final Path path) throws ReflectiveOperationException {
+		final ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class
+				.getMethod("open", ProtocolFamily.class)
+				.invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+		ServerSocketChannel.class.getMethod("bind", SocketAddress.class)
+				.invoke(server,
+						Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class).invoke(null, path));
+		return server;
+	}
+
+	private static ByteBuffer packet(final String message) {
+		return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readAll(final SocketChannel channel) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		while (channel.read(buffer) >= 0) {
+			output.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	@PackagePrivate
+	void writeCoalescesFrames(@TempDir final Path directory) throws IOException, ReflectiveOperationException {
+		assumeTrue(SyslogUnixWriter64k.isSupported(), "Unix domain sockets require Java 16 or later.");
+
+		// given
+		final Path path = directory.resolve("syslog.sock");
+		try (ServerSocketChannel server = bind(path)) {
+			final SyslogUnixWriter64k writer
+					= new SyslogUnixWriter64k(path.toString(), TcpFraming.OCTET_COUNTING, ReconnectBackoff.DEFAULT);
+			final List<IOException> failures = new CopyOnWriteArrayList<>();
+
+			// when
+			final int written = writer.write(Arrays.asList(packet("<14>first"), packet("<14>wärning")), failures::add);
+			writer.write(packet("<11>third"));
+			writer.close();
+
+			// then
+			assertThat(written).isEqualTo(2);
+			assertThat(failures).isEmpty();
+			try (SocketChannel client = server.accept()) {
+				assertThat(readAll(client)).isEqualTo("9 <14>first12 <14>wärning9 <11>third");
+			}
+		}
+	}
+
+	@Test
+	@PackagePrivate
+	void flushReportsMissingSocket(@TempDir final Path directory) throws IOException {
+		assumeTrue(SyslogUnixWriter64k.isSupported(), "Unix domain sockets require Java 16 or later.");
+
+		// given
+		final SyslogUnixWriter64k writer = new SyslogUnixWriter64k(directory.resolve("missing.sock").toString(),
+				TcpFraming.NON_TRANSPARENT,
+				ReconnectBackoff.DEFAULT);
+		final List<IOException> failures = new CopyOnWriteArrayList<>();
+
+		// when
+		final int buffered = writer.write(Arrays.asList(packet("<14>first"), packet("<14>second")), failures::add);
+		final Throwable failure = catchThrowable(writer::flush);
+		writer.close();
+
+		// then
+		assertThat(buffered).isEqualTo(2);
+		assertThat(failures).isEmpty();
+		assertThat(failure).isInstanceOf(IOException.class);
+		assertThat(writer.getReconnects()).isZero();
+	}
+}
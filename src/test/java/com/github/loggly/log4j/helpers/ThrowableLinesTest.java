@@ -0,0 +1,72 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link ThrowableLines}
+ */
+@SuppressWarnings("java:S5786")
+public class ThrowableLinesTest {
+	private static final String[] LINES = {
+			"java.lang.IllegalStateException: outer",
+			"\tat a.A.a(A.java:1)",
+			"\tat a.A.b(A.java:2)",
+			"\tat a.A.c(A.java:3)",
+			"\tSuppressed: java.lang.IllegalStateException: suppressed",
+			"\t\tat b.B.a(B.java:1)",
+			"\t\tat b.B.b(B.java:2)",
+			"\t\tat b.B.c(B.java:3)",
+			"\t\t... 3 more",
+			"Caused by: java.lang.IllegalArgumentException: inner",
+			"\tat c.C.a(C.java:1)",
+			"\t... 3 more" };
+
+	public ThrowableLinesTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void limitFramesPerThrowable() {
+		// when
+		final String[] lines = ThrowableLines.limitFrames(LINES, 1);
+
+		// then
+		assertThat(lines).containsExactly("java.lang.IllegalStateException: outer",
+				"\tat a.A.a(A.java:1)",
+				"\t... 2 frames omitted",
+				"\tSuppressed: java.lang.IllegalStateException: suppressed",
+				"\t\tat b.B.a(B.java:1)",
+				"\t\t... 2 frames omitted",
+				"\t\t... 3 more",
+				"Caused by: java.lang.IllegalArgumentException: inner",
+				"\tat c.C.a(C.java:1)",
+				"\t... 3 more");
+	}
+
+	@Test
+	@PackagePrivate
+	void limitFramesKeepsLinesIfNothingOmitted() {
+		// when
+		final String[] unlimited = ThrowableLines.limitFrames(LINES, 0);
+		final String[] large = ThrowableLines.limitFrames(LINES, 3);
+
+		// then
+		assertThat(unlimited).isSameAs(LINES);
+		assertThat(large).isSameAs(LINES);
+	}
+
+	@Test
+	@PackagePrivate
+	void joinReplacesLeadingTab() {
+		// when
+		final String joined = ThrowableLines.join(new String[] { "first", "\tat a.A.a", "\t\tat b.B.b" }, "  ", " | ");
+
+		// then
+		assertThat(joined).isEqualTo("first |   at a.A.a |   \tat b.B.b");
+	}
+}
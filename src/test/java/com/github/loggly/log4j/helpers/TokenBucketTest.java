@@ -0,0 +1,42 @@
+package com.github.loggly.log4j.helpers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.larssh.utils.annotations.PackagePrivate;
+
+/**
+ * Tests {@link TokenBucket}
+ */
+@SuppressWarnings("java:S5786")
+public class TokenBucketTest {
+	public TokenBucketTest() {
+		// nothing to initialize
+	}
+
+	@Test
+	@PackagePrivate
+	void tryAcquireAllowsBurstThenRate() {
+		// given
+		final long oneSecond = TimeUnit.SECONDS.toNanos(1);
+		final TokenBucket bucket = new TokenBucket(10, 3, 0);
+
+		// when
+		final boolean first = bucket.tryAcquire(0);
+		final boolean second = bucket.tryAcquire(0);
+		final boolean third = bucket.tryAcquire(0);
+		final boolean fourth = bucket.tryAcquire(0);
+
+		// then
+		assertThat(first).isTrue();
+		assertThat(second).isTrue();
+		assertThat(third).isTrue();
+		assertThat(fourth).isFalse();
+		assertThat(bucket.tryAcquire(oneSecond / 10)).isTrue();
+		assertThat(bucket.tryAcquire(oneSecond / 10)).isFalse();
+		assertThat(bucket.tryAcquire(oneSecond)).isTrue();
+	}
+}